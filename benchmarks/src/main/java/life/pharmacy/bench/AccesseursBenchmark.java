@@ -0,0 +1,136 @@
+package life.pharmacy.bench;
+
+import life.pharmacy.mappers.ProduitMapper;
+import life.pharmacy.models.Produit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coût par appel de l'accès aux propriétés d'un produit, sans base : les anciens accesseurs par
+ * réflexion (getMethod / invoke à chaque appel, repris tels quels de la caisse et de l'export
+ * d'avant les mappers) face aux getters directs et à ProduitMapper.
+ * <p>
+ * Les anciens accesseurs cherchaient des méthodes absentes de Produit (getPrix, getStock, setPrix...) :
+ * l'exception levée à chaque appel fait partie de leur coût réel et est donc mesurée.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AccesseursBenchmark {
+
+    private static final int MASK = 1023;
+
+    private Produit[] produits;
+    private List<String>[] lignes;
+    private int next;
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void prepare() {
+        Random rnd = new Random(11);
+        produits = new Produit[MASK + 1];
+        lignes = new List[MASK + 1];
+        for (int i = 0; i <= MASK; i++) {
+            produits[i] = new Produit(i + 1, "Produit " + i, Fixture.barcode(i + 1),
+                    100 + rnd.nextInt(20_000), rnd.nextInt(500), rnd.nextBoolean());
+            lignes[i] = ProduitMapper.toRow(produits[i]);
+        }
+    }
+
+    // ---- prix d'un produit ajouté au panier (FacturationView) ----
+
+    @Benchmark
+    public double prixReflexion() {
+        return ancienPrix(produits[next++ & MASK]);
+    }
+
+    @Benchmark
+    public double prixDirect() {
+        return produits[next++ & MASK].getPrixUnitaire();
+    }
+
+    // ---- ligne d'export (ProduitService.exportCSV) ----
+
+    @Benchmark
+    public List<String> ligneExportReflexion() {
+        return ancienneLigneExport(produits[next++ & MASK]);
+    }
+
+    @Benchmark
+    public List<String> ligneExportMapper() {
+        return ProduitMapper.toRow(produits[next++ & MASK]);
+    }
+
+    // ---- ligne d'import (ProduitService.importCSV) ----
+
+    @Benchmark
+    public Produit ligneImportReflexion() {
+        return ancienImport(lignes[next++ & MASK]);
+    }
+
+    @Benchmark
+    public Produit ligneImportMapper() {
+        return ProduitMapper.fromRow(lignes[next++ & MASK]);
+    }
+
+    // ---- anciens accesseurs ----
+
+    private static double ancienPrix(Produit p) {
+        try { return (double) p.getClass().getMethod("getPrix").invoke(p); }
+        catch (Exception e1) {
+            try { return (double) p.getClass().getMethod("getPrixUnitaire").invoke(p); }
+            catch (Exception e2) {
+                try { return (double) p.getClass().getMethod("getPrice").invoke(p); }
+                catch (Exception e3) { return 0.0; }
+            }
+        }
+    }
+
+    private static List<String> ancienneLigneExport(Produit p) {
+        String prixS = "0";
+        String stockS = "";
+        try { prixS = String.valueOf(p.getClass().getMethod("getPrix").invoke(p)); } catch (Exception ignored) {}
+        try { stockS = String.valueOf(p.getClass().getMethod("getStock").invoke(p)); } catch (Exception ignored) {}
+        return Arrays.asList(p.getNom() == null ? "" : p.getNom(), prixS, ancienCodeBarre(p), stockS);
+    }
+
+    private static String ancienCodeBarre(Produit p) {
+        try { var m = p.getClass().getMethod("getCodeBarre"); Object v = m.invoke(p); return v == null ? "" : String.valueOf(v); } catch (Exception ex) { return ""; }
+    }
+
+    private static Produit ancienImport(List<String> r) {
+        String nom = r.size() > 0 ? r.get(0).trim() : "";
+        String prixS = r.size() > 1 ? r.get(1).trim() : "0";
+        String codeBarre = r.size() > 2 ? r.get(2).trim() : "";
+        String stockS = r.size() > 3 ? r.get(3).trim() : "0";
+
+        double prix = 0;
+        int stock = 0;
+        try { prix = Double.parseDouble(prixS.replace(",", ".")); } catch (Exception ignored) {}
+        try { stock = Integer.parseInt(stockS); } catch (Exception ignored) {}
+
+        Produit p = new Produit();
+        try { p.setNom(nom); } catch (Exception ignored) {}
+        try { p.getClass().getMethod("setPrix", double.class).invoke(p, prix); } catch (Exception ignored) {}
+        try { p.getClass().getMethod("setCodeBarre", String.class).invoke(p, codeBarre); } catch (Exception ignored) {}
+        try { p.getClass().getMethod("setStock", int.class).invoke(p, stock); } catch (Exception ignored) {}
+        return p;
+    }
+}
@@ -0,0 +1,88 @@
+package life.pharmacy.bench;
+
+import life.pharmacy.analytics.Dimension;
+import life.pharmacy.analytics.PivotResult;
+import life.pharmacy.analytics.SalesAnalytics;
+import life.pharmacy.config.Database;
+import life.pharmacy.mappers.Dates;
+import life.pharmacy.services.RecetteService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Agrégats des écrans de recettes et d'analyse : totaux par jour / mois sur un an
+ * (cumuls ventes_jour), ventes par produit et par heure (colonnes en mémoire de SalesAnalytics),
+ * et le même regroupement par produit en SQL sur details_facture pour comparaison.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AgregationBenchmark extends FixtureState {
+
+    private LocalDate debut;
+    private LocalDate fin;
+
+    @Override
+    protected void prepare() {
+        fin = Fixture.FIN.toLocalDate();
+        debut = fin.minusYears(1).plusDays(1);
+        // chargement des colonnes hors mesure
+        SalesAnalytics.refresh();
+    }
+
+    @Benchmark
+    public List<RecetteService.PeriodTotal> totauxParJour() {
+        return RecetteService.getAggregatedFromFactures(debut, fin, "DAY");
+    }
+
+    @Benchmark
+    public List<RecetteService.PeriodTotal> totauxParMois() {
+        return RecetteService.getAggregatedFromFactures(debut, fin, "MONTH");
+    }
+
+    @Benchmark
+    public PivotResult analyseParProduit() {
+        return RecetteService.analyse(Dimension.PRODUIT, debut, fin, null, 20);
+    }
+
+    @Benchmark
+    public PivotResult analyseParHeure() {
+        return RecetteService.analyse(Dimension.HEURE, debut, fin, "Espèces", 0);
+    }
+
+    @Benchmark
+    public int sqlParProduit() throws SQLException {
+        String sql = """
+                    SELECT df.produit_id, SUM(df.quantite * df.prix_unitaire) AS montant
+                    FROM details_facture df
+                    JOIN factures f ON f.id = df.facture_id
+                    WHERE f.date_epoch_ms >= ? AND f.date_epoch_ms < ?
+                    GROUP BY df.produit_id ORDER BY montant DESC LIMIT 20
+                """;
+        int n = 0;
+        try (Connection conn = Database.getReadConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setLong(1, Dates.toMillis(debut));
+            ps.setLong(2, Dates.toMillis(fin.plusDays(1)));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) n++;
+            }
+        }
+        return n;
+    }
+}
@@ -0,0 +1,54 @@
+package life.pharmacy.bench;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Point d'entrée du jar des bancs : mêmes options que JMH (filtre, -p, -f, -wi...), résultats
+ * enregistrés par défaut en JSON dans results/jmh-&lt;commit&gt;-&lt;horodatage&gt;.json
+ * pour comparer deux versions (-Dbench.results=... pour un autre dossier).
+ */
+public final class Bench {
+
+    private Bench() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions cli = new CommandLineOptions(args);
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(cli);
+
+        // -rf / -rff explicites : JMH les applique tels quels
+        if (!cli.getResult().hasValue() && !cli.getResultFormat().hasValue()) {
+            File dir = new File(System.getProperty("bench.results", "results"));
+            if (!dir.isDirectory() && !dir.mkdirs()) throw new IllegalStateException("Dossier inaccessible : " + dir);
+            String stamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+            File out = new File(dir, "jmh-" + commit() + "-" + stamp + ".json");
+            options.resultFormat(ResultFormatType.JSON).result(out.getPath());
+            System.out.println("Résultats : " + out.getAbsolutePath());
+        }
+        new Runner(options.build()).run();
+    }
+
+    // commit courant (git rev-parse), ou « local » hors d'un dépôt
+    private static String commit() {
+        try {
+            Process p = new ProcessBuilder("git", "rev-parse", "--short", "HEAD").redirectErrorStream(true).start();
+            try (BufferedReader r = new BufferedReader(new InputStreamReader(p.getInputStream()))) {
+                String line = r.readLine();
+                if (p.waitFor() == 0 && line != null && !line.isBlank()) return line.trim();
+            }
+        } catch (Exception ignored) {
+            // pas de git : nom de fichier générique
+        }
+        return "local";
+    }
+}
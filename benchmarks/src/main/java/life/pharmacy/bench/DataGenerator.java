@@ -0,0 +1,651 @@
+package life.pharmacy.bench;
+
+import life.pharmacy.config.Migrations;
+import life.pharmacy.mappers.Dates;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Génère une base de pharmacie réaliste et volumineuse pour les bancs d'essai et les tests de
+ * charge, au schéma créé par l'application (Migrations) :
+ * <ul>
+ *     <li>produits : noms « molécule dosage forme laboratoire », prix log-normaux, code-barres EAN-13 ;</li>
+ *     <li>popularité des produits en loi de Zipf (quelques références font l'essentiel des ventes) ;</li>
+ *     <li>plusieurs années d'historique : tendance, saisonnalité annuelle, creux du dimanche et des
+ *     jours fériés, pics de fin de matinée et de fin d'après-midi ;</li>
+ *     <li>paniers de 1 à 15 lignes (2,6 en moyenne), clients réguliers, caissiers, modes de paiement ;</li>
+ *     <li>cumuls ventes_jour et recettes journalières cohérents avec les factures.</li>
+ * </ul>
+ * Écriture par lots dans de grandes transactions, index secondaires reconstruits à la fin :
+ * 10 millions de lignes de facture en quelques minutes.
+ * <p>
+ * En ligne de commande (le fichier de sortie est écrasé) :
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar life.pharmacy.bench.DataGenerator \
+ *      --out=big.db --lignes=10000000 --annees=3 --produits=5000 --clients=20000
+ * </pre>
+ * Options : out, lignes ou factures, annees, fin (AAAA-MM-JJ), produits, clients, fournisseurs,
+ * caissiers, zipf, seed.
+ */
+public final class DataGenerator {
+
+    static final String[] MODES = {"Espèces", "Mobile Money", "Carte Bancaire"};
+    private static final double[] MODE_WEIGHTS = {0.6, 0.3, 0.1};
+    static final double TVA = 0.16;
+
+    // lignes entre deux commits pendant le chargement
+    private static final int COMMIT_LINES = 250_000;
+    // probabilité d'arrêt du panier après chaque ligne (loi géométrique, moyenne 1 / p)
+    private static final double BASKET_STOP = 0.38;
+    private static final int MAX_BASKET = 15;
+    // part des ventes rattachées à un client enregistré
+    private static final double CLIENT_SHARE = 0.35;
+
+    // affluence par heure d'ouverture, de 8 h à 20 h
+    private static final double[] HOURS = {3, 6, 9, 9, 7, 5, 5, 6, 8, 9, 8, 5, 3};
+    private static final int OPENING_HOUR = 8;
+
+    private static final String[] MOLECULES = {
+            "Paracétamol", "Ibuprofène", "Amoxicilline", "Artéméther-Luméfantrine", "Quinine", "Métronidazole",
+            "Ciprofloxacine", "Doxycycline", "Oméprazole", "Cotrimoxazole", "Albendazole", "Mébendazole",
+            "Diclofénac", "Aspirine", "Chlorphéniramine", "Loratadine", "Salbutamol", "Prednisolone",
+            "Metformine", "Glibenclamide", "Amlodipine", "Captopril", "Hydrochlorothiazide", "Fluconazole",
+            "Clotrimazole", "Nystatine", "Fer + Acide folique", "Vitamine C", "Zinc", "SRO",
+            "Ceftriaxone", "Azithromycine", "Érythromycine", "Cimétidine", "Lopéramide", "Butylscopolamine",
+            "Tramadol", "Diazépam", "Phénobarbital", "Artésunate"};
+    private static final String[] DOSAGES = {"50 mg", "100 mg", "250 mg", "500 mg", "1 g"};
+    private static final String[] FORMES = {"comprimés B/10", "comprimés B/20", "gélules B/30",
+            "sirop 100 ml", "suspension 60 ml", "injectable 1 amp"};
+    private static final String[] LABOS = {"Pharmakina", "Zenufa", "Shalina", "Sanofi", "Cipla",
+            "Biogaran", "Denk", "Macleods", "Strides", "Ajanta"};
+
+    private static final String[] PRENOMS = {"Jean", "Marie", "Joseph", "Esther", "Patrick", "Grâce", "Albert",
+            "Ruth", "Didier", "Chantal", "Pascal", "Nadine", "Fiston", "Sarah", "Trésor", "Mireille",
+            "Héritier", "Rachel", "Christian", "Divine", "Jonathan", "Gloria", "Blaise", "Déborah"};
+    private static final String[] NOMS = {"Kabila", "Mukendi", "Ilunga", "Kasongo", "Mbuyi", "Tshibanda",
+            "Kalala", "Mwamba", "Ngoy", "Banza", "Kyungu", "Mulumba", "Nday", "Kalenga", "Numbi", "Kapend",
+            "Mutombo", "Lukusa", "Kabeya", "Mpoyi"};
+    private static final String[] VILLES = {"Likasi", "Lubumbashi", "Kolwezi", "Kinshasa"};
+
+    private int produits = 5_000;
+    private int clients = 20_000;
+    private int fournisseurs = 40;
+    private int caissiers = 6;
+    private int annees = 3;
+    private LocalDate fin = LocalDate.of(2024, 12, 31);
+    private long lignes = 1_000_000;
+    private int factures; // 0 : déduit de lignes
+    private double zipf = 1.07;
+    private long seed = 42;
+    private int stockMin = 50;
+    private int stockMax = 2_000;
+
+    private Random rnd;
+
+    public DataGenerator produits(int produits) {
+        this.produits = Math.max(1, produits);
+        return this;
+    }
+
+    public DataGenerator clients(int clients) {
+        this.clients = Math.max(0, clients);
+        return this;
+    }
+
+    public DataGenerator fournisseurs(int fournisseurs) {
+        this.fournisseurs = Math.max(0, fournisseurs);
+        return this;
+    }
+
+    public DataGenerator caissiers(int caissiers) {
+        this.caissiers = Math.max(1, caissiers);
+        return this;
+    }
+
+    /**
+     * Années d'historique, jusqu'à {@link #fin(LocalDate)} incluse.
+     */
+    public DataGenerator annees(int annees) {
+        this.annees = Math.max(1, annees);
+        return this;
+    }
+
+    public DataGenerator fin(LocalDate fin) {
+        this.fin = fin;
+        return this;
+    }
+
+    /**
+     * Nombre visé de lignes de facture (le nombre de factures en est déduit).
+     */
+    public DataGenerator lignes(long lignes) {
+        this.lignes = Math.max(1, lignes);
+        this.factures = 0;
+        return this;
+    }
+
+    /**
+     * Nombre exact de factures (remplace {@link #lignes(long)}).
+     */
+    public DataGenerator factures(int factures) {
+        this.factures = Math.max(1, factures);
+        return this;
+    }
+
+    /**
+     * Exposant de la loi de Zipf des ventes par produit (0 : popularité uniforme).
+     */
+    public DataGenerator zipf(double zipf) {
+        this.zipf = Math.max(0, zipf);
+        return this;
+    }
+
+    public DataGenerator seed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * Stock initial de chaque produit, tiré entre min et max inclus.
+     */
+    public DataGenerator stock(int min, int max) {
+        this.stockMin = Math.max(0, min);
+        this.stockMax = Math.max(this.stockMin, max);
+        return this;
+    }
+
+    /**
+     * Code-barres EAN-13 (préfixe 6, clé de contrôle calculée) du produit d'id donné.
+     */
+    public static String barcode(int produitId) {
+        String base = String.format("6%011d", produitId);
+        int sum = 0;
+        for (int i = 0; i < 12; i++) {
+            int d = base.charAt(i) - '0';
+            sum += (i % 2 == 0) ? d : 3 * d;
+        }
+        return base + (10 - sum % 10) % 10;
+    }
+
+    /**
+     * Crée la base (le fichier existant est remplacé) et la remplit.
+     */
+    public Stats generate(File db) throws IOException, SQLException {
+        Files.deleteIfExists(db.toPath());
+        for (String suffix : new String[]{"-wal", "-shm", "-journal"}) {
+            Files.deleteIfExists(new File(db.getPath() + suffix).toPath());
+        }
+        long start = System.nanoTime();
+        Stats stats;
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + db.getPath())) {
+            stats = generate(conn);
+        }
+        stats.elapsedNanos = System.nanoTime() - start;
+        return stats;
+    }
+
+    private Stats generate(Connection conn) throws SQLException {
+        rnd = new Random(seed);
+        Stats stats = new Stats();
+        try (Statement stmt = conn.createStatement()) {
+            // base jetable tant qu'elle n'est pas terminée : ni journal ni fsync
+            stmt.execute("PRAGMA journal_mode = OFF");
+            stmt.execute("PRAGMA synchronous = OFF");
+            stmt.execute("PRAGMA temp_store = MEMORY");
+            stmt.execute("PRAGMA cache_size = -200000");
+        }
+        Migrations.migrate(conn);
+        Map<String, String> indexes = dropIndexes(conn);
+
+        conn.setAutoCommit(false);
+        double[] prix = insertProduits(conn);
+        String[] noms = productNames();
+        insertClients(conn);
+        insertFournisseurs(conn);
+        int[] caissierIds = insertCaissiers(conn);
+        conn.commit();
+        stats.produits = produits;
+        stats.clients = clients;
+        stats.fournisseurs = fournisseurs;
+
+        insertVentes(conn, prix, noms, caissierIds, stats);
+        conn.commit();
+        conn.setAutoCommit(true);
+
+        try (Statement stmt = conn.createStatement()) {
+            for (String sql : indexes.values()) stmt.execute(sql);
+            stmt.execute("ANALYZE");
+            stmt.execute("PRAGMA journal_mode = DELETE");
+        }
+        return stats;
+    }
+
+    // index secondaires du schéma : supprimés pendant le chargement, recréés à l'identique ensuite
+    private static Map<String, String> dropIndexes(Connection conn) throws SQLException {
+        Map<String, String> indexes = new LinkedHashMap<>();
+        try (Statement stmt = conn.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery(
+                    "SELECT name, sql FROM sqlite_master WHERE type = 'index' AND sql IS NOT NULL")) {
+                while (rs.next()) indexes.put(rs.getString(1), rs.getString(2));
+            }
+            for (String name : indexes.keySet()) stmt.execute("DROP INDEX " + name);
+        }
+        return indexes;
+    }
+
+    // ------------------------------------------------------------------ référentiels
+
+    private String[] productNames() {
+        // combinaisons dans un ordre mélangé mais reproductible (graine dédiée)
+        int combos = MOLECULES.length * DOSAGES.length * FORMES.length * LABOS.length;
+        int[] order = permutation(combos, new Random(seed ^ 0x5DEECE66DL));
+        String[] noms = new String[produits + 1];
+        for (int id = 1; id <= produits; id++) {
+            int c = order[(id - 1) % combos];
+            String nom = MOLECULES[c % MOLECULES.length] + " "
+                    + DOSAGES[(c / MOLECULES.length) % DOSAGES.length] + " "
+                    + FORMES[(c / (MOLECULES.length * DOSAGES.length)) % FORMES.length] + " "
+                    + LABOS[c / (MOLECULES.length * DOSAGES.length * FORMES.length)];
+            noms[id] = id <= combos ? nom : nom + " #" + ((id - 1) / combos + 1);
+        }
+        return noms;
+    }
+
+    private double[] insertProduits(Connection conn) throws SQLException {
+        String[] noms = productNames();
+        double[] prix = new double[produits + 1];
+        try (PreparedStatement ps = conn.prepareStatement(
+                "INSERT INTO produits (id, nom, prixUnitaire, quantite, code_barre, tva) VALUES (?, ?, ?, ?, ?, ?)")) {
+            for (int id = 1; id <= produits; id++) {
+                // prix médian 2 500 CDF, quelques spécialités très chères ; arrondi à 50 CDF
+                double p = Math.exp(Math.log(2_500) + 0.9 * rnd.nextGaussian());
+                prix[id] = Math.max(200, Math.min(150_000, Math.round(p / 50) * 50.0));
+                ps.setInt(1, id);
+                ps.setString(2, noms[id]);
+                ps.setDouble(3, prix[id]);
+                ps.setInt(4, stockMin + rnd.nextInt(stockMax - stockMin + 1));
+                ps.setString(5, barcode(id));
+                ps.setInt(6, rnd.nextDouble() < 0.3 ? 1 : 0);
+                ps.addBatch();
+                if (id % 10_000 == 0) ps.executeBatch();
+            }
+            ps.executeBatch();
+        }
+        return prix;
+    }
+
+    private void insertClients(Connection conn) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(
+                "INSERT INTO clients (id, nom, telephone, email) VALUES (?, ?, ?, ?)")) {
+            for (int id = 1; id <= clients; id++) {
+                String prenom = PRENOMS[rnd.nextInt(PRENOMS.length)];
+                String nom = NOMS[rnd.nextInt(NOMS.length)];
+                ps.setInt(1, id);
+                ps.setString(2, prenom + " " + nom);
+                ps.setString(3, String.format("+243 %d%07d", 81 + rnd.nextInt(19), rnd.nextInt(10_000_000)));
+                if (rnd.nextBoolean()) {
+                    ps.setString(4, ascii(prenom + "." + nom).toLowerCase() + id + "@example.com");
+                } else {
+                    ps.setNull(4, Types.VARCHAR);
+                }
+                ps.addBatch();
+                if (id % 10_000 == 0) ps.executeBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    private void insertFournisseurs(Connection conn) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(
+                "INSERT INTO fournisseurs (nom, contact, adresse) VALUES (?, ?, ?)")) {
+            for (int i = 1; i <= fournisseurs; i++) {
+                ps.setString(1, LABOS[i % LABOS.length] + " Distribution " + (i / LABOS.length + 1));
+                ps.setString(2, String.format("+243 %d%07d", 81 + rnd.nextInt(19), rnd.nextInt(10_000_000)));
+                ps.setString(3, (1 + rnd.nextInt(200)) + " avenue " + NOMS[rnd.nextInt(NOMS.length)]
+                        + ", " + VILLES[rnd.nextInt(VILLES.length)]);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    private int[] insertCaissiers(Connection conn) throws SQLException {
+        int[] ids = new int[caissiers];
+        int first;
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(id), 0) FROM utilisateurs")) {
+            first = rs.next() ? rs.getInt(1) + 1 : 1;
+        }
+        try (PreparedStatement ps = conn.prepareStatement(
+                "INSERT INTO utilisateurs (id, nom, email, mot_de_passe, role) VALUES (?, ?, ?, ?, 'caissier')")) {
+            for (int i = 0; i < caissiers; i++) {
+                ids[i] = first + i;
+                ps.setInt(1, ids[i]);
+                ps.setString(2, "Caissier " + (i + 1));
+                ps.setString(3, "caissier" + (i + 1) + "@lifepharma.com");
+                ps.setString(4, "caissier" + (i + 1));
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+        return ids;
+    }
+
+    // ------------------------------------------------------------------ ventes
+
+    private void insertVentes(Connection conn, double[] prix, String[] noms, int[] caissierIds, Stats stats)
+            throws SQLException {
+        LocalDate debut = fin.minusYears(annees).plusDays(1);
+        int days = (int) (fin.toEpochDay() - debut.toEpochDay() + 1);
+        int total = factures > 0 ? factures : (int) Math.max(1, Math.round(lignes * BASKET_STOP));
+        int[] perDay = dailyVolumes(debut, days, total);
+
+        double[] produitCdf = zipfCdf(produits, zipf);
+        int[] produitRank = permutation(produits, rnd); // rang de popularité -> id produit
+        double[] clientCdf = clients > 0 ? zipfCdf(clients, 0.8) : null;
+        int[] clientRank = clients > 0 ? permutation(clients, rnd) : null;
+        double[] hourCdf = cdf(HOURS);
+        double[] modeCdf = cdf(MODE_WEIGHTS);
+
+        // cumuls par jour et mode : ventes_jour et recettes écrites à la fin
+        int[] nb = new int[days * MODES.length];
+        double[] ht = new double[days * MODES.length];
+
+        int maxBasket = Math.min(MAX_BASKET, produits);
+        int[] basket = new int[maxBasket];
+        int factureId = 0;
+        long lignesEcrites = 0, sinceCommit = 0;
+
+        try (PreparedStatement pf = conn.prepareStatement("""
+                    INSERT INTO factures (id, date, date_epoch_ms, client_id, montant_ht, montant_tva, montant_ttc,
+                                          mode_paiement, utilisateur_id)
+                    VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)
+                """);
+             PreparedStatement pd = conn.prepareStatement("""
+                    INSERT INTO details_facture (facture_id, produit_id, produit_nom, quantite, prix_unitaire)
+                    VALUES (?, ?, ?, ?, ?)
+                """)) {
+            for (int day = 0; day < days; day++) {
+                LocalDate date = debut.plusDays(day);
+                int n = perDay[day];
+                int[] seconds = new int[n];
+                for (int i = 0; i < n; i++) {
+                    int hour = OPENING_HOUR + sample(hourCdf);
+                    seconds[i] = hour * 3600 + rnd.nextInt(3600);
+                }
+                Arrays.sort(seconds); // ids dans l'ordre chronologique, comme en caisse
+
+                for (int i = 0; i < n; i++) {
+                    factureId++;
+                    LocalDateTime at = date.atStartOfDay().plusSeconds(seconds[i]);
+
+                    int size = 1;
+                    while (size < maxBasket && rnd.nextDouble() >= BASKET_STOP) size++;
+                    double montantHT = 0;
+                    for (int l = 0; l < size; l++) {
+                        int produit = produitRank[sample(produitCdf)] + 1;
+                        // un produit scanné deux fois devient une seule ligne en caisse : on retire
+                        for (int k = 0; k < l; k++) {
+                            if (basket[k] == produit) {
+                                produit = produitRank[sample(produitCdf)] + 1;
+                                k = -1;
+                            }
+                        }
+                        basket[l] = produit;
+                        int quantite = quantite();
+                        pd.setInt(1, factureId);
+                        pd.setInt(2, produit);
+                        pd.setString(3, noms[produit]);
+                        pd.setInt(4, quantite);
+                        pd.setDouble(5, prix[produit]);
+                        pd.addBatch();
+                        montantHT += quantite * prix[produit];
+                    }
+
+                    int mode = sample(modeCdf);
+                    pf.setInt(1, factureId);
+                    pf.setString(2, at.toString());
+                    pf.setLong(3, Dates.toMillis(at));
+                    if (clientCdf != null && rnd.nextDouble() < CLIENT_SHARE) {
+                        pf.setInt(4, clientRank[sample(clientCdf)] + 1);
+                    } else {
+                        pf.setNull(4, Types.INTEGER);
+                    }
+                    pf.setDouble(5, montantHT);
+                    pf.setDouble(6, montantHT * TVA);
+                    pf.setDouble(7, montantHT * (1 + TVA));
+                    pf.setString(8, MODES[mode]);
+                    pf.setInt(9, caissierIds[rnd.nextInt(caissierIds.length)]);
+                    pf.addBatch();
+
+                    nb[day * MODES.length + mode]++;
+                    ht[day * MODES.length + mode] += montantHT;
+                    lignesEcrites += size;
+                    sinceCommit += size;
+                    if (sinceCommit >= COMMIT_LINES) {
+                        pf.executeBatch();
+                        pd.executeBatch();
+                        conn.commit();
+                        sinceCommit = 0;
+                    }
+                }
+            }
+            pf.executeBatch();
+            pd.executeBatch();
+        }
+        stats.factures = factureId;
+        stats.lignes = lignesEcrites;
+        stats.jours = days;
+
+        insertCumuls(conn, debut, days, nb, ht);
+    }
+
+    private static void insertCumuls(Connection conn, LocalDate debut, int days, int[] nb, double[] ht) throws SQLException {
+        try (PreparedStatement pv = conn.prepareStatement("""
+                    INSERT INTO ventes_jour (jour, mode_paiement, nb_factures, montant_ht, montant_tva, montant_ttc)
+                    VALUES (?, ?, ?, ?, ?, ?)
+                """);
+             PreparedStatement pr = conn.prepareStatement(
+                     "INSERT INTO recettes (date, date_epoch_day, montant, type) VALUES (?, ?, ?, 'day')")) {
+            for (int day = 0; day < days; day++) {
+                LocalDate date = debut.plusDays(day);
+                double ttcJour = 0;
+                for (int m = 0; m < MODES.length; m++) {
+                    int k = day * MODES.length + m;
+                    if (nb[k] == 0) continue;
+                    pv.setString(1, date.toString());
+                    pv.setString(2, MODES[m]);
+                    pv.setInt(3, nb[k]);
+                    pv.setDouble(4, ht[k]);
+                    pv.setDouble(5, ht[k] * TVA);
+                    pv.setDouble(6, ht[k] * (1 + TVA));
+                    pv.addBatch();
+                    ttcJour += ht[k] * (1 + TVA);
+                }
+                // recette du jour, comme RecetteService.syncRecettesFromFactures(..., "DAY")
+                if (ttcJour > 0) {
+                    pr.setString(1, date.toString());
+                    pr.setLong(2, date.toEpochDay());
+                    pr.setDouble(3, ttcJour);
+                    pr.addBatch();
+                }
+            }
+            pv.executeBatch();
+            pr.executeBatch();
+        }
+    }
+
+    /**
+     * Factures par jour : tendance (+10 % par an), saison des pluies (paludisme) plus chargée,
+     * dimanche et jours fériés creux, bruit log-normal ; total exact par report des arrondis.
+     */
+    private int[] dailyVolumes(LocalDate debut, int days, int total) {
+        double[] w = new double[days];
+        double sum = 0;
+        for (int d = 0; d < days; d++) {
+            LocalDate date = debut.plusDays(d);
+            double trend = Math.pow(1.10, d / 365.0);
+            // pic vers fin janvier, creux en saison sèche (juillet)
+            double season = 1 + 0.25 * Math.cos(2 * Math.PI * (date.getDayOfYear() - 25) / 365.0);
+            double week = switch (date.getDayOfWeek()) {
+                case SATURDAY -> 1.1;
+                case SUNDAY -> 0.45;
+                case MONDAY -> 1.05;
+                default -> 1.0;
+            };
+            double ferie = isHoliday(date) ? 0.3 : 1.0;
+            double noise = Math.exp(0.15 * rnd.nextGaussian());
+            w[d] = trend * season * week * ferie * noise;
+            sum += w[d];
+        }
+        int[] n = new int[days];
+        double carry = 0;
+        int assigned = 0;
+        for (int d = 0; d < days; d++) {
+            double exact = w[d] / sum * total + carry;
+            n[d] = (int) Math.floor(exact);
+            carry = exact - n[d];
+            assigned += n[d];
+        }
+        n[days - 1] += total - assigned;
+        return n;
+    }
+
+    private static boolean isHoliday(LocalDate d) {
+        int m = d.getMonthValue(), j = d.getDayOfMonth();
+        return (m == 1 && (j == 1 || j == 4)) || (m == 5 && j == 1) || (m == 6 && j == 30)
+                || (m == 8 && j == 1) || (m == 12 && j == 25);
+    }
+
+    private int quantite() {
+        double u = rnd.nextDouble();
+        if (u < 0.70) return 1;
+        if (u < 0.88) return 2;
+        if (u < 0.95) return 3;
+        return 4 + rnd.nextInt(3);
+    }
+
+    // ------------------------------------------------------------------ tirages
+
+    private int sample(double[] cdf) {
+        int i = Arrays.binarySearch(cdf, rnd.nextDouble());
+        return Math.min(i >= 0 ? i : -i - 1, cdf.length - 1);
+    }
+
+    private static double[] zipfCdf(int n, double s) {
+        double[] w = new double[n];
+        for (int k = 0; k < n; k++) w[k] = 1 / Math.pow(k + 1, s);
+        return cdf(w);
+    }
+
+    private static double[] cdf(double[] weights) {
+        double[] c = new double[weights.length];
+        double sum = 0;
+        for (int i = 0; i < weights.length; i++) {
+            sum += weights[i];
+            c[i] = sum;
+        }
+        for (int i = 0; i < c.length; i++) c[i] /= sum;
+        return c;
+    }
+
+    private static int[] permutation(int n, Random r) {
+        int[] p = new int[n];
+        for (int i = 0; i < n; i++) p[i] = i;
+        for (int i = n - 1; i > 0; i--) {
+            int j = r.nextInt(i + 1);
+            int t = p[i];
+            p[i] = p[j];
+            p[j] = t;
+        }
+        return p;
+    }
+
+    private static String ascii(String s) {
+        return java.text.Normalizer.normalize(s, java.text.Normalizer.Form.NFD).replaceAll("\\p{M}", "");
+    }
+
+    // ------------------------------------------------------------------ ligne de commande
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opts = new LinkedHashMap<>();
+        for (String a : args) {
+            if (!a.startsWith("--") || !a.contains("=")) {
+                System.err.println("Option invalide : " + a + " (attendu --nom=valeur)");
+                System.exit(2);
+            }
+            opts.put(a.substring(2, a.indexOf('=')), a.substring(a.indexOf('=') + 1));
+        }
+
+        DataGenerator g = new DataGenerator();
+        List<String> unknown = new ArrayList<>();
+        for (Map.Entry<String, String> e : opts.entrySet()) {
+            String v = e.getValue();
+            switch (e.getKey()) {
+                case "out" -> { }
+                case "lignes" -> g.lignes(Long.parseLong(v.replace("_", "")));
+                case "factures" -> g.factures(Integer.parseInt(v.replace("_", "")));
+                case "annees" -> g.annees(Integer.parseInt(v));
+                case "fin" -> g.fin(LocalDate.parse(v));
+                case "produits" -> g.produits(Integer.parseInt(v));
+                case "clients" -> g.clients(Integer.parseInt(v));
+                case "fournisseurs" -> g.fournisseurs(Integer.parseInt(v));
+                case "caissiers" -> g.caissiers(Integer.parseInt(v));
+                case "zipf" -> g.zipf(Double.parseDouble(v));
+                case "seed" -> g.seed(Long.parseLong(v));
+                default -> unknown.add(e.getKey());
+            }
+        }
+        if (!unknown.isEmpty()) {
+            System.err.println("Options inconnues : " + unknown);
+            System.exit(2);
+        }
+
+        File out = new File(opts.getOrDefault("out", "life_pharmacy_bench.db"));
+        Stats stats = g.generate(out);
+        System.out.println(out.getAbsolutePath() + " : " + stats);
+    }
+
+    public static class Stats {
+        private int produits;
+        private int clients;
+        private int fournisseurs;
+        private int factures;
+        private long lignes;
+        private int jours;
+        private long elapsedNanos;
+
+        public int getProduits() { return produits; }
+        public int getClients() { return clients; }
+        public int getFournisseurs() { return fournisseurs; }
+        public int getFactures() { return factures; }
+        public long getLignes() { return lignes; }
+        public int getJours() { return jours; }
+        public long getElapsedNanos() { return elapsedNanos; }
+
+        @Override
+        public String toString() {
+            double s = elapsedNanos / 1e9;
+            return String.format("%d produits, %d clients, %d fournisseurs, %d factures, %d lignes sur %d jours en %.1f s (%.0f lignes/s)",
+                    produits, clients, fournisseurs, factures, lignes, jours, s, s == 0 ? 0 : lignes / s);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package life.pharmacy.bench;
+
+import life.pharmacy.models.DetailFacture;
+import life.pharmacy.models.Facture;
+import life.pharmacy.models.Produit;
+import life.pharmacy.services.FactureService;
+import life.pharmacy.services.ProduitCatalog;
+import life.pharmacy.services.StockReservations;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Validation d'une vente de 5 lignes : FactureService.insert (appel bloquant, une transaction
+ * par vente) et FactureService.submit depuis 8 caisses à la fois (ventes regroupées par le
+ * WriteCoordinator). Sur une copie de la base, qui grossit pendant la mesure.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FactureInsertBenchmark extends FixtureState {
+
+    private static final int LIGNES = 5;
+
+    @Override
+    protected boolean writes() {
+        return true;
+    }
+
+    @Override
+    protected void prepare() {
+        ProduitCatalog.getAll();
+    }
+
+    private Facture vente() {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        List<DetailFacture> details = new ArrayList<>(LIGNES);
+        double ht = 0;
+        for (int i = 0; i < LIGNES; i++) {
+            Produit p = ProduitCatalog.getById(1 + rnd.nextInt(produits));
+            DetailFacture d = new DetailFacture(0, p, 1 + rnd.nextInt(3), p.getPrixUnitaire(), p.getNom());
+            details.add(d);
+            ht += d.getTotal();
+        }
+        Facture f = new Facture(0, LocalDateTime.now(), null, ht, ht * Fixture.TVA, ht * (1 + Fixture.TVA));
+        f.setDetails(details);
+        f.setModePaiement(Fixture.MODES[rnd.nextInt(Fixture.MODES.length)]);
+        return f;
+    }
+
+    @Benchmark
+    public Facture insert() {
+        Facture f = vente();
+        FactureService.insert(f);
+        return f;
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Facture submit() {
+        Facture f = vente();
+        long panier = StockReservations.open();
+        for (DetailFacture d : f.getDetails()) {
+            StockReservations.set(panier, d.getProduit().getId(), d.getQuantite());
+        }
+        return FactureService.submit(f, panier).join();
+    }
+}
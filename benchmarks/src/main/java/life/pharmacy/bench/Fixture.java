@@ -0,0 +1,75 @@
+package life.pharmacy.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+
+/**
+ * Base SQLite des bancs d'essai, remplie par {@link DataGenerator} avec sa graine par défaut :
+ * mêmes données d'une exécution à l'autre, popularité des produits et saisonnalité réalistes.
+ * <p>
+ * Une base par taille, construite une fois puis réutilisée par les forks JMH et les exécutions
+ * suivantes, dans -Dbench.fixtures=... (par défaut pharmacy-bench dans le dossier temporaire).
+ */
+final class Fixture {
+
+    static final String[] MODES = DataGenerator.MODES;
+    static final double TVA = DataGenerator.TVA;
+    // dernière date de l'historique généré
+    static final LocalDateTime FIN = LocalDateTime.of(2024, 12, 31, 20, 0);
+
+    // stock initial : les bancs d'écriture vendent sans jamais épuiser un produit
+    private static final int STOCK = 100_000_000;
+
+    private Fixture() {
+    }
+
+    static File dir() {
+        return new File(System.getProperty("bench.fixtures",
+                new File(System.getProperty("java.io.tmpdir"), "pharmacy-bench").getPath()));
+    }
+
+    /**
+     * Base de la taille demandée, construite si elle n'existe pas encore.
+     */
+    static synchronized File get(int produits, int clients, int factures) throws IOException, SQLException {
+        File dir = dir();
+        if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("Dossier inaccessible : " + dir);
+        File db = new File(dir, "fixture-v2-p" + produits + "-c" + clients + "-f" + factures + ".db");
+        if (db.isFile()) return db;
+
+        // construite à côté puis renommée : un fork interrompu ne laisse pas de base incomplète
+        File tmp = File.createTempFile("fixture-", ".db", dir);
+        Files.delete(tmp.toPath());
+        new DataGenerator()
+                .produits(produits)
+                .clients(clients)
+                .factures(factures)
+                .annees(3)
+                .fin(FIN.toLocalDate())
+                .stock(STOCK, STOCK)
+                .generate(tmp);
+        Files.move(tmp.toPath(), db.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        return db;
+    }
+
+    /**
+     * Copie de travail d'une base (bancs qui écrivent), supprimée à la sortie de la JVM.
+     */
+    static File copy(File db) throws IOException {
+        Path copy = Files.createTempFile(dir().toPath(), "work-", ".db");
+        Files.copy(db.toPath(), copy, StandardCopyOption.REPLACE_EXISTING);
+        for (String suffix : new String[]{"", "-wal", "-shm"}) {
+            new File(copy + suffix).deleteOnExit();
+        }
+        return copy.toFile();
+    }
+
+    static String barcode(int produitId) {
+        return DataGenerator.barcode(produitId);
+    }
+}
@@ -0,0 +1,62 @@
+package life.pharmacy.bench;
+
+import life.pharmacy.config.Database;
+import life.pharmacy.services.WriteCoordinator;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+
+/**
+ * Base commune des bancs qui passent par la base : taille de la base générée (réglable par
+ * -p produits=... -p clients=... -p factures=...) et branchement de l'application dessus.
+ * <p>
+ * Chaque banc tourne dans son propre fork : -Dpharmacy.db est posé avant le premier accès
+ * à Database, le pool s'ouvre donc directement sur la base générée.
+ */
+@State(Scope.Benchmark)
+public abstract class FixtureState {
+
+    @Param("2000")
+    public int produits;
+
+    @Param("5000")
+    public int clients;
+
+    @Param("20000")
+    public int factures;
+
+    protected File db;
+
+    /**
+     * true pour les bancs qui écrivent : ils travaillent sur une copie jetable de la base.
+     */
+    protected boolean writes() {
+        return false;
+    }
+
+    // une seule méthode @Setup : JMH ne garantit pas l'ordre entre celles d'une classe et de sa base
+    @Setup(Level.Trial)
+    public void openDatabase() throws Exception {
+        File base = Fixture.get(produits, clients, factures);
+        db = writes() ? Fixture.copy(base) : base;
+        System.setProperty("pharmacy.db", db.getPath());
+        prepare();
+    }
+
+    /**
+     * Préparation propre au banc, une fois la base branchée (hors mesure).
+     */
+    protected void prepare() throws Exception {
+    }
+
+    @TearDown(Level.Trial)
+    public void closeDatabase() {
+        WriteCoordinator.shutdown(10_000);
+        Database.shutdown();
+    }
+}
@@ -0,0 +1,125 @@
+package life.pharmacy.bench;
+
+import life.pharmacy.config.SqlProfiler;
+import life.pharmacy.models.DetailFacture;
+import life.pharmacy.models.Facture;
+import life.pharmacy.services.FactureService;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Historique des factures : première page, page d'un mois, page d'un client, lignes d'une
+ * facture à l'ouverture, et chargement complet (getAll) pour mesurer ce que la pagination évite.
+ * getAll relève aussi les requêtes SQL exécutées (requetes / appels = requêtes par appel), qui ne
+ * doivent pas croître avec la taille de la base :
+ * <pre>
+ * java -jar benchmarks/target/benchmarks.jar HistoriqueBenchmark.getAll -p factures=10000,100000
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HistoriqueBenchmark extends FixtureState {
+
+    private static final int PAGE = 200;
+    private static final int MASK = 255;
+
+    private FactureService.Filter[] mois;
+    private FactureService.Filter[] parClient;
+    private int[] factureIds;
+    private int next;
+
+    @Override
+    protected void prepare() {
+        Random rnd = new Random(13);
+        LocalDate fin = Fixture.FIN.toLocalDate();
+        mois = new FactureService.Filter[MASK + 1];
+        parClient = new FactureService.Filter[MASK + 1];
+        factureIds = new int[MASK + 1];
+        for (int i = 0; i <= MASK; i++) {
+            LocalDate debut = fin.minusMonths(rnd.nextInt(36)).withDayOfMonth(1);
+            mois[i] = new FactureService.Filter(null, debut, debut.plusMonths(1).minusDays(1));
+            parClient[i] = new FactureService.Filter(1 + rnd.nextInt(Math.max(1, clients)), null, null);
+            factureIds[i] = 1 + rnd.nextInt(factures);
+        }
+    }
+
+    @Benchmark
+    public FactureService.Page firstPage() {
+        return FactureService.getPage(null, null, PAGE);
+    }
+
+    @Benchmark
+    public FactureService.Page monthPage() {
+        return FactureService.getPage(mois[next++ & MASK], null, PAGE);
+    }
+
+    @Benchmark
+    public FactureService.Page clientPage() {
+        return FactureService.getPage(parClient[next++ & MASK], null, PAGE);
+    }
+
+    @Benchmark
+    public List<DetailFacture> details() {
+        return FactureService.getDetailsByFactureId(factureIds[next++ & MASK]);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<Facture> getAll(Requetes requetes) {
+        return FactureService.getAll();
+    }
+
+    /**
+     * Requêtes exécutées pendant les appels mesurés, d'après les agrégats du SqlProfiler ;
+     * relevées avant et après chaque appel, hors de la durée mesurée.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Requetes {
+        public long requetes;
+        public long appels;
+        private long avant;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            requetes = 0;
+            appels = 0;
+        }
+
+        @Setup(Level.Invocation)
+        public void avant() {
+            avant = executees();
+        }
+
+        @TearDown(Level.Invocation)
+        public void apres() {
+            requetes += executees() - avant;
+            appels++;
+        }
+
+        private static long executees() {
+            long n = 0;
+            for (SqlProfiler.Stat s : SqlProfiler.getStats()) n += s.getCount();
+            return n;
+        }
+    }
+}
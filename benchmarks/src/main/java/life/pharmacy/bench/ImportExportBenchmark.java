@@ -0,0 +1,110 @@
+package life.pharmacy.bench;
+
+import life.pharmacy.mappers.ProduitMapper;
+import life.pharmacy.services.BulkImport;
+import life.pharmacy.services.FactureService;
+import life.pharmacy.services.ProduitService;
+import life.pharmacy.utils.ExcelExporter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Import / export Excel et CSV : import de {@code produitsImportes} produits (première passe
+ * en insertion, les suivantes en mise à jour par code-barres), export des produits et de
+ * l'historique des factures. Sur une copie de la base.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ImportExportBenchmark extends FixtureState {
+
+    @Param("10000")
+    public int produitsImportes;
+
+    private File work;
+    private File produitsCsv;
+    private File produitsXlsx;
+
+    @Override
+    protected boolean writes() {
+        return true;
+    }
+
+    @Override
+    protected void prepare() throws IOException {
+        work = Files.createTempDirectory(Fixture.dir().toPath(), "io-").toFile();
+        work.deleteOnExit();
+
+        List<List<String>> rows = new ArrayList<>(produitsImportes + 1);
+        rows.add(ProduitMapper.HEADER);
+        for (int i = 1; i <= produitsImportes; i++) {
+            // codes-barres hors de ceux de la base : la première passe insère
+            int id = produits + i;
+            rows.add(List.of("Import " + id, String.valueOf(100 + i % 5000), Fixture.barcode(id), String.valueOf(1000)));
+        }
+        produitsCsv = temp("produits.csv");
+        produitsXlsx = temp("produits.xlsx");
+        ExcelExporter.write(rows, produitsCsv);
+        ExcelExporter.write(rows, produitsXlsx);
+    }
+
+    private File temp(String name) {
+        File f = new File(work, name);
+        f.deleteOnExit();
+        return f;
+    }
+
+    @Benchmark
+    public BulkImport.Report importProduitsCsv() {
+        return ProduitService.importCSV(produitsCsv);
+    }
+
+    // même format que le CSV, lu en flux par le lecteur XLSX
+    @Benchmark
+    public BulkImport.Report importProduitsXlsx() {
+        return ProduitService.importCSV(produitsXlsx);
+    }
+
+    @Benchmark
+    public long exportProduitsCsv() {
+        File f = temp("export-produits.csv");
+        ProduitService.exportCSV(f);
+        return f.length();
+    }
+
+    @Benchmark
+    public long exportProduitsXlsx() {
+        File f = temp("export-produits.xlsx");
+        ProduitService.exportCSV(f);
+        return f.length();
+    }
+
+    @Benchmark
+    public long exportFacturesCsv() {
+        File f = temp("export-factures.csv");
+        FactureService.exportCSV(f);
+        return f.length();
+    }
+
+    @Benchmark
+    public long exportFacturesXlsx() {
+        File f = temp("export-factures.xlsx");
+        FactureService.exportCSV(f);
+        return f.length();
+    }
+}
@@ -0,0 +1,86 @@
+package life.pharmacy.bench;
+
+import life.pharmacy.models.DetailFacture;
+import life.pharmacy.models.Facture;
+import life.pharmacy.models.Produit;
+import life.pharmacy.services.ProduitCatalog;
+import life.pharmacy.services.StockReservations;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Constitution d'un panier en caisse, sans écriture : scan des codes-barres, lignes et totaux
+ * HT / TVA / TTC (calcul de FacturationView.calculerTotaux), puis réservations de stock du
+ * panier, seules et avec plusieurs caisses sur les mêmes produits.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PanierBenchmark extends FixtureState {
+
+    @Param({"5", "30"})
+    public int lignes;
+
+    private String[] scans;
+    private int[] hot;
+
+    @Override
+    protected void prepare() {
+        Random rnd = new Random(11);
+        scans = new String[lignes];
+        for (int i = 0; i < lignes; i++) scans[i] = Fixture.barcode(1 + rnd.nextInt(produits));
+        // quelques produits très demandés, partagés par toutes les caisses
+        hot = new int[]{1, 2, 3, 4};
+        ProduitCatalog.getAll();
+    }
+
+    @Benchmark
+    public Facture total() {
+        List<DetailFacture> details = new ArrayList<>(scans.length);
+        double ht = 0;
+        for (String code : scans) {
+            Produit p = ProduitCatalog.getByBarcode(code);
+            DetailFacture d = new DetailFacture(0, p, 1, p.getPrixUnitaire(), p.getNom());
+            details.add(d);
+            ht += d.getTotal();
+        }
+        double tva = ht * Fixture.TVA;
+        Facture f = new Facture(0, LocalDateTime.now(), null, ht, tva, ht + tva);
+        f.setDetails(details);
+        return f;
+    }
+
+    @Benchmark
+    public long reserve() {
+        long panier = StockReservations.open();
+        for (String code : scans) {
+            StockReservations.set(panier, ProduitCatalog.getByBarcode(code).getId(), 1);
+        }
+        StockReservations.release(panier);
+        return panier;
+    }
+
+    @Benchmark
+    @Threads(8)
+    public long reserveContended() {
+        long panier = StockReservations.open();
+        for (int id : hot) StockReservations.set(panier, id, 1);
+        StockReservations.release(panier);
+        return panier;
+    }
+}
@@ -0,0 +1,80 @@
+package life.pharmacy.bench;
+
+import life.pharmacy.models.Client;
+import life.pharmacy.models.Produit;
+import life.pharmacy.services.ClientService;
+import life.pharmacy.services.ProduitCatalog;
+import life.pharmacy.services.ProduitService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recherche produit en caisse : par id (cache catalogue), code-barres scanné, autocomplétion
+ * par préfixe, et, en point de comparaison, une lecture par clé en SQL (client par id).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProduitBenchmark extends FixtureState {
+
+    // ids / codes tirés à l'avance, parcourus en boucle
+    private static final int MASK = 1023;
+
+    private int[] ids;
+    private int[] clientIds;
+    private String[] barcodes;
+    private String[] prefixes;
+    private int next;
+
+    @Override
+    protected void prepare() {
+        Random rnd = new Random(7);
+        ids = new int[MASK + 1];
+        clientIds = new int[MASK + 1];
+        barcodes = new String[MASK + 1];
+        prefixes = new String[MASK + 1];
+        for (int i = 0; i <= MASK; i++) {
+            ids[i] = 1 + rnd.nextInt(produits);
+            clientIds[i] = 1 + rnd.nextInt(Math.max(1, clients));
+            barcodes[i] = Fixture.barcode(ids[i]);
+        }
+        // chargement du catalogue hors mesure
+        ProduitCatalog.getAll();
+        for (int i = 0; i <= MASK; i++) {
+            // saisie en cours : « par », « parac », « paracét »...
+            String nom = ProduitCatalog.getById(ids[i]).getNom().toLowerCase();
+            prefixes[i] = nom.substring(0, Math.min(nom.length(), 3 + rnd.nextInt(5)));
+        }
+    }
+
+    @Benchmark
+    public Produit getById() {
+        return ProduitService.getById(ids[next++ & MASK]);
+    }
+
+    @Benchmark
+    public Produit getByBarcode() {
+        return ProduitCatalog.getByBarcode(barcodes[next++ & MASK]);
+    }
+
+    @Benchmark
+    public List<Produit> searchPrefix() {
+        return ProduitCatalog.search(prefixes[next++ & MASK], 20);
+    }
+
+    @Benchmark
+    public Client clientByIdSql() {
+        return ClientService.getById(clientIds[next++ & MASK]);
+    }
+}
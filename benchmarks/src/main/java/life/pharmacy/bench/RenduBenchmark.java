@@ -0,0 +1,111 @@
+package life.pharmacy.bench;
+
+import life.pharmacy.models.Client;
+import life.pharmacy.models.DetailFacture;
+import life.pharmacy.models.Facture;
+import life.pharmacy.models.Produit;
+import life.pharmacy.services.RecetteService;
+import life.pharmacy.utils.Downsampling;
+import life.pharmacy.utils.FacturePdfRenderer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rendus sans base : réduction LTTB d'une série de recettes avant affichage du graphique,
+ * et facture PDF (A4 paginée, ticket 80 mm) de {@code lignes} lignes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class RenduBenchmark {
+
+    // points conservés : un par pixel d'un graphique pleine largeur
+    private static final int PIXELS = 1600;
+
+    @Param({"5", "50", "500"})
+    public int lignes;
+
+    @Param("100000")
+    public int points;
+
+    private List<RecetteService.PeriodTotal> serie;
+    private Facture facture;
+
+    @Setup(Level.Trial)
+    public void prepare() {
+        Random rnd = new Random(17);
+        serie = new ArrayList<>(points);
+        LocalDate jour = LocalDate.of(2000, 1, 1);
+        for (int i = 0; i < points; i++) {
+            serie.add(new RecetteService.PeriodTotal(jour.plusDays(i).toString(), 1000 + rnd.nextGaussian() * 300));
+        }
+
+        List<DetailFacture> details = new ArrayList<>(lignes);
+        double ht = 0;
+        for (int i = 1; i <= lignes; i++) {
+            Produit p = new Produit(i, "Produit " + i + " comprimés 500 mg boîte de 20", 100 + rnd.nextInt(20_000), 100);
+            DetailFacture d = new DetailFacture(i, p, 1 + rnd.nextInt(5), p.getPrixUnitaire(), p.getNom());
+            details.add(d);
+            ht += d.getTotal();
+        }
+        facture = new Facture(123456, Fixture.FIN, new Client(1, "Client 1", "+243 990000001", "client1@example.com"),
+                ht, ht * Fixture.TVA, ht * (1 + Fixture.TVA));
+        facture.setDetails(details);
+        facture.setModePaiement(Fixture.MODES[0]);
+    }
+
+    @Benchmark
+    public List<RecetteService.PeriodTotal> lttb() {
+        return Downsampling.lttb(serie, RecetteService.PeriodTotal::getTotal, PIXELS);
+    }
+
+    @Benchmark
+    public long pdfA4() throws IOException {
+        Compteur out = new Compteur();
+        FacturePdfRenderer.render(facture, FacturePdfRenderer.Format.A4, out);
+        return out.taille;
+    }
+
+    @Benchmark
+    public long pdfTicket() throws IOException {
+        Compteur out = new Compteur();
+        FacturePdfRenderer.render(facture, FacturePdfRenderer.Format.TICKET, out);
+        return out.taille;
+    }
+
+    // sortie qui ne garde que la taille : on mesure le rendu, pas la copie en mémoire
+    private static final class Compteur extends OutputStream {
+        long taille;
+
+        @Override
+        public void write(int b) {
+            taille++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            taille += len;
+        }
+    }
+}
@@ -1,15 +1,40 @@
 package life.pharmacy;
 
 import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.scene.control.Alert;
 import javafx.stage.Stage;
+import life.pharmacy.config.Database;
+import life.pharmacy.metrics.Metrics;
 import life.pharmacy.models.Utilisateur;
+import life.pharmacy.services.VentesRollup;
+import life.pharmacy.services.WriteCoordinator;
 import life.pharmacy.utils.Session;
 import life.pharmacy.views.FacturationView;
 import life.pharmacy.views.LoginView;
 
+import java.io.File;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.List;
+
 public class Main extends Application {
     @Override
     public void start(Stage primaryStage) {
+        // Schéma à jour avant tout : une base qui ne migre pas ne doit pas être utilisée
+        try {
+            Database.open();
+        } catch (SQLException e) {
+            e.printStackTrace();
+            Alert alert = new Alert(Alert.AlertType.ERROR,
+                    "Impossible de mettre à jour la base " + Database.getFile() + " :\n" + e.getMessage()
+                            + (e.getCause() != null ? "\n" + e.getCause().getMessage() : ""));
+            alert.setHeaderText("Démarrage impossible");
+            alert.showAndWait();
+            Platform.exit();
+            return;
+        }
+
         // Ouvre d'abord la fenêtre de login
         LoginView login = new LoginView((Utilisateur user) -> {
             // Quand login OK : save session et ouvrir la caisse
@@ -18,12 +43,36 @@ public class Main extends Application {
             // Ouvrir la vue de facturation sur le même primaryStage
             FacturationView fv = new FacturationView();
             fv.show(primaryStage);
+
+            // Contrôle des cumuls de ventes (ventes_jour) contre les factures, en tâche de fond
+            Thread reconcile = new Thread(() -> {
+                List<VentesRollup.Ecart> ecarts = VentesRollup.reconcile(true);
+                for (VentesRollup.Ecart e : ecarts) System.err.println("Cumul de ventes corrigé : " + e);
+            }, "ventes-reconcile");
+            reconcile.setDaemon(true);
+            reconcile.start();
         });
 
         // Montrer la fenêtre de login
         login.show();
     }
 
+    @Override
+    public void stop() {
+        // Termine les écritures en file, puis ferme les connexions SQLite du pool
+        WriteCoordinator.shutdown(5000);
+        // rapport de métriques du poste si -Dpharmacy.metrics.dir=... est donné
+        String metricsDir = System.getProperty("pharmacy.metrics.dir");
+        if (metricsDir != null) {
+            try {
+                Metrics.dump(new File(metricsDir, Metrics.defaultFileName()));
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        Database.shutdown();
+    }
+
     public static void main(String[] args) {
         launch(args);
     }
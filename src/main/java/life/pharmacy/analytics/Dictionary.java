@@ -0,0 +1,74 @@
+package life.pharmacy.analytics;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Codage d'une colonne texte : chaque valeur distincte (identifiant en base ou texte) reçoit
+ * un code entier dense, 0 étant réservé aux valeurs absentes. Les colonnes ne stockent que
+ * le code ; le libellé n'est relu qu'à l'affichage du résultat.
+ */
+final class Dictionary {
+
+    private final Map<Object, Integer> codes = new HashMap<>();
+    private Object[] keys = new Object[64];
+    private String[] labels = new String[64];
+    private int size = 1;
+
+    Dictionary(String absentLabel) {
+        labels[0] = absentLabel;
+    }
+
+    /**
+     * Code de la clé (null : valeur absente), créé au premier passage. Le libellé est mis à jour
+     * s'il a changé (produit ou client renommé).
+     */
+    synchronized int code(Object key, String label) {
+        if (key == null) return 0;
+        Integer c = codes.get(key);
+        if (c == null) {
+            c = size++;
+            if (c == labels.length) {
+                keys = Arrays.copyOf(keys, c * 2);
+                labels = Arrays.copyOf(labels, c * 2);
+            }
+            codes.put(key, c);
+            keys[c] = key;
+        }
+        if (label != null) labels[c] = label;
+        return c;
+    }
+
+    /**
+     * Code existant de la clé, -1 si elle n'a jamais été vue.
+     */
+    synchronized int find(Object key) {
+        if (key == null) return 0;
+        Integer c = codes.get(key);
+        return c == null ? -1 : c;
+    }
+
+    synchronized Object key(int code) {
+        return keys[code];
+    }
+
+    synchronized boolean hasLabel(int code) {
+        return labels[code] != null;
+    }
+
+    synchronized String label(int code) {
+        String l = labels[code];
+        return l != null ? l : String.valueOf(keys[code]);
+    }
+
+    synchronized void relabel(Map<Integer, String> names) {
+        for (int c = 1; c < size; c++) {
+            if (keys[c] instanceof Integer id && names.containsKey(id)) labels[c] = names.get(id);
+        }
+    }
+
+    synchronized int size() {
+        return size;
+    }
+}
@@ -0,0 +1,45 @@
+package life.pharmacy.analytics;
+
+/**
+ * Axe de regroupement d'une analyse des ventes.
+ */
+public enum Dimension {
+    PRODUIT("Produit"),
+    CLIENT("Client"),
+    CAISSIER("Caissier"),
+    MODE_PAIEMENT("Mode de paiement"),
+    HEURE("Heure"),
+    JOUR("Jour"),
+    MOIS("Mois"),
+    ANNEE("Année");
+
+    private final String label;
+
+    Dimension(String label) {
+        this.label = label;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * Axe de temps (heure, jour, mois, année) : résultats dans l'ordre chronologique
+     * plutôt que par montant décroissant.
+     */
+    public boolean isTemporal() {
+        return this == HEURE || this == JOUR || this == MOIS || this == ANNEE;
+    }
+
+    /**
+     * Axe codé par dictionnaire : ses valeurs peuvent servir de filtre (voir SalesQuery#where).
+     */
+    public boolean isCoded() {
+        return !isTemporal();
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+}
@@ -0,0 +1,61 @@
+package life.pharmacy.analytics;
+
+import java.util.List;
+
+/**
+ * Résultat d'une analyse : une ligne par valeur de l'axe, plus les totaux de toutes les lignes
+ * de vente retenues (y compris celles des valeurs écartées par la limite).
+ */
+public class PivotResult {
+
+    private final Dimension dimension;
+    private final List<Row> rows;
+    private final double totalMontant;
+    private final long totalQuantite;
+    private final long totalLignes;
+    private final int scanned;
+    private final long elapsedNanos;
+
+    public PivotResult(Dimension dimension, List<Row> rows, double totalMontant, long totalQuantite,
+                       long totalLignes, int scanned, long elapsedNanos) {
+        this.dimension = dimension;
+        this.rows = rows;
+        this.totalMontant = totalMontant;
+        this.totalQuantite = totalQuantite;
+        this.totalLignes = totalLignes;
+        this.scanned = scanned;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public Dimension getDimension() { return dimension; }
+    public List<Row> getRows() { return rows; }
+    public double getTotalMontant() { return totalMontant; }
+    public long getTotalQuantite() { return totalQuantite; }
+    public long getTotalLignes() { return totalLignes; }
+    /** Lignes de vente parcourues. */
+    public int getScanned() { return scanned; }
+    public long getElapsedNanos() { return elapsedNanos; }
+
+    public static class Row {
+        private final int code;
+        private final String label;
+        private final double montant;
+        private final long quantite;
+        private final long lignes;
+
+        public Row(int code, String label, double montant, long quantite, long lignes) {
+            this.code = code;
+            this.label = label;
+            this.montant = montant;
+            this.quantite = quantite;
+            this.lignes = lignes;
+        }
+
+        /** Code de la valeur, utilisable dans SalesQuery#where pour un axe codé. */
+        public int getCode() { return code; }
+        public String getLabel() { return label; }
+        public double getMontant() { return montant; }
+        public long getQuantite() { return quantite; }
+        public long getLignes() { return lignes; }
+    }
+}
@@ -0,0 +1,392 @@
+package life.pharmacy.analytics;
+
+import life.pharmacy.config.Database;
+import life.pharmacy.mappers.Dates;
+import life.pharmacy.metrics.Metrics;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Analyse des ventes en mémoire : les lignes de factures sont chargées une fois en colonnes
+ * (SalesColumns), puis chaque requête les parcourt en parallèle, par tranches, sans SQL.
+ * <p>
+ * Chargement incrémental : une requête ne relit que les factures et lignes ajoutées depuis la
+ * précédente (id croissants). Une suppression de facture oblige à tout recharger
+ * ({@link #invalidate()}).
+ */
+public class SalesAnalytics {
+
+    // tranche minimale confiée à un thread : en dessous, le découpage coûte plus qu'il ne rapporte
+    private static final int MIN_CHUNK = 64 * 1024;
+
+    // factures lues avant leurs lignes : une ligne ne coûte que quatre colonnes numériques
+    private static final String SELECT_FACTURES = """
+                SELECT id, date, date_epoch_ms, client_id, utilisateur_id, mode_paiement
+                FROM factures WHERE id > ? ORDER BY id
+            """;
+
+    private static final String SELECT_LIGNES = """
+                SELECT facture_id, produit_id, quantite, prix_unitaire
+                FROM details_facture WHERE id > ? AND id <= ? ORDER BY id
+            """;
+
+    private static final Object LOAD_LOCK = new Object();
+
+    // état du chargeur (sous LOAD_LOCK)
+    private static SalesColumns columns;
+    private static Factures factures;
+    private static boolean stale = true;
+
+    // vue publiée, lue sans verrou par les requêtes
+    private static volatile SalesColumns current;
+
+    static {
+        Metrics.gauge("analyse.lignesEnMemoire", SalesAnalytics::getLoadedLines);
+    }
+
+    // attributs des factures déjà lues, par id de facture (codes des dictionnaires)
+    private static class Factures {
+        int[] jour = new int[0];
+        byte[] heure = new byte[0];
+        int[] client = new int[0];
+        int[] caissier = new int[0];
+        byte[] mode = new byte[0];
+        long lastId;
+
+        void put(int id, int j, int h, int cl, int ca, int m) {
+            if (id >= jour.length) {
+                int cap = Math.max(id + 1, jour.length + (jour.length >> 1));
+                int old = jour.length;
+                jour = Arrays.copyOf(jour, cap);
+                Arrays.fill(jour, old, cap, Integer.MIN_VALUE); // facture absente
+                heure = Arrays.copyOf(heure, cap);
+                client = Arrays.copyOf(client, cap);
+                caissier = Arrays.copyOf(caissier, cap);
+                mode = Arrays.copyOf(mode, cap);
+            }
+            jour[id] = j;
+            heure[id] = (byte) h;
+            client[id] = cl;
+            caissier[id] = ca;
+            mode[id] = (byte) m;
+            lastId = id;
+        }
+
+        boolean has(int id) {
+            return id >= 0 && id < jour.length && jour[id] != Integer.MIN_VALUE;
+        }
+    }
+
+    /**
+     * Les données chargées ne sont plus fiables (facture supprimée) : rechargement complet
+     * à la prochaine requête.
+     */
+    public static void invalidate() {
+        synchronized (LOAD_LOCK) {
+            stale = true;
+        }
+    }
+
+    /**
+     * Charge les lignes de vente ajoutées depuis le dernier appel (toutes au premier appel ou
+     * après {@link #invalidate()}). Retourne le nombre de lignes chargées.
+     */
+    public static int refresh() {
+        synchronized (LOAD_LOCK) {
+            if (stale) {
+                columns = new SalesColumns();
+                factures = new Factures();
+                current = columns.view();
+                stale = false;
+            }
+            int loaded = 0;
+            try (Connection conn = Database.getReadConnection()) {
+                // borne lue en premier : les factures de ces lignes sont déjà validées
+                long upTo = lastDetailId(conn);
+                if (upTo <= columns.lastDetailId) return 0;
+                loadFactures(conn);
+                loaded = loadLignes(conn, upTo);
+                labelProduits(conn);
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+            // lignes lues avant une éventuelle erreur comprises : le prochain appel reprend après
+            current = columns.view();
+            return loaded;
+        }
+    }
+
+    private static void loadFactures(Connection conn) throws SQLException {
+        SalesColumns c = columns;
+        Map<Integer, String> nomsClients = names(conn, "SELECT id, nom FROM clients");
+        Map<Integer, String> nomsCaissiers = names(conn, "SELECT id, nom FROM utilisateurs");
+        // clients et caissiers renommés depuis le premier chargement
+        c.clients.relabel(nomsClients);
+        c.caissiers.relabel(nomsCaissiers);
+
+        try (PreparedStatement ps = conn.prepareStatement(SELECT_FACTURES)) {
+            ps.setLong(1, factures.lastId);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    long millis = rs.getLong(3);
+                    if (rs.wasNull()) {
+                        LocalDateTime d = Dates.parseDateTime(rs.getString(2));
+                        millis = d == null ? 0 : Dates.toMillis(d);
+                    }
+                    int cl = codeOf(rs.getInt(4), rs.wasNull(), nomsClients, c.clients);
+                    int ca = codeOf(rs.getInt(5), rs.wasNull(), nomsCaissiers, c.caissiers);
+                    String mp = rs.getString(6);
+                    // au plus 255 modes distincts (colonne byte) ; au-delà, regroupés en « non renseigné »
+                    int m = mp == null || mp.isBlank() ? 0 : c.modes.code(mp, mp);
+                    if (m > 255) m = 0;
+                    factures.put(rs.getInt(1),
+                            (int) Math.floorDiv(millis, Dates.MILLIS_PER_DAY),
+                            (int) (Math.floorMod(millis, Dates.MILLIS_PER_DAY) / 3_600_000L),
+                            cl, ca, m);
+                }
+            }
+        }
+    }
+
+    private static int loadLignes(Connection conn, long upTo) throws SQLException {
+        SalesColumns c = columns;
+        Factures f = factures;
+        int loaded = 0;
+        try (PreparedStatement ps = conn.prepareStatement(SELECT_LIGNES)) {
+            ps.setLong(1, c.lastDetailId);
+            ps.setLong(2, upTo);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    int fid = rs.getInt(1);
+                    if (!f.has(fid)) continue; // ligne orpheline
+                    int produitId = rs.getInt(2);
+                    int p = produitId == 0 ? 0 : c.produits.code(produitId, null);
+                    int quantite = rs.getInt(3);
+                    c.add(f.jour[fid], f.heure[fid], p, f.client[fid], f.caissier[fid], f.mode[fid] & 0xFF,
+                            quantite, quantite * rs.getDouble(4));
+                    loaded++;
+                }
+            }
+        }
+        c.lastDetailId = upTo;
+        return loaded;
+    }
+
+    // noms du catalogue ; pour un produit supprimé depuis, nom conservé sur ses lignes
+    private static void labelProduits(Connection conn) throws SQLException {
+        Dictionary d = columns.produits;
+        d.relabel(names(conn, "SELECT id, nom FROM produits"));
+        try (PreparedStatement ps = conn.prepareStatement(
+                "SELECT produit_nom FROM details_facture WHERE produit_id = ? AND produit_nom IS NOT NULL LIMIT 1")) {
+            for (int code = 1; code < d.size(); code++) {
+                if (d.hasLabel(code)) continue;
+                Object id = d.key(code);
+                ps.setInt(1, (Integer) id);
+                try (ResultSet rs = ps.executeQuery()) {
+                    d.code(id, rs.next() ? rs.getString(1) : "Produit #" + id);
+                }
+            }
+        }
+    }
+
+    private static int codeOf(int id, boolean absent, Map<Integer, String> noms, Dictionary dict) {
+        if (absent || id == 0) return 0;
+        String nom = noms.get(id);
+        return dict.code(id, nom != null ? nom : "#" + id);
+    }
+
+    // lecture du dernier rowid : pas de parcours
+    private static long lastDetailId(Connection conn) throws SQLException {
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT COALESCE(MAX(id), 0) FROM details_facture")) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    private static Map<Integer, String> names(Connection conn, String sql) throws SQLException {
+        Map<Integer, String> out = new HashMap<>();
+        try (Statement st = conn.createStatement(); ResultSet rs = st.executeQuery(sql)) {
+            while (rs.next()) out.put(rs.getInt(1), rs.getString(2));
+        }
+        return out;
+    }
+
+    /**
+     * Exécute l'analyse sur les ventes à jour (chargement incrémental compris).
+     */
+    public static PivotResult query(SalesQuery q) {
+        refresh();
+        long t0 = System.nanoTime();
+        SalesColumns c = current;
+        Plan plan = plan(q, c);
+        if (plan == null) return new PivotResult(q.getGroupBy(), List.of(), 0, 0, 0, 0, System.nanoTime() - t0);
+
+        int n = c.size;
+        int chunks = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors() * 2, n / MIN_CHUNK));
+        Acc total = IntStream.range(0, chunks).parallel()
+                .mapToObj(k -> scan(c, plan, (int) ((long) n * k / chunks), (int) ((long) n * (k + 1) / chunks)))
+                .reduce(Acc::merge)
+                .orElseGet(() -> new Acc(plan.card));
+
+        return result(c, q, plan, total, n, System.nanoTime() - t0);
+    }
+
+    // requête traduite en codes et bornes entières
+    private static class Plan {
+        Dimension dim;
+        int from, to;     // jours inclus
+        int card;         // nombre de valeurs possibles de l'axe
+        int[] keys;       // colonne codée de l'axe (produit, client, caissier)
+        byte[] bytes;     // colonne byte de l'axe (heure, mode)
+        int[] dayKey;     // jour - from -> mois / année
+        int mode = -1, produit = -1, client = -1, caissier = -1;
+    }
+
+    private static Plan plan(SalesQuery q, SalesColumns c) {
+        Plan p = new Plan();
+        p.dim = q.getGroupBy();
+        p.from = q.getStart() != null ? (int) q.getStart().toEpochDay() : c.minJour;
+        p.to = q.getEnd() != null ? (int) q.getEnd().toEpochDay() : c.maxJour;
+        if (c.size == 0 || p.from > p.to) return null;
+        // la plage ne dépasse pas les données : tables par jour de taille bornée
+        p.from = Math.max(p.from, c.minJour);
+        p.to = Math.min(p.to, c.maxJour);
+        if (p.from > p.to) return null;
+
+        if (q.getModePaiement() != null) {
+            p.mode = c.modes.find(q.getModePaiement());
+            if (p.mode < 0) return null;
+        }
+        p.produit = q.getFilters().getOrDefault(Dimension.PRODUIT, -1);
+        p.client = q.getFilters().getOrDefault(Dimension.CLIENT, -1);
+        p.caissier = q.getFilters().getOrDefault(Dimension.CAISSIER, -1);
+        if (q.getFilters().containsKey(Dimension.MODE_PAIEMENT)) p.mode = q.getFilters().get(Dimension.MODE_PAIEMENT);
+
+        switch (p.dim) {
+            case PRODUIT -> { p.keys = c.produit; p.card = c.produits.size(); }
+            case CLIENT -> { p.keys = c.client; p.card = c.clients.size(); }
+            case CAISSIER -> { p.keys = c.caissier; p.card = c.caissiers.size(); }
+            case MODE_PAIEMENT -> { p.bytes = c.mode; p.card = 256; }
+            case HEURE -> { p.bytes = c.heure; p.card = 24; }
+            case JOUR -> p.card = p.to - p.from + 1;
+            case MOIS, ANNEE -> {
+                LocalDate first = LocalDate.ofEpochDay(p.from);
+                p.dayKey = new int[p.to - p.from + 1];
+                for (int d = 0; d < p.dayKey.length; d++) {
+                    LocalDate day = first.plusDays(d);
+                    p.dayKey[d] = p.dim == Dimension.MOIS
+                            ? (day.getYear() - first.getYear()) * 12 + day.getMonthValue() - first.getMonthValue()
+                            : day.getYear() - first.getYear();
+                }
+                p.card = p.dayKey[p.dayKey.length - 1] + 1;
+            }
+        }
+        return p;
+    }
+
+    // cumuls d'une tranche, indexés par valeur de l'axe
+    private static class Acc {
+        final double[] montant;
+        final long[] quantite;
+        final long[] lignes;
+
+        Acc(int card) {
+            montant = new double[card];
+            quantite = new long[card];
+            lignes = new long[card];
+        }
+
+        Acc merge(Acc o) {
+            for (int k = 0; k < montant.length; k++) {
+                montant[k] += o.montant[k];
+                quantite[k] += o.quantite[k];
+                lignes[k] += o.lignes[k];
+            }
+            return this;
+        }
+    }
+
+    private static Acc scan(SalesColumns c, Plan p, int lo, int hi) {
+        Acc a = new Acc(p.card);
+        final int[] jour = c.jour, produit = c.produit, client = c.client, caissier = c.caissier, quantite = c.quantite;
+        final byte[] mode = c.mode;
+        final double[] montant = c.montant;
+        final int[] keys = p.keys, dayKey = p.dayKey;
+        final byte[] bytes = p.bytes;
+        final int from = p.from, to = p.to;
+
+        for (int i = lo; i < hi; i++) {
+            int j = jour[i];
+            if (j < from || j > to) continue;
+            if (p.mode >= 0 && (mode[i] & 0xFF) != p.mode) continue;
+            if (p.produit >= 0 && produit[i] != p.produit) continue;
+            if (p.client >= 0 && client[i] != p.client) continue;
+            if (p.caissier >= 0 && caissier[i] != p.caissier) continue;
+
+            int k;
+            if (keys != null) k = keys[i];
+            else if (bytes != null) k = bytes[i] & 0xFF;
+            else if (dayKey != null) k = dayKey[j - from];
+            else k = j - from;
+
+            a.montant[k] += montant[i];
+            a.quantite[k] += quantite[i];
+            a.lignes[k]++;
+        }
+        return a;
+    }
+
+    private static PivotResult result(SalesColumns c, SalesQuery q, Plan p, Acc a, int scanned, long elapsed) {
+        List<PivotResult.Row> rows = new ArrayList<>();
+        double totalMontant = 0;
+        long totalQuantite = 0, totalLignes = 0;
+        LocalDate first = LocalDate.ofEpochDay(p.from);
+        for (int k = 0; k < p.card; k++) {
+            if (a.lignes[k] == 0) continue;
+            totalMontant += a.montant[k];
+            totalQuantite += a.quantite[k];
+            totalLignes += a.lignes[k];
+            rows.add(new PivotResult.Row(k, label(c, p.dim, k, first), a.montant[k], a.quantite[k], a.lignes[k]));
+        }
+        if (!p.dim.isTemporal()) {
+            rows.sort(Comparator.comparingDouble(PivotResult.Row::getMontant).reversed());
+            if (q.getLimit() > 0 && rows.size() > q.getLimit()) rows = new ArrayList<>(rows.subList(0, q.getLimit()));
+        }
+        return new PivotResult(p.dim, rows, totalMontant, totalQuantite, totalLignes, scanned, elapsed);
+    }
+
+    private static String label(SalesColumns c, Dimension dim, int k, LocalDate first) {
+        return switch (dim) {
+            case PRODUIT -> c.produits.label(k);
+            case CLIENT -> c.clients.label(k);
+            case CAISSIER -> c.caissiers.label(k);
+            case MODE_PAIEMENT -> c.modes.label(k);
+            case HEURE -> String.format("%02dh", k);
+            case JOUR -> first.plusDays(k).toString();
+            case MOIS -> YearMonth.from(first).plusMonths(k).toString();
+            case ANNEE -> String.valueOf(first.getYear() + k);
+        };
+    }
+
+    /**
+     * Lignes de vente actuellement en mémoire.
+     */
+    public static int getLoadedLines() {
+        SalesColumns c = current;
+        return c == null ? 0 : c.size;
+    }
+}
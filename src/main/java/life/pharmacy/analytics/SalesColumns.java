@@ -0,0 +1,82 @@
+package life.pharmacy.analytics;
+
+import java.util.Arrays;
+
+/**
+ * Lignes de vente (details_facture joint à factures) rangées par colonne, en tableaux primitifs :
+ * environ 30 octets par ligne, parcourus séquentiellement par les agrégations.
+ * <p>
+ * Le chargeur ajoute les lignes sur une instance de travail ; les requêtes lisent une vue
+ * ({@link #view()}) qui partage les tableaux mais fige le nombre de lignes : les ajouts suivants
+ * écrivent au-delà de cette taille, ou dans de nouveaux tableaux après agrandissement.
+ */
+final class SalesColumns {
+
+    int[] jour = new int[0];         // jour depuis 1970-01-01 (Dates)
+    byte[] heure = new byte[0];      // 0..23
+    int[] produit = new int[0];      // codes des dictionnaires
+    int[] client = new int[0];
+    int[] caissier = new int[0];
+    byte[] mode = new byte[0];
+    int[] quantite = new int[0];
+    double[] montant = new double[0]; // quantite * prix_unitaire (HT)
+
+    int size;
+    int minJour = Integer.MAX_VALUE;
+    int maxJour = Integer.MIN_VALUE;
+    long lastDetailId; // plus grand details_facture.id chargé
+
+    // libellés des codes ; remplacés avec les colonnes lors d'un rechargement complet
+    Dictionary produits = new Dictionary("(produit inconnu)");
+    Dictionary clients = new Dictionary("(sans client)");
+    Dictionary caissiers = new Dictionary("(non renseigné)");
+    Dictionary modes = new Dictionary("(non renseigné)");
+
+    void add(int j, int h, int p, int cl, int ca, int m, int q, double mt) {
+        if (size == jour.length) grow();
+        jour[size] = j;
+        heure[size] = (byte) h;
+        produit[size] = p;
+        client[size] = cl;
+        caissier[size] = ca;
+        mode[size] = (byte) m;
+        quantite[size] = q;
+        montant[size] = mt;
+        size++;
+        if (j < minJour) minJour = j;
+        if (j > maxJour) maxJour = j;
+    }
+
+    private void grow() {
+        int cap = Math.max(1024, size + (size >> 1));
+        jour = Arrays.copyOf(jour, cap);
+        heure = Arrays.copyOf(heure, cap);
+        produit = Arrays.copyOf(produit, cap);
+        client = Arrays.copyOf(client, cap);
+        caissier = Arrays.copyOf(caissier, cap);
+        mode = Arrays.copyOf(mode, cap);
+        quantite = Arrays.copyOf(quantite, cap);
+        montant = Arrays.copyOf(montant, cap);
+    }
+
+    SalesColumns view() {
+        SalesColumns v = new SalesColumns();
+        v.jour = jour;
+        v.heure = heure;
+        v.produit = produit;
+        v.client = client;
+        v.caissier = caissier;
+        v.mode = mode;
+        v.quantite = quantite;
+        v.montant = montant;
+        v.size = size;
+        v.minJour = minJour;
+        v.maxJour = maxJour;
+        v.lastDetailId = lastDetailId;
+        v.produits = produits;
+        v.clients = clients;
+        v.caissiers = caissiers;
+        v.modes = modes;
+        return v;
+    }
+}
@@ -0,0 +1,69 @@
+package life.pharmacy.analytics;
+
+import java.time.LocalDate;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Analyse demandée : un axe de regroupement, une période, des filtres.
+ * <pre>
+ * new SalesQuery(Dimension.HEURE).between(debut, fin).modePaiement("Espèces")
+ *         .where(Dimension.PRODUIT, ligne.getCode())
+ * </pre>
+ */
+public class SalesQuery {
+
+    private final Dimension groupBy;
+    private LocalDate start;
+    private LocalDate end;
+    private String modePaiement;
+    private final Map<Dimension, Integer> filters = new EnumMap<>(Dimension.class);
+    private int limit;
+
+    public SalesQuery(Dimension groupBy) {
+        this.groupBy = groupBy;
+    }
+
+    /**
+     * Période, bornes incluses ; null pour ne pas borner.
+     */
+    public SalesQuery between(LocalDate start, LocalDate end) {
+        this.start = start;
+        this.end = end;
+        return this;
+    }
+
+    /**
+     * null ou "Tous" : tous les modes.
+     */
+    public SalesQuery modePaiement(String modePaiement) {
+        this.modePaiement = "Tous".equals(modePaiement) ? null : modePaiement;
+        return this;
+    }
+
+    /**
+     * Ne garde que les lignes dont l'axe (codé) vaut le code donné : code d'une ligne
+     * de résultat précédente, pour descendre d'un niveau.
+     */
+    public SalesQuery where(Dimension dimension, int code) {
+        if (!dimension.isCoded()) throw new IllegalArgumentException("Filtre impossible sur " + dimension);
+        filters.put(dimension, code);
+        return this;
+    }
+
+    /**
+     * Nombre de lignes de résultat gardées (les premières par montant) ; 0 pour tout garder.
+     * Sans effet sur les axes de temps.
+     */
+    public SalesQuery limit(int limit) {
+        this.limit = limit;
+        return this;
+    }
+
+    public Dimension getGroupBy() { return groupBy; }
+    public LocalDate getStart() { return start; }
+    public LocalDate getEnd() { return end; }
+    public String getModePaiement() { return modePaiement; }
+    public Map<Dimension, Integer> getFilters() { return filters; }
+    public int getLimit() { return limit; }
+}
@@ -0,0 +1,392 @@
+package life.pharmacy.config;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Pool borné de connexions SQLite ouvertes pour toute la durée de l'application :
+ * - une connexion d'écriture dédiée (SQLite n'accepte qu'un écrivain à la fois),
+ *   réentrante pour le thread qui la détient ;
+ * - plusieurs connexions de lecture (WAL permet les lectures concurrentes).
+ * <p>
+ * Les PRAGMA sont appliqués une seule fois, à l'ouverture de chaque connexion physique.
+ * Les connexions rendues aux appelants sont des proxys : close() remet la connexion dans le pool,
+ * et les requêtes qu'elles préparent sont mesurées par {@link SqlProfiler}. Chaque connexion physique
+ * garde ses requêtes fréquentes préparées dans un {@link StatementCache}, obtenu par unwrap.
+ */
+public class ConnectionPool {
+
+    private final String url;
+    private final int maxReaders;
+    private final long borrowTimeoutMs;
+
+    // écrivain unique : le verrou est équitable et réentrant
+    private final ReentrantLock writerLock = new ReentrantLock(true);
+    private Connection writer;
+
+    private final BlockingQueue<Connection> idleReaders;
+    private final List<Connection> allReaders = new ArrayList<>();
+    private final AtomicInteger createdReaders = new AtomicInteger();
+    private final AtomicInteger activeReaders = new AtomicInteger();
+
+    // requêtes préparées gardées par connexion physique, créées au premier usage
+    private final Map<Connection, StatementCache> caches = new ConcurrentHashMap<>();
+
+    // statistiques
+    private final LongAdder borrows = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final LongAdder timeouts = new LongAdder();
+
+    private volatile boolean closed = false;
+
+    public ConnectionPool(String url, int maxReaders, long borrowTimeoutMs) {
+        this.url = url;
+        this.maxReaders = Math.max(1, maxReaders);
+        this.borrowTimeoutMs = borrowTimeoutMs;
+        this.idleReaders = new ArrayBlockingQueue<>(this.maxReaders);
+    }
+
+    /**
+     * Emprunte la connexion d'écriture. Un thread qui la détient déjà la récupère
+     * immédiatement (les appels imbriqués partagent alors la même transaction).
+     */
+    public Connection borrowWriter() throws SQLException {
+        ensureOpen();
+        long start = System.nanoTime();
+        try {
+            if (!writerLock.tryLock(borrowTimeoutMs, TimeUnit.MILLISECONDS)) {
+                timeouts.increment();
+                throw new SQLException("Connexion d'écriture indisponible après " + borrowTimeoutMs + " ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Attente de la connexion d'écriture interrompue", e);
+        }
+        recordWait(start);
+        try {
+            if (writer == null || writer.isClosed()) {
+                if (writer != null) closeQuietly(writer);
+                writer = open(false);
+            }
+            return wrap(writer, true);
+        } catch (SQLException e) {
+            writerLock.unlock();
+            throw e;
+        }
+    }
+
+    /**
+     * Emprunte une connexion de lecture (query_only). Les connexions sont créées à la demande
+     * jusqu'à maxReaders, puis l'appelant attend qu'une connexion se libère.
+     */
+    public Connection borrowReader() throws SQLException {
+        ensureOpen();
+        long start = System.nanoTime();
+        Connection c = idleReaders.poll();
+        if (c == null) {
+            c = tryCreateReader();
+        }
+        if (c == null) {
+            try {
+                c = idleReaders.poll(borrowTimeoutMs, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Attente d'une connexion de lecture interrompue", e);
+            }
+            if (c == null) {
+                timeouts.increment();
+                throw new SQLException("Aucune connexion de lecture disponible après " + borrowTimeoutMs + " ms");
+            }
+        }
+        recordWait(start);
+        activeReaders.incrementAndGet();
+        return wrap(c, false);
+    }
+
+    private Connection tryCreateReader() throws SQLException {
+        while (true) {
+            int n = createdReaders.get();
+            if (n >= maxReaders) return null;
+            if (createdReaders.compareAndSet(n, n + 1)) {
+                try {
+                    Connection c = open(true);
+                    synchronized (allReaders) {
+                        allReaders.add(c);
+                    }
+                    return c;
+                } catch (SQLException e) {
+                    createdReaders.decrementAndGet();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private Connection open(boolean readOnly) throws SQLException {
+        Connection c = DriverManager.getConnection(url);
+        try (Statement stmt = c.createStatement()) {
+            stmt.execute("PRAGMA busy_timeout = 5000"); // attend 5 secondes si la base est verrouillée
+            if (!readOnly) {
+                stmt.execute("PRAGMA journal_mode = WAL");
+            }
+            stmt.execute("PRAGMA synchronous = NORMAL"); // suffisant et sûr en mode WAL
+            stmt.execute("PRAGMA temp_store = MEMORY");
+            stmt.execute("PRAGMA cache_size = -8000"); // ~8 Mo de cache de pages par connexion
+            if (readOnly) {
+                stmt.execute("PRAGMA query_only = ON");
+            }
+        }
+        return c;
+    }
+
+    private void recordWait(long start) {
+        long waited = System.nanoTime() - start;
+        borrows.increment();
+        waitNanos.add(waited);
+        maxWaitNanos.accumulateAndGet(waited, Math::max);
+    }
+
+    /**
+     * Remet une connexion physique dans un état propre avant de la rendre au pool.
+     * Retourne false si la connexion est inutilisable et doit être jetée.
+     */
+    private boolean reset(Connection physical) {
+        try {
+            if (physical.isClosed()) return false;
+            if (!physical.getAutoCommit()) {
+                physical.rollback();
+                physical.setAutoCommit(true);
+            }
+            return true;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    private void release(Connection physical, boolean isWriter) {
+        if (isWriter) {
+            try {
+                if (writerLock.getHoldCount() == 1 && !reset(physical)) {
+                    closeQuietly(physical);
+                    writer = null;
+                }
+            } finally {
+                writerLock.unlock();
+            }
+            return;
+        }
+
+        activeReaders.decrementAndGet();
+        if (!closed && reset(physical)) {
+            idleReaders.offer(physical);
+        } else {
+            synchronized (allReaders) {
+                allReaders.remove(physical);
+            }
+            createdReaders.decrementAndGet();
+            closeQuietly(physical);
+        }
+    }
+
+    private Connection wrap(Connection physical, boolean isWriter) {
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                new PooledHandler(physical, isWriter));
+    }
+
+    private void ensureOpen() throws SQLException {
+        if (closed) throw new SQLException("Le pool de connexions est fermé");
+    }
+
+    public PoolStats stats() {
+        long n = borrows.sum();
+        int idle = idleReaders.size();
+        return new PoolStats(
+                n,
+                n == 0 ? 0 : waitNanos.sum() / n,
+                maxWaitNanos.get(),
+                timeouts.sum(),
+                activeReaders.get(),
+                idle,
+                createdReaders.get(),
+                maxReaders,
+                writerLock.isLocked(),
+                writerLock.getQueueLength()
+        );
+    }
+
+    /**
+     * Ferme toutes les connexions physiques, y compris celles encore empruntées : leurs détenteurs
+     * obtiennent une SQLException à la requête suivante, et les rendre ne fait plus que les décompter.
+     * L'écrivain est attendu au plus borrowTimeoutMs pour laisser finir une transaction en cours,
+     * puis fermé dans tous les cas : un détenteur bloqué ne doit pas empêcher l'arrêt.
+     */
+    public void close() {
+        closed = true;
+        Connection c;
+        while ((c = idleReaders.poll()) != null) {
+            createdReaders.decrementAndGet();
+            synchronized (allReaders) {
+                allReaders.remove(c);
+            }
+            closeQuietly(c);
+        }
+        List<Connection> borrowed;
+        synchronized (allReaders) {
+            borrowed = new ArrayList<>(allReaders);
+        }
+        for (Connection r : borrowed) {
+            closeQuietly(r);
+        }
+
+        boolean locked = false;
+        try {
+            locked = writerLock.tryLock(borrowTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            if (writer != null) {
+                closeQuietly(writer);
+                writer = null;
+            }
+        } finally {
+            if (locked) writerLock.unlock();
+        }
+    }
+
+    private void closeQuietly(Connection c) {
+        StatementCache cache = caches.remove(c);
+        if (cache != null) cache.close();
+        try {
+            c.close();
+        } catch (SQLException ignored) {
+        }
+    }
+
+    /**
+     * Proxy de connexion : intercepte close() pour rendre la connexion au pool.
+     */
+    private class PooledHandler implements InvocationHandler {
+        private final Connection physical;
+        private final boolean isWriter;
+        private boolean returned = false;
+
+        PooledHandler(Connection physical, boolean isWriter) {
+            this.physical = physical;
+            this.isWriter = isWriter;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            switch (name) {
+                case "close":
+                    if (!returned) {
+                        returned = true;
+                        release(physical, isWriter);
+                    }
+                    return null;
+                case "isClosed":
+                    return returned || physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return (isWriter ? "PooledWriter[" : "PooledReader[") + physical + "]";
+                default:
+                    break;
+            }
+            if (returned) {
+                throw new SQLException("Connexion déjà rendue au pool");
+            }
+            if ((name.equals("unwrap") || name.equals("isWrapperFor")) && args[0] == StatementCache.class) {
+                if (name.equals("isWrapperFor")) return true;
+                return caches.computeIfAbsent(physical, StatementCache::new);
+            }
+            Object result;
+            try {
+                result = method.invoke(physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            // createStatement / prepareStatement / prepareCall : exécutions chronométrées
+            if (result instanceof Statement st && SqlProfiler.isEnabled()) {
+                String sql = name.equals("createStatement") ? null : (String) args[0];
+                return SqlProfiler.wrap(physical, st, method.getReturnType(), sql);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Instantané des statistiques du pool.
+     */
+    public static class PoolStats {
+        private final long borrowCount;
+        private final long avgWaitNanos;
+        private final long maxWaitNanos;
+        private final long timeouts;
+        private final int activeReaders;
+        private final int idleReaders;
+        private final int openReaders;
+        private final int maxReaders;
+        private final boolean writerBusy;
+        private final int writerWaiters;
+
+        public PoolStats(long borrowCount, long avgWaitNanos, long maxWaitNanos, long timeouts,
+                         int activeReaders, int idleReaders, int openReaders, int maxReaders,
+                         boolean writerBusy, int writerWaiters) {
+            this.borrowCount = borrowCount;
+            this.avgWaitNanos = avgWaitNanos;
+            this.maxWaitNanos = maxWaitNanos;
+            this.timeouts = timeouts;
+            this.activeReaders = activeReaders;
+            this.idleReaders = idleReaders;
+            this.openReaders = openReaders;
+            this.maxReaders = maxReaders;
+            this.writerBusy = writerBusy;
+            this.writerWaiters = writerWaiters;
+        }
+
+        public long getBorrowCount() { return borrowCount; }
+        public long getAvgWaitNanos() { return avgWaitNanos; }
+        public long getMaxWaitNanos() { return maxWaitNanos; }
+        public long getTimeouts() { return timeouts; }
+        public int getActiveReaders() { return activeReaders; }
+        public int getIdleReaders() { return idleReaders; }
+        public int getOpenReaders() { return openReaders; }
+        public int getMaxReaders() { return maxReaders; }
+        public boolean isWriterBusy() { return writerBusy; }
+        public int getWriterWaiters() { return writerWaiters; }
+
+        @Override
+        public String toString() {
+            return String.format("emprunts=%d, attente moy=%.3f ms, attente max=%.3f ms, timeouts=%d, " +
+                            "lecteurs actifs=%d, inactifs=%d, ouverts=%d/%d, écrivain occupé=%s, en attente=%d",
+                    borrowCount, avgWaitNanos / 1e6, maxWaitNanos / 1e6, timeouts,
+                    activeReaders, idleReaders, openReaders, maxReaders, writerBusy, writerWaiters);
+        }
+    }
+}
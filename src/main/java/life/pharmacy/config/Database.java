@@ -1,13 +1,24 @@
 package life.pharmacy.config;
 
+import life.pharmacy.metrics.Metrics;
+import life.pharmacy.metrics.Timer;
+
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
-import java.sql.Statement;
 
 public class Database {
-    private static final String URL = "jdbc:sqlite:life_pharmacy.db";
-    private static boolean initialized = false;
+    // fichier de la base, réglable par -Dpharmacy.db=... (bancs d'essai, bases de test) ; lu à l'ouverture du pool
+    private static final String DEFAULT_FILE = "life_pharmacy.db";
+
+    // 1 écrivain + READERS lecteurs, ouverts une fois pour toute la durée de l'application
+    private static final int READERS = 4;
+    private static final long BORROW_TIMEOUT_MS = 10_000;
+
+    private static volatile ConnectionPool pool;
+
+    // emprunt d'une connexion, attente du verrou d'écriture ou d'un lecteur libre comprise
+    private static final Timer BORROW_WRITER = Metrics.timer("db.connexion.ecriture");
+    private static final Timer BORROW_READER = Metrics.timer("db.connexion.lecture");
 
     // Charge le driver une seule fois
     static {
@@ -16,25 +27,102 @@ public class Database {
         } catch (ClassNotFoundException e) {
             e.printStackTrace();
         }
+        Metrics.gauge("db.pool", () -> {
+            ConnectionPool p = pool;
+            return p == null ? "fermé" : p.stats();
+        });
+    }
+
+    // le pool n'est publié qu'une fois le schéma à jour : jamais de requête sur un schéma à moitié migré
+    private static ConnectionPool pool() throws SQLException {
+        ConnectionPool p = pool;
+        if (p == null) {
+            synchronized (Database.class) {
+                p = pool;
+                if (p == null) {
+                    p = new ConnectionPool("jdbc:sqlite:" + getFile(), READERS, BORROW_TIMEOUT_MS);
+                    // met le schéma à jour avant toute requête des services
+                    try (Connection conn = p.borrowWriter()) {
+                        Migrations.migrate(conn);
+                    } catch (SQLException e) {
+                        p.close();
+                        throw e;
+                    }
+                    pool = p;
+                }
+            }
+        }
+        return p;
+    }
+
+    /**
+     * Ouvre le pool et applique les migrations en attente. À appeler au démarrage :
+     * une migration en échec est remontée ici plutôt qu'à la première requête d'un service.
+     */
+    public static void open() throws SQLException {
+        pool();
+    }
+
+    /**
+     * Pool ouvert (et pas encore fermé par {@link #shutdown()}).
+     */
+    public static boolean isOpen() {
+        return pool != null;
+    }
+
+    /**
+     * Chemin du fichier SQLite utilisé par l'application.
+     */
+    public static String getFile() {
+        return System.getProperty("pharmacy.db", DEFAULT_FILE);
     }
 
     /**
-     * Retourne une connexion SQLite avec busy_timeout et WAL activé
+     * Retourne la connexion d'écriture du pool (WAL, busy_timeout configurés à l'ouverture).
+     * À utiliser pour toute requête qui modifie la base. close() la rend au pool.
      */
     public static Connection getConnection() throws SQLException {
-        Connection conn = DriverManager.getConnection(URL);
-
-        // Configure busy_timeout pour éviter les erreurs "database is locked"
-        try (Statement stmt = conn.createStatement()) {
-            stmt.execute("PRAGMA busy_timeout = 5000"); // attend 5 secondes
-            if (!initialized) {
-                stmt.execute("PRAGMA journal_mode = WAL"); // active WAL
-                initialized = true;
+        try (Timer.Sample mesure = BORROW_WRITER.start()) {
+            try {
+                return pool().borrowWriter();
+            } catch (SQLException e) {
+                mesure.error();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Retourne une connexion de lecture du pool (query_only).
+     * Plusieurs lectures peuvent s'exécuter en parallèle, y compris pendant une écriture.
+     */
+    public static Connection getReadConnection() throws SQLException {
+        try (Timer.Sample mesure = BORROW_READER.start()) {
+            try {
+                return pool().borrowReader();
+            } catch (SQLException e) {
+                mesure.error();
+                throw e;
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
         }
+    }
+
+    /**
+     * Statistiques du pool : temps d'attente à l'emprunt, connexions actives / inactives.
+     */
+    public static ConnectionPool.PoolStats getPoolStats() throws SQLException {
+        return pool().stats();
+    }
 
-        return conn;
+    /**
+     * Ferme les connexions du pool (à appeler à l'arrêt de l'application).
+     */
+    public static void shutdown() {
+        synchronized (Database.class) {
+            if (pool != null) {
+                pool.close();
+                pool = null;
+            }
+        }
     }
 }
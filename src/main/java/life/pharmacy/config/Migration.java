@@ -0,0 +1,52 @@
+package life.pharmacy.config;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Une étape versionnée du schéma. Appliquée une seule fois, dans une transaction,
+ * puis enregistrée dans la table schema_version.
+ */
+public class Migration {
+
+    @FunctionalInterface
+    public interface Step {
+        void apply(Connection conn) throws SQLException;
+    }
+
+    private final int version;
+    private final String description;
+    private final Step step;
+
+    public Migration(int version, String description, Step step) {
+        this.version = version;
+        this.description = description;
+        this.step = step;
+    }
+
+    /**
+     * Migration composée uniquement d'ordres SQL exécutés dans l'ordre.
+     */
+    public static Migration sql(int version, String description, String... statements) {
+        return new Migration(version, description, conn -> {
+            try (Statement stmt = conn.createStatement()) {
+                for (String s : statements) {
+                    stmt.execute(s);
+                }
+            }
+        });
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public void apply(Connection conn) throws SQLException {
+        step.apply(conn);
+    }
+}
@@ -0,0 +1,289 @@
+package life.pharmacy.config;
+
+import life.pharmacy.mappers.Dates;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Migrations du schéma, dans l'ordre. Exécutées au démarrage (à l'ouverture du pool) :
+ * seules les versions supérieures à celle enregistrée dans schema_version sont appliquées.
+ * <p>
+ * Pour faire évoluer le schéma, ajouter une migration en fin de liste ; ne jamais modifier
+ * une migration déjà livrée.
+ */
+public class Migrations {
+
+    public static final List<Migration> ALL = List.of(
+
+            // Tables historiquement créées par les blocs static des services
+            Migration.sql(1, "Schéma initial",
+                    """
+                        CREATE TABLE IF NOT EXISTS clients (
+                            id INTEGER PRIMARY KEY AUTOINCREMENT,
+                            nom TEXT NOT NULL,
+                            telephone TEXT,
+                            email TEXT
+                        )
+                    """,
+                    """
+                        CREATE TABLE IF NOT EXISTS produits (
+                            id INTEGER PRIMARY KEY AUTOINCREMENT,
+                            nom TEXT NOT NULL,
+                            prixUnitaire REAL NOT NULL,
+                            quantite INTEGER NOT NULL
+                        )
+                    """,
+                    """
+                        CREATE TABLE IF NOT EXISTS fournisseurs (
+                            id INTEGER PRIMARY KEY AUTOINCREMENT,
+                            nom TEXT NOT NULL,
+                            contact TEXT,
+                            adresse TEXT
+                        )
+                    """,
+                    """
+                        CREATE TABLE IF NOT EXISTS factures (
+                            id INTEGER PRIMARY KEY AUTOINCREMENT,
+                            date TEXT NOT NULL,
+                            client_id INTEGER,
+                            montant_ht REAL NOT NULL,
+                            montant_tva REAL NOT NULL,
+                            montant_ttc REAL NOT NULL,
+                            FOREIGN KEY(client_id) REFERENCES clients(id)
+                        )
+                    """,
+                    """
+                        CREATE TABLE IF NOT EXISTS details_facture (
+                            id INTEGER PRIMARY KEY AUTOINCREMENT,
+                            facture_id INTEGER NOT NULL,
+                            produit_id INTEGER NOT NULL,
+                            quantite INTEGER NOT NULL,
+                            prix_unitaire REAL NOT NULL,
+                            FOREIGN KEY(facture_id) REFERENCES factures(id),
+                            FOREIGN KEY(produit_id) REFERENCES produits(id)
+                        )
+                    """,
+                    """
+                        CREATE TABLE IF NOT EXISTS recettes (
+                            id INTEGER PRIMARY KEY AUTOINCREMENT,
+                            date TEXT NOT NULL, -- stocke ISO_LOCAL_DATE
+                            montant REAL NOT NULL,
+                            type TEXT
+                        )
+                    """,
+                    """
+                        CREATE TABLE IF NOT EXISTS utilisateurs (
+                            id INTEGER PRIMARY KEY AUTOINCREMENT,
+                            nom TEXT NOT NULL,
+                            email TEXT UNIQUE NOT NULL,
+                            mot_de_passe TEXT NOT NULL,
+                            role TEXT NOT NULL
+                        )
+                    """,
+                    // Si aucun utilisateur n'existe, on insère un admin par défaut
+                    """
+                        INSERT INTO utilisateurs (nom, email, mot_de_passe, role)
+                        SELECT 'Administrateur', 'admin@lifepharma.com', 'admin123', 'admin'
+                        WHERE NOT EXISTS (SELECT 1 FROM utilisateurs)
+                    """),
+
+            // Colonnes lues / écrites par le code mais jamais déclarées
+            new Migration(2, "Code-barres et TVA produit, nom produit figé sur les lignes de facture", conn -> {
+                addColumnIfMissing(conn, "produits", "code_barre", "TEXT");
+                addColumnIfMissing(conn, "produits", "tva", "INTEGER NOT NULL DEFAULT 0");
+                addColumnIfMissing(conn, "details_facture", "produit_nom", "TEXT");
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute("""
+                                UPDATE details_facture
+                                SET produit_nom = (SELECT p.nom FROM produits p WHERE p.id = details_facture.produit_id)
+                                WHERE produit_nom IS NULL
+                            """);
+                }
+            }),
+
+            // Index des requêtes fréquentes des services
+            Migration.sql(3, "Index des requêtes fréquentes",
+                    // lignes d'une facture, triées (getDetailsByFactureId, getAll, suppression)
+                    "CREATE INDEX IF NOT EXISTS idx_details_facture_facture ON details_facture(facture_id, id)",
+                    // produit référencé par une facture (ProduitService.isReferencedInDetails)
+                    "CREATE INDEX IF NOT EXISTS idx_details_facture_produit ON details_facture(produit_id)",
+                    // historique paginé (ORDER BY date DESC, id DESC) et agrégats par période
+                    "CREATE INDEX IF NOT EXISTS idx_factures_date ON factures(date, id)",
+                    // historique filtré par client
+                    "CREATE INDEX IF NOT EXISTS idx_factures_client_date ON factures(client_id, date, id)",
+                    // plages de dates et sommes : index couvrant
+                    "CREATE INDEX IF NOT EXISTS idx_recettes_date ON recettes(date, montant)",
+                    // scanner
+                    "CREATE INDEX IF NOT EXISTS idx_produits_code_barre ON produits(code_barre)",
+                    // listes triées par nom
+                    "CREATE INDEX IF NOT EXISTS idx_produits_nom ON produits(nom)",
+                    "CREATE INDEX IF NOT EXISTS idx_clients_nom ON clients(nom)"),
+
+            // Upsert des imports en masse : recherche des clients par email, sans casse
+            Migration.sql(4, "Index email client",
+                    "CREATE INDEX IF NOT EXISTS idx_clients_email ON clients(email COLLATE NOCASE)"),
+
+            // Cumuls de ventes par jour / mode de paiement, tenus par FactureService (VentesRollup)
+            new Migration(5, "Mode de paiement des factures et cumuls ventes_jour", conn -> {
+                addColumnIfMissing(conn, "factures", "mode_paiement", "TEXT");
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute("""
+                                CREATE TABLE IF NOT EXISTS ventes_jour (
+                                    jour TEXT NOT NULL, -- ISO_LOCAL_DATE
+                                    mode_paiement TEXT NOT NULL DEFAULT '',
+                                    nb_factures INTEGER NOT NULL,
+                                    montant_ht REAL NOT NULL,
+                                    montant_tva REAL NOT NULL,
+                                    montant_ttc REAL NOT NULL,
+                                    PRIMARY KEY (jour, mode_paiement)
+                                ) WITHOUT ROWID
+                            """);
+                    stmt.execute("""
+                                INSERT INTO ventes_jour (jour, mode_paiement, nb_factures, montant_ht, montant_tva, montant_ttc)
+                                SELECT substr(date,1,10), COALESCE(mode_paiement, ''), COUNT(*),
+                                       SUM(montant_ht), SUM(montant_tva), SUM(montant_ttc)
+                                FROM factures GROUP BY 1, 2
+                            """);
+                }
+            }),
+
+            // Dates numériques indexées pour les plages et agrégats (la colonne texte date est conservée)
+            new Migration(6, "Colonnes date_epoch_ms (factures) et date_epoch_day (recettes)", conn -> {
+                addColumnIfMissing(conn, "factures", "date_epoch_ms", "INTEGER");
+                addColumnIfMissing(conn, "recettes", "date_epoch_day", "INTEGER");
+                backfillEpoch(conn, "factures", "date_epoch_ms", true);
+                backfillEpoch(conn, "recettes", "date_epoch_day", false);
+                try (Statement stmt = conn.createStatement()) {
+                    // remplacent les index sur le texte
+                    stmt.execute("DROP INDEX IF EXISTS idx_factures_date");
+                    stmt.execute("DROP INDEX IF EXISTS idx_factures_client_date");
+                    stmt.execute("DROP INDEX IF EXISTS idx_recettes_date");
+                    stmt.execute("CREATE INDEX IF NOT EXISTS idx_factures_epoch ON factures(date_epoch_ms, id)");
+                    stmt.execute("CREATE INDEX IF NOT EXISTS idx_factures_client_epoch ON factures(client_id, date_epoch_ms, id)");
+                    stmt.execute("CREATE INDEX IF NOT EXISTS idx_recettes_epoch ON recettes(date_epoch_day, montant)");
+                    // écritures qui ne renseignent que le texte (anciennes versions, outils externes)
+                    stmt.execute("""
+                                CREATE TRIGGER IF NOT EXISTS trg_factures_epoch_insert AFTER INSERT ON factures
+                                WHEN NEW.date_epoch_ms IS NULL
+                                BEGIN
+                                    UPDATE factures SET date_epoch_ms = CAST(strftime('%s', NEW.date) AS INTEGER) * 1000
+                                    WHERE id = NEW.id;
+                                END
+                            """);
+                    stmt.execute("""
+                                CREATE TRIGGER IF NOT EXISTS trg_factures_epoch_update AFTER UPDATE OF date ON factures
+                                BEGIN
+                                    UPDATE factures SET date_epoch_ms = CAST(strftime('%s', NEW.date) AS INTEGER) * 1000
+                                    WHERE id = NEW.id;
+                                END
+                            """);
+                    stmt.execute("""
+                                CREATE TRIGGER IF NOT EXISTS trg_recettes_epoch_insert AFTER INSERT ON recettes
+                                WHEN NEW.date_epoch_day IS NULL
+                                BEGIN
+                                    UPDATE recettes SET date_epoch_day = CAST(julianday(substr(NEW.date, 1, 10)) - 2440587.5 AS INTEGER)
+                                    WHERE id = NEW.id;
+                                END
+                            """);
+                    stmt.execute("""
+                                CREATE TRIGGER IF NOT EXISTS trg_recettes_epoch_update AFTER UPDATE OF date ON recettes
+                                BEGIN
+                                    UPDATE recettes SET date_epoch_day = CAST(julianday(substr(NEW.date, 1, 10)) - 2440587.5 AS INTEGER)
+                                    WHERE id = NEW.id;
+                                END
+                            """);
+                }
+            }),
+
+            // Caissier de chaque facture (analyse des ventes) ; inconnu pour les factures antérieures
+            new Migration(7, "Caissier des factures (utilisateur_id)", conn -> {
+                addColumnIfMissing(conn, "factures", "utilisateur_id", "INTEGER");
+            })
+    );
+
+    /**
+     * Applique les migrations en attente, chacune dans sa propre transaction.
+     * Une migration en échec est annulée et interrompt la séquence.
+     */
+    public static void migrate(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("""
+                        CREATE TABLE IF NOT EXISTS schema_version (
+                            version INTEGER PRIMARY KEY,
+                            description TEXT NOT NULL,
+                            applied_at TEXT NOT NULL
+                        )
+                    """);
+        }
+
+        int current = currentVersion(conn);
+        boolean autoCommit = conn.getAutoCommit();
+        try {
+            for (Migration m : ALL) {
+                if (m.getVersion() <= current) continue;
+                conn.setAutoCommit(false);
+                try {
+                    m.apply(conn);
+                    try (PreparedStatement ps = conn.prepareStatement(
+                            "INSERT INTO schema_version (version, description, applied_at) VALUES (?, ?, ?)")) {
+                        ps.setInt(1, m.getVersion());
+                        ps.setString(2, m.getDescription());
+                        ps.setString(3, LocalDateTime.now().toString());
+                        ps.executeUpdate();
+                    }
+                    conn.commit();
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw new SQLException("Échec de la migration " + m.getVersion() + " (" + m.getDescription() + ")", e);
+                }
+            }
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    public static int currentVersion(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(version), 0) FROM schema_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    // Renseigne la colonne numérique depuis le texte ISO de la colonne date (lignes illisibles laissées à NULL)
+    private static void backfillEpoch(Connection conn, String table, String column, boolean millis) throws SQLException {
+        try (Statement select = conn.createStatement();
+             ResultSet rs = select.executeQuery("SELECT id, date FROM " + table + " WHERE " + column + " IS NULL");
+             PreparedStatement update = conn.prepareStatement("UPDATE " + table + " SET " + column + " = ? WHERE id = ?")) {
+            int pending = 0;
+            while (rs.next()) {
+                LocalDateTime dt = Dates.parseDateTime(rs.getString("date"));
+                if (dt == null) continue;
+                update.setLong(1, millis ? Dates.toMillis(dt) : dt.toLocalDate().toEpochDay());
+                update.setInt(2, rs.getInt("id"));
+                update.addBatch();
+                if (++pending % 1000 == 0) update.executeBatch();
+            }
+            update.executeBatch();
+        }
+    }
+
+    /**
+     * ALTER TABLE ... ADD COLUMN, sauf si la colonne existe déjà (bases créées à la main).
+     */
+    public static void addColumnIfMissing(Connection conn, String table, String column, String definition) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery("PRAGMA table_info(" + table + ")")) {
+                while (rs.next()) {
+                    if (column.equalsIgnoreCase(rs.getString("name"))) return;
+                }
+            }
+            stmt.execute("ALTER TABLE " + table + " ADD COLUMN " + column + " " + definition);
+        }
+    }
+}
@@ -0,0 +1,474 @@
+package life.pharmacy.config;
+
+import life.pharmacy.metrics.Metrics;
+
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Mesure de chaque requête SQL passant par les connexions du pool : les Statement et
+ * PreparedStatement rendus par le pool sont des proxys qui chronomètrent execute*,
+ * ainsi que la lecture des résultats (appels à next()) jusqu'à la fin ou la fermeture du ResultSet.
+ * <p>
+ * Par texte SQL : nombre d'exécutions, temps total, maximum, erreurs. Au-delà du seuil
+ * (-Dpharmacy.sql.slowMs=..., 100 ms par défaut, modifiable à chaud), la requête est journalisée
+ * sur la sortie d'erreur avec ses paramètres et le plan donné par EXPLAIN QUERY PLAN, et gardée
+ * parmi les dernières requêtes lentes. -Dpharmacy.sql.profile=false désactive les proxys.
+ */
+public final class SqlProfiler {
+
+    private static final boolean ENABLED = !"false".equalsIgnoreCase(System.getProperty("pharmacy.sql.profile"));
+    private static volatile long slowNanos = TimeUnit.MILLISECONDS.toNanos(Long.getLong("pharmacy.sql.slowMs", 100));
+
+    // textes SQL distincts suivis ; au-delà (SQL construit avec des littéraux), regroupés
+    private static final int MAX_STATEMENTS = 2_000;
+    private static final String OTHERS = "(autres requêtes)";
+    private static final int MAX_SLOW = 200;
+    private static final int MAX_PARAM_CHARS = 60;
+
+    private static final Map<String, StatementStats> stats = new ConcurrentHashMap<>();
+    private static final ArrayDeque<SlowQuery> slowQueries = new ArrayDeque<>();
+
+    static {
+        Metrics.section("Requêtes SQL", SqlProfiler::print);
+    }
+
+    private SqlProfiler() {
+    }
+
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    public static long getSlowThresholdMs() {
+        return TimeUnit.NANOSECONDS.toMillis(slowNanos);
+    }
+
+    public static void setSlowThresholdMs(long ms) {
+        slowNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, ms));
+    }
+
+    /**
+     * Enveloppe un Statement ouvert sur la connexion physique (sql : texte préparé, null pour
+     * un Statement simple dont le SQL est passé à execute*).
+     */
+    static Statement wrap(Connection physical, Statement target, Class<?> type, String sql) {
+        return (Statement) Proxy.newProxyInstance(
+                Statement.class.getClassLoader(),
+                new Class<?>[]{type},
+                new StatementHandler(physical, target, sql));
+    }
+
+    // ------------------------------------------------------------------ consultation
+
+    /**
+     * Agrégats par texte SQL, du plus coûteux (temps total) au moins coûteux.
+     */
+    public static List<Stat> getStats() {
+        List<Stat> list = new ArrayList<>();
+        for (StatementStats s : stats.values()) list.add(s.snapshot());
+        list.sort(Comparator.comparingLong(Stat::getTotalNanos).reversed());
+        return list;
+    }
+
+    /**
+     * Dernières requêtes lentes, de la plus récente à la plus ancienne.
+     */
+    public static List<SlowQuery> getSlowQueries() {
+        synchronized (slowQueries) {
+            List<SlowQuery> list = new ArrayList<>(slowQueries);
+            Collections.reverse(list);
+            return list;
+        }
+    }
+
+    public static void reset() {
+        stats.clear();
+        synchronized (slowQueries) {
+            slowQueries.clear();
+        }
+    }
+
+    /**
+     * Rapport texte : agrégats par requête puis dernières requêtes lentes.
+     */
+    public static void print(PrintWriter out) {
+        out.printf("%10s %12s %10s %10s %6s %6s  %s%n", "nombre", "total ms", "moy ms", "max ms", "lentes", "err", "sql");
+        for (Stat s : getStats()) {
+            out.printf("%10d %12.1f %10.3f %10.3f %6d %6d  %s%n", s.getCount(), s.getTotalNanos() / 1e6,
+                    s.getAvgNanos() / 1e6, s.getMaxNanos() / 1e6, s.getSlow(), s.getErrors(), s.getSql());
+        }
+        out.println();
+        out.println("# Requêtes lentes (seuil " + getSlowThresholdMs() + " ms)");
+        for (SlowQuery q : getSlowQueries()) out.println(q);
+    }
+
+    // ------------------------------------------------------------------ enregistrement
+
+    private static void record(Connection physical, Execution e) {
+        StatementStats s = stats.get(e.sql);
+        if (s == null) {
+            String key = stats.size() < MAX_STATEMENTS ? e.sql : OTHERS;
+            s = stats.computeIfAbsent(key, StatementStats::new);
+        }
+        s.add(e.nanos, e.failed);
+        if (e.nanos < slowNanos) return;
+
+        s.slow.increment();
+        if (s.plan == null && !OTHERS.equals(s.sql)) s.plan = explain(physical, e.sql, e.params);
+        SlowQuery q = new SlowQuery(LocalDateTime.now(), normalize(e.sql), formatParams(e.params), e.nanos,
+                e.rows, s.plan != null ? s.plan : "");
+        System.err.println("[SQL lent] " + q);
+        synchronized (slowQueries) {
+            if (slowQueries.size() == MAX_SLOW) slowQueries.removeFirst();
+            slowQueries.addLast(q);
+        }
+    }
+
+    // plan de SQLite pour la requête, paramètres liés ; un niveau d'indentation par nœud parent
+    private static String explain(Connection physical, String sql, Object[] params) {
+        String head = sql.stripLeading().toUpperCase();
+        if (!(head.startsWith("SELECT") || head.startsWith("WITH") || head.startsWith("INSERT")
+                || head.startsWith("UPDATE") || head.startsWith("DELETE") || head.startsWith("REPLACE"))) {
+            return null;
+        }
+        try (PreparedStatement ps = physical.prepareStatement("EXPLAIN QUERY PLAN " + sql)) {
+            if (params != null) {
+                for (int i = 0; i < params.length; i++) ps.setObject(i + 1, params[i]);
+            }
+            Map<Integer, Integer> depth = new HashMap<>();
+            StringBuilder sb = new StringBuilder();
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    int d = depth.getOrDefault(rs.getInt(2), -1) + 1;
+                    depth.put(rs.getInt(1), d);
+                    if (sb.length() > 0) sb.append('\n');
+                    sb.append("  ".repeat(d)).append(rs.getString(4));
+                }
+            }
+            return sb.toString();
+        } catch (SQLException ex) {
+            return "(plan indisponible : " + ex.getMessage() + ")";
+        }
+    }
+
+    private static String normalize(String sql) {
+        return sql.strip().replaceAll("\\s+", " ");
+    }
+
+    private static String formatParams(Object[] params) {
+        if (params == null || params.length == 0) return "[]";
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < params.length; i++) {
+            if (i > 0) sb.append(", ");
+            Object p = params[i];
+            if (p == null) sb.append("NULL");
+            else if (p instanceof byte[] b) sb.append("<").append(b.length).append(" octets>");
+            else if (p instanceof String s) {
+                sb.append('\'').append(s.length() > MAX_PARAM_CHARS ? s.substring(0, MAX_PARAM_CHARS) + "..." : s).append('\'');
+            } else sb.append(p);
+        }
+        return sb.append(']').toString();
+    }
+
+    // ------------------------------------------------------------------ proxys
+
+    // une exécution : close() ou la fin du ResultSet l'enregistre, une seule fois
+    private static final class Execution {
+        final String sql;
+        final Object[] params;
+        long nanos;
+        long rows;
+        boolean failed;
+        boolean done;
+
+        Execution(String sql, Object[] params) {
+            this.sql = sql;
+            this.params = params;
+        }
+    }
+
+    private static class StatementHandler implements InvocationHandler {
+        private final Connection physical;
+        private final Statement target;
+        private final String sql;
+        private Object[] params = new Object[0];
+        private int maxIndex;
+        private int batched;
+        private Execution open;
+
+        StatementHandler(Connection physical, Statement target, String sql) {
+            this.physical = physical;
+            this.target = target;
+            this.sql = sql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (sql != null && name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer i) {
+                bind(i, name.equals("setNull") ? null : args[1]);
+            } else {
+                switch (name) {
+                    case "clearParameters" -> maxIndex = 0;
+                    case "addBatch" -> batched++;
+                    case "clearBatch" -> batched = 0;
+                    case "executeQuery" -> {
+                        return executeQuery(method, args);
+                    }
+                    case "execute", "executeUpdate", "executeLargeUpdate", "executeBatch", "executeLargeBatch" -> {
+                        return execute(method, args);
+                    }
+                    case "close" -> finish();
+                    case "equals" -> {
+                        return proxy == args[0];
+                    }
+                    case "hashCode" -> {
+                        return System.identityHashCode(proxy);
+                    }
+                    default -> {
+                    }
+                }
+            }
+            return call(method, args);
+        }
+
+        private void bind(int index, Object value) {
+            if (index > params.length) params = Arrays.copyOf(params, Math.max(index, params.length * 2));
+            params[index - 1] = value;
+            maxIndex = Math.max(maxIndex, index);
+        }
+
+        private Execution begin(Object[] args) {
+            finish();
+            boolean plain = sql == null;
+            String text = plain ? (args != null && args.length > 0 ? (String) args[0] : "(lot)") : sql;
+            return new Execution(text, plain ? null : Arrays.copyOf(params, maxIndex));
+        }
+
+        private Object executeQuery(Method method, Object[] args) throws Throwable {
+            Execution e = begin(args);
+            long start = System.nanoTime();
+            try {
+                ResultSet rs = (ResultSet) call(method, args);
+                e.nanos = System.nanoTime() - start;
+                open = e;
+                return Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                        new ResultSetHandler(rs, this, e));
+            } catch (Throwable t) {
+                e.nanos = System.nanoTime() - start;
+                e.failed = true;
+                complete(e);
+                throw t;
+            }
+        }
+
+        private Object execute(Method method, Object[] args) throws Throwable {
+            boolean batch = method.getName().endsWith("Batch");
+            Execution e = begin(batch ? null : args);
+            long start = System.nanoTime();
+            try {
+                Object result = call(method, args);
+                if (result instanceof int[] counts) e.rows = counts.length;
+                else if (result instanceof Number n) e.rows = n.longValue();
+                return result;
+            } catch (Throwable t) {
+                e.failed = true;
+                throw t;
+            } finally {
+                e.nanos = System.nanoTime() - start;
+                if (batch) batched = 0;
+                complete(e);
+            }
+        }
+
+        void finish() {
+            if (open != null) {
+                complete(open);
+                open = null;
+            }
+        }
+
+        void complete(Execution e) {
+            if (e.done) return;
+            e.done = true;
+            record(physical, e);
+        }
+
+        private Object call(Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException ex) {
+                throw ex.getCause();
+            }
+        }
+    }
+
+    // temps passé dans next() ajouté à l'exécution ; fin des lignes ou close() : enregistrement
+    private static class ResultSetHandler implements InvocationHandler {
+        private final ResultSet target;
+        private final StatementHandler statement;
+        private final Execution execution;
+
+        ResultSetHandler(ResultSet target, StatementHandler statement, Execution execution) {
+            this.target = target;
+            this.statement = statement;
+            this.execution = execution;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "next" -> {
+                    long start = System.nanoTime();
+                    try {
+                        boolean more = target.next();
+                        execution.nanos += System.nanoTime() - start;
+                        if (more) execution.rows++;
+                        else end();
+                        return more;
+                    } catch (SQLException e) {
+                        execution.nanos += System.nanoTime() - start;
+                        execution.failed = true;
+                        end();
+                        throw e;
+                    }
+                }
+                case "close" -> end();
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                default -> {
+                }
+            }
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException ex) {
+                throw ex.getCause();
+            }
+        }
+
+        private void end() {
+            statement.complete(execution);
+        }
+    }
+
+    // ------------------------------------------------------------------ agrégats
+
+    private static final class StatementStats {
+        final String sql;
+        final LongAdder count = new LongAdder();
+        final LongAdder totalNanos = new LongAdder();
+        final AtomicLong maxNanos = new AtomicLong();
+        final LongAdder errors = new LongAdder();
+        final LongAdder slow = new LongAdder();
+        volatile String plan;
+
+        StatementStats(String sql) {
+            this.sql = sql;
+        }
+
+        void add(long nanos, boolean failed) {
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+            if (failed) errors.increment();
+        }
+
+        Stat snapshot() {
+            return new Stat(normalize(sql), count.sum(), totalNanos.sum(), maxNanos.get(), errors.sum(), slow.sum(), plan);
+        }
+    }
+
+    /**
+     * Agrégat d'un texte SQL.
+     */
+    public static class Stat {
+        private final String sql;
+        private final long count;
+        private final long totalNanos;
+        private final long maxNanos;
+        private final long errors;
+        private final long slow;
+        private final String plan;
+
+        public Stat(String sql, long count, long totalNanos, long maxNanos, long errors, long slow, String plan) {
+            this.sql = sql;
+            this.count = count;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+            this.errors = errors;
+            this.slow = slow;
+            this.plan = plan;
+        }
+
+        public String getSql() { return sql; }
+        public long getCount() { return count; }
+        public long getTotalNanos() { return totalNanos; }
+        public long getAvgNanos() { return count == 0 ? 0 : totalNanos / count; }
+        public long getMaxNanos() { return maxNanos; }
+        public long getErrors() { return errors; }
+        public long getSlow() { return slow; }
+        public String getPlan() { return plan; }
+    }
+
+    /**
+     * Une exécution au-delà du seuil.
+     */
+    public static class SlowQuery {
+        private final LocalDateTime at;
+        private final String sql;
+        private final String params;
+        private final long nanos;
+        private final long rows;
+        private final String plan;
+
+        public SlowQuery(LocalDateTime at, String sql, String params, long nanos, long rows, String plan) {
+            this.at = at;
+            this.sql = sql;
+            this.params = params;
+            this.nanos = nanos;
+            this.rows = rows;
+            this.plan = plan;
+        }
+
+        public LocalDateTime getAt() { return at; }
+        public String getSql() { return sql; }
+        public String getParams() { return params; }
+        public long getNanos() { return nanos; }
+        public long getRows() { return rows; }
+        public String getPlan() { return plan; }
+
+        @Override
+        public String toString() {
+            return String.format("%s %.1f ms, %d ligne(s) : %s | paramètres %s%s",
+                    at.format(DateTimeFormatter.ISO_LOCAL_TIME), nanos / 1e6, rows, sql, params,
+                    plan.isEmpty() ? "" : "\n" + plan.indent(4).stripTrailing());
+        }
+    }
+}
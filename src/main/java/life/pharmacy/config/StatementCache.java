@@ -0,0 +1,233 @@
+package life.pharmacy.config;
+
+import life.pharmacy.metrics.Counter;
+import life.pharmacy.metrics.Metrics;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Requêtes préparées gardées ouvertes sur une connexion physique du pool, par texte SQL :
+ * SQLite n'analyse et ne planifie la requête qu'au premier appel. Au plus CAPACITY requêtes par
+ * connexion (-Dpharmacy.sql.statementCache=..., 0 désactive le cache), la moins récemment
+ * utilisée est fermée au-delà.
+ * <p>
+ * Réservé aux requêtes fréquentes à texte fixe (lecture par id, insertions de la caisse) :
+ * <pre>
+ * try (Connection conn = Database.getReadConnection();
+ *      PreparedStatement stmt = StatementCache.prepare(conn, sql)) { ... }
+ * </pre>
+ * close() rend la requête au cache (paramètres et lot effacés, ResultSet fermé) au lieu de la fermer.
+ * Si la même requête est déjà empruntée (appels imbriqués sur la connexion d'écriture),
+ * une requête ordinaire est préparée pour l'occasion.
+ */
+public final class StatementCache {
+
+    static final int CAPACITY = Integer.getInteger("pharmacy.sql.statementCache", 64);
+
+    // tous pools et connexions confondus ; remis à zéro avec les autres métriques
+    private static final Counter HITS = Metrics.counter("db.cacheRequetes.succes");
+    private static final Counter MISSES = Metrics.counter("db.cacheRequetes.echecs");
+    private static final Counter EVICTIONS = Metrics.counter("db.cacheRequetes.evictions");
+
+    static {
+        Metrics.gauge("db.cacheRequetes", StatementCache::getStats);
+    }
+
+    private final Connection physical;
+    // ordre d'accès : l'entrée la plus ancienne est la moins récemment utilisée
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private static final class Entry {
+        final PreparedStatement statement;
+        boolean inUse;
+
+        Entry(PreparedStatement statement) {
+            this.statement = statement;
+        }
+    }
+
+    StatementCache(Connection physical) {
+        this.physical = physical;
+    }
+
+    /**
+     * Requête préparée du cache de la connexion du pool ; sur une autre connexion,
+     * simple conn.prepareStatement(sql).
+     */
+    public static PreparedStatement prepare(Connection conn, String sql) throws SQLException {
+        return prepare(conn, sql, Statement.NO_GENERATED_KEYS);
+    }
+
+    /**
+     * Idem, avec Statement.RETURN_GENERATED_KEYS pour lire l'id inséré.
+     */
+    public static PreparedStatement prepare(Connection conn, String sql, int autoGeneratedKeys) throws SQLException {
+        if (CAPACITY > 0 && conn.isWrapperFor(StatementCache.class)) {
+            return conn.unwrap(StatementCache.class).lease(sql, autoGeneratedKeys);
+        }
+        return conn.prepareStatement(sql, autoGeneratedKeys);
+    }
+
+    private synchronized PreparedStatement lease(String sql, int autoGeneratedKeys) throws SQLException {
+        String key = autoGeneratedKeys == Statement.RETURN_GENERATED_KEYS ? "+" + sql : sql;
+        Entry e = entries.get(key);
+        if (e != null && e.inUse) {
+            MISSES.increment();
+            return profiled(physical.prepareStatement(sql, autoGeneratedKeys), sql);
+        }
+        if (e != null) {
+            HITS.increment();
+        } else {
+            MISSES.increment();
+            e = new Entry(physical.prepareStatement(sql, autoGeneratedKeys));
+            entries.put(key, e);
+            evict();
+        }
+        e.inUse = true;
+        PreparedStatement lease = (PreparedStatement) Proxy.newProxyInstance(
+                PreparedStatement.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class},
+                new LeaseHandler(e));
+        return profiled(lease, sql);
+    }
+
+    private PreparedStatement profiled(PreparedStatement ps, String sql) {
+        return SqlProfiler.isEnabled()
+                ? (PreparedStatement) SqlProfiler.wrap(physical, ps, PreparedStatement.class, sql)
+                : ps;
+    }
+
+    // les requêtes empruntées restent ouvertes même si elles sont les plus anciennes
+    private void evict() {
+        Iterator<Entry> it = entries.values().iterator();
+        while (entries.size() > CAPACITY && it.hasNext()) {
+            Entry e = it.next();
+            if (e.inUse) continue;
+            it.remove();
+            EVICTIONS.increment();
+            closeQuietly(e.statement);
+        }
+    }
+
+    private synchronized void release(Entry e) {
+        e.inUse = false;
+        evict();
+    }
+
+    /**
+     * Ferme toutes les requêtes du cache (connexion physique fermée ou jetée par le pool).
+     */
+    synchronized void close() {
+        for (Entry e : entries.values()) closeQuietly(e.statement);
+        entries.clear();
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    private static void closeQuietly(Statement s) {
+        try {
+            s.close();
+        } catch (SQLException ignored) {
+        }
+    }
+
+    public static Stats getStats() {
+        return new Stats(HITS.get(), MISSES.get(), EVICTIONS.get());
+    }
+
+    /**
+     * Emprunt d'une requête du cache : close() la remet à disposition.
+     */
+    private class LeaseHandler implements InvocationHandler {
+        private final Entry entry;
+        private ResultSet open;
+        private boolean returned;
+
+        LeaseHandler(Entry entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close" -> {
+                    if (!returned) {
+                        returned = true;
+                        reset();
+                        release(entry);
+                    }
+                    return null;
+                }
+                case "isClosed" -> {
+                    return returned || entry.statement.isClosed();
+                }
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                default -> {
+                }
+            }
+            if (returned) throw new SQLException("Requête déjà rendue au cache");
+            Object result;
+            try {
+                result = method.invoke(entry.statement, args);
+            } catch (InvocationTargetException ex) {
+                throw ex.getCause();
+            }
+            if (result instanceof ResultSet rs && method.getName().startsWith("execute")) open = rs;
+            return result;
+        }
+
+        // fermer le ResultSet réinitialise la requête SQLite : plus de lecture en cours sur la connexion
+        private void reset() {
+            try {
+                if (open != null) open.close();
+                entry.statement.clearParameters();
+                entry.statement.clearBatch();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Compteurs du cache, toutes connexions confondues.
+     */
+    public static class Stats {
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+
+        public Stats(long hits, long misses, long evictions) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+        }
+
+        public long getHits() { return hits; }
+        public long getMisses() { return misses; }
+        public long getEvictions() { return evictions; }
+        public double getHitRatio() { return hits + misses == 0 ? 0 : (double) hits / (hits + misses); }
+
+        @Override
+        public String toString() {
+            return String.format("succès=%d, échecs=%d (%.1f %% de succès), évictions=%d, capacité=%d par connexion",
+                    hits, misses, getHitRatio() * 100, evictions, CAPACITY);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package life.pharmacy.mappers;
+
+import java.util.List;
+
+/**
+ * Petites fonctions de lecture des cellules d'une ligne importée (CSV / Excel).
+ */
+public final class Cells {
+
+    private Cells() {
+    }
+
+    // cellule i (trim), ou la valeur par défaut si absente / vide
+    public static String get(List<String> row, int i, String def) {
+        if (row == null || i >= row.size() || row.get(i) == null) return def;
+        String v = row.get(i).trim();
+        return v.isEmpty() ? def : v;
+    }
+
+    // nombre décimal, virgule tolérée
+    public static double getDouble(List<String> row, int i, double def) {
+        String v = get(row, i, null);
+        if (v == null) return def;
+        try {
+            return Double.parseDouble(v.replace(",", "."));
+        } catch (NumberFormatException e) {
+            return def;
+        }
+    }
+
+    // entier ; accepte "12.0" tel que produit par Excel
+    public static int getInt(List<String> row, int i, int def) {
+        String v = get(row, i, null);
+        if (v == null) return def;
+        try {
+            return Integer.parseInt(v);
+        } catch (NumberFormatException e) {
+            try {
+                return (int) Double.parseDouble(v.replace(",", "."));
+            } catch (NumberFormatException e2) {
+                return def;
+            }
+        }
+    }
+
+    // "1", "oui", "true", "vrai" -> true
+    public static boolean getBoolean(List<String> row, int i) {
+        String v = get(row, i, "").toLowerCase();
+        return v.equals("1") || v.equals("oui") || v.equals("true") || v.equals("vrai");
+    }
+
+    // Variantes strictes pour l'import : une valeur présente mais illisible est une erreur de ligne
+
+    public static double requireDouble(List<String> row, int i, double def, String label) {
+        String v = get(row, i, null);
+        if (v == null) return def;
+        try {
+            return Double.parseDouble(v.replace(",", "."));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(label + " invalide : '" + v + "'");
+        }
+    }
+
+    public static int requireInt(List<String> row, int i, int def, String label) {
+        String v = get(row, i, null);
+        if (v == null) return def;
+        try {
+            double d = Double.parseDouble(v.replace(",", "."));
+            if (d != Math.rint(d)) throw new NumberFormatException();
+            return (int) d;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(label + " invalide : '" + v + "'");
+        }
+    }
+
+    public static String require(List<String> row, int i, String label) {
+        String v = get(row, i, null);
+        if (v == null) throw new IllegalArgumentException(label + " obligatoire");
+        return v;
+    }
+
+    public static String safe(String s) {
+        return s == null ? "" : s;
+    }
+}
@@ -0,0 +1,48 @@
+package life.pharmacy.mappers;
+
+import life.pharmacy.models.Client;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Correspondance Client <-> ligne SQL (table clients) et ligne d'import / export.
+ */
+public final class ClientMapper {
+
+    // En-tête import / export : Nom | Email | Telephone
+    public static final List<String> HEADER = Arrays.asList("Nom", "Email", "Telephone");
+
+    // SELECT * FROM clients
+    public static final RowMapper<Client> ROW = rs -> new Client(
+            rs.getInt("id"),
+            rs.getString("nom"),
+            rs.getString("telephone"),
+            rs.getString("email")
+    );
+
+    private ClientMapper() {
+    }
+
+    public static List<String> toRow(Client c) {
+        return Arrays.asList(
+                Cells.safe(c.getNom()),
+                Cells.safe(c.getEmail()),
+                Cells.safe(c.getTelephone())
+        );
+    }
+
+    /**
+     * Ligne d'import au format HEADER ; IllegalArgumentException si la ligne est invalide.
+     */
+    public static Client fromRow(List<String> r) {
+        Client c = new Client();
+        c.setNom(Cells.require(r, 0, "Nom"));
+        c.setEmail(Cells.get(r, 1, ""));
+        c.setTelephone(Cells.get(r, 2, ""));
+        if (!c.getEmail().isEmpty() && !c.getEmail().contains("@")) {
+            throw new IllegalArgumentException("Email invalide : '" + c.getEmail() + "'");
+        }
+        return c;
+    }
+}
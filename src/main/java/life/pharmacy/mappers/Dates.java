@@ -0,0 +1,49 @@
+package life.pharmacy.mappers;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Colonnes de date numériques : factures.date_epoch_ms et recettes.date_epoch_day.
+ * <p>
+ * Les dates de l'application sont des heures locales sans fuseau : elles sont comptées
+ * depuis 1970-01-01T00:00 comme si elles étaient en UTC, ce qui correspond exactement au
+ * texte ISO de la colonne date (et à strftime('%s', date) côté SQLite).
+ */
+public final class Dates {
+
+    public static final long MILLIS_PER_DAY = 86_400_000L;
+
+    private Dates() {
+    }
+
+    public static long toMillis(LocalDateTime dt) {
+        return dt.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    public static LocalDateTime ofMillis(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneOffset.UTC);
+    }
+
+    /**
+     * Début du jour (00:00) en millisecondes.
+     */
+    public static long toMillis(LocalDate d) {
+        return d.toEpochDay() * MILLIS_PER_DAY;
+    }
+
+    /**
+     * Texte de la colonne date (ISO date-heure ou date seule) ; null si illisible.
+     */
+    public static LocalDateTime parseDateTime(String s) {
+        if (s == null || s.isBlank()) return null;
+        try {
+            return LocalDateTime.parse(s.trim());
+        } catch (Exception ex) {
+            LocalDate d = RecetteMapper.parseDate(s.trim());
+            return d == null ? null : d.atStartOfDay();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package life.pharmacy.mappers;
+
+import life.pharmacy.models.Client;
+import life.pharmacy.models.DetailFacture;
+import life.pharmacy.models.Facture;
+import life.pharmacy.models.Produit;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Correspondance Facture / DetailFacture <-> lignes SQL et ligne d'export.
+ */
+public final class FactureMapper {
+
+    // En-tête import / export : ID | Date | Client | MontantTTC
+    public static final List<String> HEADER = Arrays.asList("ID", "Date", "Client", "MontantTTC");
+
+    // SELECT df.id, df.facture_id, df.produit_id, produit_nom, df.quantite, df.prix_unitaire
+    public static final RowMapper<DetailFacture> DETAIL = rs -> {
+        int factureId = rs.getInt("facture_id");
+        Produit produit = new Produit(
+                rs.getInt("produit_id"),
+                rs.getString("produit_nom"),
+                null, // code_barre si pas dans ce SELECT
+                rs.getDouble("prix_unitaire"),
+                rs.getInt("quantite"),
+                false // TVA : à compléter si nécessaire
+        );
+        DetailFacture d = new DetailFacture(
+                rs.getInt("id"),
+                factureId,
+                produit,
+                rs.getInt("quantite"),
+                rs.getDouble("prix_unitaire")
+        );
+        d.setProduitNom(produit.getNom());
+        return d;
+    };
+
+    // Ligne d'export directement depuis SELECT_FACTURES, sans construire Facture ni Client
+    public static final RowMapper<List<String>> EXPORT_ROW = rs -> Arrays.asList(
+            String.valueOf(rs.getInt("id")),
+            Cells.safe(rs.getString("date")),
+            Cells.safe(rs.getString("client_nom")),
+            String.valueOf(rs.getDouble("montant_ttc"))
+    );
+
+    private FactureMapper() {
+    }
+
+    /**
+     * Facture (sans ses lignes) depuis une ligne factures (avec mode_paiement, utilisateur_id, date_epoch_ms) + clients (colonnes client_nom,
+     * client_telephone, client_email) ; les clients déjà rencontrés sont réutilisés.
+     */
+    public static Facture map(ResultSet rs, Map<Integer, Client> clients) throws SQLException {
+        Client client = null;
+        int clientId = rs.getInt("client_id");
+        if (clientId != 0 && rs.getString("client_nom") != null) {
+            client = clients.get(clientId);
+            if (client == null) {
+                client = new Client(clientId,
+                        rs.getString("client_nom"),
+                        rs.getString("client_telephone"),
+                        rs.getString("client_email"));
+                clients.put(clientId, client);
+            }
+        }
+
+        // colonne numérique si renseignée : pas d'analyse de texte par ligne
+        long millis = rs.getLong("date_epoch_ms");
+        LocalDateTime date = rs.wasNull() ? LocalDateTime.parse(rs.getString("date")) : Dates.ofMillis(millis);
+
+        Facture f = new Facture(
+                rs.getInt("id"),
+                date,
+                client,
+                rs.getDouble("montant_ht"),
+                rs.getDouble("montant_tva"),
+                rs.getDouble("montant_ttc")
+        );
+        f.setModePaiement(rs.getString("mode_paiement"));
+        int caissier = rs.getInt("utilisateur_id");
+        if (!rs.wasNull()) f.setUtilisateurId(caissier);
+        return f;
+    }
+
+    public static List<String> toRow(Facture f) {
+        return Arrays.asList(
+                String.valueOf(f.getId()),
+                f.getDate() != null ? f.getDate().toString() : "",
+                f.getClient() != null ? Cells.safe(f.getClient().getNom()) : "",
+                String.valueOf(f.getMontantTTC())
+        );
+    }
+}
@@ -0,0 +1,67 @@
+package life.pharmacy.mappers;
+
+import life.pharmacy.models.Produit;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Correspondance Produit <-> ligne SQL (table produits) et ligne d'import / export.
+ */
+public final class ProduitMapper {
+
+    // En-tête import / export : Nom | Prix | CodeBarre | Stock
+    public static final List<String> HEADER = Arrays.asList("Nom", "Prix", "CodeBarre", "Stock");
+
+    // SELECT * FROM produits
+    public static final RowMapper<Produit> ROW = rs -> new Produit(
+            rs.getInt("id"),
+            rs.getString("nom"),
+            rs.getString("code_barre"),
+            rs.getDouble("prixUnitaire"),
+            rs.getInt("quantite"),
+            rs.getInt("tva") == 1
+    );
+
+    private ProduitMapper() {
+    }
+
+    public static List<String> toRow(Produit p) {
+        return Arrays.asList(
+                Cells.safe(p.getNom()),
+                String.valueOf(p.getPrixUnitaire()),
+                Cells.safe(p.getCodeBarre()),
+                String.valueOf(p.getQuantite())
+        );
+    }
+
+    /**
+     * Ligne d'import au format HEADER ; IllegalArgumentException si la ligne est invalide.
+     */
+    public static Produit fromRow(List<String> r) {
+        return validate(new Produit(0,
+                Cells.require(r, 0, "Nom"),
+                Cells.get(r, 2, null),
+                Cells.requireDouble(r, 1, 0, "Prix"),
+                Cells.requireInt(r, 3, 0, "Stock"),
+                false));
+    }
+
+    /**
+     * Ligne de catalogue fournisseur : Nom | CodeBarre | Prix | Quantite | TVA (optionnel: "1"/"0", "Oui"/"Non").
+     */
+    public static Produit fromExcelRow(List<String> r) {
+        return validate(new Produit(0,
+                Cells.require(r, 0, "Nom"),
+                Cells.get(r, 1, null),
+                Cells.requireDouble(r, 2, 0, "Prix"),
+                Cells.requireInt(r, 3, 0, "Quantité"),
+                Cells.getBoolean(r, 4)));
+    }
+
+    private static Produit validate(Produit p) {
+        if (p.getPrixUnitaire() < 0) throw new IllegalArgumentException("Prix négatif : " + p.getPrixUnitaire());
+        if (p.getQuantite() < 0) throw new IllegalArgumentException("Quantité négative : " + p.getQuantite());
+        return p;
+    }
+}
@@ -0,0 +1,68 @@
+package life.pharmacy.mappers;
+
+import life.pharmacy.models.Recette;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Correspondance Recette <-> ligne SQL (table recettes) et ligne d'import / export.
+ */
+public final class RecetteMapper {
+
+    // En-tête import / export : Date | MontantHT | MontantTVA | MontantTTC | ModePaiement | Source
+    public static final List<String> HEADER = Arrays.asList("Date", "MontantHT", "MontantTVA", "MontantTTC", "ModePaiement", "Source");
+
+    // SELECT * FROM recettes (date_epoch_day si renseignée, sinon le texte ISO)
+    public static final RowMapper<Recette> ROW = rs -> {
+        long day = rs.getLong("date_epoch_day");
+        LocalDate date = rs.wasNull() ? LocalDate.parse(rs.getString("date")) : LocalDate.ofEpochDay(day);
+        return new Recette(
+                rs.getInt("id"),
+                date,
+                rs.getDouble("montant"),
+                rs.getString("type")
+        );
+    };
+
+    private RecetteMapper() {
+    }
+
+    public static List<String> toRow(Recette r) {
+        return Arrays.asList(
+                r.getDate() != null ? r.getDate().toString() : "",
+                String.valueOf(r.getMontant()),
+                "",
+                "",
+                "",
+                ""
+        );
+    }
+
+    public static Recette fromRow(List<String> r) {
+        Recette rec = new Recette();
+        rec.setDate(parseDate(Cells.get(r, 0, "")));
+        rec.setMontant(Cells.getDouble(r, 1, 0));
+        return rec;
+    }
+
+    // Date : LocalDate, puis LocalDateTime, puis les 10 premiers caractères ; null si illisible
+    public static LocalDate parseDate(String s) {
+        if (s == null || s.isEmpty()) return null;
+        try {
+            return LocalDate.parse(s);
+        } catch (Exception ex1) {
+            try {
+                return LocalDate.from(LocalDateTime.parse(s));
+            } catch (Exception ex2) {
+                try {
+                    return LocalDate.parse(s.substring(0, 10));
+                } catch (Exception ignored) {
+                    return null;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package life.pharmacy.mappers;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Convertit la ligne courante d'un ResultSet en objet métier (accès typé, sans réflexion).
+ */
+@FunctionalInterface
+public interface RowMapper<T> {
+    T map(ResultSet rs) throws SQLException;
+}
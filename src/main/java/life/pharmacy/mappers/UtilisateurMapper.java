@@ -0,0 +1,63 @@
+package life.pharmacy.mappers;
+
+import life.pharmacy.models.Utilisateur;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Correspondance Utilisateur <-> ligne SQL (table utilisateurs) et ligne d'import / export.
+ */
+public final class UtilisateurMapper {
+
+    // En-tête import / export : Nom | Email | MotDePasse | Role
+    public static final List<String> HEADER = Arrays.asList("Nom", "Email", "MotDePasse", "Role");
+
+    // SELECT * FROM utilisateurs
+    public static final RowMapper<Utilisateur> ROW = rs -> new Utilisateur(
+            rs.getInt("id"),
+            rs.getString("nom"),
+            rs.getString("email"),
+            rs.getString("mot_de_passe"),
+            rs.getString("role")
+    );
+
+    private UtilisateurMapper() {
+    }
+
+    public static List<String> toRow(Utilisateur u) {
+        return Arrays.asList(
+                Cells.safe(u.getNom()),
+                Cells.safe(u.getEmail()),
+                Cells.safe(u.getMotDePasse()),
+                Cells.safe(u.getRole())
+        );
+    }
+
+    /**
+     * Ligne d'import au format HEADER ; IllegalArgumentException si la ligne est invalide.
+     */
+    public static Utilisateur fromRow(List<String> r) {
+        return validate(new Utilisateur(0,
+                Cells.require(r, 0, "Nom"),
+                Cells.require(r, 1, "Email"),
+                Cells.get(r, 2, "changeme"),
+                Cells.get(r, 3, "caissier")));
+    }
+
+    /**
+     * Ancien format Excel : Nom | Email | Role | MotDePasse.
+     */
+    public static Utilisateur fromExcelRow(List<String> r) {
+        return validate(new Utilisateur(0,
+                Cells.require(r, 0, "Nom"),
+                Cells.require(r, 1, "Email"),
+                Cells.get(r, 3, "changeme"),
+                Cells.get(r, 2, "caissier")));
+    }
+
+    private static Utilisateur validate(Utilisateur u) {
+        if (!u.getEmail().contains("@")) throw new IllegalArgumentException("Email invalide : '" + u.getEmail() + "'");
+        return u;
+    }
+}
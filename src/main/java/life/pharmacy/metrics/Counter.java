@@ -0,0 +1,36 @@
+package life.pharmacy.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Compteur cumulatif (ventes, lignes importées, produits non trouvés...).
+ */
+public final class Counter {
+
+    private final String name;
+    private final LongAdder value = new LongAdder();
+
+    Counter(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void increment() {
+        value.increment();
+    }
+
+    public void add(long n) {
+        value.add(n);
+    }
+
+    public long get() {
+        return value.sum();
+    }
+
+    public void reset() {
+        value.reset();
+    }
+}
@@ -0,0 +1,116 @@
+package life.pharmacy.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogramme de valeurs positives à seaux log-linéaires, sur le principe de HdrHistogram :
+ * chaque puissance de deux est découpée en 32 seaux égaux, soit une erreur relative d'au plus
+ * 3 % sur les percentiles, de 1 ns à plusieurs siècles, dans un tableau fixe de 1 888 compteurs.
+ * <p>
+ * record() ne prend aucun verrou et n'alloue rien : utilisable sur les chemins chauds,
+ * depuis plusieurs threads à la fois.
+ */
+public final class Histogram {
+
+    private static final int SUB_BITS = 5;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    // valeurs < 32 : un seau par valeur ; au-delà 32 seaux par puissance de deux jusqu'à 2^63
+    private static final int BUCKETS = SUB_COUNT + (63 - SUB_BITS) * SUB_COUNT;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    public void record(long value) {
+        if (value < 0) value = 0;
+        buckets.incrementAndGet(index(value));
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) buckets.set(i, 0);
+        count.reset();
+        sum.reset();
+        max.reset();
+    }
+
+    static int index(long value) {
+        if (value < SUB_COUNT) return (int) value;
+        int exp = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exp - SUB_BITS)) - SUB_COUNT;
+        return SUB_COUNT + (exp - SUB_BITS) * SUB_COUNT + sub;
+    }
+
+    // plus petite valeur rangée dans le seau
+    static long lowerBound(int index) {
+        if (index < SUB_COUNT) return index;
+        int exp = (index - SUB_COUNT) / SUB_COUNT + SUB_BITS;
+        int sub = (index - SUB_COUNT) % SUB_COUNT;
+        return (long) (SUB_COUNT + sub) << (exp - SUB_BITS);
+    }
+
+    // plus grande valeur rangée dans le seau
+    static long upperBound(int index) {
+        return index + 1 < BUCKETS ? lowerBound(index + 1) - 1 : Long.MAX_VALUE;
+    }
+
+    /**
+     * Copie cohérente des compteurs, pour calculer les percentiles sans bloquer les écrivains.
+     * Les enregistrements concurrents à la copie peuvent y figurer ou non.
+     */
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        long n = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = buckets.get(i);
+            n += copy[i];
+        }
+        return new Snapshot(copy, n, sum.sum(), max.get());
+    }
+
+    public static class Snapshot {
+        private final long count;
+        private final long sum;
+        private final long max;
+        private final long p50;
+        private final long p90;
+        private final long p99;
+        private final long p999;
+
+        Snapshot(long[] buckets, long count, long sum, long max) {
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+            this.p50 = percentile(buckets, count, max, 0.50);
+            this.p90 = percentile(buckets, count, max, 0.90);
+            this.p99 = percentile(buckets, count, max, 0.99);
+            this.p999 = percentile(buckets, count, max, 0.999);
+        }
+
+        // borne haute du seau qui contient le rang demandé (jamais au-delà du max observé)
+        private static long percentile(long[] buckets, long count, long max, double q) {
+            if (count == 0) return 0;
+            long rank = Math.max(1, (long) Math.ceil(q * count));
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= rank) return Math.min(upperBound(i), max);
+            }
+            return max;
+        }
+
+        public long getCount() { return count; }
+        public long getSum() { return sum; }
+        public long getMax() { return max; }
+        public double getMean() { return count == 0 ? 0 : (double) sum / count; }
+        public long getP50() { return p50; }
+        public long getP90() { return p90; }
+        public long getP99() { return p99; }
+        public long getP999() { return p999; }
+    }
+}
@@ -0,0 +1,196 @@
+package life.pharmacy.metrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Registre des métriques du processus : minuteurs, compteurs, histogrammes et jauges, par nom
+ * (« produits.getById », « caisse.scan », « db.connexion.ecriture »...).
+ * <p>
+ * Les services gardent leurs minuteurs dans des champs statiques : la recherche par nom n'a lieu
+ * qu'une fois. Les valeurs sont propres à ce poste (chaque caisse a les siennes) ; elles se
+ * consultent dans la vue Diagnostics et se sauvegardent par {@link #dump(File)}.
+ */
+public final class Metrics {
+
+    private static final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private static final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private static final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+    // jauges : valeurs lues à la demande (état du pool, de la file d'écriture...)
+    private static final Map<String, Supplier<?>> gauges = new ConcurrentSkipListMap<>();
+    // sections ajoutées à la fin du rapport par d'autres composants (requêtes SQL...)
+    private static final Map<String, Consumer<PrintWriter>> sections = new ConcurrentSkipListMap<>();
+
+    private static volatile LocalDateTime since = LocalDateTime.now();
+
+    private Metrics() {
+    }
+
+    public static Timer timer(String name) {
+        return timers.computeIfAbsent(name, Timer::new);
+    }
+
+    public static Counter counter(String name) {
+        return counters.computeIfAbsent(name, Counter::new);
+    }
+
+    public static Histogram histogram(String name) {
+        return histograms.computeIfAbsent(name, n -> new Histogram());
+    }
+
+    /**
+     * Déclare (ou remplace) une jauge, évaluée à chaque lecture du registre.
+     */
+    public static void gauge(String name, Supplier<?> value) {
+        gauges.put(name, value);
+    }
+
+    /**
+     * Déclare une section du rapport écrit par {@link #dump(File)}, après les jauges.
+     */
+    public static void section(String title, Consumer<PrintWriter> writer) {
+        sections.put(title, writer);
+    }
+
+    /**
+     * Remet minuteurs, compteurs et histogrammes à zéro (les jauges ne sont pas concernées).
+     */
+    public static void reset() {
+        timers.values().forEach(Timer::reset);
+        counters.values().forEach(Counter::reset);
+        histograms.values().forEach(Histogram::reset);
+        since = LocalDateTime.now();
+    }
+
+    public static LocalDateTime getSince() {
+        return since;
+    }
+
+    /**
+     * Instantané de toutes les métriques, triées par nom ; les minuteurs sont en nanosecondes.
+     */
+    public static List<Entry> snapshot() {
+        List<Entry> entries = new ArrayList<>();
+        for (Timer t : timers.values()) {
+            entries.add(new Entry(t.getName(), Entry.TIMER, t.snapshot(), t.getErrors(), null));
+        }
+        for (Counter c : counters.values()) {
+            entries.add(new Entry(c.getName(), Entry.COUNTER, null, 0, String.valueOf(c.get())));
+        }
+        for (Map.Entry<String, Histogram> h : histograms.entrySet()) {
+            entries.add(new Entry(h.getKey(), Entry.HISTOGRAM, h.getValue().snapshot(), 0, null));
+        }
+        entries.sort((a, b) -> a.getName().compareTo(b.getName()));
+        return entries;
+    }
+
+    /**
+     * Valeurs actuelles des jauges, dans l'ordre des noms.
+     */
+    public static Map<String, String> gauges() {
+        Map<String, String> values = new LinkedHashMap<>();
+        for (Map.Entry<String, Supplier<?>> g : gauges.entrySet()) {
+            String value;
+            try {
+                value = String.valueOf(g.getValue().get());
+            } catch (RuntimeException e) {
+                value = "erreur : " + e.getMessage();
+            }
+            values.put(g.getKey(), value);
+        }
+        return values;
+    }
+
+    /**
+     * Écrit un rapport texte des métriques (durées en millisecondes) et des jauges.
+     */
+    public static void dump(File file) throws IOException {
+        try (PrintWriter out = new PrintWriter(file, StandardCharsets.UTF_8)) {
+            out.println("# Métriques " + host() + " du " + since.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME)
+                    + " au " + LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+            out.printf("%-40s %-10s %10s %8s %10s %10s %10s %10s %10s%n",
+                    "nom", "type", "nombre", "erreurs", "moy", "p50", "p90", "p99", "max");
+            for (Entry e : snapshot()) {
+                if (e.getSnapshot() == null) {
+                    out.printf("%-40s %-10s %10s%n", e.getName(), e.getType(), e.getValue());
+                    continue;
+                }
+                Histogram.Snapshot s = e.getSnapshot();
+                if (s.getCount() == 0) continue; // opérations jamais appelées depuis le démarrage
+                double scale = e.isTimer() ? 1e6 : 1;
+                out.printf("%-40s %-10s %10d %8d %10.3f %10.3f %10.3f %10.3f %10.3f%n",
+                        e.getName(), e.getType(), s.getCount(), e.getErrors(), s.getMean() / scale,
+                        s.getP50() / scale, s.getP90() / scale, s.getP99() / scale, s.getMax() / scale);
+            }
+            out.println();
+            out.println("# Jauges");
+            for (Map.Entry<String, String> g : gauges().entrySet()) {
+                out.println(g.getKey() + " = " + g.getValue());
+            }
+            for (Map.Entry<String, Consumer<PrintWriter>> section : sections.entrySet()) {
+                out.println();
+                out.println("# " + section.getKey());
+                section.getValue().accept(out);
+            }
+        }
+    }
+
+    /**
+     * Nom de fichier par défaut d'un rapport : metrics-&lt;poste&gt;-&lt;date&gt;.txt.
+     */
+    public static String defaultFileName() {
+        return "metrics-" + host().replaceAll("[^A-Za-z0-9._-]", "_") + "-"
+                + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".txt";
+    }
+
+    private static String host() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (IOException e) {
+            return "poste";
+        }
+    }
+
+    /**
+     * Une ligne du registre : minuteur ou histogramme (snapshot non nul), ou compteur (value).
+     */
+    public static class Entry {
+        public static final String TIMER = "minuteur";
+        public static final String COUNTER = "compteur";
+        public static final String HISTOGRAM = "histogramme";
+
+        private final String name;
+        private final String type;
+        private final Histogram.Snapshot snapshot;
+        private final long errors;
+        private final String value;
+
+        public Entry(String name, String type, Histogram.Snapshot snapshot, long errors, String value) {
+            this.name = name;
+            this.type = type;
+            this.snapshot = snapshot;
+            this.errors = errors;
+            this.value = value;
+        }
+
+        public String getName() { return name; }
+        public String getType() { return type; }
+        public Histogram.Snapshot getSnapshot() { return snapshot; }
+        public long getErrors() { return errors; }
+        public String getValue() { return value; }
+        public boolean isTimer() { return TIMER.equals(type); }
+    }
+}
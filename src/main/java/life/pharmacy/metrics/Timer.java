@@ -0,0 +1,92 @@
+package life.pharmacy.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Durées d'une opération (histogramme en nanosecondes) et nombre d'erreurs signalées.
+ * <pre>
+ * try (Timer.Sample mesure = GET_BY_ID.start()) {
+ *     ...
+ * } </pre>
+ * Les services interceptent leurs SQLException : ils signalent l'échec par mesure.error()
+ * à côté du printStackTrace, la durée de l'appel étant enregistrée dans tous les cas.
+ * Une opération sans cas d'échec à signaler se mesure par {@code return GET_BY_ID.time(() -> ...)}.
+ */
+public final class Timer {
+
+    private final String name;
+    private final Histogram histogram = new Histogram();
+    private final LongAdder errors = new LongAdder();
+
+    Timer(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Sample start() {
+        return new Sample(this, System.nanoTime());
+    }
+
+    /**
+     * Durée de l'opération, enregistrée même si elle lève une exception.
+     */
+    public <T> T time(Supplier<T> operation) {
+        Sample mesure = start();
+        try {
+            return operation.get();
+        } finally {
+            mesure.close();
+        }
+    }
+
+    public void record(long nanos) {
+        histogram.record(nanos);
+    }
+
+    public void error() {
+        errors.increment();
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    public Histogram.Snapshot snapshot() {
+        return histogram.snapshot();
+    }
+
+    public void reset() {
+        histogram.reset();
+        errors.reset();
+    }
+
+    /**
+     * Mesure en cours ; close() l'enregistre (une seule fois), y compris depuis un autre thread
+     * pour une opération asynchrone.
+     */
+    public static final class Sample implements AutoCloseable {
+        private final Timer timer;
+        private final long start;
+        private boolean closed;
+
+        private Sample(Timer timer, long start) {
+            this.timer = timer;
+            this.start = start;
+        }
+
+        public void error() {
+            timer.error();
+        }
+
+        @Override
+        public void close() {
+            if (closed) return;
+            closed = true;
+            timer.record(System.nanoTime() - start);
+        }
+    }
+}
@@ -11,6 +11,8 @@ public class Facture {
     private double montantTVA;
     private double montantTTC;
     private List<DetailFacture> details;
+    private String modePaiement; // "Espèces", "Carte", ... (peut être null)
+    private Integer utilisateurId; // caissier (null pour les factures antérieures)
 
     public Facture(int id, LocalDateTime date, Client client, double montantHT, double montantTVA, double montantTTC) {
         this.id = id;
@@ -83,4 +85,20 @@ public class Facture {
     public void setDetails(List<DetailFacture> details) {
         this.details = details;
     }
+
+    public String getModePaiement() {
+        return modePaiement;
+    }
+
+    public void setModePaiement(String modePaiement) {
+        this.modePaiement = modePaiement;
+    }
+
+    public Integer getUtilisateurId() {
+        return utilisateurId;
+    }
+
+    public void setUtilisateurId(Integer utilisateurId) {
+        this.utilisateurId = utilisateurId;
+    }
 }
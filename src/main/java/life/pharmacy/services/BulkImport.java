@@ -0,0 +1,319 @@
+package life.pharmacy.services;
+
+import life.pharmacy.config.Database;
+import life.pharmacy.utils.ExcelImporter;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Import en masse : lecture en flux, analyse / validation de chaque ligne, puis écriture
+ * par lots (addBatch / executeBatch) dans une transaction par lot.
+ * <p>
+ * Avec une clé d'upsert (code-barres, email...), chaque lot tente d'abord un UPDATE par clé ;
+ * les lignes qui ne modifient rien sont insérées. Si un lot échoue (contrainte, ...), il est
+ * rejoué ligne par ligne sous savepoint pour isoler les lignes fautives dans le rapport.
+ * <p>
+ * La connexion d'écriture n'est tenue que le temps d'un lot : les ventes en caisse
+ * peuvent s'intercaler pendant un long import.
+ */
+public class BulkImport<T> {
+
+    // taille de lot par défaut, réglable par -Dpharmacy.import.batchSize=...
+    public static final int DEFAULT_BATCH_SIZE = Integer.getInteger("pharmacy.import.batchSize", 1000);
+
+    // nombre maximal d'erreurs détaillées conservées dans le rapport (toutes sont comptées)
+    private static final int MAX_ERRORS = 10_000;
+
+    /**
+     * Convertit une ligne lue en objet ; lève IllegalArgumentException si la ligne est invalide
+     * (le message est repris dans le rapport).
+     */
+    @FunctionalInterface
+    public interface Parser<T> {
+        T parse(List<String> row);
+    }
+
+    @FunctionalInterface
+    public interface Binder<T> {
+        void bind(PreparedStatement ps, T item) throws SQLException;
+    }
+
+    private final Parser<T> parser;
+    private final String insertSql;
+    private final Binder<T> insertBinder;
+
+    private Function<T, String> key;
+    private String updateSql;
+    private Binder<T> updateBinder;
+
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private int headerRows = 1;
+
+    public BulkImport(Parser<T> parser, String insertSql, Binder<T> insertBinder) {
+        this.parser = parser;
+        this.insertSql = insertSql;
+        this.insertBinder = insertBinder;
+    }
+
+    /**
+     * Active l'upsert : les lignes dont la clé (non vide) existe déjà sont mises à jour
+     * par updateSql au lieu d'être insérées.
+     */
+    public BulkImport<T> upsert(Function<T, String> key, String updateSql, Binder<T> updateBinder) {
+        this.key = key;
+        this.updateSql = updateSql;
+        this.updateBinder = updateBinder;
+        return this;
+    }
+
+    public BulkImport<T> batchSize(int batchSize) {
+        this.batchSize = Math.max(1, batchSize);
+        return this;
+    }
+
+    public BulkImport<T> headerRows(int headerRows) {
+        this.headerRows = Math.max(0, headerRows);
+        return this;
+    }
+
+    /**
+     * Importe le fichier (.xlsx, .xls ou .csv) et retourne le rapport d'import.
+     * Un fichier illisible apparaît dans le rapport comme une erreur en ligne 0.
+     */
+    public Report run(File file, ExcelImporter.ProgressListener progress) {
+        Report report = new Report();
+        List<Pending<T>> batch = new ArrayList<>(batchSize);
+        Set<String> batchKeys = new HashSet<>();
+        long start = System.nanoTime();
+
+        try {
+            read(file, progress, report, batch, batchKeys);
+        } catch (IOException e) {
+            e.printStackTrace();
+            report.reject(0, "Lecture du fichier impossible : " + e.getMessage());
+        }
+
+        flush(batch, report);
+        report.elapsedNanos = System.nanoTime() - start;
+        return report;
+    }
+
+    private void read(File file, ExcelImporter.ProgressListener progress, Report report,
+                      List<Pending<T>> batch, Set<String> batchKeys) throws IOException {
+        ExcelImporter.stream(file, (index, row) -> {
+            if (index < headerRows || isBlank(row)) return;
+            int line = index + 1; // numéro de ligne tel qu'affiché dans le tableur
+            report.read++;
+
+            T item;
+            try {
+                item = parser.parse(row);
+            } catch (RuntimeException ex) {
+                report.reject(line, ex.getMessage() != null ? ex.getMessage() : ex.toString());
+                return;
+            }
+
+            String k = keyOf(item);
+            // même clé deux fois dans un lot : on écrit d'abord le lot pour que la 2e ligne mette à jour la 1re
+            if (k != null && !batchKeys.add(k)) {
+                flush(batch, report);
+                batchKeys.clear();
+                batchKeys.add(k);
+            }
+            batch.add(new Pending<>(line, item, k));
+            if (batch.size() >= batchSize) {
+                flush(batch, report);
+                batchKeys.clear();
+            }
+        }, progress);
+    }
+
+    private String keyOf(T item) {
+        if (key == null) return null;
+        String k = key.apply(item);
+        return k == null || k.isBlank() ? null : k.trim();
+    }
+
+    private void flush(List<Pending<T>> batch, Report report) {
+        if (batch.isEmpty()) return;
+        try (Connection conn = Database.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                int[] counts = writeBatch(conn, batch);
+                conn.commit();
+                report.updated += counts[0];
+                report.inserted += counts[1];
+            } catch (SQLException e) {
+                conn.rollback();
+                writeOneByOne(conn, batch, report);
+            }
+        } catch (SQLException e) {
+            // base indisponible : tout le lot est en échec
+            for (Pending<T> p : batch) report.reject(p.line, e.getMessage());
+        }
+        batch.clear();
+    }
+
+    // { mises à jour, insertions }
+    private int[] writeBatch(Connection conn, List<Pending<T>> batch) throws SQLException {
+        List<Pending<T>> toInsert = new ArrayList<>(batch.size());
+        int updated = 0;
+
+        if (updateSql != null) {
+            List<Pending<T>> keyed = new ArrayList<>(batch.size());
+            try (PreparedStatement ps = conn.prepareStatement(updateSql)) {
+                for (Pending<T> p : batch) {
+                    if (p.key == null) {
+                        toInsert.add(p);
+                        continue;
+                    }
+                    updateBinder.bind(ps, p.item);
+                    ps.addBatch();
+                    keyed.add(p);
+                }
+                if (!keyed.isEmpty()) {
+                    int[] counts = ps.executeBatch();
+                    for (int i = 0; i < counts.length; i++) {
+                        if (counts[i] == 0) toInsert.add(keyed.get(i));
+                        else updated++;
+                    }
+                }
+            }
+        } else {
+            toInsert.addAll(batch);
+        }
+
+        if (!toInsert.isEmpty()) {
+            try (PreparedStatement ps = conn.prepareStatement(insertSql)) {
+                for (Pending<T> p : toInsert) {
+                    insertBinder.bind(ps, p.item);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+        }
+        return new int[]{updated, toInsert.size()};
+    }
+
+    // les compteurs et les rejets ne sont reportés qu'une fois le commit passé : s'il échoue,
+    // flush rejette tout le lot
+    private void writeOneByOne(Connection conn, List<Pending<T>> batch, Report report) throws SQLException {
+        int updated = 0;
+        int inserted = 0;
+        Map<Integer, String> rejected = new LinkedHashMap<>();
+        try (PreparedStatement update = updateSql != null ? conn.prepareStatement(updateSql) : null;
+             PreparedStatement insert = conn.prepareStatement(insertSql)) {
+            for (Pending<T> p : batch) {
+                Savepoint sp = conn.setSavepoint();
+                try {
+                    boolean done = false;
+                    if (update != null && p.key != null) {
+                        updateBinder.bind(update, p.item);
+                        done = update.executeUpdate() > 0;
+                    }
+                    if (done) {
+                        updated++;
+                    } else {
+                        insertBinder.bind(insert, p.item);
+                        insert.executeUpdate();
+                        inserted++;
+                    }
+                    conn.releaseSavepoint(sp);
+                } catch (SQLException ex) {
+                    conn.rollback(sp);
+                    rejected.put(p.line, ex.getMessage());
+                }
+            }
+        }
+        conn.commit();
+        report.updated += updated;
+        report.inserted += inserted;
+        rejected.forEach(report::reject);
+    }
+
+    private static boolean isBlank(List<String> row) {
+        for (String c : row) {
+            if (c != null && !c.isBlank()) return false;
+        }
+        return true;
+    }
+
+    private static class Pending<T> {
+        final int line;
+        final T item;
+        final String key;
+
+        Pending(int line, T item, String key) {
+            this.line = line;
+            this.item = item;
+            this.key = key;
+        }
+    }
+
+    /**
+     * Ligne rejetée : numéro de ligne dans le fichier et raison.
+     */
+    public static class RowError {
+        private final int line;
+        private final String message;
+
+        public RowError(int line, String message) {
+            this.line = line;
+            this.message = message;
+        }
+
+        public int getLine() { return line; }
+        public String getMessage() { return message; }
+
+        @Override
+        public String toString() {
+            return "Ligne " + line + " : " + message;
+        }
+    }
+
+    /**
+     * Rapport d'import : compteurs et détail des lignes rejetées.
+     */
+    public static class Report {
+        private long read;
+        private long inserted;
+        private long updated;
+        private long rejected;
+        private long elapsedNanos;
+        private final List<RowError> errors = new ArrayList<>();
+
+        void reject(int line, String message) {
+            rejected++;
+            if (errors.size() < MAX_ERRORS) errors.add(new RowError(line, message));
+        }
+
+        public long getRead() { return read; }
+        public long getInserted() { return inserted; }
+        public long getUpdated() { return updated; }
+        public long getRejected() { return rejected; }
+        public long getElapsedNanos() { return elapsedNanos; }
+        public List<RowError> getErrors() { return errors; }
+
+        public double getRowsPerSecond() {
+            return elapsedNanos == 0 ? 0 : read * 1e9 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d lignes lues : %d insérées, %d mises à jour, %d rejetées (%.0f lignes/s)",
+                    read, inserted, updated, rejected, getRowsPerSecond());
+        }
+    }
+}
@@ -1,6 +1,10 @@
 package life.pharmacy.services;
 
 import life.pharmacy.config.Database;
+import life.pharmacy.config.StatementCache;
+import life.pharmacy.mappers.ClientMapper;
+import life.pharmacy.metrics.Metrics;
+import life.pharmacy.metrics.Timer;
 import life.pharmacy.models.Client;
 import life.pharmacy.models.Produit;
 import life.pharmacy.utils.ExcelExporter;
@@ -9,163 +13,144 @@ import life.pharmacy.utils.ExcelImporter;
 import java.io.*;
 import java.sql.*;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 
 public class ClientService {
 
-    private static final Object LOCK = new Object();
+    private static final Timer GET_ALL = Metrics.timer("clients.getAll");
+    private static final Timer INSERT = Metrics.timer("clients.insert");
+    private static final Timer GET_BY_ID = Metrics.timer("clients.getById");
+    private static final Timer UPDATE = Metrics.timer("clients.update");
+    private static final Timer DELETE = Metrics.timer("clients.delete");
+    private static final Timer IMPORT_CSV = Metrics.timer("clients.importCSV");
+    private static final Timer EXPORT_CSV = Metrics.timer("clients.exportCSV");
 
-    static {
-        try (Connection conn = Database.getConnection();
-             Statement stmt = conn.createStatement()) {
-            stmt.execute("""
-                        CREATE TABLE IF NOT EXISTS clients (
-                            id INTEGER PRIMARY KEY AUTOINCREMENT,
-                            nom TEXT NOT NULL,
-                            telephone TEXT,
-                            email TEXT
-                        )
-                    """);
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-    }
+    private static final Object LOCK = new Object();
 
     public static List<Client> getAll() {
-        synchronized (LOCK) {
-            List<Client> clients = new ArrayList<>();
-            try (Connection conn = Database.getConnection();
-                 Statement stmt = conn.createStatement();
-                 ResultSet rs = stmt.executeQuery("SELECT * FROM clients ORDER BY nom ASC")) {
-                while (rs.next()) {
-                    clients.add(new Client(
-                            rs.getInt("id"),
-                            rs.getString("nom"),
-                            rs.getString("telephone"),
-                            rs.getString("email")
-                    ));
+        try (Timer.Sample mesure = GET_ALL.start()) {
+            synchronized (LOCK) {
+                List<Client> clients = new ArrayList<>();
+                try (Connection conn = Database.getReadConnection();
+                     Statement stmt = conn.createStatement();
+                     ResultSet rs = stmt.executeQuery("SELECT * FROM clients ORDER BY nom ASC")) {
+                    while (rs.next()) {
+                        clients.add(ClientMapper.ROW.map(rs));
+                    }
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                    mesure.error();
                 }
-            } catch (SQLException e) {
-                e.printStackTrace();
+                return clients;
             }
-            return clients;
         }
     }
 
     public static void insert(Client client) {
-        synchronized (LOCK) {
-            try (Connection conn = Database.getConnection();
-                 PreparedStatement pstmt = conn.prepareStatement("INSERT INTO clients (nom, telephone, email) VALUES (?, ?, ?)")) {
-                pstmt.setString(1, client.getNom());
-                pstmt.setString(2, client.getTelephone());
-                pstmt.setString(3, client.getEmail());
-                pstmt.executeUpdate();
-            } catch (SQLException e) {
-                e.printStackTrace();
+        try (Timer.Sample mesure = INSERT.start()) {
+            synchronized (LOCK) {
+                try (Connection conn = Database.getConnection();
+                     PreparedStatement pstmt = StatementCache.prepare(conn, "INSERT INTO clients (nom, telephone, email) VALUES (?, ?, ?)")) {
+                    pstmt.setString(1, client.getNom());
+                    pstmt.setString(2, client.getTelephone());
+                    pstmt.setString(3, client.getEmail());
+                    pstmt.executeUpdate();
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                    mesure.error();
+                }
             }
         }
     }
 
     // === Nouvelle méthode ===
     public static Client getById(int id) {
-        String sql = "SELECT * FROM clients WHERE id = ?";
-        try (Connection conn = Database.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Timer.Sample mesure = GET_BY_ID.start()) {
+            String sql = "SELECT * FROM clients WHERE id = ?";
+            try (Connection conn = Database.getReadConnection();
+                 PreparedStatement stmt = StatementCache.prepare(conn, sql)) {
 
-            stmt.setInt(1, id);
-            ResultSet rs = stmt.executeQuery();
+                stmt.setInt(1, id);
+                ResultSet rs = stmt.executeQuery();
 
-            if (rs.next()) {
-                Client c = new Client();
-                c.setId(rs.getInt("id"));
-                c.setNom(rs.getString("nom"));
-                c.setEmail(rs.getString("email"));
-                c.setTelephone(rs.getString("telephone"));
-                return c;
+                if (rs.next()) {
+                    return ClientMapper.ROW.map(rs);
+                }
+            } catch (SQLException e) {
+                e.printStackTrace();
+                mesure.error();
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
+            return null;
         }
-        return null;
     }
 
     public static void update(Client client) {
-        synchronized (LOCK) {
-            try (Connection conn = Database.getConnection();
-                 PreparedStatement pstmt = conn.prepareStatement("UPDATE clients SET nom=?, telephone=?, email=? WHERE id=?")) {
-                pstmt.setString(1, client.getNom());
-                pstmt.setString(2, client.getTelephone());
-                pstmt.setString(3, client.getEmail());
-                pstmt.setInt(4, client.getId());
-                pstmt.executeUpdate();
-            } catch (SQLException e) {
-                e.printStackTrace();
+        try (Timer.Sample mesure = UPDATE.start()) {
+            synchronized (LOCK) {
+                try (Connection conn = Database.getConnection();
+                     PreparedStatement pstmt = StatementCache.prepare(conn, "UPDATE clients SET nom=?, telephone=?, email=? WHERE id=?")) {
+                    pstmt.setString(1, client.getNom());
+                    pstmt.setString(2, client.getTelephone());
+                    pstmt.setString(3, client.getEmail());
+                    pstmt.setInt(4, client.getId());
+                    pstmt.executeUpdate();
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                    mesure.error();
+                }
             }
         }
     }
 
     public static void delete(int id) {
-        synchronized (LOCK) {
-            try (Connection conn = Database.getConnection();
-                 PreparedStatement pstmt = conn.prepareStatement("DELETE FROM clients WHERE id=?")) {
-                pstmt.setInt(1, id);
-                pstmt.executeUpdate();
-            } catch (SQLException e) {
-                e.printStackTrace();
+        try (Timer.Sample mesure = DELETE.start()) {
+            synchronized (LOCK) {
+                try (Connection conn = Database.getConnection();
+                     PreparedStatement pstmt = StatementCache.prepare(conn, "DELETE FROM clients WHERE id=?")) {
+                    pstmt.setInt(1, id);
+                    pstmt.executeUpdate();
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                    mesure.error();
+                }
             }
         }
     }
 
-    public static void importCSV(File excelFile) {
-        try {
-            List<List<String>> rows = ExcelExporter.read(excelFile);
-            if (rows == null || rows.size() <= 1) return;
-
-            // En-tête présumé : Nom | Email | Telephone
-            for (int i = 1; i < rows.size(); i++) {
-                List<String> r = rows.get(i);
-                try {
-                    String nom = r.size() > 0 ? r.get(0).trim() : "";
-                    String email = r.size() > 1 ? r.get(1).trim() : "";
-                    String telephone = r.size() > 2 ? r.get(2).trim() : "";
-
-                    // Construction via setters (plus robuste)
-                    life.pharmacy.models.Client c = new life.pharmacy.models.Client();
-                    try { c.setNom(nom); } catch (NoSuchMethodError | Exception ignored) {}
-                    try { c.setEmail(email); } catch (Exception ignored) {}
-                    try { c.setTelephone(telephone); } catch (Exception ignored) {}
+    public static BulkImport.Report importCSV(File excelFile) {
+        return importCSV(excelFile, null);
+    }
 
-                    insert(c); // adapte si ta méthode s'appelle autrement
-                } catch (Exception ex) {
-                    ex.printStackTrace();
-                }
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+    /**
+     * Import en masse (Nom | Email | Telephone) : un client dont l'email existe déjà
+     * (sans tenir compte de la casse) est mis à jour, les autres sont insérés.
+     */
+    public static BulkImport.Report importCSV(File excelFile, ExcelImporter.ProgressListener progress) {
+        return IMPORT_CSV.time(() -> new BulkImport<Client>(ClientMapper::fromRow,
+                "INSERT INTO clients (nom, telephone, email) VALUES (?, ?, ?)",
+                (ps, c) -> {
+                    ps.setString(1, c.getNom());
+                    ps.setString(2, c.getTelephone());
+                    ps.setString(3, c.getEmail());
+                })
+                .upsert(Client::getEmail,
+                        "UPDATE clients SET nom=?, telephone=? WHERE email = ? COLLATE NOCASE",
+                        (ps, c) -> {
+                            ps.setString(1, c.getNom());
+                            ps.setString(2, c.getTelephone());
+                            ps.setString(3, c.getEmail());
+                        })
+                .run(excelFile, progress));
     }
 
     public static void exportCSV(File excelFile) {
-        try {
-            List<List<String>> rows = new ArrayList<>();
-            rows.add(Arrays.asList("Nom", "Email", "Telephone"));
-            for (life.pharmacy.models.Client c : getAll()) {
-                rows.add(Arrays.asList(
-                        safe(c.getNom()),
-                        safe(c.getEmail()),
-                        safe(c.getTelephone())
-                ));
+        try (Timer.Sample mesure = EXPORT_CSV.start()) {
+            try (Connection conn = Database.getReadConnection()) {
+                ExcelExporter.exportQuery(conn, "SELECT * FROM clients ORDER BY nom ASC", ClientMapper.HEADER, rs -> ClientMapper.toRow(ClientMapper.ROW.map(rs)), excelFile);
+            } catch (Exception e) {
+                e.printStackTrace();
+                mesure.error();
             }
-            ExcelExporter.write(rows, excelFile);
-        } catch (Exception e) {
-            e.printStackTrace();
         }
     }
-
-    private static String safe(String s) { return s == null ? "" : s; }
-
-
-
-
 }
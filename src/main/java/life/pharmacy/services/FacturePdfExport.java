@@ -0,0 +1,362 @@
+package life.pharmacy.services;
+
+import life.pharmacy.models.Facture;
+import life.pharmacy.utils.FacturePdfRenderer;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.multipdf.PDFMergerUtility;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Export PDF en lot d'une période ou d'une liste de factures (fin de mois pour la comptabilité).
+ * <p>
+ * Un thread lit les factures par pages (en-têtes seulement) et confie chacune à un pool de
+ * rendu (un thread par cœur) qui charge ses lignes et la dessine avec {@link FacturePdfRenderer}.
+ * Les rendus sont repris dans l'ordre de lecture : un fichier par facture dans un dossier, ou
+ * un document unique assemblé au fil de l'eau. La file entre lecture et rendu est bornée :
+ * seules quelques dizaines de factures sont en mémoire à la fois, quelle que soit la période.
+ * <p>
+ * {@link #cancel()} arrête la lecture et les rendus en attente ; les fichiers déjà écrits
+ * restent, le document unique n'est pas écrit.
+ */
+public class FacturePdfExport {
+
+    // threads de rendu, réglable par -Dpharmacy.pdf.threads=...
+    public static final int DEFAULT_THREADS = Integer.getInteger("pharmacy.pdf.threads",
+            Runtime.getRuntime().availableProcessors());
+
+    // factures lues par requête
+    private static final int PAGE_SIZE = 200;
+
+    // mémoire vive du document unique avant débordement dans un fichier temporaire
+    private static final long MERGE_MAIN_MEMORY = 32L * 1024 * 1024;
+
+    private static final int MAX_ERRORS = 1_000;
+
+    /**
+     * Avancement : factures traitées (écrites ou en échec) sur le total attendu.
+     * Appelé depuis le thread de l'export.
+     */
+    @FunctionalInterface
+    public interface ProgressListener {
+        void progress(int done, int total);
+    }
+
+    private final FactureService.Filter filter;
+    private final List<Integer> ids;
+
+    private FacturePdfRenderer.Format format = FacturePdfRenderer.Format.A4;
+    private int threads = DEFAULT_THREADS;
+
+    private final AtomicBoolean cancelled = new AtomicBoolean();
+
+    private FacturePdfExport(FactureService.Filter filter, List<Integer> ids) {
+        this.filter = filter;
+        this.ids = ids;
+    }
+
+    /**
+     * Factures du filtre de l'historique (client, période), de la plus récente à la plus ancienne.
+     */
+    public static FacturePdfExport of(FactureService.Filter filter) {
+        return new FacturePdfExport(filter, null);
+    }
+
+    /**
+     * Factures datées de from à to inclus (null = pas de borne).
+     */
+    public static FacturePdfExport between(LocalDate from, LocalDate to) {
+        return of(new FactureService.Filter(null, from, to));
+    }
+
+    /**
+     * Factures d'ids donnés, dans l'ordre de la liste.
+     */
+    public static FacturePdfExport ofIds(List<Integer> ids) {
+        return new FacturePdfExport(null, new ArrayList<>(ids));
+    }
+
+    public FacturePdfExport format(FacturePdfRenderer.Format format) {
+        this.format = format;
+        return this;
+    }
+
+    public FacturePdfExport threads(int threads) {
+        this.threads = Math.max(1, threads);
+        return this;
+    }
+
+    /**
+     * Demande l'arrêt de l'export en cours ; peut être appelé depuis n'importe quel thread.
+     */
+    public void cancel() {
+        cancelled.set(true);
+    }
+
+    public boolean isCancelled() {
+        return cancelled.get();
+    }
+
+    /**
+     * Un fichier facture_&lt;id&gt;.pdf par facture dans dir (créé au besoin).
+     */
+    public Report toDirectory(File dir, ProgressListener progress) {
+        Report report = new Report();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            report.fail(0, "Dossier inaccessible : " + dir);
+            return report;
+        }
+        run(f -> {
+            FacturePdfRenderer.render(f, format, new File(dir, "facture_" + f.getId() + ".pdf"));
+            return null;
+        }, part -> { }, progress, report);
+        return report;
+    }
+
+    /**
+     * Toutes les factures dans un seul document, dans l'ordre de lecture.
+     * Rien n'est écrit si l'export est annulé ou si aucune facture n'a pu être rendue.
+     */
+    public Report toFile(File file, ProgressListener progress) {
+        Report report = new Report();
+        PDFMergerUtility merger = new PDFMergerUtility();
+        try (PDDocument merged = new PDDocument(MemoryUsageSetting.setupMixed(MERGE_MAIN_MEMORY))) {
+            PDImageXObject[] logo = new PDImageXObject[1];
+            run(f -> {
+                ByteArrayOutputStream out = new ByteArrayOutputStream(64 * 1024);
+                FacturePdfRenderer.render(f, format, out);
+                return out.toByteArray();
+            }, part -> {
+                // le contenu est copié dans le document unique : la facture peut être libérée
+                int first = merged.getNumberOfPages();
+                try (PDDocument doc = PDDocument.load(part)) {
+                    merger.appendDocument(merged, doc);
+                }
+                for (int i = first; i < merged.getNumberOfPages(); i++) {
+                    logo[0] = shareLogo(merged.getPage(i).getResources(), logo[0]);
+                }
+            }, progress, report);
+
+            if (!cancelled.get() && report.written > 0) {
+                merged.save(file);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            report.fail(0, "Écriture de " + file.getName() + " impossible : " + e.getMessage());
+        }
+        return report;
+    }
+
+    /**
+     * Chaque facture embarque sa copie du logo (l'essentiel de son poids) : dans le document
+     * unique, toutes les pages pointent vers la première et les copies suivantes sont libérées.
+     * Retourne l'image partagée.
+     */
+    private static PDImageXObject shareLogo(PDResources resources, PDImageXObject shared) throws IOException {
+        if (resources == null) return shared;
+        for (COSName name : resources.getXObjectNames()) {
+            if (!resources.isImageXObject(name)) continue;
+            PDImageXObject img = (PDImageXObject) resources.getXObject(name);
+            if (shared == null) return img;
+            if (img.getCOSObject() == shared.getCOSObject()) continue;
+            resources.put(name, shared);
+            COSStream mask = img.getCOSObject().getCOSStream(COSName.SMASK);
+            if (mask != null) mask.close();
+            img.getCOSObject().close();
+        }
+        return shared;
+    }
+
+    // --------------------------------------------------------------------------------------
+
+    @FunctionalInterface
+    private interface Renderer<R> {
+        R render(Facture f) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface Sink<R> {
+        void accept(R part) throws IOException;
+    }
+
+    // une facture confiée au pool, reprise dans l'ordre de lecture ; facture == null : fin de la lecture
+    private record Job<R>(Facture facture, Future<R> result) {
+    }
+
+    private <R> void run(Renderer<R> renderer, Sink<R> sink, ProgressListener progress, Report report) {
+        long start = System.nanoTime();
+        int total = ids != null ? ids.size() : FactureService.count(filter);
+        report.total = total;
+
+        // au plus 2 factures par thread en attente ou en cours de rendu, en plus de celle reprise
+        BlockingQueue<Job<R>> queue = new ArrayBlockingQueue<>(2 * threads);
+        ExecutorService pool = Executors.newFixedThreadPool(threads, daemonThreads("factures-pdf"));
+        Thread reader = new Thread(() -> read(renderer, pool, queue), "factures-pdf-lecture");
+        reader.setDaemon(true);
+        reader.start();
+
+        int done = 0;
+        try {
+            while (true) {
+                Job<R> job = queue.take();
+                if (job.facture() == null) break;
+                if (cancelled.get()) {
+                    // rendus non commencés abandonnés ; on vide la file pour débloquer la lecture
+                    job.result().cancel(false);
+                    continue;
+                }
+                int id = job.facture().getId();
+                try {
+                    sink.accept(job.result().get());
+                    report.written++;
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    cause.printStackTrace();
+                    report.fail(id, cause.getMessage() != null ? cause.getMessage() : cause.toString());
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    report.fail(id, e.getMessage());
+                }
+                done++;
+                if (progress != null) progress.progress(done, Math.max(total, done));
+            }
+        } catch (InterruptedException e) {
+            cancelled.set(true);
+            Thread.currentThread().interrupt();
+        } finally {
+            pool.shutdownNow();
+            if (cancelled.get()) {
+                // reprise interrompue : la lecture ne doit pas rester bloquée sur une file pleine
+                reader.interrupt();
+                queue.clear();
+            }
+        }
+        report.cancelled = cancelled.get();
+        report.elapsedNanos = System.nanoTime() - start;
+    }
+
+    // lecture paginée des en-têtes ; s'arrête dès l'annulation et termine toujours par la marque de fin
+    private <R> void read(Renderer<R> renderer, ExecutorService pool, BlockingQueue<Job<R>> queue) {
+        try {
+            if (ids != null) {
+                for (int i = 0; i < ids.size() && !cancelled.get(); i += PAGE_SIZE) {
+                    List<Facture> page = FactureService.getByIds(ids.subList(i, Math.min(ids.size(), i + PAGE_SIZE)));
+                    submit(page, renderer, pool, queue);
+                }
+            } else {
+                FactureService.Cursor after = null;
+                do {
+                    FactureService.Page page = FactureService.getPage(filter, after, PAGE_SIZE);
+                    submit(page.getItems(), renderer, pool, queue);
+                    after = page.getNext();
+                } while (after != null && !cancelled.get());
+            }
+        } catch (InterruptedException e) {
+            cancelled.set(true);
+        } finally {
+            putEnd(queue);
+        }
+    }
+
+    private <R> void submit(List<Facture> page, Renderer<R> renderer, ExecutorService pool,
+                            BlockingQueue<Job<R>> queue) throws InterruptedException {
+        for (Facture f : page) {
+            if (cancelled.get()) return;
+            Future<R> result = pool.submit(() -> renderer.render(FactureService.loadDetails(f)));
+            queue.put(new Job<>(f, result));
+        }
+    }
+
+    private static <R> void putEnd(BlockingQueue<Job<R>> queue) {
+        Job<R> end = new Job<>(null, CompletableFuture.completedFuture(null));
+        while (true) {
+            try {
+                queue.put(end);
+                return;
+            } catch (InterruptedException ignored) {
+                // la reprise vide toujours la file : la place finit par se libérer
+            }
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        AtomicInteger n = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, name + "-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    /**
+     * Facture non exportée et raison (id 0 : erreur générale de l'export).
+     */
+    public static class FactureError {
+        private final int factureId;
+        private final String message;
+
+        public FactureError(int factureId, String message) {
+            this.factureId = factureId;
+            this.message = message;
+        }
+
+        public int getFactureId() { return factureId; }
+        public String getMessage() { return message; }
+
+        @Override
+        public String toString() {
+            return (factureId == 0 ? "Export" : "Facture #" + factureId) + " : " + message;
+        }
+    }
+
+    public static class Report {
+        private int total;
+        private int written;
+        private int failed;
+        private boolean cancelled;
+        private long elapsedNanos;
+        private final List<FactureError> errors = new ArrayList<>();
+
+        void fail(int factureId, String message) {
+            failed++;
+            if (errors.size() < MAX_ERRORS) errors.add(new FactureError(factureId, message));
+        }
+
+        public int getTotal() { return total; }
+        public int getWritten() { return written; }
+        public int getFailed() { return failed; }
+        public boolean isCancelled() { return cancelled; }
+        public long getElapsedNanos() { return elapsedNanos; }
+        public List<FactureError> getErrors() { return errors; }
+
+        public double getFacturesPerSecond() {
+            return elapsedNanos == 0 ? 0 : written * 1e9 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d/%d facture(s) exportée(s), %d en échec%s (%.1f factures/s)",
+                    written, total, failed, cancelled ? ", export annulé" : "", getFacturesPerSecond());
+        }
+    }
+}
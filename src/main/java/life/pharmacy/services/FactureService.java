@@ -1,6 +1,12 @@
 package life.pharmacy.services;
 
+import life.pharmacy.analytics.SalesAnalytics;
 import life.pharmacy.config.Database;
+import life.pharmacy.config.StatementCache;
+import life.pharmacy.mappers.Dates;
+import life.pharmacy.mappers.FactureMapper;
+import life.pharmacy.metrics.Metrics;
+import life.pharmacy.metrics.Timer;
 import life.pharmacy.models.Client;
 import life.pharmacy.models.DetailFacture;
 import life.pharmacy.models.Facture;
@@ -10,119 +16,313 @@ import life.pharmacy.utils.ExcelImporter;
 
 import java.io.File;
 import java.sql.*;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 public class FactureService {
 
-    static {
-        // Création des tables Factures et Détails
-        try (Connection conn = Database.getConnection();
-             Statement stmt = conn.createStatement()) {
-
-            stmt.execute("""
-                        CREATE TABLE IF NOT EXISTS factures (
-                            id INTEGER PRIMARY KEY AUTOINCREMENT,
-                            date TEXT NOT NULL,
-                            client_id INTEGER,
-                            montant_ht REAL NOT NULL,
-                            montant_tva REAL NOT NULL,
-                            montant_ttc REAL NOT NULL,
-                            FOREIGN KEY(client_id) REFERENCES clients(id)
-                        )
-                    """);
-
-            stmt.execute("""
-                        CREATE TABLE IF NOT EXISTS details_facture (
-                            id INTEGER PRIMARY KEY AUTOINCREMENT,
-                            facture_id INTEGER NOT NULL,
-                            produit_id INTEGER NOT NULL,
-                            quantite INTEGER NOT NULL,
-                            prix_unitaire REAL NOT NULL,
-                            FOREIGN KEY(facture_id) REFERENCES factures(id),
-                            FOREIGN KEY(produit_id) REFERENCES produits(id)
-                        )
-                    """);
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-    }
+    private static final Timer GET_ALL = Metrics.timer("factures.getAll");
+    private static final Timer GET_DETAILS_BY_FACTURE_ID = Metrics.timer("factures.getDetailsByFactureId");
+    private static final Timer GET_PAGE = Metrics.timer("factures.getPage");
+    private static final Timer COUNT = Metrics.timer("factures.count");
+    private static final Timer GET_BY_IDS = Metrics.timer("factures.getByIds");
+    private static final Timer LOAD_DETAILS = Metrics.timer("factures.loadDetails");
+    private static final Timer INSERT = Metrics.timer("factures.insert");
+    private static final Timer SUBMIT = Metrics.timer("factures.submit");
+    private static final Timer WRITE = Metrics.timer("factures.write");
+    private static final Timer DELETE_BY_ID_IF_ALLOWED = Metrics.timer("factures.deleteByIdIfAllowed");
+    private static final Timer IMPORT_CSV = Metrics.timer("factures.importCSV");
+    private static final Timer EXPORT_CSV = Metrics.timer("factures.exportCSV");
+
+    /**
+     * Charge toutes les factures avec leur client et leurs lignes en deux requêtes
+     * (factures + clients en jointure, puis toutes les lignes triées par facture),
+     * au lieu d'une requête clients et d'une requête détails par facture.
+     */
+    private static final String SELECT_FACTURES = """
+                SELECT f.id, f.date, f.date_epoch_ms, f.client_id, f.montant_ht, f.montant_tva, f.montant_ttc, f.mode_paiement, f.utilisateur_id,
+                       c.nom AS client_nom, c.telephone AS client_telephone, c.email AS client_email
+                FROM factures f
+                LEFT JOIN clients c ON c.id = f.client_id
+            """;
 
     public static List<Facture> getAll() {
-        List<Facture> factures = new ArrayList<>();
-        try (Connection conn = Database.getConnection();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery("SELECT * FROM factures ORDER BY date DESC")) {
-            while (rs.next()) {
-                Client client = null;
-                if (rs.getInt("client_id") != 0) {
-                    client = ClientService.getAll().stream()
-                            .filter(c -> {
-                                try {
-                                    return c.getId() == rs.getInt("client_id");
-                                } catch (SQLException e) {
-                                    throw new RuntimeException(e);
-                                }
-                            })
-                            .findFirst().orElse(null);
+        try (Timer.Sample mesure = GET_ALL.start()) {
+            List<Facture> factures = new ArrayList<>();
+            Map<Integer, Facture> byId = new HashMap<>();
+            Map<Integer, Client> clients = new HashMap<>();
+
+            String sqlFactures = SELECT_FACTURES + " ORDER BY f.date_epoch_ms DESC, f.id DESC";
+            String sqlDetails = """
+                        SELECT df.id, df.facture_id, df.produit_id, COALESCE(df.produit_nom, p.nom) AS produit_nom, df.quantite, df.prix_unitaire
+                        FROM details_facture df
+                        LEFT JOIN produits p ON df.produit_id = p.id
+                        ORDER BY df.facture_id, df.id
+                    """;
+
+            try (Connection conn = Database.getReadConnection();
+                 Statement stmt = conn.createStatement()) {
+
+                try (ResultSet rs = stmt.executeQuery(sqlFactures)) {
+                    while (rs.next()) {
+                        Facture f = FactureMapper.map(rs, clients);
+                        f.setDetails(new ArrayList<>());
+                        factures.add(f);
+                        byId.put(f.getId(), f);
+                    }
                 }
 
-                Facture f = new Facture(
-                        rs.getInt("id"),
-                        LocalDateTime.parse(rs.getString("date")),
-                        client,
-                        rs.getDouble("montant_ht"),
-                        rs.getDouble("montant_tva"),
-                        rs.getDouble("montant_ttc")
-                );
-                f.setDetails(getDetailsByFactureId(f.getId()));
-                factures.add(f);
+                try (ResultSet rs = stmt.executeQuery(sqlDetails)) {
+                    Facture current = null;
+                    while (rs.next()) {
+                        int factureId = rs.getInt("facture_id");
+                        if (current == null || current.getId() != factureId) {
+                            current = byId.get(factureId);
+                        }
+                        if (current != null) {
+                            current.getDetails().add(FactureMapper.DETAIL.map(rs));
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                e.printStackTrace();
+                mesure.error();
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
+            return factures;
         }
-        return factures;
     }
 
     // life.pharmacy.services.FactureService (extrait)
     public static List<DetailFacture> getDetailsByFactureId(int factureId) {
-        List<DetailFacture> list = new ArrayList<>();
-        String sql = """
-                    SELECT df.id, df.produit_id, p.nom AS produit_nom, df.quantite, df.prix_unitaire
-                    FROM details_facture df
-                    JOIN produits p ON df.produit_id = p.id
-                    WHERE df.facture_id = ?
-                """;
-
-        try (Connection conn = Database.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setInt(1, factureId);
-            try (ResultSet rs = stmt.executeQuery()) {
-                while (rs.next()) {
-                    Produit produit = new Produit(
-                            rs.getInt("produit_id"),
-                            rs.getString("produit_nom"),
-                            null, // code_barre si pas dans ce SELECT
-                            rs.getDouble("prix_unitaire"),
-                            rs.getInt("quantite"),
-                            false // TVA : à compléter si nécessaire
-                    );
-                    DetailFacture detail = new DetailFacture(
-                            rs.getInt("id"),
-                            factureId,
-                            produit,
-                            rs.getInt("quantite"),
-                            rs.getDouble("prix_unitaire")
-                    );
-                    list.add(detail);
+        try (Timer.Sample mesure = GET_DETAILS_BY_FACTURE_ID.start()) {
+            List<DetailFacture> list = new ArrayList<>();
+            String sql = """
+                        SELECT df.id, df.facture_id, df.produit_id, COALESCE(df.produit_nom, p.nom) AS produit_nom, df.quantite, df.prix_unitaire
+                        FROM details_facture df
+                        LEFT JOIN produits p ON df.produit_id = p.id
+                        WHERE df.facture_id = ?
+                        ORDER BY df.id
+                    """;
+
+            try (Connection conn = Database.getReadConnection();
+                 PreparedStatement stmt = StatementCache.prepare(conn, sql)) {
+                stmt.setInt(1, factureId);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        list.add(FactureMapper.DETAIL.map(rs));
+                    }
                 }
+            } catch (SQLException e) {
+                e.printStackTrace();
+                mesure.error();
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
+            return list;
+        }
+    }
+
+    /**
+     * Page de l'historique des factures, de la plus récente à la plus ancienne (pagination par clé).
+     * Les lignes ne sont pas chargées : voir {@link #loadDetails(Facture)}.
+     *
+     * @param filter filtres optionnels (client, période) ; null = aucun filtre
+     * @param after  curseur renvoyé par la page précédente ; null = première page
+     * @param limit  nombre maximum de factures
+     */
+    public static Page getPage(Filter filter, Cursor after, int limit) {
+        try (Timer.Sample mesure = GET_PAGE.start()) {
+            StringBuilder sql = new StringBuilder(SELECT_FACTURES).append(" WHERE 1=1");
+            List<Object> params = new ArrayList<>();
+            appendFilter(filter, sql, params);
+            if (after != null) {
+                sql.append(" AND (f.date_epoch_ms < ? OR (f.date_epoch_ms = ? AND f.id < ?))");
+                params.add(after.getDate());
+                params.add(after.getDate());
+                params.add(after.getId());
+            }
+            sql.append(" ORDER BY f.date_epoch_ms DESC, f.id DESC LIMIT ?");
+            params.add(limit);
+
+            List<Facture> items = new ArrayList<>();
+            Cursor next = null;
+            Map<Integer, Client> clients = new HashMap<>();
+            try (Connection conn = Database.getReadConnection();
+                 PreparedStatement ps = conn.prepareStatement(sql.toString())) {
+                for (int i = 0; i < params.size(); i++) {
+                    ps.setObject(i + 1, params.get(i));
+                }
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        items.add(FactureMapper.map(rs, clients));
+                        next = new Cursor(rs.getLong("date_epoch_ms"), rs.getInt("id"));
+                    }
+                }
+            } catch (SQLException e) {
+                e.printStackTrace();
+                mesure.error();
+            }
+            return new Page(items, items.size() < limit ? null : next);
+        }
+    }
+
+    /**
+     * Nombre de factures correspondant au filtre (null = toutes).
+     */
+    public static int count(Filter filter) {
+        try (Timer.Sample mesure = COUNT.start()) {
+            StringBuilder sql = new StringBuilder("SELECT COUNT(*) FROM factures f WHERE 1=1");
+            List<Object> params = new ArrayList<>();
+            appendFilter(filter, sql, params);
+
+            try (Connection conn = Database.getReadConnection();
+                 PreparedStatement ps = conn.prepareStatement(sql.toString())) {
+                for (int i = 0; i < params.size(); i++) {
+                    ps.setObject(i + 1, params.get(i));
+                }
+                try (ResultSet rs = ps.executeQuery()) {
+                    return rs.next() ? rs.getInt(1) : 0;
+                }
+            } catch (SQLException e) {
+                e.printStackTrace();
+                mesure.error();
+            }
+            return 0;
+        }
+    }
+
+    private static void appendFilter(Filter filter, StringBuilder sql, List<Object> params) {
+        if (filter == null) return;
+        if (filter.getClientId() != null) {
+            sql.append(" AND f.client_id = ?");
+            params.add(filter.getClientId());
+        }
+        if (filter.getFrom() != null) {
+            sql.append(" AND f.date_epoch_ms >= ?");
+            params.add(Dates.toMillis(filter.getFrom()));
+        }
+        if (filter.getTo() != null) {
+            // borne exclusive : le lendemain à 00:00
+            sql.append(" AND f.date_epoch_ms < ?");
+            params.add(Dates.toMillis(filter.getTo().plusDays(1)));
+        }
+    }
+
+    /**
+     * En-têtes des factures d'ids donnés, dans l'ordre de la liste (ids inconnus ignorés).
+     * Les lignes ne sont pas chargées : voir {@link #loadDetails(Facture)}.
+     */
+    public static List<Facture> getByIds(List<Integer> ids) {
+        try (Timer.Sample mesure = GET_BY_IDS.start()) {
+            List<Facture> out = new ArrayList<>(ids.size());
+            if (ids.isEmpty()) return out;
+            Map<Integer, Facture> byId = new HashMap<>();
+            Map<Integer, Client> clients = new HashMap<>();
+            String sql = SELECT_FACTURES + " WHERE f.id IN (" + "?,".repeat(ids.size() - 1) + "?)";
+
+            try (Connection conn = Database.getReadConnection();
+                 PreparedStatement ps = conn.prepareStatement(sql)) {
+                for (int i = 0; i < ids.size(); i++) {
+                    ps.setInt(i + 1, ids.get(i));
+                }
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        Facture f = FactureMapper.map(rs, clients);
+                        byId.put(f.getId(), f);
+                    }
+                }
+            } catch (SQLException e) {
+                e.printStackTrace();
+                mesure.error();
+            }
+            for (Integer id : ids) {
+                Facture f = byId.get(id);
+                if (f != null) out.add(f);
+            }
+            return out;
+        }
+    }
+
+    /**
+     * Charge les lignes d'une facture si elles ne l'ont pas encore été (chargement à l'ouverture).
+     */
+    public static Facture loadDetails(Facture facture) {
+        return LOAD_DETAILS.time(() -> {
+            if (facture != null && facture.getDetails() == null) {
+                facture.setDetails(getDetailsByFactureId(facture.getId()));
+            }
+            return facture;
+        });
+    }
+
+    // Position dans l'historique : (date_epoch_ms, id) de la dernière facture lue
+    public static class Cursor {
+        private final long date;
+        private final int id;
+
+        public Cursor(long date, int id) {
+            this.date = date;
+            this.id = id;
+        }
+
+        public long getDate() {
+            return date;
+        }
+
+        public int getId() {
+            return id;
+        }
+    }
+
+    // Filtres optionnels de l'historique (null = pas de filtre), bornes de dates incluses
+    public static class Filter {
+        private final Integer clientId;
+        private final LocalDate from;
+        private final LocalDate to;
+
+        public Filter(Integer clientId, LocalDate from, LocalDate to) {
+            this.clientId = clientId;
+            this.from = from;
+            this.to = to;
+        }
+
+        public Integer getClientId() {
+            return clientId;
+        }
+
+        public LocalDate getFrom() {
+            return from;
+        }
+
+        public LocalDate getTo() {
+            return to;
+        }
+    }
+
+    // Une page de factures + le curseur de la suivante (null s'il n'y en a plus)
+    public static class Page {
+        private final List<Facture> items;
+        private final Cursor next;
+
+        public Page(List<Facture> items, Cursor next) {
+            this.items = items;
+            this.next = next;
+        }
+
+        public List<Facture> getItems() {
+            return items;
+        }
+
+        public Cursor getNext() {
+            return next;
+        }
+
+        public boolean hasNext() {
+            return next != null;
         }
-        return list;
     }
 
     /**
@@ -219,145 +419,229 @@ public class FactureService {
 
     // life.pharmacy.services.FactureService.insert (extrait modifié)
     public static void insert(Facture facture) {
-        try (Connection conn = Database.getConnection()) {
-            conn.setAutoCommit(false);
+        try (Timer.Sample mesure = INSERT.start()) {
+            try {
+                StockReservations.checkout(0, facture);
+            } catch (IllegalStateException e) {
+                e.printStackTrace();
+                mesure.error();
+                return;
+            }
+            try {
+                WriteCoordinator.execute(conn -> {
+                    write(conn, facture);
+                    return facture;
+                }, committed -> settleStock(facture, committed));
+            } catch (SQLException | RuntimeException e) {
+                e.printStackTrace();
+                mesure.error();
+            }
+        }
+    }
+
+    /**
+     * Enregistrement asynchrone d'une vente (caisse) : les réservations du panier sont converties
+     * en sortie de stock (StockLedger), puis la facture est validée par le WriteCoordinator,
+     * éventuellement dans la même transaction que d'autres ventes. En cas d'échec, le stock est rendu.
+     * Le future échoue tout de suite si le stock ne couvre pas la facture.
+     */
+    public static CompletableFuture<Facture> submit(Facture facture, long panierId) {
+        // mesuré jusqu'à la validation (commit) de la facture, pas seulement jusqu'à sa mise en file
+        Timer.Sample mesure = SUBMIT.start();
+        try {
+            StockReservations.checkout(panierId, facture);
+        } catch (IllegalStateException e) {
+            mesure.error();
+            mesure.close();
+            return CompletableFuture.failedFuture(e);
+        }
+        return WriteCoordinator.submit(conn -> {
+            write(conn, facture);
+            return facture;
+        }, committed -> settleStock(facture, committed)).whenComplete((saved, ex) -> {
+            if (ex != null) mesure.error();
+            mesure.close();
+        });
+    }
 
+    /**
+     * Écrit la facture, ses lignes et les sorties de stock sur la connexion fournie,
+     * sans valider la transaction (c'est à l'appelant de faire commit / rollback).
+     */
+    public static void write(Connection conn, Facture facture) throws SQLException {
+        Timer.Sample mesure = WRITE.start();
+        try {
             // Insertion facture
-            PreparedStatement pstmt = conn.prepareStatement(
-                    "INSERT INTO factures (date, client_id, montant_ht, montant_tva, montant_ttc) VALUES (?, ?, ?, ?, ?)",
+            try (PreparedStatement pstmt = StatementCache.prepare(conn,
+                    "INSERT INTO factures (date, date_epoch_ms, client_id, montant_ht, montant_tva, montant_ttc, mode_paiement, utilisateur_id) VALUES (?, ?, ?, ?, ?, ?, ?, ?)",
                     Statement.RETURN_GENERATED_KEYS
-            );
-            pstmt.setString(1, facture.getDate().toString());
-            if (facture.getClient() != null) pstmt.setInt(2, facture.getClient().getId());
-            else pstmt.setNull(2, Types.INTEGER);
-            pstmt.setDouble(3, facture.getMontantHT());
-            pstmt.setDouble(4, facture.getMontantTVA());
-            pstmt.setDouble(5, facture.getMontantTTC());
-            pstmt.executeUpdate();
-
-            ResultSet rs = pstmt.getGeneratedKeys();
-            if (rs.next()) facture.setId(rs.getInt(1));
+            )) {
+                pstmt.setString(1, facture.getDate().toString());
+                pstmt.setLong(2, Dates.toMillis(facture.getDate()));
+                if (facture.getClient() != null) pstmt.setInt(3, facture.getClient().getId());
+                else pstmt.setNull(3, Types.INTEGER);
+                pstmt.setDouble(4, facture.getMontantHT());
+                pstmt.setDouble(5, facture.getMontantTVA());
+                pstmt.setDouble(6, facture.getMontantTTC());
+                pstmt.setString(7, facture.getModePaiement());
+                if (facture.getUtilisateurId() != null) pstmt.setInt(8, facture.getUtilisateurId());
+                else pstmt.setNull(8, Types.INTEGER);
+                pstmt.executeUpdate();
+
+                try (ResultSet rs = pstmt.getGeneratedKeys()) {
+                    if (rs.next()) facture.setId(rs.getInt(1));
+                }
+            }
+            VentesRollup.add(conn, facture);
 
             // Insertion des détails (avec produit_nom) + mise à jour stock
-            PreparedStatement pstmtDetail = conn.prepareStatement(
+            try (PreparedStatement pstmtDetail = StatementCache.prepare(conn,
                     "INSERT INTO details_facture (facture_id, produit_id, produit_nom, quantite, prix_unitaire) VALUES (?, ?, ?, ?, ?)"
             );
-            PreparedStatement pstmtUpdateStock = conn.prepareStatement(
-                    "UPDATE produits SET quantite = quantite - ? WHERE id = ?"
-            );
-
-            for (DetailFacture d : facture.getDetails()) {
-                Produit p = d.getProduit();
-                String produitNomSnapshot = (p != null && p.getNom() != null) ? p.getNom() : d.getProduitNom();
-
-                pstmtDetail.setInt(1, facture.getId());
-                pstmtDetail.setInt(2, p != null ? p.getId() : 0);
-                pstmtDetail.setString(3, produitNomSnapshot);
-                pstmtDetail.setInt(4, d.getQuantite());
-                pstmtDetail.setDouble(5, d.getPrixUnitaire());
-                pstmtDetail.addBatch();
-
-                // Mise à jour stock (si produit existant)
-                if (p != null) {
-                    pstmtUpdateStock.setInt(1, d.getQuantite());
-                    pstmtUpdateStock.setInt(2, p.getId());
-                    pstmtUpdateStock.addBatch();
+                 // sortie conditionnelle : jamais de stock négatif, même face à une autre caisse
+                 PreparedStatement pstmtUpdateStock = StatementCache.prepare(conn,
+                         "UPDATE produits SET quantite = quantite - ? WHERE id = ? AND quantite >= ?"
+                 )) {
+
+                List<Produit> sortis = new ArrayList<>();
+
+                for (DetailFacture d : facture.getDetails()) {
+                    Produit p = d.getProduit();
+                    String produitNomSnapshot = (p != null && p.getNom() != null) ? p.getNom() : d.getProduitNom();
+
+                    pstmtDetail.setInt(1, facture.getId());
+                    pstmtDetail.setInt(2, p != null ? p.getId() : 0);
+                    pstmtDetail.setString(3, produitNomSnapshot);
+                    pstmtDetail.setInt(4, d.getQuantite());
+                    pstmtDetail.setDouble(5, d.getPrixUnitaire());
+                    pstmtDetail.addBatch();
+
+                    // Mise à jour stock (si produit existant)
+                    if (p != null) {
+                        pstmtUpdateStock.setInt(1, d.getQuantite());
+                        pstmtUpdateStock.setInt(2, p.getId());
+                        pstmtUpdateStock.setInt(3, d.getQuantite());
+                        pstmtUpdateStock.addBatch();
+                        sortis.add(p);
+                    }
+                }
+                pstmtDetail.executeBatch();
+                int[] counts = pstmtUpdateStock.executeBatch();
+                for (int i = 0; i < counts.length; i++) {
+                    if (counts[i] == 0) {
+                        // un autre poste a vendu ce stock : le registre est relu une fois le lot validé
+                        StockLedger.refreshSoon(sortis.get(i).getId());
+                        throw new SQLException("Stock insuffisant en base pour " + sortis.get(i).getNom());
+                    }
                 }
             }
-            pstmtDetail.executeBatch();
-            pstmtUpdateStock.executeBatch();
-
-            conn.commit();
         } catch (SQLException e) {
-            e.printStackTrace();
+            // la transaction de l'appelant sera annulée
+            mesure.error();
+            throw e;
+        } finally {
+            mesure.close();
         }
     }
 
-    // life.pharmacy.services.FactureService (extrait)
-    public static boolean deleteByIdIfAllowed(int factureId, String role) {
-        if (role == null || !role.equalsIgnoreCase("admin")) {
-            // Seuls les admin peuvent supprimer
-            return false;
+    // vente validée : la sortie est en base ; sinon la quantité revient au stock.
+    // Suite du WriteCoordinator : appelée sous la connexion d'écriture, juste après le commit
+    private static void settleStock(Facture facture, boolean committed) {
+        for (DetailFacture d : facture.getDetails()) {
+            if (d.getProduit() == null) continue;
+            if (committed) StockLedger.committed(d.getProduit().getId(), d.getQuantite());
+            else StockLedger.cancelled(d.getProduit().getId(), d.getQuantite());
         }
+    }
 
-        String deleteDetails = "DELETE FROM details_facture WHERE facture_id = ?";
-        String deleteFacture = "DELETE FROM factures WHERE id = ?";
+    // life.pharmacy.services.FactureService (extrait)
+    public static boolean deleteByIdIfAllowed(int factureId, String role) {
+        try (Timer.Sample mesure = DELETE_BY_ID_IF_ALLOWED.start()) {
+            if (role == null || !role.equalsIgnoreCase("admin")) {
+                // Seuls les admin peuvent supprimer
+                return false;
+            }
 
-        try (Connection conn = Database.getConnection()) {
-            conn.setAutoCommit(false);
+            String deleteDetails = "DELETE FROM details_facture WHERE facture_id = ?";
+            String deleteFacture = "DELETE FROM factures WHERE id = ?";
 
-            try (PreparedStatement ps1 = conn.prepareStatement(deleteDetails);
-                 PreparedStatement ps2 = conn.prepareStatement(deleteFacture)) {
+            try {
+                WriteCoordinator.execute(conn -> {
+                    // cumuls du jour retirés dans la même transaction que la facture
+                    VentesRollup.remove(conn, factureId);
 
-                ps1.setInt(1, factureId);
-                ps1.executeUpdate();
+                    try (PreparedStatement ps1 = StatementCache.prepare(conn, deleteDetails);
+                         PreparedStatement ps2 = StatementCache.prepare(conn, deleteFacture)) {
 
-                ps2.setInt(1, factureId);
-                ps2.executeUpdate();
+                        ps1.setInt(1, factureId);
+                        ps1.executeUpdate();
 
-                conn.commit();
+                        ps2.setInt(1, factureId);
+                        ps2.executeUpdate();
+                    }
+                    return null;
+                });
+                // lignes supprimées : l'analyse en mémoire repart de la base
+                SalesAnalytics.invalidate();
                 return true;
-            } catch (SQLException ex) {
-                conn.rollback();
-                ex.printStackTrace();
+            } catch (SQLException e) {
+                e.printStackTrace();
+                mesure.error();
                 return false;
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
-            return false;
         }
     }
 
     // ... dans FactureService
 
     public static void importCSV(File excelFile) {
-        try {
-            List<List<String>> rows = ExcelExporter.read(excelFile);
-            if (rows == null || rows.size() <= 1) return;
-
-            // En-tête présumé : Numéro | Date | ClientNom | MontantTTC
-            for (int i = 1; i < rows.size(); i++) {
-                List<String> r = rows.get(i);
-                try {
-                    String numero = r.size() > 0 ? r.get(0).trim() : "";
-                    String dateStr = r.size() > 1 ? r.get(1).trim() : "";
-                    String clientNom = r.size() > 2 ? r.get(2).trim() : "";
-                    String montantStr = r.size() > 3 ? r.get(3).trim() : "0";
-
-                    double montant = 0;
-                    try { montant = Double.parseDouble(montantStr.replace(",", ".")); } catch (Exception ignored) {}
-
-                    var f = new life.pharmacy.models.Facture();
-                    try { f.setId(Integer.parseInt(numero)); } catch (Exception ignored) {}
-                    try { /* parse dateStr si besoin et setDate */ } catch (Exception ignored) {}
+        importCSV(excelFile, null);
+    }
+
+    public static void importCSV(File excelFile, ExcelImporter.ProgressListener progress) {
+        try (Timer.Sample mesure = IMPORT_CSV.start()) {
+            try {
+                // clients indexés par nom une seule fois (et non relus pour chaque ligne)
+                Map<String, Client> clientsByNom = new HashMap<>();
+                for (Client c : ClientService.getAll()) {
+                    if (c.getNom() != null) clientsByNom.putIfAbsent(c.getNom().toLowerCase(), c);
+                }
+
+                // En-tête présumé : Numéro | Date | ClientNom | MontantTTC
+                ExcelImporter.stream(excelFile, (i, r) -> {
+                    if (i == 0) return; // en-tête
                     try {
-                        // try to find client by name
-                        var clients = life.pharmacy.services.ClientService.getAll();
-                        var client = clients.stream().filter(c -> clientNom.equalsIgnoreCase(c.getNom())).findFirst().orElse(null);
-                        f.setClient(client);
-                    } catch (Exception ignored) {}
-                    try { f.setMontantTTC(montant); } catch (Exception ignored) {}
-
-                    insert(f); // adapte selon ta méthode
-                } catch (Exception ex) { ex.printStackTrace(); }
-            }
-        } catch (Exception e) { e.printStackTrace(); }
+                        String numero = r.size() > 0 ? r.get(0).trim() : "";
+                        String dateStr = r.size() > 1 ? r.get(1).trim() : "";
+                        String clientNom = r.size() > 2 ? r.get(2).trim() : "";
+                        String montantStr = r.size() > 3 ? r.get(3).trim() : "0";
+
+                        double montant = 0;
+                        try { montant = Double.parseDouble(montantStr.replace(",", ".")); } catch (Exception ignored) {}
+
+                        var f = new life.pharmacy.models.Facture();
+                        try { f.setId(Integer.parseInt(numero)); } catch (Exception ignored) {}
+                        try { /* parse dateStr si besoin et setDate */ } catch (Exception ignored) {}
+                        f.setClient(clientsByNom.get(clientNom.toLowerCase()));
+                        try { f.setMontantTTC(montant); } catch (Exception ignored) {}
+
+                        insert(f); // adapte selon ta méthode
+                    } catch (Exception ex) { ex.printStackTrace(); mesure.error(); }
+                }, progress);
+            } catch (Exception e) { e.printStackTrace(); mesure.error(); }
+        }
     }
 
+    // Export en flux depuis le curseur (ni getAll() ni détails de lignes chargés)
     public static void exportCSV(File excelFile) {
-        try {
-            List<List<String>> rows = new ArrayList<>();
-            rows.add(Arrays.asList("ID", "Date", "Client", "MontantTTC"));
-            for (var f : getAll()) {
-                rows.add(Arrays.asList(
-                        String.valueOf(f.getId()),
-                        f.getDate() != null ? f.getDate().toString() : "",
-                        f.getClient() != null ? f.getClient().getNom() : "",
-                        String.valueOf(f.getMontantTTC())
-                ));
+        try (Timer.Sample mesure = EXPORT_CSV.start()) {
+            try (Connection conn = Database.getReadConnection()) {
+                ExcelExporter.exportQuery(conn, SELECT_FACTURES + " ORDER BY f.date_epoch_ms DESC, f.id DESC", FactureMapper.HEADER, FactureMapper.EXPORT_ROW, excelFile);
+            } catch (Exception e) {
+                e.printStackTrace();
+                mesure.error();
             }
-            ExcelExporter.write(rows, excelFile);
-        } catch (Exception e) { e.printStackTrace(); }
+        }
     }
 
 
@@ -1,8 +1,12 @@
 package life.pharmacy.services;
 
 import life.pharmacy.config.Database;
+import life.pharmacy.config.StatementCache;
+import life.pharmacy.metrics.Metrics;
+import life.pharmacy.metrics.Timer;
 import life.pharmacy.models.Fournisseur;
 import life.pharmacy.utils.ExcelExporter;
+import life.pharmacy.utils.ExcelImporter;
 
 import java.io.File;
 import java.sql.*;
@@ -11,82 +15,85 @@ import java.util.Arrays;
 import java.util.List;
 
 public class FournisseurService {
-    private static final Object LOCK = new Object();
 
-    static {
-        try (Connection conn = Database.getConnection();
-             Statement stmt = conn.createStatement()) {
-            stmt.execute("""
-                        CREATE TABLE IF NOT EXISTS fournisseurs (
-                            id INTEGER PRIMARY KEY AUTOINCREMENT,
-                            nom TEXT NOT NULL,
-                            contact TEXT,
-                            adresse TEXT
-                        )
-                    """);
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-    }
+    private static final Timer GET_ALL = Metrics.timer("fournisseurs.getAll");
+    private static final Timer INSERT = Metrics.timer("fournisseurs.insert");
+    private static final Timer UPDATE = Metrics.timer("fournisseurs.update");
+    private static final Timer DELETE = Metrics.timer("fournisseurs.delete");
+    private static final Timer IMPORT_CSV = Metrics.timer("fournisseurs.importCSV");
+    private static final Timer EXPORT_CSV = Metrics.timer("fournisseurs.exportCSV");
+    private static final Object LOCK = new Object();
 
     public static List<Fournisseur> getAll() {
-        synchronized (LOCK) {
-            List<Fournisseur> fournisseurs = new ArrayList<>();
-            try (Connection conn = Database.getConnection();
-                 Statement stmt = conn.createStatement();
-                 ResultSet rs = stmt.executeQuery("SELECT * FROM fournisseurs ORDER BY nom ASC")) {
-                while (rs.next()) {
-                    fournisseurs.add(new Fournisseur(
-                            rs.getInt("id"),
-                            rs.getString("nom"),
-                            rs.getString("contact"),
-                            rs.getString("adresse")
-                    ));
+        try (Timer.Sample mesure = GET_ALL.start()) {
+            synchronized (LOCK) {
+                List<Fournisseur> fournisseurs = new ArrayList<>();
+                try (Connection conn = Database.getReadConnection();
+                     Statement stmt = conn.createStatement();
+                     ResultSet rs = stmt.executeQuery("SELECT * FROM fournisseurs ORDER BY nom ASC")) {
+                    while (rs.next()) {
+                        fournisseurs.add(new Fournisseur(
+                                rs.getInt("id"),
+                                rs.getString("nom"),
+                                rs.getString("contact"),
+                                rs.getString("adresse")
+                        ));
+                    }
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                    mesure.error();
                 }
-            } catch (SQLException e) {
-                e.printStackTrace();
+                return fournisseurs;
             }
-            return fournisseurs;
         }
     }
 
     public static void insert(Fournisseur fournisseur) {
-        synchronized (LOCK) {
-            try (Connection conn = Database.getConnection();
-                 PreparedStatement pstmt = conn.prepareStatement("INSERT INTO fournisseurs (nom, contact, adresse) VALUES (?, ?, ?)")) {
-                pstmt.setString(1, fournisseur.getNom());
-                pstmt.setString(2, fournisseur.getContact());
-                pstmt.setString(3, fournisseur.getAdresse());
-                pstmt.executeUpdate();
-            } catch (SQLException e) {
-                e.printStackTrace();
+        try (Timer.Sample mesure = INSERT.start()) {
+            synchronized (LOCK) {
+                try (Connection conn = Database.getConnection();
+                     PreparedStatement pstmt = StatementCache.prepare(conn, "INSERT INTO fournisseurs (nom, contact, adresse) VALUES (?, ?, ?)")) {
+                    pstmt.setString(1, fournisseur.getNom());
+                    pstmt.setString(2, fournisseur.getContact());
+                    pstmt.setString(3, fournisseur.getAdresse());
+                    pstmt.executeUpdate();
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                    mesure.error();
+                }
             }
         }
     }
 
     public static void update(Fournisseur fournisseur) {
-        synchronized (LOCK) {
-            try (Connection conn = Database.getConnection();
-                 PreparedStatement pstmt = conn.prepareStatement("UPDATE fournisseurs SET nom=?, contact=?, adresse=? WHERE id=?")) {
-                pstmt.setString(1, fournisseur.getNom());
-                pstmt.setString(2, fournisseur.getContact());
-                pstmt.setString(3, fournisseur.getAdresse());
-                pstmt.setInt(4, fournisseur.getId());
-                pstmt.executeUpdate();
-            } catch (SQLException e) {
-                e.printStackTrace();
+        try (Timer.Sample mesure = UPDATE.start()) {
+            synchronized (LOCK) {
+                try (Connection conn = Database.getConnection();
+                     PreparedStatement pstmt = StatementCache.prepare(conn, "UPDATE fournisseurs SET nom=?, contact=?, adresse=? WHERE id=?")) {
+                    pstmt.setString(1, fournisseur.getNom());
+                    pstmt.setString(2, fournisseur.getContact());
+                    pstmt.setString(3, fournisseur.getAdresse());
+                    pstmt.setInt(4, fournisseur.getId());
+                    pstmt.executeUpdate();
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                    mesure.error();
+                }
             }
         }
     }
 
     public static void delete(int id) {
-        synchronized (LOCK) {
-            try (Connection conn = Database.getConnection();
-                 PreparedStatement pstmt = conn.prepareStatement("DELETE FROM fournisseurs WHERE id=?")) {
-                pstmt.setInt(1, id);
-                pstmt.executeUpdate();
-            } catch (SQLException e) {
-                e.printStackTrace();
+        try (Timer.Sample mesure = DELETE.start()) {
+            synchronized (LOCK) {
+                try (Connection conn = Database.getConnection();
+                     PreparedStatement pstmt = StatementCache.prepare(conn, "DELETE FROM fournisseurs WHERE id=?")) {
+                    pstmt.setInt(1, id);
+                    pstmt.executeUpdate();
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                    mesure.error();
+                }
             }
         }
     }
@@ -95,42 +102,47 @@ public class FournisseurService {
     // ... dans FournisseurService
 
     public static void importCSV(File excelFile) {
-        try {
-            List<List<String>> rows = ExcelExporter.read(excelFile);
-            if (rows == null || rows.size() <= 1) return;
-
-            // En-tête présumé : Nom | Adresse | Telephone
-            for (int i = 1; i < rows.size(); i++) {
-                List<String> r = rows.get(i);
-                try {
-                    String nom = r.size() > 0 ? r.get(0).trim() : "";
-                    String adresse = r.size() > 1 ? r.get(1).trim() : "";
-                    String contact = r.size() > 2 ? r.get(2).trim() : "";
-
-                    var f = new life.pharmacy.models.Fournisseur();
-                    try { f.setNom(nom); } catch (Exception ignored) {}
-                    try { f.setAdresse(adresse); } catch (Exception ignored) {}
-                    try { f.setContact(contact); } catch (Exception ignored) {}
-
-                    insert(f);
-                } catch (Exception ex) { ex.printStackTrace(); }
-            }
-        } catch (Exception e) { e.printStackTrace(); }
+        importCSV(excelFile, null);
+    }
+
+    public static void importCSV(File excelFile, ExcelImporter.ProgressListener progress) {
+        try (Timer.Sample mesure = IMPORT_CSV.start()) {
+            try {
+                // En-tête présumé : Nom | Adresse | Telephone
+                ExcelImporter.stream(excelFile, (i, r) -> {
+                    if (i == 0) return; // en-tête
+                    try {
+                        String nom = r.size() > 0 ? r.get(0).trim() : "";
+                        String adresse = r.size() > 1 ? r.get(1).trim() : "";
+                        String contact = r.size() > 2 ? r.get(2).trim() : "";
+
+                        var f = new life.pharmacy.models.Fournisseur();
+                        try { f.setNom(nom); } catch (Exception ignored) {}
+                        try { f.setAdresse(adresse); } catch (Exception ignored) {}
+                        try { f.setContact(contact); } catch (Exception ignored) {}
+
+                        insert(f);
+                    } catch (Exception ex) { ex.printStackTrace(); mesure.error(); }
+                }, progress);
+            } catch (Exception e) { e.printStackTrace(); mesure.error(); }
+        }
     }
 
     public static void exportCSV(File excelFile) {
-        try {
-            List<List<String>> rows = new ArrayList<>();
-            rows.add(Arrays.asList("Nom", "Adresse", "Contact"));
-            for (var f : getAll()) {
-                rows.add(Arrays.asList(
-                        safe(f.getNom()),
-                        safe(f.getAdresse()),
-                        safe(f.getContact())
-                ));
-            }
-            ExcelExporter.write(rows, excelFile);
-        } catch (Exception e) { e.printStackTrace(); }
+        try (Timer.Sample mesure = EXPORT_CSV.start()) {
+            try {
+                List<List<String>> rows = new ArrayList<>();
+                rows.add(Arrays.asList("Nom", "Adresse", "Contact"));
+                for (var f : getAll()) {
+                    rows.add(Arrays.asList(
+                            safe(f.getNom()),
+                            safe(f.getAdresse()),
+                            safe(f.getContact())
+                    ));
+                }
+                ExcelExporter.write(rows, excelFile);
+            } catch (Exception e) { e.printStackTrace(); mesure.error(); }
+        }
     }
 
     private static String safe(String s) { return s == null ? "" : s; }
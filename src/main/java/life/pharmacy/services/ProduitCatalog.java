@@ -0,0 +1,177 @@
+package life.pharmacy.services;
+
+import life.pharmacy.models.Produit;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache mémoire du catalogue produits, indexé par id, code-barres et nom exact.
+ * <p>
+ * Chargé une fois depuis la base puis tenu à jour en place par ProduitService
+ * (insert / update / delete). La quantité des produits en cache est tenue par StockLedger.
+ * Les lectures (scanner, autocomplétion, getById) ne touchent pas SQLite.
+ */
+public class ProduitCatalog {
+
+    private static final Object WRITE_LOCK = new Object();
+
+    private static final Map<Integer, Produit> byId = new ConcurrentHashMap<>();
+    private static final Map<String, Produit> byBarcode = new ConcurrentHashMap<>();
+    private static final Map<String, Produit> byName = new ConcurrentHashMap<>();
+
+    // clés sous lesquelles chaque produit a été indexé (l'objet peut avoir été modifié depuis)
+    private static final Map<Integer, String> indexedBarcode = new ConcurrentHashMap<>();
+    private static final Map<Integer, String> indexedName = new ConcurrentHashMap<>();
+
+    // index préfixe pour l'autocomplétion
+    private static final ProduitSearchIndex searchIndex = new ProduitSearchIndex();
+
+    private static volatile boolean loaded = false;
+
+    private static void ensureLoaded() {
+        if (loaded) return;
+        // lecture hors verrou : la requête peut être longue, les lectures du cache continuent
+        List<Produit> produits = ProduitService.getAll();
+        synchronized (WRITE_LOCK) {
+            if (!loaded) replaceAll(produits);
+        }
+    }
+
+    /**
+     * Remplace tout le contenu du cache (rechargement complet depuis la base).
+     */
+    public static void replaceAll(List<Produit> produits) {
+        synchronized (WRITE_LOCK) {
+            clearIndexes();
+            for (Produit p : produits) {
+                index(p);
+            }
+            loaded = true;
+        }
+    }
+
+    public static Produit getById(int id) {
+        ensureLoaded();
+        return byId.get(id);
+    }
+
+    public static Produit getByBarcode(String code) {
+        if (code == null || code.isBlank()) return null;
+        ensureLoaded();
+        return byBarcode.get(code.trim());
+    }
+
+    /**
+     * Recherche pour le scanner / la saisie : code-barres exact, puis nom exact (sans casse),
+     * puis meilleur résultat de l'index de recherche.
+     */
+    public static Produit findByCodeOrName(String q) {
+        if (q == null) return null;
+        q = q.trim();
+        if (q.isEmpty()) return null;
+        ensureLoaded();
+
+        Produit p = byBarcode.get(q);
+        if (p != null) return p;
+
+        p = byName.get(nameKey(q));
+        if (p != null) return p;
+
+        List<Produit> best = searchIndex.search(q, 1);
+        return best.isEmpty() ? null : best.get(0);
+    }
+
+    /**
+     * Autocomplétion : les {@code limit} produits les plus pertinents pour la saisie
+     * (préfixes de mots du nom, sans accents ni casse, ou du code-barres).
+     */
+    public static List<Produit> search(String query, int limit) {
+        ensureLoaded();
+        return searchIndex.search(query, limit);
+    }
+
+    /**
+     * Tous les produits triés par nom (copie).
+     */
+    public static List<Produit> getAll() {
+        ensureLoaded();
+        List<Produit> list = new ArrayList<>(byId.values());
+        list.sort(Comparator.comparing(p -> p.getNom() == null ? "" : p.getNom(), String.CASE_INSENSITIVE_ORDER));
+        return list;
+    }
+
+    /**
+     * Ajoute ou remplace un produit (après insert / update en base).
+     */
+    public static void put(Produit p) {
+        if (p == null) return;
+        synchronized (WRITE_LOCK) {
+            if (!loaded) return; // sera lu au premier chargement
+            unindex(byId.get(p.getId()));
+            index(p);
+        }
+    }
+
+    public static void remove(int id) {
+        synchronized (WRITE_LOCK) {
+            unindex(byId.get(id));
+        }
+        StockLedger.forget(id);
+    }
+
+    /**
+     * Vide le cache : il sera rechargé depuis la base au prochain accès. Le stock des produits
+     * déjà suivis est relu à part par le StockLedger (le rechargement ne l'écrase pas).
+     */
+    public static void invalidate() {
+        synchronized (WRITE_LOCK) {
+            loaded = false;
+            clearIndexes();
+        }
+        StockLedger.refreshSoon(0);
+    }
+
+    private static void index(Produit p) {
+        StockLedger.track(p);
+        byId.put(p.getId(), p);
+        if (p.getCodeBarre() != null && !p.getCodeBarre().isBlank()) {
+            String code = p.getCodeBarre().trim();
+            byBarcode.put(code, p);
+            indexedBarcode.put(p.getId(), code);
+        }
+        if (p.getNom() != null) {
+            String key = nameKey(p.getNom());
+            byName.putIfAbsent(key, p);
+            indexedName.put(p.getId(), key);
+        }
+        searchIndex.add(p);
+    }
+
+    private static void unindex(Produit old) {
+        if (old == null) return;
+        byId.remove(old.getId());
+        String code = indexedBarcode.remove(old.getId());
+        if (code != null) byBarcode.remove(code, old);
+        String key = indexedName.remove(old.getId());
+        if (key != null) byName.remove(key, old);
+        searchIndex.remove(old.getId());
+    }
+
+    private static void clearIndexes() {
+        byId.clear();
+        byBarcode.clear();
+        byName.clear();
+        indexedBarcode.clear();
+        indexedName.clear();
+        searchIndex.clear();
+    }
+
+    private static String nameKey(String nom) {
+        return nom.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,248 @@
+package life.pharmacy.services;
+
+import life.pharmacy.models.Produit;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Pattern;
+
+/**
+ * Index de recherche pour l'autocomplétion produit.
+ * <p>
+ * Les noms sont normalisés (minuscules, accents retirés) et découpés en mots ; chaque mot
+ * est rangé dans une table triée, ce qui permet de retrouver par préfixe (comme un trie)
+ * tous les produits dont un mot commence par le texte saisi. Les codes-barres sont indexés
+ * de la même façon. Les résultats sont classés puis limités aux N meilleurs.
+ * <p>
+ * Maintenu par {@link ProduitCatalog} ; sûr pour des lectures concurrentes.
+ */
+public class ProduitSearchIndex {
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{Alnum}]+");
+
+    // mot normalisé -> ids des produits contenant ce mot
+    private final NavigableMap<String, Set<Integer>> words = new ConcurrentSkipListMap<>();
+    // nom normalisé complet -> ids (sert au chemin rapide « le nom commence par la saisie »)
+    private final NavigableMap<String, Set<Integer>> names = new ConcurrentSkipListMap<>();
+    // code-barres normalisé -> ids
+    private final NavigableMap<String, Set<Integer>> barcodes = new ConcurrentSkipListMap<>();
+    private final Map<Integer, Entry> entries = new ConcurrentHashMap<>();
+
+    // Produit indexé + formes normalisées calculées une seule fois
+    private static class Entry {
+        final Produit produit;
+        final String name;      // nom normalisé complet
+        final String[] tokens;  // mots du nom normalisé
+        final String barcode;   // code-barres normalisé (ou "")
+
+        Entry(Produit produit) {
+            this.produit = produit;
+            this.name = normalize(produit.getNom());
+            this.tokens = tokenize(this.name);
+            this.barcode = normalize(produit.getCodeBarre()).replace(" ", "");
+        }
+    }
+
+    /**
+     * Minuscules, accents retirés, ponctuation remplacée par des espaces.
+     */
+    public static String normalize(String s) {
+        if (s == null || s.isEmpty()) return "";
+        String folded = MARKS.matcher(Normalizer.normalize(s, Normalizer.Form.NFD)).replaceAll("");
+        return SEPARATORS.matcher(folded.toLowerCase()).replaceAll(" ").trim();
+    }
+
+    private static String[] tokenize(String normalized) {
+        return normalized.isEmpty() ? new String[0] : normalized.split(" ");
+    }
+
+    public synchronized void add(Produit p) {
+        if (p == null) return;
+        remove(p.getId());
+        Entry e = new Entry(p);
+        entries.put(p.getId(), e);
+        names.computeIfAbsent(e.name, k -> ConcurrentHashMap.newKeySet()).add(p.getId());
+        for (String t : e.tokens) {
+            words.computeIfAbsent(t, k -> ConcurrentHashMap.newKeySet()).add(p.getId());
+        }
+        if (!e.barcode.isEmpty()) {
+            barcodes.computeIfAbsent(e.barcode, k -> ConcurrentHashMap.newKeySet()).add(p.getId());
+        }
+    }
+
+    public synchronized void remove(int id) {
+        Entry e = entries.remove(id);
+        if (e == null) return;
+        detach(names, e.name, id);
+        for (String t : e.tokens) {
+            detach(words, t, id);
+        }
+        if (!e.barcode.isEmpty()) {
+            detach(barcodes, e.barcode, id);
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        names.clear();
+        words.clear();
+        barcodes.clear();
+    }
+
+    private static void detach(NavigableMap<String, Set<Integer>> map, String key, int id) {
+        Set<Integer> ids = map.get(key);
+        if (ids == null) return;
+        ids.remove(id);
+        if (ids.isEmpty()) map.remove(key);
+    }
+
+    /**
+     * Retourne au plus {@code limit} produits correspondant à la saisie, les meilleurs d'abord :
+     * code-barres exact, nom exact, nom commençant par la saisie, premier mot, autres mots,
+     * puis codes-barres commençant par la saisie. Chaque mot saisi doit préfixer un mot du nom.
+     * À score égal, les produits sont triés par nom.
+     */
+    public List<Produit> search(String query, int limit) {
+        String q = normalize(query);
+        if (q.isEmpty()) return firstByName(limit);
+
+        String[] terms = tokenize(q);
+        String compact = q.replace(" ", "");
+
+        // chemin rapide : assez de noms commençant par la saisie (déjà triés) -> inutile de tout classer
+        List<Produit> fast = startingWith(q, compact, limit);
+        if (fast != null) return fast;
+
+        // candidats : produits dont un mot commence par le terme le plus sélectif
+        String pivot = terms[0];
+        long best = Long.MAX_VALUE;
+        for (String t : terms) {
+            long n = 0;
+            for (Set<Integer> ids : prefixRange(words, t).values()) {
+                n += ids.size();
+                if (n >= best) break;
+            }
+            if (n < best) {
+                best = n;
+                pivot = t;
+            }
+        }
+
+        Set<Integer> candidates = new HashSet<>();
+        for (Set<Integer> ids : prefixRange(words, pivot).values()) candidates.addAll(ids);
+        for (Set<Integer> ids : prefixRange(barcodes, compact).values()) candidates.addAll(ids);
+
+        // garde les N meilleurs (tas borné : le pire en tête)
+        Comparator<Scored> order = Comparator.<Scored>comparingInt(s -> s.score)
+                .thenComparing(s -> s.entry.name);
+        PriorityQueue<Scored> top = new PriorityQueue<>(limit + 1, order.reversed());
+
+        for (Integer id : candidates) {
+            Entry e = entries.get(id);
+            if (e == null) continue;
+            int score = score(e, q, compact, terms);
+            if (score < 0) continue;
+            top.add(new Scored(e, score));
+            if (top.size() > limit) top.poll();
+        }
+
+        List<Scored> sorted = new ArrayList<>(top);
+        sorted.sort(order);
+        List<Produit> out = new ArrayList<>(sorted.size());
+        for (Scored s : sorted) out.add(s.entry.produit);
+        return out;
+    }
+
+    /**
+     * Renvoie les {@code limit} premiers noms commençant par la saisie (précédés d'un éventuel
+     * code-barres exact), ou null s'il y en a moins de {@code limit} : le classement complet
+     * est alors nécessaire. Ces noms ont le meilleur score possible après le code-barres exact,
+     * et la table triée les fournit dans l'ordre alphabétique.
+     */
+    private List<Produit> startingWith(String q, String compact, int limit) {
+        List<Produit> out = new ArrayList<>(limit);
+        Set<Integer> seen = new HashSet<>();
+        Set<Integer> exactCode = barcodes.get(compact);
+        if (exactCode != null) {
+            for (Integer id : exactCode) {
+                Entry e = entries.get(id);
+                if (e != null && seen.add(id)) out.add(e.produit);
+            }
+        }
+        for (Set<Integer> ids : prefixRange(names, q).values()) {
+            for (Integer id : ids) {
+                if (out.size() >= limit) return out;
+                Entry e = entries.get(id);
+                if (e != null && seen.add(id)) out.add(e.produit);
+            }
+        }
+        return out.size() >= limit ? out : null;
+    }
+
+    // score de pertinence (plus petit = meilleur), -1 si le produit ne correspond pas
+    private static int score(Entry e, String q, String compact, String[] terms) {
+        if (!e.barcode.isEmpty() && e.barcode.equals(compact)) return 0;
+        if (allTermsMatch(e, terms)) {
+            if (e.name.equals(q)) return 1;
+            if (e.name.startsWith(q)) return 2;
+            if (e.tokens.length > 0 && e.tokens[0].startsWith(terms[0])) return 3;
+            return 4;
+        }
+        if (!e.barcode.isEmpty() && e.barcode.startsWith(compact)) return 5;
+        return -1;
+    }
+
+    private static boolean allTermsMatch(Entry e, String[] terms) {
+        for (String term : terms) {
+            boolean found = false;
+            for (String t : e.tokens) {
+                if (t.startsWith(term)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) return false;
+        }
+        return true;
+    }
+
+    private static NavigableMap<String, Set<Integer>> prefixRange(NavigableMap<String, Set<Integer>> map, String prefix) {
+        if (prefix.isEmpty()) return Collections.emptyNavigableMap();
+        return map.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+    }
+
+    private List<Produit> firstByName(int limit) {
+        PriorityQueue<Entry> top = new PriorityQueue<>(limit + 1,
+                Comparator.<Entry, String>comparing(e -> e.name).reversed());
+        for (Entry e : entries.values()) {
+            top.add(e);
+            if (top.size() > limit) top.poll();
+        }
+        List<Entry> sorted = new ArrayList<>(top);
+        sorted.sort(Comparator.comparing(e -> e.name));
+        List<Produit> out = new ArrayList<>(sorted.size());
+        for (Entry e : sorted) out.add(e.produit);
+        return out;
+    }
+
+    private static class Scored {
+        final Entry entry;
+        final int score;
+
+        Scored(Entry entry, int score) {
+            this.entry = entry;
+            this.score = score;
+        }
+    }
+}
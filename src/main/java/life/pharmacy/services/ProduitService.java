@@ -1,190 +1,226 @@
 package life.pharmacy.services;
 
 import life.pharmacy.config.Database;
+import life.pharmacy.config.StatementCache;
+import life.pharmacy.mappers.ProduitMapper;
+import life.pharmacy.metrics.Metrics;
+import life.pharmacy.metrics.Timer;
 import life.pharmacy.models.Produit;
 import life.pharmacy.utils.ExcelExporter;
 import life.pharmacy.utils.ExcelImporter;
 
 import java.io.File;
+import java.io.IOException;
 import java.sql.*;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 
 public class ProduitService {
 
-    private static final Object LOCK = new Object();
-
-    static {
-        try (Connection conn = Database.getConnection();
-             Statement stmt = conn.createStatement()) {
-            stmt.execute("""
-                        CREATE TABLE IF NOT EXISTS produits (
-                            id INTEGER PRIMARY KEY AUTOINCREMENT,
-                            nom TEXT NOT NULL,
-                            prixUnitaire REAL NOT NULL,
-                            quantite INTEGER NOT NULL
-                        )
-                    """);
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-    }
+    private static final Timer GET_BY_ID = Metrics.timer("produits.getById");
+    private static final Timer GET_ALL = Metrics.timer("produits.getAll");
+    private static final Timer INSERT = Metrics.timer("produits.insert");
+    private static final Timer UPDATE = Metrics.timer("produits.update");
+    private static final Timer ADJUST_STOCK = Metrics.timer("produits.adjustStock");
+    private static final Timer IMPORT_FROM_EXCEL = Metrics.timer("produits.importFromExcel");
+    private static final Timer IS_REFERENCED_IN_DETAILS = Metrics.timer("produits.isReferencedInDetails");
+    private static final Timer DELETE = Metrics.timer("produits.delete");
+    private static final Timer IMPORT_CSV = Metrics.timer("produits.importCSV");
+    private static final Timer EXPORT_CSV = Metrics.timer("produits.exportCSV");
 
     // Dans life.pharmacy.services.ProduitService
     public static Produit getById(int id) {
-        synchronized (LOCK) {
+        try (Timer.Sample mesure = GET_BY_ID.start()) {
+            // servi par le cache catalogue ; la base n'est interrogée que si le produit y est absent
+            Produit cached = ProduitCatalog.getById(id);
+            if (cached != null) return cached;
+
             String sql = "SELECT * FROM produits WHERE id = ?";
-            try (Connection conn = Database.getConnection();
-                 PreparedStatement stmt = conn.prepareStatement(sql)) {
+            try (Connection conn = Database.getReadConnection();
+                 PreparedStatement stmt = StatementCache.prepare(conn, sql)) {
                 stmt.setInt(1, id);
                 try (ResultSet rs = stmt.executeQuery()) {
                     if (rs.next()) {
-                        // Adapte les noms de colonnes si ta table utilise d'autres noms
-                        int pid = rs.getInt("id");
-                        String nom = rs.getString("nom");
-                        String codeBarre = null;
-                        double prixUnitaire = 0.0;
-                        int quantite = 0;
-                        boolean tva = false;
-
-                        // lecture sécurisée selon colonnes possibles
-                        try {
-                            codeBarre = rs.getString("code_barre");
-                        } catch (SQLException ignored) {
-                        }
-                        try {
-                            prixUnitaire = rs.getDouble("prix_unitaire");
-                        } catch (SQLException ignored) {
-                        }
-                        try {
-                            prixUnitaire = rs.getDouble("prix");
-                        } catch (SQLException ignored) {
-                        }
-                        try {
-                            quantite = rs.getInt("quantite");
-                        } catch (SQLException ignored) {
-                        }
-                        try {
-                            tva = rs.getInt("tva") == 1;
-                        } catch (SQLException ignored) {
-                        }
-
-                        return new Produit(pid, nom, codeBarre, prixUnitaire, quantite, tva);
+                        Produit p = ProduitMapper.ROW.map(rs);
+                        ProduitCatalog.put(p);
+                        return p;
                     }
                 }
             } catch (SQLException e) {
                 e.printStackTrace();
+                mesure.error();
             }
             return null;
         }
     }
 
     public static List<Produit> getAll() {
-        synchronized (LOCK) {
+        try (Timer.Sample mesure = GET_ALL.start()) {
             List<Produit> produits = new ArrayList<>();
-            try (Connection conn = Database.getConnection();
+            try (Connection conn = Database.getReadConnection();
                  Statement stmt = conn.createStatement();
                  ResultSet rs = stmt.executeQuery("SELECT * FROM produits ORDER BY nom ASC")) {
                 while (rs.next()) {
-                    produits.add(new Produit(
-                            rs.getInt("id"),
-                            rs.getString("nom"),
-                            rs.getDouble("prixUnitaire"),
-                            rs.getInt("quantite")
-                    ));
+                    produits.add(ProduitMapper.ROW.map(rs));
                 }
             } catch (SQLException e) {
                 e.printStackTrace();
+                mesure.error();
             }
             return produits;
         }
     }
 
     public static void insert(Produit produit) {
-        synchronized (LOCK) {
-            String sql = "INSERT INTO produits (nom, prixUnitaire, quantite) VALUES (?, ?, ?)";
+        try (Timer.Sample mesure = INSERT.start()) {
+            String sql = "INSERT INTO produits (nom, code_barre, prixUnitaire, quantite, tva) VALUES (?, ?, ?, ?, ?)";
             try (Connection conn = Database.getConnection();
-                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                 PreparedStatement pstmt = StatementCache.prepare(conn, sql, Statement.RETURN_GENERATED_KEYS)) {
                 pstmt.setString(1, produit.getNom());
-                pstmt.setDouble(2, produit.getPrixUnitaire());
-                pstmt.setInt(3, produit.getQuantite());
+                pstmt.setString(2, codeBarreOrNull(produit));
+                pstmt.setDouble(3, produit.getPrixUnitaire());
+                pstmt.setInt(4, produit.getQuantite());
+                pstmt.setInt(5, produit.isTva() ? 1 : 0);
                 pstmt.executeUpdate();
+                try (ResultSet g = pstmt.getGeneratedKeys()) {
+                    if (g.next()) produit.setId(g.getInt(1));
+                }
+                ProduitCatalog.put(produit);
             } catch (SQLException e) {
                 e.printStackTrace();
+                mesure.error();
             }
         }
     }
 
+    /**
+     * Modifie la fiche produit. La quantité n'est pas écrite : des ventes peuvent être en cours
+     * de validation, voir {@link #adjustStock(int, int)}.
+     */
     public static void update(Produit produit) {
-        synchronized (LOCK) {
-            String sql = "UPDATE produits SET nom=?, prixUnitaire=?, quantite=? WHERE id=?";
+        try (Timer.Sample mesure = UPDATE.start()) {
+            String sql = "UPDATE produits SET nom=?, code_barre=?, prixUnitaire=?, tva=? WHERE id=?";
             try (Connection conn = Database.getConnection();
-                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                 PreparedStatement pstmt = StatementCache.prepare(conn, sql)) {
                 pstmt.setString(1, produit.getNom());
-                pstmt.setDouble(2, produit.getPrixUnitaire());
-                pstmt.setInt(3, produit.getQuantite());
-                pstmt.setInt(4, produit.getId());
+                pstmt.setString(2, codeBarreOrNull(produit));
+                pstmt.setDouble(3, produit.getPrixUnitaire());
+                pstmt.setInt(4, produit.isTva() ? 1 : 0);
+                pstmt.setInt(5, produit.getId());
                 pstmt.executeUpdate();
+                ProduitCatalog.put(produit);
             } catch (SQLException e) {
                 e.printStackTrace();
+                mesure.error();
             }
         }
     }
 
-    public static void importFromExcel(File excelFile) {
-        List<List<String>> rows = ExcelImporter.readExcel(excelFile);
-        if (rows.size() <= 1) return; // pas de données
-
-        // En-tête présumé : Nom | CodeBarre | Prix | Quantite | TVA (optionnel: "1" ou "0" / "Oui"/"Non")
-        for (int i = 1; i < rows.size(); i++) {
-            List<String> r = rows.get(i);
-            if (r.isEmpty()) continue;
-            try {
-                String nom = r.size() > 0 ? r.get(0) : "";
-                String codeBarre = r.size() > 1 ? r.get(1) : "";
-                double prix = r.size() > 2 && !r.get(2).isEmpty() ? Double.parseDouble(r.get(2)) : 0.0;
-                int quantite = r.size() > 3 && !r.get(3).isEmpty() ? Integer.parseInt(r.get(3)) : 0;
-                boolean tva = false;
-                if (r.size() > 4) {
-                    String t = r.get(4).toLowerCase();
-                    tva = t.equals("1") || t.equals("oui") || t.equals("true");
-                }
-                Produit p = new Produit(0, nom, codeBarre, prix, quantite, tva);
-                insert(p);
-            } catch (Exception ex) {
-                ex.printStackTrace(); // ignorer ligne et continuer
+    /**
+     * Correction de stock (inventaire, réception) : ajoute delta à la quantité en base et au disponible
+     * du StockLedger. Relative, elle ne revient sur aucune vente validée entre-temps.
+     */
+    public static void adjustStock(int id, int delta) {
+        try (Timer.Sample mesure = ADJUST_STOCK.start()) {
+            try (Connection conn = Database.getConnection();
+                 PreparedStatement pstmt = StatementCache.prepare(conn, "UPDATE produits SET quantite = quantite + ? WHERE id = ?")) {
+                pstmt.setInt(1, delta);
+                pstmt.setInt(2, id);
+                // registre mis à jour sous la connexion d'écriture, comme les ventes validées
+                if (pstmt.executeUpdate() > 0) StockLedger.adjust(id, delta);
+            } catch (SQLException e) {
+                e.printStackTrace();
+                mesure.error();
             }
         }
     }
 
-    // life.pharmacy.services.ProduitService (extraits)
-    public static boolean isReferencedInDetails(int produitId) {
-        String sql = "SELECT COUNT(*) as total FROM details_facture WHERE produit_id = ?";
-        try (Connection conn = Database.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setInt(1, produitId);
-            ResultSet rs = stmt.executeQuery();
-            if (rs.next()) return rs.getInt("total") > 0;
+    // code-barres vide -> NULL (plusieurs produits sans code ne doivent pas se confondre)
+    private static String codeBarreOrNull(Produit p) {
+        String code = p.getCodeBarre();
+        return code == null || code.isBlank() ? null : code.trim();
+    }
+
+    public static BulkImport.Report importFromExcel(File excelFile) {
+        return importFromExcel(excelFile, null);
+    }
+
+    /**
+     * Import d'un catalogue fournisseur (Nom | CodeBarre | Prix | Quantite | TVA) :
+     * les produits dont le code-barres existe déjà sont mis à jour, les autres insérés.
+     */
+    public static BulkImport.Report importFromExcel(File excelFile, ExcelImporter.ProgressListener progress) {
+        return IMPORT_FROM_EXCEL.time(() -> bulkImport(ProduitMapper::fromExcelRow, excelFile, progress));
+    }
+
+    private static BulkImport.Report bulkImport(BulkImport.Parser<Produit> parser, File file, ExcelImporter.ProgressListener progress) {
+        BulkImport.Report report = new BulkImport<>(parser,
+                "INSERT INTO produits (nom, code_barre, prixUnitaire, quantite, tva) VALUES (?, ?, ?, ?, ?)",
+                (ps, p) -> {
+                    ps.setString(1, p.getNom());
+                    ps.setString(2, codeBarreOrNull(p));
+                    ps.setDouble(3, p.getPrixUnitaire());
+                    ps.setInt(4, p.getQuantite());
+                    ps.setInt(5, p.isTva() ? 1 : 0);
+                })
+                // quantité du fichier ignorée pour un produit dont une vente est en cours de validation :
+                // la vente la déduirait une seconde fois (lot écrit sous la connexion d'écriture,
+                // les ventes en attente ne changent pas entre cette lecture et l'UPDATE)
+                .upsert(Produit::getCodeBarre,
+                        "UPDATE produits SET nom=?, prixUnitaire=?, quantite=COALESCE(?, quantite), tva=? WHERE code_barre=?",
+                        (ps, p) -> {
+                            ps.setString(1, p.getNom());
+                            ps.setDouble(2, p.getPrixUnitaire());
+                            Produit existant = ProduitCatalog.getByBarcode(p.getCodeBarre());
+                            if (existant != null && StockLedger.pending(existant.getId()) > 0) ps.setNull(3, Types.INTEGER);
+                            else ps.setInt(3, p.getQuantite());
+                            ps.setInt(4, p.isTva() ? 1 : 0);
+                            ps.setString(5, codeBarreOrNull(p));
+                        })
+                .run(file, progress);
+        // beaucoup de lignes modifiées : rechargement complet du cache au prochain accès,
+        // et disponible des produits déjà suivis relu en base
+        ProduitCatalog.invalidate();
+        try {
+            StockLedger.resync();
         } catch (SQLException e) {
             e.printStackTrace();
         }
-        return false;
+        return report;
+    }
+
+    // life.pharmacy.services.ProduitService (extraits)
+    public static boolean isReferencedInDetails(int produitId) {
+        try (Timer.Sample mesure = IS_REFERENCED_IN_DETAILS.start()) {
+            String sql = "SELECT COUNT(*) as total FROM details_facture WHERE produit_id = ?";
+            try (Connection conn = Database.getReadConnection();
+                 PreparedStatement stmt = conn.prepareStatement(sql)) {
+                stmt.setInt(1, produitId);
+                ResultSet rs = stmt.executeQuery();
+                if (rs.next()) return rs.getInt("total") > 0;
+            } catch (SQLException e) {
+                e.printStackTrace();
+                mesure.error();
+            }
+            return false;
+        }
     }
 
     public static boolean delete(int id) {
-        synchronized (LOCK) {
+        try (Timer.Sample mesure = DELETE.start()) {
             if (isReferencedInDetails(id)) {
                 // Ne pas supprimer — produit référencé par au moins une facture
                 return false;
             }
             try (Connection conn = Database.getConnection();
-                 PreparedStatement pstmt = conn.prepareStatement("DELETE FROM produits WHERE id=?")) {
+                 PreparedStatement pstmt = StatementCache.prepare(conn, "DELETE FROM produits WHERE id=?")) {
                 pstmt.setInt(1, id);
                 int affected = pstmt.executeUpdate();
+                if (affected > 0) ProduitCatalog.remove(id);
                 return affected > 0;
             } catch (SQLException e) {
                 e.printStackTrace();
+                mesure.error();
                 return false;
             }
         }
@@ -192,61 +228,23 @@ public class ProduitService {
 
     // ... dans ProduitService
 
-    public static void importCSV(File excelFile) {
-        try {
-            List<List<String>> rows = ExcelExporter.read(excelFile);
-            if (rows == null || rows.size() <= 1) return;
-
-            // En-tête présumé : Nom | Prix | CodeBarre | Stock
-            for (int i = 1; i < rows.size(); i++) {
-                List<String> r = rows.get(i);
-                try {
-                    String nom = r.size() > 0 ? r.get(0).trim() : "";
-                    String prixS = r.size() > 1 ? r.get(1).trim() : "0";
-                    String codeBarre = r.size() > 2 ? r.get(2).trim() : "";
-                    String stockS = r.size() > 3 ? r.get(3).trim() : "0";
-
-                    double prix = 0;
-                    int stock = 0;
-                    try { prix = Double.parseDouble(prixS.replace(",", ".")); } catch (Exception ignored) {}
-                    try { stock = Integer.parseInt(stockS); } catch (Exception ignored) {}
-
-                    var p = new life.pharmacy.models.Produit();
-                    try { p.setNom(nom); } catch (Exception ignored) {}
-                    try { p.getClass().getMethod("setPrix", double.class).invoke(p, prix); } catch (Exception ignored) {}
-                    try { p.getClass().getMethod("setCodeBarre", String.class).invoke(p, codeBarre); } catch (Exception ignored) {}
-                    try { p.getClass().getMethod("setStock", int.class).invoke(p, stock); } catch (Exception ignored) {}
-
-                    insert(p);
-                } catch (Exception ex) { ex.printStackTrace(); }
-            }
-        } catch (Exception e) { e.printStackTrace(); }
+    public static BulkImport.Report importCSV(File excelFile) {
+        return importCSV(excelFile, null);
     }
 
-    public static void exportCSV(File excelFile) {
-        try {
-            List<List<String>> rows = new ArrayList<>();
-            rows.add(Arrays.asList("Nom", "Prix", "CodeBarre", "Stock"));
-            for (life.pharmacy.models.Produit p : getAll()) {
-                String prixS = "0";
-                String stockS = "";
-                try { prixS = String.valueOf(p.getClass().getMethod("getPrix").invoke(p)); } catch (Exception ignored) {}
-                try { stockS = String.valueOf(p.getClass().getMethod("getStock").invoke(p)); } catch (Exception ignored) {}
-                rows.add(Arrays.asList(
-                        safe(p.getNom()),
-                        prixS,
-                        safe(getCodeBarreSafe(p)),
-                        stockS
-                ));
-            }
-            ExcelExporter.write(rows, excelFile);
-        } catch (Exception e) { e.printStackTrace(); }
+    // En-tête présumé : Nom | Prix | CodeBarre | Stock
+    public static BulkImport.Report importCSV(File excelFile, ExcelImporter.ProgressListener progress) {
+        return IMPORT_CSV.time(() -> bulkImport(ProduitMapper::fromRow, excelFile, progress));
     }
 
-    private static String safe(String s) { return s == null ? "" : s; }
-    private static String getCodeBarreSafe(life.pharmacy.models.Produit p) {
-        try { var m = p.getClass().getMethod("getCodeBarre"); Object v = m.invoke(p); return v == null ? "" : String.valueOf(v); } catch (Exception ex) { return ""; }
+    public static void exportCSV(File excelFile) {
+        try (Timer.Sample mesure = EXPORT_CSV.start()) {
+            try (Connection conn = Database.getReadConnection()) {
+                ExcelExporter.exportQuery(conn, "SELECT * FROM produits ORDER BY nom ASC", ProduitMapper.HEADER, rs -> ProduitMapper.toRow(ProduitMapper.ROW.map(rs)), excelFile);
+            } catch (Exception e) {
+                e.printStackTrace();
+                mesure.error();
+            }
+        }
     }
-
-
 }
@@ -1,6 +1,14 @@
 package life.pharmacy.services;
 
+import life.pharmacy.analytics.Dimension;
+import life.pharmacy.analytics.PivotResult;
+import life.pharmacy.analytics.SalesAnalytics;
+import life.pharmacy.analytics.SalesQuery;
 import life.pharmacy.config.Database;
+import life.pharmacy.config.StatementCache;
+import life.pharmacy.mappers.RecetteMapper;
+import life.pharmacy.metrics.Metrics;
+import life.pharmacy.metrics.Timer;
 import life.pharmacy.models.Recette;
 import life.pharmacy.utils.ExcelExporter;
 import life.pharmacy.utils.ExcelImporter;
@@ -8,137 +16,136 @@ import life.pharmacy.utils.ExcelImporter;
 import java.io.*;
 import java.sql.*;
 import java.time.LocalDate;
-import java.time.LocalDateTime;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 
 public class RecetteService {
 
-    static {
-        // création table si inexistante
-        try (Connection conn = Database.getConnection();
-             Statement stmt = conn.createStatement()) {
-            stmt.execute("""
-                        CREATE TABLE IF NOT EXISTS recettes (
-                            id INTEGER PRIMARY KEY AUTOINCREMENT,
-                            date TEXT NOT NULL, -- stocke ISO_LOCAL_DATE
-                            montant REAL NOT NULL,
-                            type TEXT
-                        )
-                    """);
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-    }
+    private static final Timer INSERT = Metrics.timer("recettes.insert");
+    private static final Timer GET_ALL = Metrics.timer("recettes.getAll");
+    private static final Timer GET_BY_RANGE = Metrics.timer("recettes.getByRange");
+    private static final Timer GET_AGGREGATED = Metrics.timer("recettes.getAggregated");
+    private static final Timer IMPORT_FROM_EXCEL = Metrics.timer("recettes.importFromExcel");
+    private static final Timer GET_AGGREGATED_FROM_FACTURES = Metrics.timer("recettes.getAggregatedFromFactures");
+    private static final Timer ANALYSE = Metrics.timer("recettes.analyse");
+    private static final Timer SYNC_RECETTES_FROM_FACTURES = Metrics.timer("recettes.syncRecettesFromFactures");
+    private static final Timer IMPORT_CSV = Metrics.timer("recettes.importCSV");
+    private static final Timer EXPORT_CSV = Metrics.timer("recettes.exportCSV");
 
     public static void insert(Recette r) {
-        String sql = "INSERT INTO recettes(date, montant, type) VALUES (?, ?, ?)";
-        try (Connection conn = Database.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-            ps.setString(1, r.getDate().toString());
-            ps.setDouble(2, r.getMontant());
-            ps.setString(3, r.getType());
-            ps.executeUpdate();
-            try (ResultSet g = ps.getGeneratedKeys()) {
-                if (g.next()) r.setId(g.getInt(1));
+        try (Timer.Sample mesure = INSERT.start()) {
+            String sql = "INSERT INTO recettes(date, date_epoch_day, montant, type) VALUES (?, ?, ?, ?)";
+            try {
+                WriteCoordinator.execute(conn -> {
+                    try (PreparedStatement ps = StatementCache.prepare(conn, sql, Statement.RETURN_GENERATED_KEYS)) {
+                        ps.setString(1, r.getDate().toString());
+                        ps.setLong(2, r.getDate().toEpochDay());
+                        ps.setDouble(3, r.getMontant());
+                        ps.setString(4, r.getType());
+                        ps.executeUpdate();
+                        try (ResultSet g = ps.getGeneratedKeys()) {
+                            if (g.next()) r.setId(g.getInt(1));
+                        }
+                    }
+                    return r;
+                });
+            } catch (SQLException e) {
+                e.printStackTrace();
+                mesure.error();
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
         }
     }
 
     public static List<Recette> getAll() {
-        List<Recette> list = new ArrayList<>();
-        String sql = "SELECT * FROM recettes ORDER BY date DESC";
-        try (Connection conn = Database.getConnection();
-             Statement st = conn.createStatement();
-             ResultSet rs = st.executeQuery(sql)) {
-            while (rs.next()) {
-                Recette r = new Recette();
-                r.setId(rs.getInt("id"));
-                r.setDate(LocalDate.parse(rs.getString("date")));
-                r.setMontant(rs.getDouble("montant"));
-                r.setType(rs.getString("type"));
-                list.add(r);
+        try (Timer.Sample mesure = GET_ALL.start()) {
+            List<Recette> list = new ArrayList<>();
+            String sql = "SELECT * FROM recettes ORDER BY date_epoch_day DESC";
+            try (Connection conn = Database.getReadConnection();
+                 Statement st = conn.createStatement();
+                 ResultSet rs = st.executeQuery(sql)) {
+                while (rs.next()) {
+                    list.add(RecetteMapper.ROW.map(rs));
+                }
+            } catch (SQLException e) {
+                e.printStackTrace();
+                mesure.error();
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
+            return list;
         }
-        return list;
     }
 
     public static List<Recette> getByRange(LocalDate start, LocalDate end) {
-        List<Recette> list = new ArrayList<>();
-        String sql = "SELECT * FROM recettes WHERE date BETWEEN ? AND ? ORDER BY date ASC";
-        try (Connection conn = Database.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, start.toString());
-            ps.setString(2, end.toString());
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    Recette r = new Recette();
-                    r.setId(rs.getInt("id"));
-                    r.setDate(LocalDate.parse(rs.getString("date")));
-                    r.setMontant(rs.getDouble("montant"));
-                    r.setType(rs.getString("type"));
-                    list.add(r);
+        try (Timer.Sample mesure = GET_BY_RANGE.start()) {
+            List<Recette> list = new ArrayList<>();
+            String sql = "SELECT * FROM recettes WHERE date_epoch_day BETWEEN ? AND ? ORDER BY date_epoch_day ASC";
+            try (Connection conn = Database.getReadConnection();
+                 PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setLong(1, start.toEpochDay());
+                ps.setLong(2, end.toEpochDay());
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        list.add(RecetteMapper.ROW.map(rs));
+                    }
                 }
+            } catch (SQLException e) {
+                e.printStackTrace();
+                mesure.error();
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
+            return list;
         }
-        return list;
     }
 
     /**
      * Aggregation par période.
      * granularity: "DAY", "MONTH", "YEAR"
      * renvoie une liste de PeriodTotal (period string, total)
+     * <p>
+     * SQLite ne fait que la somme par jour (index couvrant sur date_epoch_day, montant) ;
+     * le regroupement en mois / années se fait ensuite sur ces totaux journaliers.
      */
     public static List<PeriodTotal> getAggregated(LocalDate start, LocalDate end, String granularity) {
-        List<PeriodTotal> out = new ArrayList<>();
-        String periodExpr;
-        String orderExpr;
-
-        switch (granularity.toUpperCase()) {
-            case "MONTH":
-                // YYYY-MM
-                periodExpr = "substr(date,1,7)";
-                orderExpr = "period";
-                break;
-            case "YEAR":
-                // YYYY
-                periodExpr = "substr(date,1,4)";
-                orderExpr = "period";
-                break;
-            case "DAY":
-            default:
-                periodExpr = "date";
-                orderExpr = "period";
-                break;
-        }
-
-        String sql = "SELECT " + periodExpr + " AS period, SUM(montant) AS total " +
-                "FROM recettes WHERE date BETWEEN ? AND ? " +
-                "GROUP BY period ORDER BY " + orderExpr + " ASC";
+        try (Timer.Sample mesure = GET_AGGREGATED.start()) {
+            String sql = "SELECT date_epoch_day, SUM(montant) AS total " +
+                    "FROM recettes WHERE date_epoch_day BETWEEN ? AND ? " +
+                    "GROUP BY date_epoch_day ORDER BY date_epoch_day ASC";
+
+            int periodLength;
+            switch (granularity.toUpperCase()) {
+                case "MONTH":
+                    periodLength = 7;  // YYYY-MM
+                    break;
+                case "YEAR":
+                    periodLength = 4;  // YYYY
+                    break;
+                case "DAY":
+                default:
+                    periodLength = 10; // YYYY-MM-DD
+                    break;
+            }
 
-        try (Connection conn = Database.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, start.toString());
-            ps.setString(2, end.toString());
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    String period = rs.getString("period");
-                    double total = rs.getDouble("total");
-                    out.add(new PeriodTotal(period, total));
+            Map<String, Double> totals = new LinkedHashMap<>();
+            try (Connection conn = Database.getReadConnection();
+                 PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setLong(1, start.toEpochDay());
+                ps.setLong(2, end.toEpochDay());
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        String period = LocalDate.ofEpochDay(rs.getLong(1)).toString().substring(0, periodLength);
+                        totals.merge(period, rs.getDouble("total"), Double::sum);
+                    }
                 }
+            } catch (SQLException e) {
+                e.printStackTrace();
+                mesure.error();
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
+
+            List<PeriodTotal> out = new ArrayList<>(totals.size());
+            totals.forEach((period, total) -> out.add(new PeriodTotal(period, total)));
+            return out;
         }
-        return out;
     }
 
     // Petite classe utilitaire renvoyée par getAggregated
@@ -161,23 +168,29 @@ public class RecetteService {
     }
 
     public static void importFromExcel(File excelFile) {
-        //TODO: Implémenter l'importation des recettes depuis un fichier Excel
-        System.out.println("Importation des recettes depuis le fichier : " + excelFile.getAbsolutePath());
-
-        List<List<String>> rows = ExcelImporter.readExcel(excelFile);
-        if (rows.size() <= 1) return;
+        importFromExcel(excelFile, null);
+    }
 
-        // En-tête présumé : Date(yyyy-MM-dd) | Montant | Type
-        for (int i = 1; i < rows.size(); i++) {
-            List<String> r = rows.get(i);
+    public static void importFromExcel(File excelFile, ExcelImporter.ProgressListener progress) {
+        try (Timer.Sample mesure = IMPORT_FROM_EXCEL.start()) {
             try {
-                LocalDate date = r.size() > 0 && !r.get(0).isEmpty() ? LocalDate.parse(r.get(0)) : LocalDate.now();
-                double montant = r.size() > 1 && !r.get(1).isEmpty() ? Double.parseDouble(r.get(1)) : 0.0;
-                String type = r.size() > 2 ? r.get(2) : "jour";
-                Recette rec = new Recette(0, date, montant, type);
-                insert(rec);
-            } catch (Exception ex) {
-                ex.printStackTrace();
+                // En-tête présumé : Date(yyyy-MM-dd) | Montant | Type
+                ExcelImporter.stream(excelFile, (i, r) -> {
+                    if (i == 0) return; // en-tête
+                    try {
+                        LocalDate date = r.size() > 0 && !r.get(0).isEmpty() ? LocalDate.parse(r.get(0)) : LocalDate.now();
+                        double montant = r.size() > 1 && !r.get(1).isEmpty() ? Double.parseDouble(r.get(1)) : 0.0;
+                        String type = r.size() > 2 ? r.get(2) : "jour";
+                        Recette rec = new Recette(0, date, montant, type);
+                        insert(rec);
+                    } catch (Exception ex) {
+                        ex.printStackTrace();
+                        mesure.error();
+                    }
+                }, progress);
+            } catch (IOException e) {
+                e.printStackTrace();
+                mesure.error();
             }
         }
     }
@@ -185,48 +198,37 @@ public class RecetteService {
     // ------------- A) Agrégation directe depuis la table factures ----------------
 
     /**
-     * Agrège les montants des factures entre start (incl) et end (incl) selon la granularité.
-     * granularity: "DAY", "MONTH", "YEAR"
-     * Utilise la colonne factures.date (format ISO_LOCAL_DATE_TIME ou ISO_LOCAL_DATE)
-     * et factures.montant_ttc (ou montant_ttc selon ta colonne).
+     * Total TTC des factures entre start (incl) et end (incl) selon la granularité
+     * ("DAY", "MONTH", "YEAR"), lu dans les cumuls journaliers ventes_jour (VentesRollup) :
+     * coût proportionnel au nombre de jours, pas au nombre de factures.
      */
     public static List<PeriodTotal> getAggregatedFromFactures(LocalDate start, LocalDate end, String granularity) {
-        List<PeriodTotal> out = new ArrayList<>();
-        String periodExpr;
-
-        // On suppose la date stockée en ISO : "YYYY-MM-DD" ou "YYYY-MM-DDTHH:MM:SS"
-        switch (granularity.toUpperCase()) {
-            case "MONTH":
-                // YYYY-MM
-                periodExpr = "substr(date,1,7)";
-                break;
-            case "YEAR":
-                periodExpr = "substr(date,1,4)";
-                break;
-            case "DAY":
-            default:
-                periodExpr = "substr(date,1,10)"; // YYYY-MM-DD
-                break;
-        }
+        return getAggregatedFromFactures(start, end, granularity, null);
+    }
 
-        String sql = "SELECT " + periodExpr + " AS period, SUM(montant_ttc) AS total " +
-                "FROM factures " +
-                "WHERE substr(date,1,10) BETWEEN ? AND ? " +
-                "GROUP BY period ORDER BY period ASC";
+    /**
+     * Idem, limité à un mode de paiement (null ou "Tous" : tous les modes).
+     */
+    public static List<PeriodTotal> getAggregatedFromFactures(LocalDate start, LocalDate end, String granularity, String modePaiement) {
+        return GET_AGGREGATED_FROM_FACTURES.time(() -> VentesRollup.getTotals(start, end, granularity, modePaiement));
+    }
 
-        try (Connection conn = Database.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, start.toString());
-            ps.setString(2, end.toString());
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    out.add(new PeriodTotal(rs.getString("period"), rs.getDouble("total")));
-                }
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-        return out;
+    // ------------- A bis) Analyse des lignes de vente (en mémoire) ----------------
+
+    /**
+     * Montants HT, quantités et nombre de lignes vendues par produit, client, caissier, heure...
+     * calculés sur les lignes de factures tenues en colonnes par SalesAnalytics.
+     */
+    public static PivotResult analyse(SalesQuery query) {
+        return ANALYSE.time(() -> SalesAnalytics.query(query));
+    }
+
+    /**
+     * Les {@code top} premières valeurs de l'axe par montant (toutes pour un axe de temps),
+     * entre start et end inclus, pour un mode de paiement (null ou "Tous" : tous les modes).
+     */
+    public static PivotResult analyse(Dimension groupBy, LocalDate start, LocalDate end, String modePaiement, int top) {
+        return analyse(new SalesQuery(groupBy).between(start, end).modePaiement(modePaiement).limit(top));
     }
 
 // ------------- B) Optionnel : synchroniser la table recettes depuis factures -------------
@@ -239,138 +241,86 @@ public class RecetteService {
      * Attention : c'est destructif pour la table recettes actuelle.
      */
     public static void syncRecettesFromFactures(LocalDate start, LocalDate end, String granularity) {
-        // On calcule d'abord l'agrégation depuis les factures
-        List<PeriodTotal> data = getAggregatedFromFactures(start, end, granularity);
-
-        // Ensuite on insère en base (table recettes) : une ligne par period
-        // La table recettes attend date (ISO_LOCAL_DATE), montant, type
-        try (Connection conn = Database.getConnection()) {
-            conn.setAutoCommit(false);
-
-            // Option A: supprimer les recettes dans la plage => puis insert
-            try (PreparedStatement deleteP = conn.prepareStatement("DELETE FROM recettes WHERE date BETWEEN ? AND ?")) {
-                deleteP.setString(1, start.toString());
-                deleteP.setString(2, end.toString());
-                deleteP.executeUpdate();
-            }
+        try (Timer.Sample mesure = SYNC_RECETTES_FROM_FACTURES.start()) {
+            // On calcule d'abord l'agrégation depuis les factures
+            List<PeriodTotal> data = getAggregatedFromFactures(start, end, granularity);
 
-            try (PreparedStatement insertP = conn.prepareStatement("INSERT INTO recettes(date, montant, type) VALUES (?, ?, ?)")) {
-                for (PeriodTotal p : data) {
-                    String period = p.getPeriod();
-                    // Convertir period en date ISO (on stocke la première date du period)
-                    String dateForRow = period;
-                    if ("MONTH".equalsIgnoreCase(granularity)) {
-                        // period is YYYY-MM -> put first day YYYY-MM-01
-                        dateForRow = period + "-01";
-                    } else if ("YEAR".equalsIgnoreCase(granularity)) {
-                        dateForRow = period + "-01-01";
-                    } // else DAY is fine (YYYY-MM-DD)
-
-                    insertP.setString(1, dateForRow);
-                    insertP.setDouble(2, p.getTotal());
-                    insertP.setString(3, granularity.toLowerCase());
-                    insertP.addBatch();
-                }
-                insertP.executeBatch();
-            }
+            // Ensuite on insère en base (table recettes) : une ligne par period
+            // La table recettes attend date (ISO_LOCAL_DATE), montant, type
+            try {
+                WriteCoordinator.execute(conn -> {
+                    // Option A: supprimer les recettes dans la plage => puis insert
+                    try (PreparedStatement deleteP = conn.prepareStatement("DELETE FROM recettes WHERE date_epoch_day BETWEEN ? AND ?")) {
+                        deleteP.setLong(1, start.toEpochDay());
+                        deleteP.setLong(2, end.toEpochDay());
+                        deleteP.executeUpdate();
+                    }
 
-            conn.commit();
-        } catch (SQLException e) {
-            e.printStackTrace();
+                    try (PreparedStatement insertP = conn.prepareStatement("INSERT INTO recettes(date, date_epoch_day, montant, type) VALUES (?, ?, ?, ?)")) {
+                        for (PeriodTotal p : data) {
+                            String period = p.getPeriod();
+                            // Convertir period en date ISO (on stocke la première date du period)
+                            String dateForRow = period;
+                            if ("MONTH".equalsIgnoreCase(granularity)) {
+                                // period is YYYY-MM -> put first day YYYY-MM-01
+                                dateForRow = period + "-01";
+                            } else if ("YEAR".equalsIgnoreCase(granularity)) {
+                                dateForRow = period + "-01-01";
+                            } // else DAY is fine (YYYY-MM-DD)
+
+                            insertP.setString(1, dateForRow);
+                            insertP.setLong(2, LocalDate.parse(dateForRow).toEpochDay());
+                            insertP.setDouble(3, p.getTotal());
+                            insertP.setString(4, granularity.toLowerCase());
+                            insertP.addBatch();
+                        }
+                        insertP.executeBatch();
+                    }
+
+                    return data;
+                });
+            } catch (SQLException e) {
+                e.printStackTrace();
+                mesure.error();
+            }
         }
     }
 
     public static void importCSV(File excelFile) {
-        try {
-            List<List<String>> rows = ExcelExporter.read(excelFile);
-            if (rows == null || rows.size() <= 1) return;
-
-            // En-tête présumé : Date | MontantHT | MontantTVA | MontantTTC | ModePaiement | Source
-            for (int i = 1; i < rows.size(); i++) {
-                List<String> r = rows.get(i);
-                try {
-                    String dateStr     = r.size() > 0 ? r.get(0).trim() : "";
-                    String montantHTs  = r.size() > 1 ? r.get(1).trim() : "0";
-                    String montantTVAs = r.size() > 2 ? r.get(2).trim() : "0";
-                    String montantTTCs = r.size() > 3 ? r.get(3).trim() : "0";
-                    String mode        = r.size() > 4 ? r.get(4).trim() : "";
-                    String source      = r.size() > 5 ? r.get(5).trim() : "";
-
-                    // Création de l'entité Recette (utilise setters pour compatibilité)
-                    life.pharmacy.models.Recette rec = new life.pharmacy.models.Recette();
-                    // Date : tenter LocalDate puis LocalDateTime puis substring fallback
-                    if (!dateStr.isEmpty()) {
-                        try { rec.setDate(LocalDate.parse(dateStr)); }
-                        catch (Exception ex1) {
-                            try { rec.setDate(LocalDate.from(LocalDateTime.parse(dateStr))); }
-                            catch (Exception ex2) {
-                                try { rec.setDate(LocalDate.parse(dateStr.substring(0, 10))); }
-                                catch (Exception ignored) {}
-                            }
-                        }
-                    }
+        importCSV(excelFile, null);
+    }
 
-                    // Montants (tolérance pour virgule)
-                    double montantHT = 0, montantTVA = 0, montantTTC = 0;
-                    try { montantHT = Double.parseDouble(montantHTs.replace(",", ".")); } catch (Exception ignored) {}
-                    try { montantTVA = Double.parseDouble(montantTVAs.replace(",", ".")); } catch (Exception ignored) {}
-                    try { montantTTC = Double.parseDouble(montantTTCs.replace(",", ".")); } catch (Exception ignored) {}
-
-                    try { rec.setMontant(montantHT); } catch (Exception ignored) {}
-//                    try { rec.setMontantTVA(montantTVA); } catch (Exception ignored) {}
-//                    try { rec.setMontantTTC(montantTTC); } catch (Exception ignored) {}
-//                    try { rec.setModePaiement(mode); } catch (Exception ignored) {}
-//                    try { rec.setSource(source); } catch (Exception ignored) {}
-
-                    // Persister (adapte si ta méthode s'appelle autrement : insert/save)
-                    insert(rec);
-                } catch (Exception ex) {
-                    ex.printStackTrace();
-                }
+    public static void importCSV(File excelFile, ExcelImporter.ProgressListener progress) {
+        try (Timer.Sample mesure = IMPORT_CSV.start()) {
+            try {
+                // En-tête présumé : Date | MontantHT | MontantTVA | MontantTTC | ModePaiement | Source
+                ExcelImporter.stream(excelFile, (i, r) -> {
+                    if (i == 0) return; // en-tête
+                    try {
+                        insert(RecetteMapper.fromRow(r));
+                    } catch (Exception ex) {
+                        ex.printStackTrace();
+                        mesure.error();
+                    }
+                }, progress);
+            } catch (Exception e) {
+                e.printStackTrace();
+                mesure.error();
             }
-        } catch (Exception e) {
-            e.printStackTrace();
         }
     }
 
     public static void exportCSV(File excelFile) {
-        try {
-            List<List<String>> rows = new ArrayList<>();
-            rows.add(Arrays.asList("Date", "MontantHT", "MontantTVA", "MontantTTC", "ModePaiement", "Source"));
-
-            for (life.pharmacy.models.Recette r : getAll()) {
-                String dateStr = "";
-                try {
-                    // getDate() peut renvoyer LocalDate / LocalDateTime / String selon ton modèle
-                    Object d = r.getDate();
-                    if (d != null) dateStr = d.toString();
-                } catch (Exception ignored) {}
-
-                String mht = "";
-                String mtva = "";
-                String mttc = "";
-                try { mht = String.valueOf(r.getMontant()); } catch (Exception ignored) {}
-//                try { mtva = String.valueOf(r.getMontantTVA()); } catch (Exception ignored) {}
-//                try { mttc = String.valueOf(r.getMontantTTC()); } catch (Exception ignored) {}
-
-                String mode = "";
-                String source = "";
-//                try { mode = r.getModePaiement(); } catch (Exception ignored) {}
-//                try { source = r.getSource(); } catch (Exception ignored) {}
-
-                rows.add(Arrays.asList(safe(dateStr), safe(mht), safe(mtva), safe(mttc), safe(mode), safe(source)));
+        try (Timer.Sample mesure = EXPORT_CSV.start()) {
+            try (Connection conn = Database.getReadConnection()) {
+                ExcelExporter.exportQuery(conn, "SELECT * FROM recettes ORDER BY date_epoch_day DESC", RecetteMapper.HEADER, rs -> RecetteMapper.toRow(RecetteMapper.ROW.map(rs)), excelFile);
+            } catch (Exception e) {
+                e.printStackTrace();
+                mesure.error();
             }
-
-            ExcelExporter.write(rows, excelFile);
-        } catch (Exception e) {
-            e.printStackTrace();
         }
     }
 
-    private static String safe(String s) {
-        return s == null ? "" : s;
-    }
-
     // placeholder signatures — adapte si noms différents
 //    private static void insert(life.pharmacy.models.Recette r) {
 //        // appelle ta méthode réelle d'insertion (ex : DAO ou repository)
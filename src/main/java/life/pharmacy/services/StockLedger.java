@@ -0,0 +1,281 @@
+package life.pharmacy.services;
+
+import life.pharmacy.config.Database;
+import life.pharmacy.config.StatementCache;
+import life.pharmacy.models.Produit;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stock disponible par produit, tenu en mémoire : c'est la référence pour la caisse.
+ * <p>
+ * Une vente décrémente le compteur du produit dès sa validation en caisse, avant son écriture
+ * en base par le WriteCoordinator ; la quantité reste « en attente » jusqu'au commit
+ * (confirmée) ou à l'échec (rendue au stock).
+ * <p>
+ * Une fois suivi, le disponible d'un produit ne dépend plus des lectures de la table produits faites
+ * par le catalogue : une lecture concurrente d'une validation peut compter ou non la vente, et en
+ * déduire à nouveau la quantité en attente créerait du stock fantôme. La base n'est relue que par
+ * {@link #resync()}, sous la connexion d'écriture : le WriteCoordinator confirme les ventes avant de
+ * la rendre, la table et les quantités en attente sont donc toujours vues dans le même état.
+ * <p>
+ * D'autres postes peuvent vendre ou réassortir sur le même fichier : la base est relue toutes les
+ * REFRESH_MS (-Dpharmacy.stock.refreshSec=..., 0 désactive), au rechargement du catalogue et dès
+ * qu'une sortie de stock est refusée en base ({@link #refreshSoon}).
+ * <p>
+ * Les paniers en cours de saisie réservent leur quantité (StockReservations) : une réservation
+ * ne sort pas le produit du stock mais empêche une autre caisse de vendre les mêmes boîtes.
+ * <p>
+ * Chaque produit a son propre verrou : deux ventes de produits différents ne se bloquent pas,
+ * et la lecture du disponible ne prend aucun verrou.
+ */
+public class StockLedger {
+
+    private static final Map<Integer, Entry> entries = new ConcurrentHashMap<>();
+
+    private static final long REFRESH_MS = TimeUnit.SECONDS.toMillis(Long.getLong("pharmacy.stock.refreshSec", 30));
+
+    // relectures de la base, hors du thread d'écriture qui tient déjà la connexion
+    private static volatile ScheduledExecutorService refresher;
+
+    private static class Entry {
+        volatile int available;
+        boolean known; // disponible initialisé depuis la base
+        int pending; // vendu, pas encore validé en base
+        int reserved; // tenu par des paniers en cours
+        Produit produit; // instance du catalogue, dont la quantité affichée suit le compteur
+
+        void publish() {
+            if (produit != null) produit.setQuantite(available);
+        }
+    }
+
+    private static Entry entry(int id) {
+        return entries.computeIfAbsent(id, k -> new Entry());
+    }
+
+    // produit pas encore suivi : le chargement du catalogue l'ajoute au registre
+    private static Entry tracked(int id) {
+        Entry e = entries.get(id);
+        if (e != null) return e;
+        ProduitCatalog.getById(id);
+        return entry(id);
+    }
+
+    /**
+     * Prend en compte un produit du catalogue (chargement, création, modification). Sa quantité
+     * n'initialise que le disponible d'un produit pas encore suivi (aucune vente en cours) ; sinon
+     * c'est le disponible du registre qui est recopié dans le produit.
+     */
+    public static void track(Produit p) {
+        if (p == null) return;
+        if (refresher == null) refresher();
+        Entry e = entry(p.getId());
+        synchronized (e) {
+            e.produit = p;
+            if (!e.known) {
+                e.available = p.getQuantite() - e.pending;
+                e.known = true;
+            }
+            e.publish();
+        }
+    }
+
+    /**
+     * Relit la quantité en base de tous les produits suivis (après un import qui l'a modifiée) :
+     * disponible = quantité en base - ventes pas encore validées.
+     */
+    public static void resync() throws SQLException {
+        // connexion d'écriture : aucune validation de vente ne peut s'intercaler
+        try (Connection conn = Database.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT id, quantite FROM produits")) {
+            while (rs.next()) {
+                Entry e = entries.get(rs.getInt(1));
+                if (e == null) continue;
+                synchronized (e) {
+                    e.available = rs.getInt(2) - e.pending;
+                    e.known = true;
+                    e.publish();
+                }
+            }
+        }
+    }
+
+    /**
+     * Relit la quantité en base d'un produit suivi.
+     */
+    public static void resync(int id) throws SQLException {
+        Entry e = entries.get(id);
+        if (e == null) return;
+        try (Connection conn = Database.getConnection();
+             PreparedStatement ps = StatementCache.prepare(conn, "SELECT quantite FROM produits WHERE id = ?")) {
+            ps.setInt(1, id);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) return;
+                synchronized (e) {
+                    e.available = rs.getInt(1) - e.pending;
+                    e.known = true;
+                    e.publish();
+                }
+            }
+        }
+    }
+
+    /**
+     * Relit la base en arrière-plan : tous les produits suivis, ou le seul produit {@code id} (> 0).
+     * Appelée depuis le thread d'écriture (sortie refusée par la base) : la relecture attend que le
+     * lot en cours soit validé et ses ventes confirmées, sans quoi elles seraient comptées deux fois.
+     */
+    public static void refreshSoon(int id) {
+        refresher().execute(() -> refresh(id));
+    }
+
+    private static void refresh(int id) {
+        // pool fermé (arrêt de l'application) : ne pas le rouvrir pour une relecture
+        if (entries.isEmpty() || !Database.isOpen()) return;
+        try {
+            if (id > 0) resync(id);
+            else resync();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static synchronized ScheduledExecutorService refresher() {
+        if (refresher != null) return refresher;
+        ScheduledExecutorService r = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread t = new Thread(task, "stock-refresh");
+            t.setDaemon(true);
+            return t;
+        });
+        if (REFRESH_MS > 0) {
+            r.scheduleWithFixedDelay(() -> refresh(0), REFRESH_MS, REFRESH_MS, TimeUnit.MILLISECONDS);
+        }
+        refresher = r;
+        return r;
+    }
+
+    /**
+     * Correction de stock validée en base (quantite = quantite + delta), à appeler sous la même
+     * connexion d'écriture que l'UPDATE.
+     */
+    public static void adjust(int id, int delta) {
+        Entry e = entries.get(id);
+        if (e == null) return;
+        synchronized (e) {
+            e.available += delta;
+            e.publish();
+        }
+    }
+
+    public static void forget(int id) {
+        entries.remove(id);
+    }
+
+    /**
+     * Quantité disponible, sans verrou ; -1 si le produit n'est pas suivi.
+     */
+    public static int available(int id) {
+        Entry e = entries.get(id);
+        return e == null ? -1 : e.available;
+    }
+
+    /**
+     * Quantité vendable par une nouvelle réservation : disponible moins les réservations en cours.
+     */
+    public static int free(int id) {
+        Entry e = tracked(id);
+        synchronized (e) {
+            return e.available - e.reserved;
+        }
+    }
+
+    /**
+     * Fait varier la quantité réservée (delta négatif : libération). Une réservation supplémentaire
+     * n'est accordée que si le stock libre la couvre ; retourne false sinon.
+     */
+    public static boolean reserve(int id, int delta) {
+        Entry e = tracked(id);
+        synchronized (e) {
+            if (delta > 0 && e.available - e.reserved < delta) return false;
+            e.reserved = Math.max(0, e.reserved + delta);
+            return true;
+        }
+    }
+
+    /**
+     * Sortie de stock pour une vente en cours d'écriture : la vente consomme les {@code held}
+     * unités déjà réservées par son panier et doit trouver le reste dans le stock libre.
+     * Retourne false (sans rien modifier) si le stock ne suffit pas.
+     */
+    public static boolean take(int id, int quantite, int held) {
+        Entry e = tracked(id);
+        synchronized (e) {
+            if (e.available - (e.reserved - held) < quantite) return false;
+            e.reserved -= held;
+            e.available -= quantite;
+            e.pending += quantite;
+            e.publish();
+            return true;
+        }
+    }
+
+    /**
+     * Annule un {@link #take} qui n'a pas encore été soumis à l'écriture (facture refusée).
+     */
+    public static void untake(int id, int quantite, int held) {
+        Entry e = entry(id);
+        synchronized (e) {
+            e.reserved += held;
+            e.available += quantite;
+            e.pending -= quantite;
+            e.publish();
+        }
+    }
+
+    /**
+     * La vente est validée en base : la table produits reflète désormais la sortie.
+     * Appelée par le WriteCoordinator avant qu'il ne rende la connexion d'écriture.
+     */
+    public static void committed(int id, int quantite) {
+        Entry e = entries.get(id);
+        if (e == null) return; // produit supprimé entre-temps
+        synchronized (e) {
+            e.pending -= quantite;
+        }
+    }
+
+    /**
+     * La vente n'a pas été enregistrée : la quantité revient au stock.
+     */
+    public static void cancelled(int id, int quantite) {
+        Entry e = entries.get(id);
+        if (e == null) return;
+        synchronized (e) {
+            e.pending -= quantite;
+            e.available += quantite;
+            e.publish();
+        }
+    }
+
+    /**
+     * Quantité vendue mais pas encore écrite en base (0 si le produit n'est pas suivi).
+     */
+    public static int pending(int id) {
+        Entry e = entries.get(id);
+        if (e == null) return 0;
+        synchronized (e) {
+            return e.pending;
+        }
+    }
+}
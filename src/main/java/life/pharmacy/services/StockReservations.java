@@ -0,0 +1,191 @@
+package life.pharmacy.services;
+
+import life.pharmacy.models.DetailFacture;
+import life.pharmacy.models.Facture;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Réservations de stock des paniers en cours de saisie.
+ * <p>
+ * Chaque ligne ajoutée en caisse réserve sa quantité dans le StockLedger ; à la validation,
+ * {@link #checkout} convertit les réservations du panier en sortie de stock. Un panier sans
+ * activité pendant TTL_MS (caisse abandonnée, fenêtre fermée) est libéré automatiquement.
+ * <p>
+ * Aucun verrou global : un panier n'est verrouillé que par sa caisse, et le stock de chaque
+ * produit par son entrée du registre.
+ */
+public class StockReservations {
+
+    // réglable par -Dpharmacy.reservation.ttlSec=...
+    private static final long TTL_MS = TimeUnit.SECONDS.toMillis(Long.getLong("pharmacy.reservation.ttlSec", 900));
+    private static final long SWEEP_MS = Math.min(30_000, TTL_MS);
+
+    private static final Map<Long, Basket> baskets = new ConcurrentHashMap<>();
+    private static final AtomicLong ids = new AtomicLong();
+
+    private static ScheduledExecutorService sweeper;
+
+    private static class Basket {
+        final Map<Integer, Integer> held = new HashMap<>(); // produit -> quantité réservée
+        long expiresAt;
+        boolean closed;
+
+        void touch() {
+            expiresAt = System.currentTimeMillis() + TTL_MS;
+        }
+    }
+
+    /**
+     * Identifiant d'un nouveau panier (les réservations sont créées à la première ligne).
+     */
+    public static long open() {
+        return ids.incrementAndGet();
+    }
+
+    /**
+     * Fixe la quantité réservée par le panier pour un produit (0 pour retirer la ligne).
+     * Retourne false si le stock libre ne couvre pas l'augmentation : la réservation précédente
+     * est alors conservée telle quelle.
+     */
+    public static boolean set(long basketId, int produitId, int quantite) {
+        ensureSweeper();
+        while (true) {
+            Basket b = live(basketId);
+            synchronized (b) {
+                // libéré par expiration entre-temps : on repart du panier vide qui le remplace
+                if (!isLive(basketId, b)) continue;
+                int current = b.held.getOrDefault(produitId, 0);
+                int target = Math.max(0, quantite);
+                if (target != current && !StockLedger.reserve(produitId, target - current)) return false;
+                if (target == 0) b.held.remove(produitId);
+                else b.held.put(produitId, target);
+                b.touch();
+                return true;
+            }
+        }
+    }
+
+    public static int held(long basketId, int produitId) {
+        Basket b = baskets.get(basketId);
+        if (b == null) return 0;
+        synchronized (b) {
+            return b.held.getOrDefault(produitId, 0);
+        }
+    }
+
+    /**
+     * Libère toutes les réservations du panier (annulation, nouveau client).
+     */
+    public static void release(long basketId) {
+        Basket b = baskets.remove(basketId);
+        if (b == null) return;
+        synchronized (b) {
+            close(b);
+        }
+    }
+
+    /**
+     * Sortie de stock des lignes de la facture, en consommant les réservations du panier.
+     * Tout ou rien : si un produit manque, les lignes déjà sorties sont remises en stock,
+     * le panier garde ses réservations et une IllegalStateException nomme le produit.
+     * Le panier est fermé si la sortie réussit.
+     *
+     * @param basketId 0 pour une vente sans panier (le stock libre doit couvrir toute la facture)
+     */
+    public static void checkout(long basketId, Facture facture) {
+        Map<Integer, Integer> wanted = new LinkedHashMap<>();
+        Map<Integer, String> noms = new HashMap<>();
+        for (DetailFacture d : facture.getDetails()) {
+            if (d.getProduit() == null) continue;
+            wanted.merge(d.getProduit().getId(), d.getQuantite(), Integer::sum);
+            noms.putIfAbsent(d.getProduit().getId(), d.getProduit().getNom());
+        }
+
+        while (true) {
+            Basket b = basketId == 0 ? new Basket() : live(basketId);
+            synchronized (b) {
+                if (basketId != 0 && !isLive(basketId, b)) continue;
+                checkout(basketId, b, wanted, noms);
+                return;
+            }
+        }
+    }
+
+    // appelé sous le verrou du panier, vivant
+    private static void checkout(long basketId, Basket b, Map<Integer, Integer> wanted, Map<Integer, String> noms) {
+        Map<Integer, Integer> held = b.held;
+        Map<Integer, Integer> taken = new LinkedHashMap<>(); // produit -> réservation consommée
+        for (Map.Entry<Integer, Integer> w : wanted.entrySet()) {
+            int id = w.getKey();
+            int h = Math.min(held.getOrDefault(id, 0), w.getValue());
+            if (!StockLedger.take(id, w.getValue(), h)) {
+                for (Map.Entry<Integer, Integer> t : taken.entrySet()) {
+                    StockLedger.untake(t.getKey(), wanted.get(t.getKey()), t.getValue());
+                }
+                throw new IllegalStateException("Stock insuffisant pour " + noms.get(id)
+                        + " (disponible : " + Math.max(0, StockLedger.free(id) + h) + ")");
+            }
+            taken.put(id, h);
+        }
+        // réservations consommées ; celles des produits absents de la facture sont rendues
+        for (Map.Entry<Integer, Integer> e : held.entrySet()) {
+            int rest = e.getValue() - Math.min(e.getValue(), wanted.getOrDefault(e.getKey(), 0));
+            if (rest > 0) StockLedger.reserve(e.getKey(), -rest);
+        }
+        b.held.clear();
+        b.closed = true;
+        baskets.remove(basketId, b);
+    }
+
+    // panier de l'id, créé au besoin ; à verrouiller puis vérifier avec isLive
+    private static Basket live(long basketId) {
+        return baskets.computeIfAbsent(basketId, k -> new Basket());
+    }
+
+    // sous le verrou de b : b est encore le panier ouvert de l'id (sinon fermé ou retiré entre-temps)
+    private static boolean isLive(long basketId, Basket b) {
+        if (!b.closed && baskets.get(basketId) == b) return true;
+        baskets.remove(basketId, b);
+        return false;
+    }
+
+    private static void close(Basket b) {
+        if (b.closed) return;
+        for (Map.Entry<Integer, Integer> e : b.held.entrySet()) {
+            StockLedger.reserve(e.getKey(), -e.getValue());
+        }
+        b.held.clear();
+        b.closed = true;
+    }
+
+    private static synchronized void ensureSweeper() {
+        if (sweeper != null) return;
+        sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "reservations-expiry");
+            t.setDaemon(true);
+            return t;
+        });
+        sweeper.scheduleWithFixedDelay(StockReservations::expire, SWEEP_MS, SWEEP_MS, TimeUnit.MILLISECONDS);
+    }
+
+    // libère les paniers abandonnés
+    private static void expire() {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<Long, Basket> e : baskets.entrySet()) {
+            Basket b = e.getValue();
+            synchronized (b) {
+                if (b.expiresAt > now) continue;
+                close(b);
+                baskets.remove(e.getKey(), b);
+            }
+        }
+    }
+}
@@ -1,257 +1,241 @@
 package life.pharmacy.services;
 
 import life.pharmacy.config.Database;
+import life.pharmacy.config.StatementCache;
+import life.pharmacy.mappers.UtilisateurMapper;
+import life.pharmacy.metrics.Metrics;
+import life.pharmacy.metrics.Timer;
 import life.pharmacy.models.Utilisateur;
 import life.pharmacy.utils.ExcelExporter;
 import life.pharmacy.utils.ExcelImporter;
 
 import java.io.File;
+import java.io.IOException;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
 public class UtilisateurService {
-    private static final Object LOCK = new Object();
-
-    static {
-        try (Connection conn = Database.getConnection();
-             Statement stmt = conn.createStatement()) {
-            stmt.execute("""
-                        CREATE TABLE IF NOT EXISTS utilisateurs (
-                            id INTEGER PRIMARY KEY AUTOINCREMENT,
-                            nom TEXT NOT NULL,
-                            email TEXT UNIQUE NOT NULL,
-                            mot_de_passe TEXT NOT NULL,
-                            role TEXT NOT NULL
-                        )
-                    """);
-
-            // Si aucun utilisateur n'existe, on insère un admin par défaut
-            ResultSet rs = stmt.executeQuery("SELECT COUNT(*) as total FROM utilisateurs");
-            if (rs.next() && rs.getInt("total") == 0) {
-                stmt.executeUpdate("""
-                            INSERT INTO utilisateurs (nom, email, mot_de_passe, role)
-                            VALUES ('Administrateur', 'admin@lifepharma.com', 'admin123', 'admin')
-                        """);
-            }
 
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-    }
+    private static final Timer GET_ALL = Metrics.timer("utilisateurs.getAll");
+    private static final Timer LOGIN = Metrics.timer("utilisateurs.login");
+    private static final Timer CREATE_DEFAULT_ADMIN = Metrics.timer("utilisateurs.createDefaultAdmin");
+    private static final Timer INSERT = Metrics.timer("utilisateurs.insert");
+    private static final Timer IMPORT_FROM_EXCEL = Metrics.timer("utilisateurs.importFromExcel");
+    private static final Timer SAVE = Metrics.timer("utilisateurs.save");
+    private static final Timer UPDATE = Metrics.timer("utilisateurs.update");
+    private static final Timer DELETE = Metrics.timer("utilisateurs.delete");
+    private static final Timer GET_BY_ID = Metrics.timer("utilisateurs.getById");
+    private static final Timer IMPORT_CSV = Metrics.timer("utilisateurs.importCSV");
+    private static final Timer EXPORT_CSV = Metrics.timer("utilisateurs.exportCSV");
+    private static final Object LOCK = new Object();
 
     public static List<Utilisateur> getAll() {
-        synchronized (LOCK) {
-            List<Utilisateur> utilisateurs = new ArrayList<>();
-            try (Connection conn = Database.getConnection();
-                 Statement stmt = conn.createStatement();
-                 ResultSet rs = stmt.executeQuery("SELECT * FROM utilisateurs")) {
-                while (rs.next()) {
-                    utilisateurs.add(new Utilisateur(
-
-                            rs.getInt("id"),
-                            rs.getString("nom"),
-                            rs.getString("email"),
-                            rs.getString("mot_de_passe"),
-                            rs.getString("role")
-                    ));
+        try (Timer.Sample mesure = GET_ALL.start()) {
+            synchronized (LOCK) {
+                List<Utilisateur> utilisateurs = new ArrayList<>();
+                try (Connection conn = Database.getReadConnection();
+                     Statement stmt = conn.createStatement();
+                     ResultSet rs = stmt.executeQuery("SELECT * FROM utilisateurs")) {
+                    while (rs.next()) {
+                        utilisateurs.add(UtilisateurMapper.ROW.map(rs));
+                    }
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                    mesure.error();
                 }
-            } catch (SQLException e) {
-                e.printStackTrace();
+                return utilisateurs;
             }
-            return utilisateurs;
         }
     }
 
     public static Utilisateur login(String email, String motDePasse) {
-        synchronized (LOCK) {
-            try (Connection conn = Database.getConnection();
-                 PreparedStatement stmt = conn.prepareStatement(
-                         "SELECT * FROM utilisateurs WHERE email=? AND mot_de_passe=?")) {
-                stmt.setString(1, email);
-                stmt.setString(2, motDePasse);
-                ResultSet rs = stmt.executeQuery();
-                if (rs.next()) {
-                    return new Utilisateur(
-                            rs.getInt("id"),
-                            rs.getString("nom"),
-                            rs.getString("email"),
-                            rs.getString("mot_de_passe"),
-                            rs.getString("role")
-                    );
+        try (Timer.Sample mesure = LOGIN.start()) {
+            synchronized (LOCK) {
+                try (Connection conn = Database.getReadConnection();
+                     PreparedStatement stmt = StatementCache.prepare(conn,
+                             "SELECT * FROM utilisateurs WHERE email=? AND mot_de_passe=?")) {
+                    stmt.setString(1, email);
+                    stmt.setString(2, motDePasse);
+                    ResultSet rs = stmt.executeQuery();
+                    if (rs.next()) {
+                        return UtilisateurMapper.ROW.map(rs);
+                    }
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                    mesure.error();
                 }
-            } catch (SQLException e) {
-                e.printStackTrace();
+                return null;
             }
-            return null;
         }
     }
 
     public static void createDefaultAdmin() {
-        synchronized (LOCK) {
-            try (Connection conn = Database.getConnection();
-                 PreparedStatement pstmt = conn.prepareStatement(
-                         "INSERT INTO utilisateurs (nom, email, mot_de_passe, role) VALUES (?, ?, ?, ?)")) {
-                pstmt.setString(1, "Administrateur");
-                pstmt.setString(2, "admin@lifepharma.com");
-                pstmt.setString(3, "admin123");
-                pstmt.setString(4, "admin");
-                pstmt.executeUpdate();
-            } catch (SQLException e) {
-                // Si l'admin existe déjà (email unique), on ignore l'erreur
-                if (!e.getMessage().contains("UNIQUE constraint failed")) {
-                    e.printStackTrace();
+        try (Timer.Sample mesure = CREATE_DEFAULT_ADMIN.start()) {
+            synchronized (LOCK) {
+                try (Connection conn = Database.getConnection();
+                     PreparedStatement pstmt = conn.prepareStatement(
+                             "INSERT INTO utilisateurs (nom, email, mot_de_passe, role) VALUES (?, ?, ?, ?)")) {
+                    pstmt.setString(1, "Administrateur");
+                    pstmt.setString(2, "admin@lifepharma.com");
+                    pstmt.setString(3, "admin123");
+                    pstmt.setString(4, "admin");
+                    pstmt.executeUpdate();
+                } catch (SQLException e) {
+                    // Si l'admin existe déjà (email unique), on ignore l'erreur
+                    if (!e.getMessage().contains("UNIQUE constraint failed")) {
+                        e.printStackTrace();
+                        mesure.error();
+                    }
                 }
             }
         }
     }
 
     public static void insert(Utilisateur utilisateur) {
-        synchronized (LOCK) {
-            try (Connection conn = Database.getConnection();
-                 PreparedStatement pstmt = conn.prepareStatement("INSERT INTO utilisateurs (nom, email, motDePasse, role) VALUES (?, ?, ?, ?)")) {
-                pstmt.setString(1, utilisateur.getNom());
-                pstmt.setString(2, utilisateur.getEmail());
-                pstmt.setString(3, utilisateur.getMotDePasse());
-                pstmt.setString(4, utilisateur.getRole());
-                pstmt.executeUpdate();
-            } catch (SQLException e) {
-                e.printStackTrace();
+        try (Timer.Sample mesure = INSERT.start()) {
+            synchronized (LOCK) {
+                try (Connection conn = Database.getConnection();
+                     PreparedStatement pstmt = StatementCache.prepare(conn, "INSERT INTO utilisateurs (nom, email, mot_de_passe, role) VALUES (?, ?, ?, ?)")) {
+                    pstmt.setString(1, utilisateur.getNom());
+                    pstmt.setString(2, utilisateur.getEmail());
+                    pstmt.setString(3, utilisateur.getMotDePasse());
+                    pstmt.setString(4, utilisateur.getRole());
+                    pstmt.executeUpdate();
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                    mesure.error();
+                }
             }
         }
     }
 
-    public static void importFromExcel(File excelFile) {
-        List<List<String>> rows = ExcelImporter.readExcel(excelFile);
-        if (rows.size() <= 1) return;
+    public static BulkImport.Report importFromExcel(File excelFile) {
+        return importFromExcel(excelFile, null);
+    }
 
-        // En-tête présumé : Nom | Email | Role | MotDePasse
-        for (int i = 1; i < rows.size(); i++) {
-            List<String> r = rows.get(i);
-            try {
-                String nom = r.size() > 0 ? r.get(0) : "";
-                String email = r.size() > 1 ? r.get(1) : "";
-                String role = r.size() > 2 ? r.get(2) : "caissier";
-                String motDePasse = r.size() > 3 ? r.get(3) : "changeme";
+    // En-tête présumé : Nom | Email | Role | MotDePasse
+    public static BulkImport.Report importFromExcel(File excelFile, ExcelImporter.ProgressListener progress) {
+        return IMPORT_FROM_EXCEL.time(() -> bulkImport(UtilisateurMapper::fromExcelRow, excelFile, progress));
+    }
 
-                // Utiliser insert existant (ou méthode create)
-                Utilisateur u = new Utilisateur(0, nom, email, motDePasse, role);
-                insert(u); // assure-toi d'avoir une méthode insert qui gère doublons
-            } catch (Exception ex) {
-                ex.printStackTrace();
-            }
-        }
+    /**
+     * Import en masse : un utilisateur dont l'email existe déjà est mis à jour, les autres insérés.
+     */
+    private static BulkImport.Report bulkImport(BulkImport.Parser<Utilisateur> parser, File file, ExcelImporter.ProgressListener progress) {
+        return new BulkImport<>(parser,
+                "INSERT INTO utilisateurs (nom, email, mot_de_passe, role) VALUES (?, ?, ?, ?)",
+                (ps, u) -> {
+                    ps.setString(1, u.getNom());
+                    ps.setString(2, u.getEmail());
+                    ps.setString(3, u.getMotDePasse());
+                    ps.setString(4, u.getRole());
+                })
+                .upsert(Utilisateur::getEmail,
+                        "UPDATE utilisateurs SET nom=?, mot_de_passe=?, role=? WHERE email=?",
+                        (ps, u) -> {
+                            ps.setString(1, u.getNom());
+                            ps.setString(2, u.getMotDePasse());
+                            ps.setString(3, u.getRole());
+                            ps.setString(4, u.getEmail());
+                        })
+                .run(file, progress);
     }
 
     public static void save(Utilisateur utilisateur) {
-        String sql = "INSERT INTO utilisateur(nom, mot_de_passe, role) VALUES (?, ?, ?)";
-        try (Connection conn = Database.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Timer.Sample mesure = SAVE.start()) {
+            String sql = "INSERT INTO utilisateurs (nom, email, mot_de_passe, role) VALUES (?, ?, ?, ?)";
+            try (Connection conn = Database.getConnection();
+                 PreparedStatement stmt = StatementCache.prepare(conn, sql)) {
 
-            stmt.setString(1, utilisateur.getNom());
-            stmt.setString(2, utilisateur.getMotDePasse());
-            stmt.setString(3, utilisateur.getRole());
+                stmt.setString(1, utilisateur.getNom());
+                stmt.setString(2, utilisateur.getEmail());
+                stmt.setString(3, utilisateur.getMotDePasse());
+                stmt.setString(4, utilisateur.getRole());
 
-            stmt.executeUpdate();
-        } catch (SQLException e) {
-            e.printStackTrace();
+                stmt.executeUpdate();
+            } catch (SQLException e) {
+                e.printStackTrace();
+                mesure.error();
+            }
         }
     }
 
     public static void update(Utilisateur utilisateur) {
-        String sql = "UPDATE utilisateur SET nom = ?, mot_de_passe = ?, role = ? WHERE id = ?";
-        try (Connection conn = Database.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Timer.Sample mesure = UPDATE.start()) {
+            String sql = "UPDATE utilisateurs SET nom = ?, mot_de_passe = ?, role = ? WHERE id = ?";
+            try (Connection conn = Database.getConnection();
+                 PreparedStatement stmt = StatementCache.prepare(conn, sql)) {
 
-            stmt.setString(1, utilisateur.getNom());
-            stmt.setString(2, utilisateur.getMotDePasse());
-            stmt.setString(3, utilisateur.getRole());
-            stmt.setInt(4, utilisateur.getId());
+                stmt.setString(1, utilisateur.getNom());
+                stmt.setString(2, utilisateur.getMotDePasse());
+                stmt.setString(3, utilisateur.getRole());
+                stmt.setInt(4, utilisateur.getId());
 
-            stmt.executeUpdate();
-        } catch (SQLException e) {
-            e.printStackTrace();
+                stmt.executeUpdate();
+            } catch (SQLException e) {
+                e.printStackTrace();
+                mesure.error();
+            }
         }
     }
 
     public static void delete(int id) {
-        String sql = "DELETE FROM utilisateur WHERE id = ?";
-        try (Connection conn = Database.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Timer.Sample mesure = DELETE.start()) {
+            String sql = "DELETE FROM utilisateurs WHERE id = ?";
+            try (Connection conn = Database.getConnection();
+                 PreparedStatement stmt = StatementCache.prepare(conn, sql)) {
 
-            stmt.setInt(1, id);
-            stmt.executeUpdate();
-        } catch (SQLException e) {
-            e.printStackTrace();
+                stmt.setInt(1, id);
+                stmt.executeUpdate();
+            } catch (SQLException e) {
+                e.printStackTrace();
+                mesure.error();
+            }
         }
     }
 
     public static Utilisateur getById(int id) {
-        String sql = "SELECT * FROM utilisateur WHERE id = ?";
-        try (Connection conn = Database.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Timer.Sample mesure = GET_BY_ID.start()) {
+            String sql = "SELECT * FROM utilisateurs WHERE id = ?";
+            try (Connection conn = Database.getReadConnection();
+                 PreparedStatement stmt = StatementCache.prepare(conn, sql)) {
 
-            stmt.setInt(1, id);
-            ResultSet rs = stmt.executeQuery();
+                stmt.setInt(1, id);
+                ResultSet rs = stmt.executeQuery();
 
-            if (rs.next()) {
-                return new Utilisateur(
-                        rs.getInt("id"),
-                        rs.getString("nom"),
-                        rs.getString("mot_de_passe"),
-                        rs.getString("role")
-                );
-            }
+                if (rs.next()) {
+                    return UtilisateurMapper.ROW.map(rs);
+                }
 
-        } catch (SQLException e) {
-            e.printStackTrace();
+            } catch (SQLException e) {
+                e.printStackTrace();
+                mesure.error();
+            }
+            return null;
         }
-        return null;
     }
 
     // ... dans UtilisateurService
 
-    public static void importCSV(File excelFile) {
-        try {
-            List<List<String>> rows = ExcelExporter.read(excelFile);
-            if (rows == null || rows.size() <= 1) return;
-
-            // En-tête présumé : Nom | MotDePasse | Role
-            for (int i = 1; i < rows.size(); i++) {
-                List<String> r = rows.get(i);
-                try {
-                    String nom = r.size() > 0 ? r.get(0).trim() : "";
-                    String motDePasse = r.size() > 1 ? r.get(1).trim() : "";
-                    String role = r.size() > 2 ? r.get(2).trim() : "";
-
-                    var u = new life.pharmacy.models.Utilisateur();
-                    try { u.setNom(nom); } catch (Exception ignored) {}
-                    try { u.setMotDePasse(motDePasse); } catch (Exception ignored) {}
-                    try { u.setRole(role); } catch (Exception ignored) {}
+    public static BulkImport.Report importCSV(File excelFile) {
+        return importCSV(excelFile, null);
+    }
 
-                    save(u); // adapte si ta méthode s'appelle autrement
-                } catch (Exception ex) { ex.printStackTrace(); }
-            }
-        } catch (Exception e) { e.printStackTrace(); }
+    // En-tête présumé : Nom | Email | MotDePasse | Role
+    public static BulkImport.Report importCSV(File excelFile, ExcelImporter.ProgressListener progress) {
+        return IMPORT_CSV.time(() -> bulkImport(UtilisateurMapper::fromRow, excelFile, progress));
     }
 
     public static void exportCSV(File excelFile) {
-        try {
-            List<List<String>> rows = new ArrayList<>();
-            rows.add(Arrays.asList("Nom", "MotDePasse", "Role"));
-            for (var u : getAll()) {
-                rows.add(Arrays.asList(
-                        safe(u.getNom()),
-                        safe(u.getMotDePasse()),
-                        safe(u.getRole())
-                ));
+        try (Timer.Sample mesure = EXPORT_CSV.start()) {
+            try (Connection conn = Database.getReadConnection()) {
+                ExcelExporter.exportQuery(conn, "SELECT * FROM utilisateurs", UtilisateurMapper.HEADER, rs -> UtilisateurMapper.toRow(UtilisateurMapper.ROW.map(rs)), excelFile);
+            } catch (Exception e) {
+                e.printStackTrace();
+                mesure.error();
             }
-            ExcelExporter.write(rows, excelFile);
-        } catch (Exception e) { e.printStackTrace(); }
+        }
     }
-
-    private static String safe(String s) { return s == null ? "" : s; }
-
-
 }
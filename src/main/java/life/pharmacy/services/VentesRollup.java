@@ -0,0 +1,214 @@
+package life.pharmacy.services;
+
+import life.pharmacy.config.Database;
+import life.pharmacy.config.StatementCache;
+import life.pharmacy.mappers.Dates;
+import life.pharmacy.models.Facture;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cumuls de ventes par jour et par mode de paiement (table ventes_jour).
+ * <p>
+ * Tenus à jour dans la transaction qui écrit ou supprime la facture : les écrans de recettes
+ * lisent une ligne par jour et par mode au lieu de parcourir toute la table factures.
+ * {@link #reconcile} recalcule les cumuls depuis les factures et corrige les jours en écart.
+ */
+public class VentesRollup {
+
+    // écart toléré sur les sommes (arrondis des REAL)
+    private static final double EPSILON = 0.005;
+
+    private static final String UPSERT = """
+                INSERT INTO ventes_jour (jour, mode_paiement, nb_factures, montant_ht, montant_tva, montant_ttc)
+                VALUES (?, ?, ?, ?, ?, ?)
+                ON CONFLICT(jour, mode_paiement) DO UPDATE SET
+                    nb_factures = nb_factures + excluded.nb_factures,
+                    montant_ht = montant_ht + excluded.montant_ht,
+                    montant_tva = montant_tva + excluded.montant_tva,
+                    montant_ttc = montant_ttc + excluded.montant_ttc
+            """;
+
+    /**
+     * Ajoute la facture aux cumuls de son jour. À appeler dans la transaction d'insertion.
+     */
+    public static void add(Connection conn, Facture f) throws SQLException {
+        apply(conn, f.getDate().toLocalDate().toString(), f.getModePaiement(), 1,
+                f.getMontantHT(), f.getMontantTVA(), f.getMontantTTC());
+    }
+
+    /**
+     * Retire des cumuls la facture d'id donné, telle qu'elle est en base.
+     * À appeler dans la transaction de suppression, avant le DELETE.
+     */
+    public static void remove(Connection conn, int factureId) throws SQLException {
+        try (PreparedStatement ps = StatementCache.prepare(conn,
+                "SELECT date, date_epoch_ms, mode_paiement, montant_ht, montant_tva, montant_ttc FROM factures WHERE id = ?")) {
+            ps.setInt(1, factureId);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) return;
+                // date_epoch_ms NULL : on retombe sur la colonne date, celle que add() a cumulée
+                long millis = rs.getLong("date_epoch_ms");
+                LocalDateTime date = rs.wasNull() ? Dates.parseDateTime(rs.getString("date")) : Dates.ofMillis(millis);
+                if (date == null) {
+                    // jour inconnu : la suppression est annulée plutôt que de fausser un cumul
+                    throw new SQLException("Date illisible pour la facture " + factureId);
+                }
+                String jour = date.toLocalDate().toString();
+                apply(conn, jour, rs.getString("mode_paiement"), -1,
+                        -rs.getDouble("montant_ht"), -rs.getDouble("montant_tva"), -rs.getDouble("montant_ttc"));
+            }
+        }
+        try (PreparedStatement ps = StatementCache.prepare(conn, "DELETE FROM ventes_jour WHERE nb_factures <= 0")) {
+            ps.executeUpdate();
+        }
+    }
+
+    private static void apply(Connection conn, String jour, String mode, int nb,
+                              double ht, double tva, double ttc) throws SQLException {
+        try (PreparedStatement ps = StatementCache.prepare(conn, UPSERT)) {
+            ps.setString(1, jour);
+            ps.setString(2, mode == null ? "" : mode);
+            ps.setInt(3, nb);
+            ps.setDouble(4, ht);
+            ps.setDouble(5, tva);
+            ps.setDouble(6, ttc);
+            ps.executeUpdate();
+        }
+    }
+
+    /**
+     * Total TTC par période entre start et end inclus ; granularity : "DAY", "MONTH", "YEAR".
+     *
+     * @param modePaiement null ou "Tous" pour tous les modes
+     */
+    public static List<RecetteService.PeriodTotal> getTotals(LocalDate start, LocalDate end, String granularity, String modePaiement) {
+        String periodExpr = switch (granularity.toUpperCase()) {
+            case "MONTH" -> "substr(jour,1,7)";
+            case "YEAR" -> "substr(jour,1,4)";
+            default -> "jour";
+        };
+        boolean parMode = modePaiement != null && !"Tous".equals(modePaiement);
+        String sql = "SELECT " + periodExpr + " AS period, SUM(montant_ttc) AS total " +
+                "FROM ventes_jour WHERE jour BETWEEN ? AND ? " +
+                (parMode ? "AND mode_paiement = ? " : "") +
+                "GROUP BY period ORDER BY period ASC";
+
+        List<RecetteService.PeriodTotal> out = new ArrayList<>();
+        try (Connection conn = Database.getReadConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, start.toString());
+            ps.setString(2, end.toString());
+            if (parMode) ps.setString(3, modePaiement);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    out.add(new RecetteService.PeriodTotal(rs.getString("period"), rs.getDouble("total")));
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return out;
+    }
+
+    // cumuls attendus (factures) moins cumuls tenus (ventes_jour) : seules les clés en écart restent
+    private static final String ECARTS = """
+                SELECT jour, mode_paiement, SUM(nb) AS ecart_nb, SUM(ttc) AS ecart_ttc FROM (
+                    SELECT date((date_epoch_ms / 86400000) * 86400, 'unixepoch') AS jour,
+                           COALESCE(mode_paiement, '') AS mode_paiement, COUNT(*) AS nb, SUM(montant_ttc) AS ttc
+                    FROM factures GROUP BY date_epoch_ms / 86400000, 2
+                    UNION ALL
+                    SELECT jour, mode_paiement, -nb_factures, -montant_ttc FROM ventes_jour
+                )
+                GROUP BY jour, mode_paiement
+                HAVING SUM(nb) <> 0 OR ABS(SUM(ttc)) > ?
+                ORDER BY jour
+            """;
+
+    /**
+     * Compare les cumuls aux factures ; si repair, recalcule les jours en écart
+     * (via le WriteCoordinator, à la suite des ventes en file). Retourne les écarts constatés.
+     */
+    public static List<Ecart> reconcile(boolean repair) {
+        List<Ecart> ecarts = new ArrayList<>();
+        try (Connection conn = Database.getReadConnection();
+             PreparedStatement ps = conn.prepareStatement(ECARTS)) {
+            ps.setDouble(1, EPSILON);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    ecarts.add(new Ecart(rs.getString("jour"), rs.getString("mode_paiement"),
+                            rs.getInt("ecart_nb"), rs.getDouble("ecart_ttc")));
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return ecarts;
+        }
+
+        if (repair && !ecarts.isEmpty()) {
+            try {
+                WriteCoordinator.execute(conn -> {
+                    for (Ecart ec : ecarts) rebuildDay(conn, ec.getJour());
+                    return null;
+                });
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+        return ecarts;
+    }
+
+    private static void rebuildDay(Connection conn, String jour) throws SQLException {
+        try (PreparedStatement del = StatementCache.prepare(conn, "DELETE FROM ventes_jour WHERE jour = ?");
+             PreparedStatement ins = StatementCache.prepare(conn, """
+                        INSERT INTO ventes_jour (jour, mode_paiement, nb_factures, montant_ht, montant_tva, montant_ttc)
+                        SELECT ?, COALESCE(mode_paiement, ''), COUNT(*),
+                               SUM(montant_ht), SUM(montant_tva), SUM(montant_ttc)
+                        FROM factures WHERE date_epoch_ms >= ? AND date_epoch_ms < ?
+                        GROUP BY 2
+                    """)) {
+            del.setString(1, jour);
+            del.executeUpdate();
+            LocalDate d = LocalDate.parse(jour);
+            ins.setString(1, jour);
+            ins.setLong(2, Dates.toMillis(d));
+            ins.setLong(3, Dates.toMillis(d.plusDays(1)));
+            ins.executeUpdate();
+        }
+    }
+
+    /**
+     * Jour / mode de paiement dont le cumul diffère des factures (attendu - tenu).
+     */
+    public static class Ecart {
+        private final String jour;
+        private final String modePaiement;
+        private final int ecartFactures;
+        private final double ecartTTC;
+
+        public Ecart(String jour, String modePaiement, int ecartFactures, double ecartTTC) {
+            this.jour = jour;
+            this.modePaiement = modePaiement;
+            this.ecartFactures = ecartFactures;
+            this.ecartTTC = ecartTTC;
+        }
+
+        public String getJour() { return jour; }
+        public String getModePaiement() { return modePaiement; }
+        public int getEcartFactures() { return ecartFactures; }
+        public double getEcartTTC() { return ecartTTC; }
+
+        @Override
+        public String toString() {
+            return String.format("%s [%s] : %+d factures, %+.2f TTC", jour,
+                    modePaiement.isEmpty() ? "non renseigné" : modePaiement, ecartFactures, ecartTTC);
+        }
+    }
+}
@@ -0,0 +1,377 @@
+package life.pharmacy.services;
+
+import life.pharmacy.config.Database;
+import life.pharmacy.metrics.Metrics;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Écrivain unique de l'application : ventes, sorties de stock et recettes passent par une file
+ * vidée par un seul thread, qui regroupe plusieurs écritures dans une même transaction
+ * (group commit).
+ * <p>
+ * Quand d'autres écritures attendent déjà derrière la première, le thread en regroupe au plus
+ * MAX_BATCH, en patientant au plus MAX_DELAY_MS : une seule prise du verrou d'écriture SQLite et un
+ * seul fsync pour le lot, au lieu d'une transaction concurrente par caisse. Une écriture seule
+ * (import ligne à ligne, caisse isolée) est validée sans attendre. Chaque écriture s'exécute sous savepoint :
+ * une écriture en échec est annulée seule, les autres du lot sont validées.
+ */
+public class WriteCoordinator {
+
+    // réglables par -Dpharmacy.write.maxDelayMs=... / -Dpharmacy.write.maxBatch=...
+    private static final long MAX_DELAY_MS = Long.getLong("pharmacy.write.maxDelayMs", 5);
+    private static final int MAX_BATCH = Integer.getInteger("pharmacy.write.maxBatch", 32);
+
+    // au-delà, l'appelant est prévenu plutôt que d'attendre
+    private static final int CAPACITY = 256;
+
+    // attente maximale d'execute() (-Dpharmacy.write.timeoutMs=...)
+    private static final long EXECUTE_TIMEOUT_MS = Long.getLong("pharmacy.write.timeoutMs", 30_000);
+
+    /**
+     * Écriture à exécuter sur la connexion du coordinateur, dans la transaction en cours.
+     * Ne doit ni valider ni annuler la transaction.
+     */
+    @FunctionalInterface
+    public interface WriteTask<T> {
+        T apply(Connection conn) throws SQLException;
+    }
+
+    /**
+     * Suite d'une écriture, appelée une seule fois sur le thread d'écriture dès que son sort est connu :
+     * juste après le commit, connexion d'écriture encore tenue, ou à l'échec. Qui tient la connexion
+     * d'écriture voit donc toujours la base et ces suites dans le même état (stock en attente du StockLedger).
+     */
+    @FunctionalInterface
+    public interface AfterCommit {
+        void done(boolean committed);
+    }
+
+    private static final BlockingQueue<Pending<?>> queue = new ArrayBlockingQueue<>(CAPACITY);
+
+    // lu hors verrou par execute() ; remplacé si le thread s'est arrêté
+    private static volatile Thread writer;
+    private static volatile boolean stopping = false;
+
+    // métriques
+    private static final AtomicLong submitted = new AtomicLong();
+    private static final AtomicLong succeeded = new AtomicLong();
+    private static final AtomicLong failed = new AtomicLong();
+    private static final AtomicLong transactions = new AtomicLong();
+    private static final AtomicLong maxBatch = new AtomicLong();
+    private static final AtomicLong totalCommitNanos = new AtomicLong();
+    private static final AtomicLong maxCommitNanos = new AtomicLong();
+    private static final AtomicLong totalWaitNanos = new AtomicLong();
+    private static final AtomicLong maxWaitNanos = new AtomicLong();
+
+    static {
+        Metrics.gauge("ecritures.coordinateur", WriteCoordinator::getStats);
+    }
+
+    private static class Pending<T> {
+        final WriteTask<T> task;
+        final AfterCommit after;
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        final long enqueuedAt = System.nanoTime();
+        T value;
+        Throwable error;
+        boolean settled;
+
+        Pending(WriteTask<T> task, AfterCommit after) {
+            this.task = task;
+            this.after = after;
+        }
+
+        void run(Connection conn) throws SQLException {
+            value = task.apply(conn);
+        }
+
+        void settle(boolean committed) {
+            if (settled) return;
+            settled = true;
+            if (after == null) return;
+            try {
+                after.done(committed);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+
+        void fail(Throwable e) {
+            error = e;
+            settle(false);
+            result.completeExceptionally(e);
+        }
+
+        void complete() {
+            if (error != null) result.completeExceptionally(error);
+            else result.complete(value);
+        }
+    }
+
+    /**
+     * Met l'écriture en file. Le future est terminé par le thread d'écriture une fois la transaction
+     * validée (ou annulée) ; il échoue immédiatement si la file est pleine ou si l'application s'arrête.
+     */
+    public static <T> CompletableFuture<T> submit(WriteTask<T> task) {
+        return submit(task, null);
+    }
+
+    /**
+     * Idem, avec une suite appelée dès que le sort de l'écriture est connu (y compris un refus immédiat).
+     */
+    public static <T> CompletableFuture<T> submit(WriteTask<T> task, AfterCommit after) {
+        Pending<T> p = new Pending<>(task, after);
+        if (stopping) {
+            p.fail(new IllegalStateException("Écritures arrêtées"));
+            return p.result;
+        }
+        ensureStarted();
+        if (!queue.offer(p)) {
+            p.fail(new IllegalStateException(
+                    "File d'écriture pleine (" + CAPACITY + " écritures en attente), réessayez"));
+            return p.result;
+        }
+        submitted.incrementAndGet();
+        return p.result;
+    }
+
+    /**
+     * Version bloquante de {@link #submit} pour les services synchrones.
+     * Ne pas appeler depuis le thread JavaFX ni depuis une WriteTask.
+     * Au-delà de EXECUTE_TIMEOUT_MS l'appelant reçoit une SQLException ; l'écriture, déjà en file,
+     * peut encore être validée ensuite.
+     */
+    public static <T> T execute(WriteTask<T> task) throws SQLException {
+        return execute(task, null);
+    }
+
+    /**
+     * Version bloquante de {@link #submit(WriteTask, AfterCommit)}.
+     */
+    public static <T> T execute(WriteTask<T> task, AfterCommit after) throws SQLException {
+        if (Thread.currentThread() == writer) {
+            throw new IllegalStateException("execute() appelé depuis le thread d'écriture");
+        }
+        try {
+            return submit(task, after).get(EXECUTE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) throw (SQLException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new SQLException(cause);
+        } catch (TimeoutException e) {
+            throw new SQLException("Écriture non validée après " + EXECUTE_TIMEOUT_MS + " ms", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Attente de l'écriture interrompue", e);
+        }
+    }
+
+    private static synchronized void ensureStarted() {
+        if (writer != null && writer.isAlive()) return;
+        writer = new Thread(WriteCoordinator::run, "db-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    // aucune exception ne doit arrêter le thread : les appelants attendent leurs futures
+    private static void run() {
+        List<Pending<?>> batch = new ArrayList<>(MAX_BATCH);
+        while (true) {
+            try {
+                Pending<?> first = queue.poll(200, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    if (stopping) {
+                        failRemaining();
+                        return;
+                    }
+                    continue;
+                }
+                batch.add(first);
+                // d'autres écritures attendent déjà : on regroupe celles qui arrivent pendant le délai accordé
+                if (!queue.isEmpty()) {
+                    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(MAX_DELAY_MS);
+                    while (batch.size() < MAX_BATCH) {
+                        long left = deadline - System.nanoTime();
+                        Pending<?> next = left > 0 ? queue.poll(left, TimeUnit.NANOSECONDS) : queue.poll();
+                        if (next == null) break;
+                        batch.add(next);
+                    }
+                }
+                commit(batch);
+            } catch (InterruptedException e) {
+                // écritures du lot non commencées : annulées ; le thread continue
+                for (Pending<?> p : batch) p.fail(e);
+            } catch (Throwable e) {
+                e.printStackTrace();
+                for (Pending<?> p : batch) {
+                    if (!p.result.isDone()) p.fail(e);
+                }
+            }
+            batch.clear();
+        }
+    }
+
+    private static void commit(List<Pending<?>> batch) {
+        long start = System.nanoTime();
+        boolean committed = false;
+        try (Connection conn = Database.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                for (Pending<?> p : batch) {
+                    Savepoint sp = conn.setSavepoint();
+                    try {
+                        p.run(conn);
+                        conn.releaseSavepoint(sp);
+                    } catch (Throwable e) {
+                        conn.rollback(sp);
+                        p.error = e;
+                    }
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+            committed = true;
+            // suites des écritures validées avant de rendre la connexion d'écriture,
+            // et avant tout nettoyage qui pourrait échouer : le lot est en base quoi qu'il arrive
+            for (Pending<?> p : batch) p.settle(p.error == null);
+            try {
+                conn.setAutoCommit(true);
+            } catch (SQLException e) {
+                // le pool remet la connexion en état à sa restitution, ou la jette
+                e.printStackTrace();
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            if (!committed) {
+                // transaction perdue : aucune écriture du lot n'est validée
+                for (Pending<?> p : batch) {
+                    if (p.error == null) p.error = e;
+                }
+            }
+        }
+        record(batch, System.nanoTime() - start);
+        for (Pending<?> p : batch) {
+            if (p.error != null) p.error.printStackTrace();
+            p.settle(false);
+            p.complete();
+        }
+    }
+
+    private static void record(List<Pending<?>> batch, long commitNanos) {
+        transactions.incrementAndGet();
+        maxBatch.accumulateAndGet(batch.size(), Math::max);
+        totalCommitNanos.addAndGet(commitNanos);
+        maxCommitNanos.accumulateAndGet(commitNanos, Math::max);
+        long now = System.nanoTime();
+        for (Pending<?> p : batch) {
+            long wait = now - p.enqueuedAt;
+            totalWaitNanos.addAndGet(wait);
+            maxWaitNanos.accumulateAndGet(wait, Math::max);
+            if (p.error == null) succeeded.incrementAndGet();
+            else failed.incrementAndGet();
+        }
+    }
+
+    private static void failRemaining() {
+        Pending<?> p;
+        while ((p = queue.poll()) != null) {
+            p.fail(new IllegalStateException("Écritures arrêtées"));
+        }
+    }
+
+    /**
+     * Refuse les nouvelles écritures puis attend (au plus timeoutMs) que la file soit vidée.
+     * À appeler avant de fermer le pool de connexions.
+     */
+    public static void shutdown(long timeoutMs) {
+        stopping = true;
+        Thread t;
+        synchronized (WriteCoordinator.class) {
+            t = writer;
+        }
+        if (t == null) return;
+        try {
+            t.join(timeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public static Stats getStats() {
+        long tx = transactions.get();
+        long done = succeeded.get() + failed.get();
+        return new Stats(queue.size(), submitted.get(), succeeded.get(), failed.get(), tx,
+                tx == 0 ? 0 : (double) done / tx, maxBatch.get(),
+                tx == 0 ? 0 : totalCommitNanos.get() / tx, maxCommitNanos.get(),
+                done == 0 ? 0 : totalWaitNanos.get() / done, maxWaitNanos.get());
+    }
+
+    /**
+     * Métriques du coordinateur : profondeur de file, taille des lots, durée des transactions
+     * (commit compris) et attente totale d'une écriture entre submit et validation.
+     */
+    public static class Stats {
+        private final int queueDepth;
+        private final long submitted;
+        private final long succeeded;
+        private final long failed;
+        private final long transactions;
+        private final double avgBatchSize;
+        private final long maxBatchSize;
+        private final long avgCommitNanos;
+        private final long maxCommitNanos;
+        private final long avgLatencyNanos;
+        private final long maxLatencyNanos;
+
+        public Stats(int queueDepth, long submitted, long succeeded, long failed, long transactions,
+                     double avgBatchSize, long maxBatchSize, long avgCommitNanos, long maxCommitNanos,
+                     long avgLatencyNanos, long maxLatencyNanos) {
+            this.queueDepth = queueDepth;
+            this.submitted = submitted;
+            this.succeeded = succeeded;
+            this.failed = failed;
+            this.transactions = transactions;
+            this.avgBatchSize = avgBatchSize;
+            this.maxBatchSize = maxBatchSize;
+            this.avgCommitNanos = avgCommitNanos;
+            this.maxCommitNanos = maxCommitNanos;
+            this.avgLatencyNanos = avgLatencyNanos;
+            this.maxLatencyNanos = maxLatencyNanos;
+        }
+
+        public int getQueueDepth() { return queueDepth; }
+        public long getSubmitted() { return submitted; }
+        public long getSucceeded() { return succeeded; }
+        public long getFailed() { return failed; }
+        public long getTransactions() { return transactions; }
+        public double getAvgBatchSize() { return avgBatchSize; }
+        public long getMaxBatchSize() { return maxBatchSize; }
+        public long getAvgCommitNanos() { return avgCommitNanos; }
+        public long getMaxCommitNanos() { return maxCommitNanos; }
+        public long getAvgLatencyNanos() { return avgLatencyNanos; }
+        public long getMaxLatencyNanos() { return maxLatencyNanos; }
+
+        @Override
+        public String toString() {
+            return String.format("file=%d, écritures=%d (échecs %d), transactions=%d, lot moyen=%.1f (max %d), "
+                            + "commit moyen=%.2f ms (max %.2f), latence moyenne=%.2f ms (max %.2f)",
+                    queueDepth, succeeded + failed, failed, transactions, avgBatchSize, maxBatchSize,
+                    avgCommitNanos / 1e6, maxCommitNanos / 1e6, avgLatencyNanos / 1e6, maxLatencyNanos / 1e6);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package life.pharmacy.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Réduction du nombre de points d'une série avant affichage, par Largest-Triangle-Three-Buckets :
+ * les points sont répartis en seaux et, dans chaque seau, on garde celui qui forme le plus grand
+ * triangle avec le point retenu précédemment et la moyenne du seau suivant. Pics et creux sont
+ * conservés, contrairement à une moyenne ou à un point sur n.
+ */
+public final class Downsampling {
+
+    private Downsampling() {
+    }
+
+    /**
+     * Au plus {@code threshold} points de {@code points} (abscisse : rang dans la liste),
+     * premier et dernier compris, dans l'ordre d'origine. La liste est renvoyée telle quelle
+     * si elle est déjà assez courte.
+     */
+    public static <T> List<T> lttb(List<T> points, ToDoubleFunction<T> y, int threshold) {
+        int n = points.size();
+        if (threshold >= n || threshold < 3) return points;
+
+        List<T> out = new ArrayList<>(threshold);
+        out.add(points.get(0));
+        double every = (double) (n - 2) / (threshold - 2);
+        int a = 0; // dernier point retenu
+
+        for (int i = 0; i < threshold - 2; i++) {
+            // moyenne du seau suivant (dernier point pour le dernier seau)
+            int nextStart = (int) Math.floor((i + 1) * every) + 1;
+            int nextEnd = Math.min((int) Math.floor((i + 2) * every) + 1, n);
+            double avgX = 0, avgY = 0;
+            for (int j = nextStart; j < nextEnd; j++) {
+                avgX += j;
+                avgY += y.applyAsDouble(points.get(j));
+            }
+            int len = nextEnd - nextStart;
+            avgX /= len;
+            avgY /= len;
+
+            int start = (int) Math.floor(i * every) + 1;
+            int end = nextStart;
+            double ay = y.applyAsDouble(points.get(a));
+            double maxArea = -1;
+            int chosen = start;
+            for (int j = start; j < end; j++) {
+                double area = Math.abs((a - avgX) * (y.applyAsDouble(points.get(j)) - ay)
+                        - (a - j) * (avgY - ay));
+                if (area > maxArea) {
+                    maxArea = area;
+                    chosen = j;
+                }
+            }
+            out.add(points.get(chosen));
+            a = chosen;
+        }
+        out.add(points.get(n - 1));
+        return out;
+    }
+}
@@ -1,10 +1,13 @@
 package life.pharmacy.utils; // adapte le package si besoin
 
-import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import life.pharmacy.mappers.RowMapper;
 
 import java.io.*;
 import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -15,24 +18,8 @@ public class ExcelExporter {
      * Ecrit un .xlsx (Excel) à partir d'une structure List<List<String>>.
      */
     public static void writeExcel(List<List<String>> rows, File file) throws IOException {
-        try (Workbook wb = new XSSFWorkbook()) {
-            Sheet sheet = wb.createSheet("Export");
-            for (int i = 0; i < rows.size(); i++) {
-                Row row = sheet.createRow(i);
-                List<String> cols = rows.get(i);
-                for (int j = 0; j < cols.size(); j++) {
-                    Cell cell = row.createCell(j);
-                    cell.setCellValue(cols.get(j) == null ? "" : cols.get(j));
-                }
-            }
-            // Autosize (optionnel)
-            if (!rows.isEmpty()) {
-                int colCount = rows.get(0).size();
-                for (int c = 0; c < colCount; c++) sheet.autoSizeColumn(c);
-            }
-            try (FileOutputStream fos = new FileOutputStream(file)) {
-                wb.write(fos);
-            }
+        try (TableWriter w = new TableWriter(file, false, true)) {
+            for (List<String> row : rows) w.write(row);
         }
     }
 
@@ -40,14 +27,26 @@ public class ExcelExporter {
      * Écrit un CSV (UTF-8) utilisant ';' comme séparateur.
      */
     public static void writeCSV(List<List<String>> rows, File file) throws IOException {
-        try (BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
-            for (List<String> row : rows) {
-                // échappez les ; et les retours-lignes sommairement
-                List<String> safe = new ArrayList<>();
-                for (String cell : row) safe.add(cell == null ? "" : cell.replace("\n", " ").replace("\r", " ").replace(";", ","));
-                bw.write(String.join(";", safe));
-                bw.newLine();
+        try (TableWriter w = new TableWriter(file, true, false)) {
+            for (List<String> row : rows) w.write(row);
+        }
+    }
+
+    /**
+     * Export en flux depuis une requête : chaque ligne du curseur JDBC est convertie puis écrite
+     * aussitôt (CSV ou xlsx selon l'extension), sans liste intermédiaire.
+     * Retourne le nombre de lignes de données écrites.
+     */
+    public static long exportQuery(Connection conn, String sql, List<String> header,
+                                   RowMapper<List<String>> mapper, File file) throws IOException, SQLException {
+        try (TableWriter w = new TableWriter(file);
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            w.write(header);
+            while (rs.next()) {
+                w.write(mapper.map(rs));
             }
+            return w.getRows() - 1;
         }
     }
 
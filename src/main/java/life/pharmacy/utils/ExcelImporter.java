@@ -1,44 +1,192 @@
 package life.pharmacy.utils;
 
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
 import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public class ExcelImporter {
 
-    public static List<List<String>> readExcel(File file) {
-        List<List<String>> rows = new ArrayList<>();
+    // fréquence des notifications de progression
+    private static final int PROGRESS_EVERY = 1000;
 
-        try (FileInputStream fis = new FileInputStream(file);
-             Workbook workbook = new XSSFWorkbook(fis)) {
+    /**
+     * Reçoit les lignes une à une ; index = position de la ligne dans le fichier
+     * (0 = première ligne non vide, en général l'en-tête).
+     */
+    @FunctionalInterface
+    public interface RowHandler {
+        void row(int index, List<String> cells);
+    }
+
+    /**
+     * Progression de la lecture : nombre de lignes déjà transmises au RowHandler.
+     */
+    @FunctionalInterface
+    public interface ProgressListener {
+        void progress(long rows);
+    }
+
+    /**
+     * Lit le fichier en flux et transmet chaque ligne au handler dès qu'elle est lue,
+     * sans charger le classeur en mémoire :
+     * - .xlsx : modèle événementiel POI (XSSFReader + SAX), feuille 1 ;
+     * - .csv : ligne par ligne (séparateur ';') ;
+     * - .xls : ancien format binaire, lu en entier (limité à 65 536 lignes).
+     * Retourne le nombre de lignes lues.
+     */
+    public static long stream(File file, RowHandler handler, ProgressListener progress) throws IOException {
+        String name = file.getName().toLowerCase();
+        if (name.endsWith(".csv")) return streamCSV(file, handler, progress);
+        if (name.endsWith(".xls")) return streamWorkbook(file, handler, progress);
+        return streamXLSX(file, handler, progress);
+    }
+
+    private static long streamXLSX(File file, RowHandler handler, ProgressListener progress) throws IOException {
+        RowCollector collector = new RowCollector(handler, progress);
+        try (OPCPackage pkg = OPCPackage.open(file, PackageAccess.READ)) {
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+            XSSFReader reader = new XSSFReader(pkg);
+            StylesTable styles = reader.getStylesTable();
+            XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) reader.getSheetsData();
+            if (!sheets.hasNext()) return 0;
+
+            try (InputStream sheet = sheets.next()) { // première feuille
+                XMLReader parser = XMLHelper.newXMLReader();
+                parser.setContentHandler(new XSSFSheetXMLHandler(styles, null, strings, collector, new RawFormatter(), false));
+                parser.parse(new InputSource(sheet));
+            }
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Lecture impossible de " + file.getName() + " : " + e.getMessage(), e);
+        }
+        collector.done();
+        return collector.count;
+    }
 
-            Sheet sheet = workbook.getSheetAt(0); // première feuille
+    private static long streamCSV(File file, RowHandler handler, ProgressListener progress) throws IOException {
+        long count = 0;
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                handler.row((int) count, Arrays.asList(line.split(";", -1)));
+                count++;
+                if (progress != null && count % PROGRESS_EVERY == 0) progress.progress(count);
+            }
+        }
+        if (progress != null) progress.progress(count);
+        return count;
+    }
 
-            for (Row row : sheet) {
-                List<String> cellValues = new ArrayList<>();
-                for (Cell cell : row) {
-                    cellValues.add(getCellValueAsString(cell));
+    private static long streamWorkbook(File file, RowHandler handler, ProgressListener progress) throws IOException {
+        long count = 0;
+        try (FileInputStream fis = new FileInputStream(file);
+             Workbook workbook = WorkbookFactory.create(fis)) {
+            for (Row row : workbook.getSheetAt(0)) {
+                List<String> cells = new ArrayList<>();
+                for (int c = 0; c < row.getLastCellNum(); c++) {
+                    cells.add(cellToString(row.getCell(c)));
                 }
-                rows.add(cellValues);
+                handler.row((int) count, cells);
+                count++;
+                if (progress != null && count % PROGRESS_EVERY == 0) progress.progress(count);
             }
+        }
+        if (progress != null) progress.progress(count);
+        return count;
+    }
+
+    /**
+     * Lit toute la première feuille en mémoire. Réservé aux petits fichiers :
+     * pour un import, préférer {@link #stream}.
+     */
+    public static List<List<String>> readExcel(File file) {
+        List<List<String>> rows = new ArrayList<>();
+        try {
+            stream(file, (i, cells) -> rows.add(cells), null);
         } catch (Exception e) {
             e.printStackTrace();
         }
         return rows;
     }
 
-    private static String getCellValueAsString(Cell cell) {
-        return switch (cell.getCellType()) {
-            case STRING -> cell.getStringCellValue();
-            case NUMERIC -> String.valueOf((int) cell.getNumericCellValue());
-            case BOOLEAN -> String.valueOf(cell.getBooleanCellValue());
-            case FORMULA -> cell.getCellFormula();
-            default -> "";
-        };
+    // Assemble les cellules SAX en lignes complètes (les cellules vides ne sont pas émises par POI)
+    private static class RowCollector implements XSSFSheetXMLHandler.SheetContentsHandler {
+        private final RowHandler handler;
+        private final ProgressListener progress;
+        private List<String> current;
+        private long count = 0;
+
+        RowCollector(RowHandler handler, ProgressListener progress) {
+            this.handler = handler;
+            this.progress = progress;
+        }
+
+        @Override
+        public void startRow(int rowNum) {
+            current = new ArrayList<>();
+        }
+
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            int col = cellReference != null ? new CellReference(cellReference).getCol() : current.size();
+            while (current.size() < col) current.add("");
+            current.add(formattedValue == null ? "" : formattedValue.trim());
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+            if (current.isEmpty()) return; // ligne sans aucune valeur
+            handler.row((int) count, current);
+            count++;
+            if (progress != null && count % PROGRESS_EVERY == 0) progress.progress(count);
+        }
+
+        void done() {
+            if (progress != null) progress.progress(count);
+        }
+    }
+
+    /**
+     * Valeurs numériques brutes plutôt que l'affichage Excel : pas de notation scientifique
+     * (codes-barres), pas d'arrondi d'affichage, dates au format ISO.
+     */
+    private static class RawFormatter extends DataFormatter {
+        @Override
+        public String formatRawCellContents(double value, int formatIndex, String formatString) {
+            if (DateUtil.isADateFormat(formatIndex, formatString) && DateUtil.isValidExcelDate(value)) {
+                LocalDateTime d = DateUtil.getLocalDateTime(value);
+                return d.toLocalTime().toSecondOfDay() == 0 ? d.toLocalDate().toString() : d.toString();
+            }
+            return plainNumber(value);
+        }
+    }
+
+    private static String plainNumber(double d) {
+        if (d == (long) d) return String.valueOf((long) d);
+        return BigDecimal.valueOf(d).toPlainString();
     }
 
     private static String cellToString(Cell cell) {
@@ -50,12 +198,7 @@ public class ExcelImporter {
                 if (DateUtil.isCellDateFormatted(cell)) {
                     return String.valueOf(cell.getLocalDateTimeCellValue());
                 } else {
-                    double d = cell.getNumericCellValue();
-                    if (d == (long) d) {
-                        return String.valueOf((long) d);
-                    } else {
-                        return String.valueOf(d);
-                    }
+                    return plainNumber(cell.getNumericCellValue());
                 }
             case BOOLEAN:
                 return String.valueOf(cell.getBooleanCellValue());
@@ -63,7 +206,7 @@ public class ExcelImporter {
                 try {
                     return cell.getStringCellValue();
                 } catch (Exception ex) {
-                    return String.valueOf(cell.getNumericCellValue());
+                    return plainNumber(cell.getNumericCellValue());
                 }
             case BLANK:
             default:
@@ -0,0 +1,553 @@
+package life.pharmacy.utils;
+
+import life.pharmacy.models.DetailFacture;
+import life.pharmacy.models.Facture;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.graphics.color.PDDeviceGray;
+import org.apache.pdfbox.pdmodel.graphics.color.PDDeviceRGB;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+
+/**
+ * Facture en PDF dessinée directement (texte, filets, logo) avec PDPageContentStream, sans passer
+ * par une capture de l'aperçu JavaFX : utilisable hors du thread JavaFX et sans affichage,
+ * fichiers de quelques dizaines de Ko.
+ * <p>
+ * Ticket 80 mm : une seule bande de la hauteur du contenu (découpée au-delà de MAX_TICKET_HEIGHT).
+ * A4 : lignes paginées, en-tête du tableau répété, totaux sur la dernière page, « Page i / n ».
+ * <p>
+ * Polices standard Helvetica (WinAnsi) : les caractères hors de cet encodage sont remplacés par « ? ».
+ */
+public final class FacturePdfRenderer {
+
+    public enum Format {
+        TICKET("Ticket (80mm)"),
+        A4("A4");
+
+        private final String label;
+
+        Format(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        /**
+         * Format d'après le libellé affiché dans l'aperçu ; A4 par défaut.
+         */
+        public static Format fromLabel(String label) {
+            return TICKET.label.equals(label) ? TICKET : A4;
+        }
+    }
+
+    private static final PDFont REGULAR = PDType1Font.HELVETICA;
+    private static final PDFont BOLD = PDType1Font.HELVETICA_BOLD;
+
+    static {
+        // Les polices standard sont partagées par tous les documents et gardent leurs largeurs /
+        // encodages dans des HashMap remplies à la demande : on les remplit ici pour tous les
+        // caractères que winAnsi laisse passer, le rendu en parallèle ne fait ensuite que les lire.
+        StringBuilder all = new StringBuilder("\u20AC");
+        for (char ch = 0x20; ch <= 0xFF; ch++) {
+            if (ch < 0x7F || ch >= 0xA0) all.append(ch);
+        }
+        try {
+            REGULAR.getStringWidth(all.toString());
+            BOLD.getStringWidth(all.toString());
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static final Color PRIMARY = new Color(0x0D, 0x47, 0xA1);
+    private static final Color BORDER = new Color(0x19, 0x76, 0xD2);
+    private static final Color HEADER_BG = new Color(0xE3, 0xF2, 0xFD);
+    private static final Color GRAY = new Color(0x70, 0x70, 0x70);
+
+    private static final DateTimeFormatter DATE_FMT = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
+
+    private static final float TICKET_WIDTH = 227f; // 80 mm en points
+    private static final float TICKET_MARGIN = 10f;
+    // limite d'une page PDF (200 pouces) : au-delà, le ticket continue sur une nouvelle bande
+    private static final float MAX_TICKET_HEIGHT = 14_400f;
+    private static final float A4_MARGIN = 40f;
+
+    // logo réduit et compressé une seule fois (hauteur en pixels : 2x la hauteur imprimée en points)
+    private static final int LOGO_PIXELS = 120;
+    private static volatile Logo logo;
+    private static volatile boolean logoLoaded;
+
+    private FacturePdfRenderer() {
+    }
+
+    public static void render(Facture facture, Format format, File file) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+            render(facture, format, out);
+        }
+    }
+
+    public static void render(Facture facture, Format format, OutputStream out) throws IOException {
+        try (PDDocument doc = new PDDocument()) {
+            if (format == Format.TICKET) ticket(doc, facture);
+            else a4(doc, facture);
+            doc.save(out);
+        }
+    }
+
+    // ------------------------------------------------------------------ Ticket
+
+    private static void ticket(PDDocument doc, Facture f) throws IOException {
+        // première passe à blanc pour connaître la hauteur de la bande
+        Canvas measure = new Canvas(null, TICKET_WIDTH, MAX_TICKET_HEIGHT, TICKET_MARGIN);
+        drawTicket(measure, f, null);
+        float height = Math.min(MAX_TICKET_HEIGHT, measure.used() + 2 * TICKET_MARGIN);
+
+        Canvas c = new Canvas(doc, TICKET_WIDTH, height, TICKET_MARGIN);
+        drawTicket(c, f, logoImage(doc));
+        c.close();
+    }
+
+    private static void drawTicket(Canvas c, Facture f, PDImageXObject logoImg) throws IOException {
+        float w = c.contentWidth();
+        if (logo() != null) c.imageCentered(logoImg, 40f);
+        c.centered("LIFE PHARMACY", BOLD, 12, PRIMARY);
+        c.centered("20 boulevard Kamanyola", REGULAR, 8, Color.BLACK);
+        c.centered("LIKASA - RDC", REGULAR, 8, Color.BLACK);
+        c.rule(4);
+
+        c.line("Facture #" + f.getId(), REGULAR, 8);
+        if (f.getDate() != null) c.line(f.getDate().format(DATE_FMT), REGULAR, 8);
+        c.line("Client: " + clientName(f), REGULAR, 8);
+        c.rule(4);
+
+        for (DetailFacture d : details(f)) {
+            for (String part : wrap(produitName(d), BOLD, 8, w)) c.line(part, BOLD, 8);
+            c.leftRight(d.getQuantite() + " x " + String.format("%.2f CDF", d.getPrixUnitaire()),
+                    String.format("%.2f CDF", d.getTotal()), REGULAR, 8);
+            c.gap(2);
+        }
+        c.rule(4);
+
+        c.right(String.format("HT: %.2f CDF", f.getMontantHT()), REGULAR, 8, Color.BLACK);
+        c.right(String.format("TVA: %.2f CDF", f.getMontantTVA()), REGULAR, 8, Color.BLACK);
+        c.right(String.format("TOTAL: %.2f CDF", f.getMontantTTC()), BOLD, 10, PRIMARY);
+        c.gap(6);
+        c.centered("Merci pour votre confiance", REGULAR, 8, Color.BLACK);
+    }
+
+    // ------------------------------------------------------------------ A4
+
+    // colonnes : Produit (à gauche), Qté / Prix / Total (alignés à droite sur ces abscisses)
+    private static final float COL_QTE = 330, COL_PRIX = 425, COL_TOTAL = 507;
+    private static final float ROW_H = 18;
+
+    private static void a4(PDDocument doc, Facture f) throws IOException {
+        PDRectangle a4 = PDRectangle.A4;
+        Canvas c = new Canvas(doc, a4.getWidth(), a4.getHeight(), A4_MARGIN);
+        // pied de page réservé sur chaque page
+        c.bottomReserve = 24;
+        PDImageXObject logoImg = logoImage(doc);
+
+        float top = c.y;
+        float textX = 0;
+        if (logoImg != null) {
+            float h = 60, lw = h * logoImg.getWidth() / logoImg.getHeight();
+            c.drawImage(logoImg, 0, top - h, lw, h);
+            textX = lw + 12;
+        }
+        c.textAt("LIFE PHARMACY 1.0", BOLD, 18, PRIMARY, textX, top - 18);
+        c.textAt("20 boulevard Kamanyola, LIKASA, RDC", REGULAR, 10, GRAY, textX, top - 34);
+        c.textAt("Contact : +243 992 095 566", REGULAR, 10, GRAY, textX, top - 48);
+        c.y = top - 60;
+        c.rule(10);
+
+        c.line("Facture N° : " + f.getId(), REGULAR, 11);
+        if (f.getDate() != null) c.line("Date : " + f.getDate().format(DATE_FMT), REGULAR, 11);
+        c.line("Client : " + clientName(f), REGULAR, 11);
+        if (f.getModePaiement() != null) c.line("Paiement : " + f.getModePaiement(), REGULAR, 11);
+        c.gap(10);
+
+        tableHeader(c);
+        c.onNewPage = () -> tableHeader(c);
+        for (DetailFacture d : details(f)) {
+            c.ensure(ROW_H);
+            float base = c.y - 12;
+            c.textAt(fit(produitName(d), REGULAR, 10, COL_QTE - 60 - 6), REGULAR, 10, Color.BLACK, 6, base);
+            c.textRightAt(String.valueOf(d.getQuantite()), REGULAR, 10, Color.BLACK, COL_QTE, base);
+            c.textRightAt(String.format("%.2f CDF", d.getPrixUnitaire()), REGULAR, 10, Color.BLACK, COL_PRIX, base);
+            c.textRightAt(String.format("%.2f CDF", d.getTotal()), REGULAR, 10, Color.BLACK, COL_TOTAL, base);
+            c.y -= ROW_H;
+            c.hline(c.y, 0, c.contentWidth(), HEADER_BG);
+        }
+        c.onNewPage = null;
+
+        // totaux groupés : jamais coupés entre deux pages
+        c.gap(8);
+        c.ensure(70);
+        c.right(String.format("Montant HT : %.2f CDF", f.getMontantHT()), REGULAR, 11, Color.BLACK);
+        c.right(String.format("TVA : %.2f CDF", f.getMontantTVA()), REGULAR, 11, Color.BLACK);
+        c.right(String.format("TOTAL TTC : %.2f CDF", f.getMontantTTC()), BOLD, 13, PRIMARY);
+        c.gap(10);
+        c.line("Merci pour votre confiance. Conservez ce reçu pour vos archives.", REGULAR, 9, GRAY);
+        c.close();
+
+        // numérotation, une fois le nombre de pages connu
+        int n = doc.getNumberOfPages();
+        for (int i = 0; i < n; i++) {
+            PDPage page = doc.getPage(i);
+            try (PDPageContentStream cs = new PDPageContentStream(doc, page, PDPageContentStream.AppendMode.APPEND, true)) {
+                String s = "Facture #" + f.getId() + " - Page " + (i + 1) + " / " + n;
+                float sw = width(s, REGULAR, 8);
+                cs.beginText();
+                cs.setFont(REGULAR, 8);
+                cs.setNonStrokingColor(GRAY);
+                cs.newLineAtOffset((page.getMediaBox().getWidth() - sw) / 2, A4_MARGIN / 2);
+                cs.showText(s);
+                cs.endText();
+            }
+        }
+    }
+
+    private static void tableHeader(Canvas c) throws IOException {
+        c.ensure(ROW_H * 2);
+        c.fillRect(0, c.y - ROW_H, c.contentWidth(), ROW_H, HEADER_BG);
+        float base = c.y - 12;
+        c.textAt("Produit", BOLD, 10, PRIMARY, 6, base);
+        c.textRightAt("Qté", BOLD, 10, PRIMARY, COL_QTE, base);
+        c.textRightAt("Prix", BOLD, 10, PRIMARY, COL_PRIX, base);
+        c.textRightAt("Total", BOLD, 10, PRIMARY, COL_TOTAL, base);
+        c.y -= ROW_H;
+        c.hline(c.y, 0, c.contentWidth(), BORDER);
+    }
+
+    // ------------------------------------------------------------------ Outils
+
+    /**
+     * Surface de dessin avec un curseur vertical (y décroissant, origine PDF en bas à gauche).
+     * Sans document, rien n'est dessiné : seul le curseur avance (mesure de hauteur).
+     */
+    private static class Canvas {
+        interface PageHook {
+            void run() throws IOException;
+        }
+
+        final PDDocument doc;
+        final float pageWidth, pageHeight, margin;
+        float bottomReserve;
+        PageHook onNewPage;
+        PDPageContentStream cs;
+        float y;
+        float consumed; // hauteur utilisée sur les pages précédentes
+
+        Canvas(PDDocument doc, float pageWidth, float pageHeight, float margin) throws IOException {
+            this.doc = doc;
+            this.pageWidth = pageWidth;
+            this.pageHeight = pageHeight;
+            this.margin = margin;
+            openPage();
+        }
+
+        private void openPage() throws IOException {
+            y = pageHeight - margin;
+            if (doc == null) return;
+            PDPage page = new PDPage(new PDRectangle(pageWidth, pageHeight));
+            doc.addPage(page);
+            cs = new PDPageContentStream(doc, page);
+        }
+
+        float contentWidth() {
+            return pageWidth - 2 * margin;
+        }
+
+        float used() {
+            return consumed + (pageHeight - margin - y);
+        }
+
+        // nouvelle page si la hauteur demandée ne tient plus
+        void ensure(float h) throws IOException {
+            if (y - h >= margin + bottomReserve) return;
+            consumed += pageHeight - margin - y;
+            if (cs != null) cs.close();
+            openPage();
+            if (onNewPage != null) {
+                PageHook hook = onNewPage;
+                onNewPage = null; // pas de récursion si l'en-tête lui-même déborde
+                hook.run();
+                onNewPage = hook;
+            }
+        }
+
+        void gap(float h) {
+            y -= h;
+        }
+
+        void line(String s, PDFont font, float size) throws IOException {
+            line(s, font, size, Color.BLACK);
+        }
+
+        void line(String s, PDFont font, float size, Color color) throws IOException {
+            float lead = size * 1.3f;
+            ensure(lead);
+            textAt(s, font, size, color, 0, y - size);
+            y -= lead;
+        }
+
+        void centered(String s, PDFont font, float size, Color color) throws IOException {
+            float lead = size * 1.3f;
+            ensure(lead);
+            textAt(s, font, size, color, (contentWidth() - width(s, font, size)) / 2, y - size);
+            y -= lead;
+        }
+
+        void right(String s, PDFont font, float size, Color color) throws IOException {
+            float lead = size * 1.3f;
+            ensure(lead);
+            textRightAt(s, font, size, color, contentWidth(), y - size);
+            y -= lead;
+        }
+
+        void leftRight(String left, String right, PDFont font, float size) throws IOException {
+            float lead = size * 1.3f;
+            ensure(lead);
+            textAt(left, font, size, Color.BLACK, 0, y - size);
+            textRightAt(right, font, size, Color.BLACK, contentWidth(), y - size);
+            y -= lead;
+        }
+
+        void rule(float space) throws IOException {
+            ensure(2 * space);
+            y -= space;
+            hline(y, 0, contentWidth(), Color.LIGHT_GRAY);
+            y -= space;
+        }
+
+        void imageCentered(PDImageXObject img, float h) throws IOException {
+            ensure(h + 4);
+            if (img != null) {
+                float w = h * img.getWidth() / img.getHeight();
+                drawImage(img, (contentWidth() - w) / 2, y - h, w, h);
+            }
+            y -= h + 4;
+        }
+
+        // coordonnées relatives à la marge gauche ; yBase absolu
+        void textAt(String s, PDFont font, float size, Color color, float x, float yBase) throws IOException {
+            if (cs == null) return;
+            cs.beginText();
+            cs.setFont(font, size);
+            cs.setNonStrokingColor(color);
+            cs.newLineAtOffset(margin + x, yBase);
+            cs.showText(winAnsi(s));
+            cs.endText();
+        }
+
+        void textRightAt(String s, PDFont font, float size, Color color, float xRight, float yBase) throws IOException {
+            textAt(s, font, size, color, xRight - width(s, font, size), yBase);
+        }
+
+        void hline(float yy, float x1, float x2, Color color) throws IOException {
+            if (cs == null) return;
+            cs.setStrokingColor(color);
+            cs.setLineWidth(0.5f);
+            cs.moveTo(margin + x1, yy);
+            cs.lineTo(margin + x2, yy);
+            cs.stroke();
+        }
+
+        void fillRect(float x, float yy, float w, float h, Color color) throws IOException {
+            if (cs == null) return;
+            cs.setNonStrokingColor(color);
+            cs.addRect(margin + x, yy, w, h);
+            cs.fill();
+        }
+
+        void drawImage(PDImageXObject img, float x, float yy, float w, float h) throws IOException {
+            if (cs == null || img == null) return;
+            cs.drawImage(img, margin + x, yy, w, h);
+        }
+
+        void close() throws IOException {
+            if (cs != null) cs.close();
+        }
+    }
+
+    private static List<DetailFacture> details(Facture f) {
+        return f.getDetails() != null ? f.getDetails() : List.of();
+    }
+
+    private static String clientName(Facture f) {
+        return f.getClient() != null ? f.getClient().getNom() : "N/A";
+    }
+
+    private static String produitName(DetailFacture d) {
+        if (d.getProduit() != null && d.getProduit().getNom() != null) return d.getProduit().getNom();
+        return d.getProduitNom() != null ? d.getProduitNom() : "Produit supprimé";
+    }
+
+    private static float width(String s, PDFont font, float size) throws IOException {
+        return font.getStringWidth(winAnsi(s)) / 1000f * size;
+    }
+
+    // texte tronqué avec « ... » à la largeur donnée (largeurs cumulées caractère par caractère)
+    private static String fit(String s, PDFont font, float size, float max) throws IOException {
+        String t = winAnsi(s);
+        if (width(t, font, size) <= max) return t;
+        float room = max - width("...", font, size);
+        float acc = 0;
+        int end = 0;
+        while (end < t.length()) {
+            acc += width(t.substring(end, end + 1), font, size);
+            if (acc > room) break;
+            end++;
+        }
+        return t.substring(0, end) + "...";
+    }
+
+    // découpe en lignes de largeur max, aux espaces (mot trop long : tronqué)
+    private static List<String> wrap(String s, PDFont font, float size, float max) throws IOException {
+        List<String> out = new ArrayList<>();
+        float space = width(" ", font, size);
+        StringBuilder cur = new StringBuilder();
+        float curW = 0;
+        for (String word : winAnsi(s).split("\\s+")) {
+            float w = width(word, font, size);
+            if (cur.length() > 0 && curW + space + w <= max) {
+                cur.append(' ').append(word);
+                curW += space + w;
+                continue;
+            }
+            if (cur.length() > 0) out.add(cur.toString());
+            cur.setLength(0);
+            cur.append(w <= max ? word : fit(word, font, size, max));
+            curW = Math.min(w, max);
+        }
+        if (cur.length() > 0 || out.isEmpty()) out.add(cur.toString());
+        return out;
+    }
+
+    // polices standard : encodage WinAnsi (Latin-1 pour l'essentiel)
+    private static String winAnsi(String s) {
+        if (s == null) return "";
+        StringBuilder sb = null;
+        for (int i = 0; i < s.length(); i++) {
+            char ch = s.charAt(i);
+            char r = ch;
+            if (ch == '\u00A0' || ch == '\u202F' || ch == '\t') r = ' '; // espaces insécables des formats français
+            else if (ch == '’' || ch == '‘') r = '\'';
+            else if (ch == '–' || ch == '—') r = '-';
+            else if (ch < 0x20 || (ch >= 0x7F && ch < 0xA0) || (ch > 0xFF && ch != '€')) r = '?';
+            if (r != ch && sb == null) sb = new StringBuilder(s.substring(0, i));
+            if (sb != null) sb.append(r);
+        }
+        return sb == null ? s : sb.toString();
+    }
+
+    // logo prêt à embarquer : pixels RGB et alpha déjà compressés (Flate), réutilisés par chaque document
+    private static final class Logo {
+        final int width, height;
+        final byte[] rgb;
+        final byte[] alpha; // null si le logo est opaque
+
+        Logo(int width, int height, byte[] rgb, byte[] alpha) {
+            this.width = width;
+            this.height = height;
+            this.rgb = rgb;
+            this.alpha = alpha;
+        }
+    }
+
+    private static Logo logo() {
+        if (logoLoaded) return logo;
+        synchronized (FacturePdfRenderer.class) {
+            if (!logoLoaded) {
+                try (InputStream is = FacturePdfRenderer.class.getResourceAsStream("/images/logo.png")) {
+                    BufferedImage src = is != null ? ImageIO.read(is) : null;
+                    if (src != null) logo = encode(scale(src));
+                } catch (IOException ex) {
+                    ex.printStackTrace();
+                }
+                logoLoaded = true;
+            }
+            return logo;
+        }
+    }
+
+    private static BufferedImage scale(BufferedImage src) {
+        int h = Math.min(LOGO_PIXELS, src.getHeight());
+        int w = Math.max(1, src.getWidth() * h / src.getHeight());
+        BufferedImage out = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = out.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g.drawImage(src, 0, 0, w, h, null);
+        g.dispose();
+        return out;
+    }
+
+    private static Logo encode(BufferedImage img) {
+        int w = img.getWidth(), h = img.getHeight();
+        byte[] rgb = new byte[w * h * 3];
+        byte[] alpha = new byte[w * h];
+        boolean opaque = true;
+        for (int y = 0, i = 0; y < h; y++) {
+            for (int x = 0; x < w; x++, i++) {
+                int argb = img.getRGB(x, y);
+                rgb[i * 3] = (byte) (argb >> 16);
+                rgb[i * 3 + 1] = (byte) (argb >> 8);
+                rgb[i * 3 + 2] = (byte) argb;
+                alpha[i] = (byte) (argb >>> 24);
+                opaque &= (argb >>> 24) == 0xFF;
+            }
+        }
+        return new Logo(w, h, deflate(rgb), opaque ? null : deflate(alpha));
+    }
+
+    private static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        deflater.setInput(data);
+        deflater.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2);
+        byte[] buf = new byte[8192];
+        while (!deflater.finished()) out.write(buf, 0, deflater.deflate(buf));
+        deflater.end();
+        return out.toByteArray();
+    }
+
+    private static PDImageXObject logoImage(PDDocument doc) throws IOException {
+        Logo l = logo();
+        if (l == null) return null;
+        PDImageXObject img = new PDImageXObject(doc, new ByteArrayInputStream(l.rgb), COSName.FLATE_DECODE,
+                l.width, l.height, 8, PDDeviceRGB.INSTANCE);
+        if (l.alpha != null) {
+            PDImageXObject mask = new PDImageXObject(doc, new ByteArrayInputStream(l.alpha), COSName.FLATE_DECODE,
+                    l.width, l.height, 8, PDDeviceGray.INSTANCE);
+            img.getCOSObject().setItem(COSName.SMASK, mask);
+        }
+        return img;
+    }
+}
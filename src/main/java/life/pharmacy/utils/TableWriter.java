@@ -0,0 +1,113 @@
+package life.pharmacy.utils;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Écriture ligne par ligne d'un export, en mémoire constante :
+ * - .csv : UTF-8, séparateur ';', tampon d'écriture ;
+ * - sinon .xlsx via SXSSF : seules les WINDOW dernières lignes restent en mémoire,
+ *   les précédentes partent dans un fichier temporaire compressé.
+ * <p>
+ * Largeur des colonnes (xlsx) : estimée sur les AUTOSIZE_SAMPLE premières lignes
+ * au lieu d'autoSizeColumn, qui relit et mesure toute la colonne.
+ */
+public class TableWriter implements Closeable {
+
+    private static final int WINDOW = 100;
+    private static final int AUTOSIZE_SAMPLE = 1000;
+    private static final int MAX_COLUMN_CHARS = 60;
+
+    private final File file;
+    private final boolean csv;
+    private final boolean autoSize;
+
+    private BufferedWriter out;
+    private SXSSFWorkbook wb;
+    private Sheet sheet;
+
+    private final List<Integer> widths = new ArrayList<>();
+    private long rows = 0;
+
+    /**
+     * Format choisi d'après l'extension du fichier.
+     */
+    public TableWriter(File file) throws IOException {
+        this(file, file.getName().toLowerCase().endsWith(".csv"), true);
+    }
+
+    public TableWriter(File file, boolean csv, boolean autoSize) throws IOException {
+        this.file = file;
+        this.csv = csv;
+        this.autoSize = autoSize;
+        if (csv) {
+            out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8), 1 << 16);
+        } else {
+            wb = new SXSSFWorkbook(WINDOW);
+            wb.setCompressTempFiles(true);
+            sheet = wb.createSheet("Export");
+        }
+    }
+
+    public void write(List<String> cells) throws IOException {
+        if (csv) {
+            for (int j = 0; j < cells.size(); j++) {
+                if (j > 0) out.write(';');
+                // échappez les ; et les retours-lignes sommairement
+                String v = cells.get(j);
+                if (v != null) out.write(v.replace("\n", " ").replace("\r", " ").replace(";", ","));
+            }
+            out.newLine();
+        } else {
+            Row row = sheet.createRow((int) rows);
+            for (int j = 0; j < cells.size(); j++) {
+                String v = cells.get(j) == null ? "" : cells.get(j);
+                Cell cell = row.createCell(j);
+                cell.setCellValue(v);
+                if (autoSize && rows < AUTOSIZE_SAMPLE) sample(j, v.length());
+            }
+        }
+        rows++;
+    }
+
+    private void sample(int col, int chars) {
+        while (widths.size() <= col) widths.add(0);
+        if (chars > widths.get(col)) widths.set(col, chars);
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (csv) {
+            out.close();
+            return;
+        }
+        try {
+            for (int c = 0; c < widths.size(); c++) {
+                int chars = Math.min(MAX_COLUMN_CHARS, Math.max(8, widths.get(c) + 2));
+                sheet.setColumnWidth(c, chars * 256);
+            }
+            try (FileOutputStream fos = new FileOutputStream(file)) {
+                wb.write(fos);
+            }
+        } finally {
+            wb.dispose(); // supprime les fichiers temporaires
+            wb.close();
+        }
+    }
+}
@@ -10,7 +10,9 @@ import javafx.scene.layout.VBox;
 import life.pharmacy.models.Client;
 import life.pharmacy.services.ClientService;
 
-public class ClientView {
+import java.util.List;
+
+public final class ClientView {
     private BorderPane view;
     private TableView<Client> table;
     private ObservableList<Client> clients;
@@ -31,7 +33,7 @@ public class ClientView {
         TableColumn<Client, String> colEmail = new TableColumn<>("Email");
         colEmail.setCellValueFactory(c -> new javafx.beans.property.SimpleStringProperty(c.getValue().getEmail()));
 
-        table.getColumns().addAll(colNom, colTelephone, colEmail);
+        table.getColumns().addAll(List.of(colNom, colTelephone, colEmail));
 
         // Boutons CRUD
         Button btnAjouter = new Button("Ajouter");
@@ -9,10 +9,11 @@ import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 import life.pharmacy.models.Utilisateur;
 import life.pharmacy.services.*;
+import life.pharmacy.utils.ExcelImporter;
 
 import java.io.File;
 
-public class DashboardView extends Stage {
+public final class DashboardView extends Stage {
 
     private BorderPane view;
 
@@ -53,10 +54,13 @@ public class DashboardView extends Stage {
         Tab tabUtilisateurs = new Tab("Utilisateurs", new UtilisateurView(utilisateur).getView());
         tabUtilisateurs.setClosable(false);
 
+        Tab tabDiagnostics = new Tab("Diagnostics", new DiagnosticsView().getView());
+        tabDiagnostics.setClosable(false);
+
         // === Contrôle des droits ===
         switch (utilisateur.getRole()) {
             case "admin" ->
-                    tabPane.getTabs().addAll(tabProduits, tabClients, tabFournisseurs, tabFactures, tabRecettes, tabUtilisateurs);
+                    tabPane.getTabs().addAll(tabProduits, tabClients, tabFournisseurs, tabFactures, tabRecettes, tabUtilisateurs, tabDiagnostics);
             case "manager" ->
                     tabPane.getTabs().addAll(tabProduits, tabClients, tabFournisseurs, tabFactures, tabRecettes);
             case "caissier" -> tabPane.getTabs().addAll(tabClients, tabFactures);
@@ -86,6 +90,9 @@ public class DashboardView extends Stage {
             loginView.show();
         });
 
+        // progression de l'import en cours (lignes lues)
+        Label lblImportProgress = new Label();
+
         btnImporterExcel.setOnAction(e -> {
             ChoiceDialog<String> choice = new ChoiceDialog<>("Produits",
                     "Produits", "Clients", "Utilisateurs", "Recettes", "Factures");
@@ -100,16 +107,18 @@ public class DashboardView extends Stage {
                 if (file == null) return;
 
                 // Exécuter l'import en background
-                javafx.concurrent.Task<Void> task = new javafx.concurrent.Task<>() {
+                // rapport d'import (null pour les types importés sans pipeline en masse)
+                javafx.concurrent.Task<BulkImport.Report> task = new javafx.concurrent.Task<>() {
                     @Override
-                    protected Void call() {
+                    protected BulkImport.Report call() {
+                        ExcelImporter.ProgressListener progress = n -> updateMessage(type + " : " + n + " lignes lues");
                         try {
                             switch (type) {
-                                case "Produits" -> ProduitService.importCSV(file);
-                                case "Clients" -> ClientService.importCSV(file);
-                                case "Utilisateurs" -> UtilisateurService.importCSV(file);
-                                case "Recettes" -> RecetteService.importCSV(file);
-                                case "Factures" -> FactureService.importCSV(file);
+                                case "Produits" -> { return ProduitService.importCSV(file, progress); }
+                                case "Clients" -> { return ClientService.importCSV(file, progress); }
+                                case "Utilisateurs" -> { return UtilisateurService.importCSV(file, progress); }
+                                case "Recettes" -> RecetteService.importCSV(file, progress);
+                                case "Factures" -> FactureService.importCSV(file, progress);
                             }
                         } catch (Exception ex) {
                             ex.printStackTrace();
@@ -119,7 +128,11 @@ public class DashboardView extends Stage {
                     }
                 };
 
+                lblImportProgress.textProperty().bind(task.messageProperty());
+
                 task.setOnSucceeded(ev -> {
+                    lblImportProgress.textProperty().unbind();
+                    lblImportProgress.setText("");
                     // refresh UI sur le thread JavaFX
                     switch (type) {
                         case "Produits" -> {
@@ -139,21 +152,38 @@ public class DashboardView extends Stage {
                         }
                     }
                     Alert a = new Alert(Alert.AlertType.INFORMATION, "Import " + type + " terminé !");
+                    BulkImport.Report report = task.getValue();
+                    if (report != null) {
+                        a.setHeaderText(report.toString());
+                        if (!report.getErrors().isEmpty()) {
+                            // détail des lignes rejetées (les 200 premières)
+                            StringBuilder sb = new StringBuilder();
+                            report.getErrors().stream().limit(200).forEach(err -> sb.append(err).append('\n'));
+                            if (report.getRejected() > 200) sb.append("... ").append(report.getRejected() - 200).append(" autres");
+                            TextArea details = new TextArea(sb.toString());
+                            details.setEditable(false);
+                            a.getDialogPane().setExpandableContent(details);
+                        }
+                    }
                     a.showAndWait();
                 });
 
                 task.setOnFailed(ev -> {
+                    lblImportProgress.textProperty().unbind();
+                    lblImportProgress.setText("");
                     Throwable ex = task.getException();
                     Alert a = new Alert(Alert.AlertType.ERROR, "Erreur pendant l'import : " + (ex != null ? ex.getMessage() : "Erreur inconnue"));
                     a.showAndWait();
                 });
 
-                new Thread(task).start();
+                Thread t = new Thread(task, "import-excel");
+                t.setDaemon(true);
+                t.start();
             });
         });
 
 
-        HBox actionsBar = new HBox(10, btnFacturer, btnNouvelleFacture, btnImporterExcel, btnRapports, btnLogout);
+        HBox actionsBar = new HBox(10, btnFacturer, btnNouvelleFacture, btnImporterExcel, btnRapports, btnLogout, lblImportProgress);
         actionsBar.setPadding(new Insets(10));
 
         // --- Placement général ---
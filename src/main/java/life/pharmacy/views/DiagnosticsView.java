@@ -0,0 +1,244 @@
+package life.pharmacy.views;
+
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.beans.property.SimpleLongProperty;
+import javafx.beans.property.SimpleStringProperty;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.control.*;
+import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.VBox;
+import javafx.stage.FileChooser;
+import javafx.util.Duration;
+import life.pharmacy.config.SqlProfiler;
+import life.pharmacy.metrics.Histogram;
+import life.pharmacy.metrics.Metrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+/**
+ * Vue d'administration des métriques du poste : durées des services (p50 / p99...),
+ * emprunts de connexions, scan en caisse, enregistrement des factures, et jauges
+ * (pool SQLite, file d'écriture, analyse en mémoire). Onglet SQL : coût cumulé de chaque requête,
+ * plan d'exécution, dernières requêtes lentes et seuil de journalisation.
+ * Rafraîchie toutes les 2 secondes.
+ */
+public final class DiagnosticsView {
+
+    private final BorderPane view;
+    private final ObservableList<Metrics.Entry> entries = FXCollections.observableArrayList();
+    private final TextField tfFiltre = new TextField();
+    private final Label lblDepuis = new Label();
+    private final TextArea taJauges = new TextArea();
+    private final ObservableList<SqlProfiler.Stat> requetes = FXCollections.observableArrayList();
+    private final TableView<SqlProfiler.Stat> tableSql = new TableView<>(requetes);
+    private final TextArea taPlan = new TextArea();
+    private final TextArea taLentes = new TextArea();
+    private final Timeline refresher;
+
+    public DiagnosticsView() {
+        view = new BorderPane();
+        view.setPadding(new Insets(10));
+
+        tfFiltre.setPromptText("Filtrer (ex. factures, caisse, db)");
+        tfFiltre.textProperty().addListener((obs, o, n) -> refresh());
+
+        Button btnRafraichir = new Button("Rafraîchir");
+        btnRafraichir.setOnAction(e -> refresh());
+
+        Button btnRemiseAZero = new Button("Remettre à zéro");
+        btnRemiseAZero.setOnAction(e -> {
+            Metrics.reset();
+            SqlProfiler.reset();
+            refresh();
+        });
+
+        Button btnEnregistrer = new Button("Enregistrer...");
+        btnEnregistrer.setOnAction(e -> enregistrer());
+
+        HBox top = new HBox(8, tfFiltre, btnRafraichir, btnRemiseAZero, btnEnregistrer, lblDepuis);
+        top.setAlignment(Pos.CENTER_LEFT);
+        top.setPadding(new Insets(0, 0, 8, 0));
+        view.setTop(top);
+
+        TableView<Metrics.Entry> table = new TableView<>(entries);
+        table.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY);
+
+        TableColumn<Metrics.Entry, String> colNom = new TableColumn<>("Nom");
+        colNom.setCellValueFactory(c -> new SimpleStringProperty(c.getValue().getName()));
+        colNom.setPrefWidth(240);
+
+        TableColumn<Metrics.Entry, String> colType = new TableColumn<>("Type");
+        colType.setCellValueFactory(c -> new SimpleStringProperty(c.getValue().getType()));
+
+        TableColumn<Metrics.Entry, Number> colNombre = new TableColumn<>("Nombre");
+        colNombre.setCellValueFactory(c -> {
+            Metrics.Entry e = c.getValue();
+            long n = e.getSnapshot() != null ? e.getSnapshot().getCount() : Long.parseLong(e.getValue());
+            return new SimpleLongProperty(n);
+        });
+
+        TableColumn<Metrics.Entry, Number> colErreurs = new TableColumn<>("Erreurs");
+        colErreurs.setCellValueFactory(c -> new SimpleLongProperty(c.getValue().getErrors()));
+
+        table.getColumns().addAll(List.of(colNom, colType, colNombre, colErreurs,
+                valueColumn("Moy. (ms)", s -> (long) s.getMean()),
+                valueColumn("p50 (ms)", Histogram.Snapshot::getP50),
+                valueColumn("p90 (ms)", Histogram.Snapshot::getP90),
+                valueColumn("p99 (ms)", Histogram.Snapshot::getP99),
+                valueColumn("Max (ms)", Histogram.Snapshot::getMax)));
+
+        taJauges.setEditable(false);
+        taJauges.setPrefRowCount(5);
+        taJauges.setWrapText(true);
+        VBox metriques = new VBox(8, table, new Label("Jauges"), taJauges);
+        VBox.setVgrow(table, Priority.ALWAYS);
+        metriques.setPadding(new Insets(8, 0, 0, 0));
+
+        Tab tabMetriques = new Tab("Métriques", metriques);
+        tabMetriques.setClosable(false);
+        Tab tabSql = new Tab("Requêtes SQL", buildSqlPane());
+        tabSql.setClosable(false);
+        view.setCenter(new TabPane(tabMetriques, tabSql));
+
+        // rafraîchissement tant que la vue est affichée
+        refresher = new Timeline(new KeyFrame(Duration.seconds(2), e -> {
+            if (view.getScene() == null || view.getScene().getWindow() == null
+                    || !view.getScene().getWindow().isShowing()) {
+                stopIfHidden();
+                return;
+            }
+            refresh();
+        }));
+        refresher.setCycleCount(Timeline.INDEFINITE);
+        refresher.play();
+
+        refresh();
+    }
+
+    private VBox buildSqlPane() {
+        Spinner<Integer> spSeuil = new Spinner<>(0, 60_000, (int) SqlProfiler.getSlowThresholdMs(), 50);
+        spSeuil.setEditable(true);
+        spSeuil.valueProperty().addListener((obs, o, n) -> {
+            if (n != null) SqlProfiler.setSlowThresholdMs(n);
+        });
+        HBox seuil = new HBox(8, new Label("Seuil des requêtes lentes (ms) :"), spSeuil);
+        seuil.setAlignment(Pos.CENTER_LEFT);
+        if (!SqlProfiler.isEnabled()) {
+            seuil.getChildren().add(new Label("(mesure désactivée par -Dpharmacy.sql.profile=false)"));
+        }
+
+        TableColumn<SqlProfiler.Stat, String> colSql = new TableColumn<>("Requête");
+        colSql.setCellValueFactory(c -> new SimpleStringProperty(c.getValue().getSql()));
+        colSql.setPrefWidth(420);
+        TableColumn<SqlProfiler.Stat, Number> colNombre = new TableColumn<>("Nombre");
+        colNombre.setCellValueFactory(c -> new SimpleLongProperty(c.getValue().getCount()));
+        TableColumn<SqlProfiler.Stat, Number> colLentes = new TableColumn<>("Lentes");
+        colLentes.setCellValueFactory(c -> new SimpleLongProperty(c.getValue().getSlow()));
+        TableColumn<SqlProfiler.Stat, Number> colErreurs = new TableColumn<>("Erreurs");
+        colErreurs.setCellValueFactory(c -> new SimpleLongProperty(c.getValue().getErrors()));
+        tableSql.getColumns().addAll(List.of(colSql, colNombre,
+                msColumn("Total (ms)", SqlProfiler.Stat::getTotalNanos),
+                msColumn("Moy. (ms)", SqlProfiler.Stat::getAvgNanos),
+                msColumn("Max (ms)", SqlProfiler.Stat::getMaxNanos),
+                colLentes, colErreurs));
+        tableSql.getSelectionModel().selectedItemProperty().addListener((obs, o, n) -> showPlan(n));
+
+        taPlan.setEditable(false);
+        taPlan.setPrefRowCount(4);
+        taPlan.setStyle("-fx-font-family: monospace;");
+        taLentes.setEditable(false);
+        taLentes.setPrefRowCount(8);
+        taLentes.setStyle("-fx-font-family: monospace;");
+
+        VBox box = new VBox(8, seuil, tableSql, new Label("Plan (EXPLAIN QUERY PLAN, relevé à la première exécution lente)"),
+                taPlan, new Label("Dernières requêtes lentes"), taLentes);
+        VBox.setVgrow(tableSql, Priority.ALWAYS);
+        box.setPadding(new Insets(8, 0, 0, 0));
+        return box;
+    }
+
+    private static TableColumn<SqlProfiler.Stat, String> msColumn(String title, ToLongFunction<SqlProfiler.Stat> nanos) {
+        TableColumn<SqlProfiler.Stat, String> col = new TableColumn<>(title);
+        col.setCellValueFactory(c -> new SimpleStringProperty(String.format("%.3f", nanos.applyAsLong(c.getValue()) / 1e6)));
+        col.setStyle("-fx-alignment: CENTER-RIGHT;");
+        return col;
+    }
+
+    private void showPlan(SqlProfiler.Stat stat) {
+        if (stat == null) return;
+        taPlan.setText(stat.getPlan() != null ? stat.getPlan() : "(aucune exécution au-delà du seuil)");
+    }
+
+    // durée en ms pour un minuteur, valeur brute pour un histogramme, vide pour un compteur
+    private static TableColumn<Metrics.Entry, String> valueColumn(String title, ToLongFunction<Histogram.Snapshot> value) {
+        TableColumn<Metrics.Entry, String> col = new TableColumn<>(title);
+        col.setCellValueFactory(c -> {
+            Metrics.Entry e = c.getValue();
+            if (e.getSnapshot() == null) return new SimpleStringProperty("");
+            long v = value.applyAsLong(e.getSnapshot());
+            return new SimpleStringProperty(e.isTimer() ? String.format("%.3f", v / 1e6) : String.valueOf(v));
+        });
+        col.setStyle("-fx-alignment: CENTER-RIGHT;");
+        return col;
+    }
+
+    private void stopIfHidden() {
+        // fenêtre pas encore affichée : on attend ; fenêtre fermée : on arrête
+        if (view.getScene() != null && view.getScene().getWindow() != null) refresher.stop();
+    }
+
+    public void refresh() {
+        String filtre = tfFiltre.getText() == null ? "" : tfFiltre.getText().trim().toLowerCase();
+        entries.setAll(Metrics.snapshot().stream()
+                .filter(e -> filtre.isEmpty() || e.getName().toLowerCase().contains(filtre))
+                .toList());
+
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, String> g : Metrics.gauges().entrySet()) {
+            sb.append(g.getKey()).append(" : ").append(g.getValue()).append('\n');
+        }
+        taJauges.setText(sb.toString());
+
+        // la sélection est retrouvée par son texte SQL après rechargement
+        SqlProfiler.Stat selected = tableSql.getSelectionModel().getSelectedItem();
+        requetes.setAll(SqlProfiler.getStats());
+        if (selected != null) {
+            requetes.stream().filter(s -> s.getSql().equals(selected.getSql())).findFirst()
+                    .ifPresent(s -> tableSql.getSelectionModel().select(s));
+        }
+        StringBuilder lentes = new StringBuilder();
+        for (SqlProfiler.SlowQuery q : SqlProfiler.getSlowQueries()) lentes.append(q).append('\n');
+        taLentes.setText(lentes.toString());
+        lblDepuis.setText("Depuis le " + Metrics.getSince().format(DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss")));
+    }
+
+    private void enregistrer() {
+        FileChooser fc = new FileChooser();
+        fc.setTitle("Enregistrer les métriques");
+        fc.getExtensionFilters().add(new FileChooser.ExtensionFilter("Texte", "*.txt"));
+        fc.setInitialFileName(Metrics.defaultFileName());
+        File file = fc.showSaveDialog(view.getScene() != null ? view.getScene().getWindow() : null);
+        if (file == null) return;
+        try {
+            Metrics.dump(file);
+        } catch (IOException ex) {
+            ex.printStackTrace();
+            new Alert(Alert.AlertType.ERROR, "Enregistrement impossible : " + ex.getMessage()).showAndWait();
+        }
+    }
+
+    public BorderPane getView() {
+        return view;
+    }
+}
@@ -0,0 +1,144 @@
+package life.pharmacy.views;
+
+import javafx.concurrent.Task;
+import javafx.geometry.Insets;
+import javafx.scene.Scene;
+import javafx.scene.control.*;
+import javafx.scene.layout.GridPane;
+import javafx.stage.DirectoryChooser;
+import javafx.stage.FileChooser;
+import javafx.stage.Modality;
+import javafx.stage.Stage;
+import javafx.stage.Window;
+import life.pharmacy.services.FacturePdfExport;
+import life.pharmacy.services.FactureService;
+import life.pharmacy.utils.FacturePdfRenderer;
+
+import java.io.File;
+
+/**
+ * Export PDF en lot des factures du filtre courant de l'historique, avec avancement et annulation.
+ */
+public class ExportPdfDialog {
+
+    private static final String UN_FICHIER_PAR_FACTURE = "Un fichier par facture";
+    private static final String DOCUMENT_UNIQUE = "Document unique";
+
+    public static void show(Window owner, FactureService.Filter filter) {
+        Stage dialog = new Stage();
+        dialog.initOwner(owner);
+        dialog.initModality(Modality.APPLICATION_MODAL);
+        dialog.setTitle("Export PDF des factures");
+
+        ComboBox<String> cbFormat = new ComboBox<>();
+        for (FacturePdfRenderer.Format f : FacturePdfRenderer.Format.values()) cbFormat.getItems().add(f.getLabel());
+        cbFormat.setValue(FacturePdfRenderer.Format.A4.getLabel());
+
+        ComboBox<String> cbSortie = new ComboBox<>();
+        cbSortie.getItems().addAll(UN_FICHIER_PAR_FACTURE, DOCUMENT_UNIQUE);
+        cbSortie.setValue(UN_FICHIER_PAR_FACTURE);
+
+        ProgressBar progress = new ProgressBar(0);
+        progress.setPrefWidth(260);
+        Label lblStatus = new Label(describe(filter));
+
+        Button btnExport = new Button("Exporter");
+        Button btnAnnuler = new Button("Annuler");
+        btnAnnuler.setDisable(true);
+
+        btnExport.setOnAction(e -> {
+            FacturePdfRenderer.Format format = FacturePdfRenderer.Format.fromLabel(cbFormat.getValue());
+            boolean unique = DOCUMENT_UNIQUE.equals(cbSortie.getValue());
+            File target = unique ? chooseFile(dialog) : chooseDirectory(dialog);
+            if (target == null) return;
+
+            FacturePdfExport export = FacturePdfExport.of(filter).format(format);
+            Task<FacturePdfExport.Report> task = new Task<>() {
+                @Override
+                protected FacturePdfExport.Report call() {
+                    FacturePdfExport.ProgressListener listener = (done, total) -> {
+                        updateProgress(done, total);
+                        updateMessage(done + " / " + total + " facture(s)");
+                    };
+                    return unique ? export.toFile(target, listener) : export.toDirectory(target, listener);
+                }
+            };
+            progress.progressProperty().bind(task.progressProperty());
+            lblStatus.textProperty().bind(task.messageProperty());
+            btnExport.setDisable(true);
+            btnAnnuler.setDisable(false);
+            btnAnnuler.setOnAction(ev -> {
+                export.cancel();
+                btnAnnuler.setDisable(true);
+            });
+
+            task.setOnSucceeded(ev -> {
+                lblStatus.textProperty().unbind();
+                FacturePdfExport.Report report = task.getValue();
+                lblStatus.setText(report.toString());
+                btnAnnuler.setDisable(true);
+                btnExport.setDisable(false);
+                if (!report.getErrors().isEmpty()) {
+                    StringBuilder sb = new StringBuilder();
+                    report.getErrors().stream().limit(20).forEach(err -> sb.append(err).append("\n"));
+                    Alert alert = new Alert(Alert.AlertType.WARNING, sb.toString());
+                    alert.setHeaderText(report.getFailed() + " facture(s) non exportée(s)");
+                    alert.showAndWait();
+                }
+            });
+            task.setOnFailed(ev -> {
+                lblStatus.textProperty().unbind();
+                Throwable ex = task.getException();
+                lblStatus.setText("Erreur : " + (ex != null ? ex.getMessage() : "inconnue"));
+                btnAnnuler.setDisable(true);
+                btnExport.setDisable(false);
+            });
+
+            // fermer la fenêtre arrête l'export
+            dialog.setOnCloseRequest(ev -> export.cancel());
+
+            Thread t = new Thread(task, "factures-pdf-export");
+            t.setDaemon(true);
+            t.start();
+        });
+
+        GridPane grid = new GridPane();
+        grid.setPadding(new Insets(15));
+        grid.setVgap(10);
+        grid.setHgap(10);
+
+        grid.add(new Label("Format :"), 0, 0);
+        grid.add(cbFormat, 1, 0);
+        grid.add(new Label("Sortie :"), 0, 1);
+        grid.add(cbSortie, 1, 1);
+        grid.add(progress, 0, 2, 2, 1);
+        grid.add(lblStatus, 0, 3, 2, 1);
+        grid.add(btnExport, 0, 4);
+        grid.add(btnAnnuler, 1, 4);
+
+        dialog.setScene(new Scene(grid));
+        dialog.showAndWait();
+    }
+
+    private static String describe(FactureService.Filter filter) {
+        if (filter == null || (filter.getFrom() == null && filter.getTo() == null)) {
+            return "Toutes les factures" + (filter != null && filter.getClientId() != null ? " du client" : "");
+        }
+        return "Factures du " + (filter.getFrom() != null ? filter.getFrom() : "début")
+                + " au " + (filter.getTo() != null ? filter.getTo() : "ce jour");
+    }
+
+    private static File chooseDirectory(Stage owner) {
+        DirectoryChooser dc = new DirectoryChooser();
+        dc.setTitle("Dossier de destination des factures");
+        return dc.showDialog(owner);
+    }
+
+    private static File chooseFile(Stage owner) {
+        FileChooser fc = new FileChooser();
+        fc.setTitle("Enregistrer les factures");
+        fc.getExtensionFilters().add(new FileChooser.ExtensionFilter("PDF", "*.pdf"));
+        fc.setInitialFileName("factures.pdf");
+        return fc.showSaveDialog(owner);
+    }
+}
@@ -3,7 +3,6 @@ package life.pharmacy.views;
 import javafx.application.Platform;
 import javafx.beans.property.*;
 import javafx.collections.*;
-import javafx.collections.transformation.FilteredList;
 import javafx.geometry.*;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
@@ -16,20 +15,30 @@ import javafx.scene.layout.*;
 import javafx.stage.Stage;
 import javafx.util.StringConverter;
 import javafx.util.converter.IntegerStringConverter;
+import life.pharmacy.metrics.Metrics;
+import life.pharmacy.metrics.Timer;
 import life.pharmacy.models.Client;
 import life.pharmacy.models.DetailFacture;
 import life.pharmacy.models.Facture;
 import life.pharmacy.models.Produit;
-import life.pharmacy.services.ClientService;
 import life.pharmacy.services.FactureService;
-import life.pharmacy.services.ProduitService;
+import life.pharmacy.services.ClientService;
+import life.pharmacy.services.ProduitCatalog;
+import life.pharmacy.services.StockLedger;
+import life.pharmacy.services.StockReservations;
 import life.pharmacy.utils.Session;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
 
 
 /**
@@ -41,9 +50,22 @@ import java.util.Optional;
  * - capture scanner via champ caché
  */
 public class FacturationView {
-    // produits cache + filtre
+    // nombre de suggestions affichées dans la liste déroulante produit
+    private static final int MAX_SUGGESTIONS = 50;
+
+    // du code lu par le scanner à la ligne ajoutée au panier (produit non trouvé : erreur)
+    private static final Timer SCAN = Metrics.timer("caisse.scan");
+
+    // suggestions affichées par cbProduit (résultats de l'index de recherche)
+    private final ObservableList<Produit> suggestions = FXCollections.observableArrayList();
 
-    private FilteredList<Produit> filteredProducts;
+    // recherche hors du thread JavaFX ; seule la dernière frappe est affichée
+    private final ExecutorService searchExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "produit-search");
+        t.setDaemon(true);
+        return t;
+    });
+    private final AtomicLong searchSeq = new AtomicLong();
 
     private final ObservableList<Ligne> lignes = FXCollections.observableArrayList();
 
@@ -66,6 +88,15 @@ public class FacturationView {
     // Hidden field to capture scanner input
     private TextField tfScannerHidden;
 
+    private Button btnValider;
+    private Button btnAnnuler;
+
+    // facture en cours d'enregistrement : le panier est figé (scanner compris) jusqu'à la fin
+    private boolean enregistrementEnCours = false;
+
+    // panier de la caisse : chaque ligne réserve son stock jusqu'à la validation ou l'annulation
+    private long panier = StockReservations.open();
+
     // cache produits
     private ObservableList<Produit> allProducts = FXCollections.observableArrayList();
 
@@ -104,13 +135,18 @@ public class FacturationView {
         tfScannerHidden.setPrefHeight(1);
         tfScannerHidden.setOnAction(ev -> {
             String code = tfScannerHidden.getText().trim();
-            if (!code.isEmpty()) {
+            if (!code.isEmpty() && !enregistrementEnCours) {
+                // mesure arrêtée avant toute alerte : le temps passé devant le dialogue n'est pas du scan
+                Timer.Sample mesure = SCAN.start();
                 Produit p = lookupProduitByCodeOrName(code);
-                if (p != null) {
-                    ajouterProduit(p, 1);
-                } else {
+                boolean ajoute = p != null && ajouterAuPanier(p, 1);
+                if (p == null) mesure.error();
+                mesure.close();
+                if (p == null) {
                     // minimal feedback
                     new Alert(Alert.AlertType.WARNING, "Produit non trouvé pour : " + code).showAndWait();
+                } else if (!ajoute) {
+                    alerteStock(p.getId(), p.getNom());
                 }
             }
             tfScannerHidden.clear();
@@ -172,6 +208,12 @@ public class FacturationView {
             s.setTitle("Utilisateurs"); s.show();
         });
 
+        Button btnDiagnostics = new Button("Diagnostics");
+        btnDiagnostics.setOnAction(e -> {
+            if (!Session.isAdmin()) { new Alert(Alert.AlertType.WARNING, "Accès réservé aux administrateurs.").showAndWait(); return; }
+            openViewSafely("Diagnostics", () -> new ParentWrapper(new DiagnosticsView().getView()));
+        });
+
         Button btnImportExport = new Button("Import / Export");
         btnImportExport.setOnAction(e -> {
             ImportExportDialog dialog = new ImportExportDialog();
@@ -181,7 +223,7 @@ public class FacturationView {
         HBox left = new HBox(10, logo, title);
         left.setAlignment(Pos.CENTER_LEFT);
 
-        HBox managers = new HBox(6, btnClients, btnProduits, btnFournisseurs, btnFactures, btnRecettes, btnUtilisateurs, btnImportExport);
+        HBox managers = new HBox(6, btnClients, btnProduits, btnFournisseurs, btnFactures, btnRecettes, btnUtilisateurs, btnDiagnostics, btnImportExport);
         managers.setAlignment(Pos.CENTER_LEFT);
 
         Region spacer = new Region();
@@ -194,6 +236,7 @@ public class FacturationView {
 
         if (!Session.isManager()) btnRecettes.setDisable(true);
         if (!Session.isAdmin()) btnUtilisateurs.setDisable(true);
+        if (!Session.isAdmin()) btnDiagnostics.setDisable(true);
 
         return header;
     }
@@ -309,9 +352,7 @@ public class FacturationView {
         cbProduit.setEditable(true);
         cbProduit.setPrefWidth(420);
 
-        // filteredProducts wraps allProducts
-        filteredProducts = new FilteredList<>(allProducts, p -> true);
-        cbProduit.setItems(filteredProducts);
+        cbProduit.setItems(suggestions);
 
         cbProduit.setCellFactory(lv -> new ListCell<>() {
             @Override protected void updateItem(Produit item, boolean empty) {
@@ -327,18 +368,10 @@ public class FacturationView {
 
         tfProduitEditor = cbProduit.getEditor();
 
-        // Filter without replacing items (avoids recursion)
+        // Interroge l'index de recherche à chaque frappe (hors thread FX)
         tfProduitEditor.textProperty().addListener((obs, oldV, newV) -> {
             if (suppressEditorListener) return;
-            String filter = newV == null ? "" : newV.trim().toLowerCase();
-            if (filter.isEmpty()) filteredProducts.setPredicate(p -> true);
-            else filteredProducts.setPredicate(p -> {
-                boolean nameMatch = p.getNom() != null && p.getNom().toLowerCase().contains(filter);
-                boolean codeMatch = hasCodeBarre(p) && getCodeBarre(p).toLowerCase().contains(filter);
-                return nameMatch || codeMatch;
-            });
-            // Show suggestions next pulse to avoid re-entrancy
-            Platform.runLater(() -> { if (!cbProduit.isShowing()) cbProduit.show(); });
+            searchProduits(newV, true);
         });
 
         // ENTER: add selected or lookup by text
@@ -402,37 +435,25 @@ public class FacturationView {
 //        }
 //    }
 //
-    private boolean hasCodeBarre(Produit p) {
-        try { return getCodeBarre(p) != null; } catch (Exception e) { return false; }
-    }
-
-    private String getCodeBarre(Produit p) {
-        try {
-            var m = p.getClass().getMethod("getCodeBarre");
-            Object v = m.invoke(p);
-            return v == null ? "" : String.valueOf(v);
-        } catch (Exception ex) {
-            return "";
-        }
+    // Lance la recherche sur le thread dédié ; le résultat n'est appliqué que s'il correspond
+    // toujours à la dernière saisie
+    private void searchProduits(String text, boolean showPopup) {
+        final long seq = searchSeq.incrementAndGet();
+        final String query = text == null ? "" : text;
+        searchExecutor.submit(() -> {
+            List<Produit> result = ProduitCatalog.search(query, MAX_SUGGESTIONS);
+            Platform.runLater(() -> {
+                if (seq != searchSeq.get()) return;
+                suppressEditorListener = true;
+                try { suggestions.setAll(result); } finally { suppressEditorListener = false; }
+                if (showPopup && cbProduit != null && !cbProduit.isShowing()) cbProduit.show();
+            });
+        });
     }
 
+    // recherche O(1) par code-barres / nom exact dans le cache catalogue (sans SQLite)
     private Produit lookupProduitByCodeOrName(String q) {
-        if (q == null) return null;
-        q = q.trim();
-        // exact code match
-        for (Produit p : allProducts) {
-            String code = getCodeBarre(p);
-            if (!code.isEmpty() && code.equals(q)) return p;
-        }
-        // exact name
-        for (Produit p : allProducts) {
-            if (p.getNom() != null && p.getNom().equalsIgnoreCase(q)) return p;
-        }
-        // contains
-        for (Produit p : allProducts) {
-            if (p.getNom() != null && p.getNom().toLowerCase().contains(q.toLowerCase())) return p;
-        }
-        return null;
+        return ProduitCatalog.findByCodeOrName(q);
     }
 
     private VBox buildPanierSection() {
@@ -451,7 +472,13 @@ public class FacturationView {
         colQte.setCellFactory(TextFieldTableCell.forTableColumn(new IntegerStringConverter()));
         colQte.setOnEditCommit(ev -> {
             int newQ = ev.getNewValue() == null || ev.getNewValue() < 1 ? 1 : ev.getNewValue();
-            ev.getRowValue().setQuantite(newQ);
+            Ligne ligne = ev.getRowValue();
+            if (!StockReservations.set(panier, ligne.getProduitId(), newQ)) {
+                alerteStock(ligne.getProduitId(), ligne.getProduitNom());
+                tablePanier.refresh(); // réaffiche l'ancienne quantité
+                return;
+            }
+            ligne.setQuantite(newQ);
             calculerTotaux();
             if (tfScannerHidden != null) tfScannerHidden.requestFocus();
         });
@@ -468,13 +495,13 @@ public class FacturationView {
         TableColumn<Ligne, Void> colAction = new TableColumn<>("Action");
         colAction.setCellFactory(tc -> new TableCell<>() {
             private final Button btn = new Button("Suppr");
-            { btn.setOnAction(e -> { Ligne l = getTableView().getItems().get(getIndex()); lignes.remove(l); calculerTotaux(); if (tfScannerHidden!=null) tfScannerHidden.requestFocus(); });
+            { btn.setOnAction(e -> { Ligne l = getTableView().getItems().get(getIndex()); StockReservations.set(panier, l.getProduitId(), 0); lignes.remove(l); calculerTotaux(); if (tfScannerHidden!=null) tfScannerHidden.requestFocus(); });
                 btn.setStyle("-fx-background-color: #e74c3c; -fx-text-fill: white;"); }
             @Override protected void updateItem(Void item, boolean empty) { super.updateItem(item, empty); setGraphic(empty ? null : btn); }
         });
         colAction.setPrefWidth(80);
 
-        tablePanier.getColumns().setAll(colProduit, colQte, colPU, colTotal, colAction);
+        tablePanier.getColumns().setAll(List.of(colProduit, colQte, colPU, colTotal, colAction));
 
         VBox box = new VBox(8, lbl, tablePanier);
         box.setPadding(new Insets(6));
@@ -512,7 +539,7 @@ public class FacturationView {
     }
 
     private HBox buildActionsSection() {
-        Button btnValider = new Button("✅ Valider & Enregistrer");
+        btnValider = new Button("✅ Valider & Enregistrer");
         btnValider.setStyle("-fx-background-color: #27ae60; -fx-text-fill: white;");
         btnValider.setOnAction(e -> validerEtEnregistrer());
 
@@ -525,7 +552,7 @@ public class FacturationView {
             }
         });
 
-        Button btnAnnuler = new Button("❌ Annuler");
+        btnAnnuler = new Button("❌ Annuler");
         btnAnnuler.setOnAction(e -> {
             Alert a = new Alert(Alert.AlertType.CONFIRMATION, "Annuler la facture en cours ?", ButtonType.YES, ButtonType.NO);
             a.showAndWait().ifPresent(bt -> { if (bt == ButtonType.YES) nouvellesDonnees(); });
@@ -540,32 +567,39 @@ public class FacturationView {
     // ---------------- Logic ----------------
 
     private void ajouterProduit(Produit p, int quantite) {
-        if (p == null) return;
-        double prix = getProduitPrix(p);
+        if (p == null || enregistrementEnCours) return;
+        if (!ajouterAuPanier(p, quantite)) alerteStock(p.getId(), p.getNom());
+    }
+
+    // false si le stock libre ne couvre pas la quantité (le panier est inchangé)
+    private boolean ajouterAuPanier(Produit p, int quantite) {
+        double prix = p.getPrixUnitaire();
+
+        Ligne existante = null;
+        for (Ligne l : lignes) {
+            if (l.getProduitId() == p.getId()) existante = l;
+        }
+        int total = (existante != null ? existante.getQuantite() : 0) + quantite;
+        if (!StockReservations.set(panier, p.getId(), total)) return false;
 
         for (Ligne l : lignes) {
             if (l.getProduitId() == p.getId()) {
-                l.setQuantite(l.getQuantite() + quantite);
+                l.setQuantite(total);
                 tablePanier.refresh();
                 calculerTotaux();
-                return;
+                return true;
             }
         }
 
         Ligne ligne = new Ligne(p.getId(), p.getNom(), prix, quantite);
         lignes.add(ligne);
         calculerTotaux();
+        return true;
     }
 
-    private double getProduitPrix(Produit p) {
-        try { return (double)p.getClass().getMethod("getPrix").invoke(p); }
-        catch (Exception e1) {
-            try { return (double)p.getClass().getMethod("getPrixUnitaire").invoke(p); }
-            catch (Exception e2) {
-                try { return (double)p.getClass().getMethod("getPrice").invoke(p); }
-                catch (Exception e3) { return 0.0; }
-            }
-        }
+    private void alerteStock(int produitId, String nom) {
+        int libre = Math.max(0, StockLedger.free(produitId) + StockReservations.held(panier, produitId));
+        new Alert(Alert.AlertType.WARNING, "Stock insuffisant pour " + nom + " (disponible : " + libre + ")").showAndWait();
     }
 
     private void calculerTotaux() {
@@ -581,24 +615,80 @@ public class FacturationView {
         Facture facture = buildFactureFromUI(true);
         if (facture == null) return;
 
-        try {
-            // Persist via service (adapte si ton service a un autre nom)
-            FactureService.insert(facture);
+        // l'écriture SQLite se fait sur le thread d'enregistrement : la caisse reste réactive,
+        // mais le panier est figé jusqu'à la fin pour que la remise à zéro ne porte que sur la facture envoyée
+        figerPanier(true);
+        FactureService.submit(facture, panier).whenComplete((saved, ex) -> Platform.runLater(() -> {
+            if (ex != null) {
+                Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                // la facture n'est pas enregistrée : le panier reprend ses réservations
+                List<String> ajustees = reprendreReservations();
+                figerPanier(false);
+                String msg = "Erreur lors de l'enregistrement : " + cause.getMessage();
+                if (!ajustees.isEmpty()) {
+                    msg += "\nStock vendu entre-temps, panier ajusté : " + String.join(", ", ajustees);
+                }
+                new Alert(Alert.AlertType.ERROR, msg).showAndWait();
+                return;
+            }
 
+            refreshStock(saved);
             new Alert(Alert.AlertType.INFORMATION, "Facture enregistrée avec succès !").showAndWait();
 
             // Aperçu / impression automatique
-            ImpressionFactureView preview = new ImpressionFactureView(facture);
+            ImpressionFactureView preview = new ImpressionFactureView(saved);
             preview.showAndWait();
 
             // Reset
             nouvellesDonnees();
-            refreshClients();
-            refreshProduits();
+            figerPanier(false);
             if (tfScannerHidden != null) tfScannerHidden.requestFocus();
-        } catch (Exception ex) {
-            ex.printStackTrace();
-            new Alert(Alert.AlertType.ERROR, "Erreur lors de l'enregistrement : " + ex.getMessage()).showAndWait();
+        }));
+    }
+
+    private void figerPanier(boolean fige) {
+        enregistrementEnCours = fige;
+        btnValider.setDisable(fige);
+        btnAnnuler.setDisable(fige);
+        tablePanier.setDisable(fige);
+        if (cbProduit != null) cbProduit.setDisable(fige);
+    }
+
+    // Après un échec d'enregistrement : réserve à nouveau chaque ligne. Si une autre caisse a vendu
+    // le stock entre-temps, la ligne est ramenée au stock encore libre (ou retirée) ; retourne ces lignes.
+    private List<String> reprendreReservations() {
+        List<String> ajustees = new ArrayList<>();
+        for (Ligne l : new ArrayList<>(lignes)) {
+            int id = l.getProduitId();
+            if (StockReservations.set(panier, id, l.getQuantite())) continue;
+            int libre = Math.max(0, StockLedger.free(id) + StockReservations.held(panier, id));
+            if (libre > 0 && StockReservations.set(panier, id, libre)) {
+                l.setQuantite(libre);
+            } else {
+                StockReservations.set(panier, id, 0);
+                lignes.remove(l);
+                libre = 0;
+            }
+            ajustees.add(l.getProduitNom() + " (" + libre + ")");
+        }
+        if (!ajustees.isEmpty()) {
+            tablePanier.refresh();
+            calculerTotaux();
+        }
+        return ajustees;
+    }
+
+    // Le stock en cache a déjà été décrémenté : on ne redessine que les produits vendus
+    private void refreshStock(Facture facture) {
+        Set<Integer> vendus = new HashSet<>();
+        for (DetailFacture d : facture.getDetails()) {
+            if (d.getProduit() != null) vendus.add(d.getProduit().getId());
+        }
+        for (ObservableList<Produit> list : List.of(suggestions, allProducts)) {
+            for (int i = 0; i < list.size(); i++) {
+                Produit p = list.get(i);
+                if (vendus.contains(p.getId())) list.set(i, p);
+            }
         }
     }
 
@@ -626,7 +716,7 @@ public class FacturationView {
         List<DetailFacture> details = new ArrayList<>();
         for (Ligne l : lignes) {
             DetailFacture d = new DetailFacture();
-            d.setId(l.getProduitId());
+            d.setProduit(ProduitCatalog.getById(l.getProduitId()));
             d.setQuantite(l.getQuantite());
             d.setPrixUnitaire(l.getPrix());
             d.setProduitNom(l.getProduitNom()); // snapshot du nom
@@ -634,16 +724,14 @@ public class FacturationView {
         }
         f.setDetails(details);
 
-        // Optionnel : set mode paiement si Facture possède ce champ
-        try {
-            var m = f.getClass().getMethod("setModePaiement", String.class);
-            m.invoke(f, cbModePaiement.getValue());
-        } catch (Exception ignored) {}
+        f.setModePaiement(cbModePaiement.getValue());
+        if (Session.getCurrentUser() != null) f.setUtilisateurId(Session.getCurrentUser().getId());
 
         return f;
     }
 
     private void nouvellesDonnees() {
+        StockReservations.release(panier);
         lignes.clear();
         calculerTotaux();
         if (cbClient != null) cbClient.getSelectionModel().clearSelection();
@@ -661,15 +749,12 @@ public class FacturationView {
 
     private void refreshProduits() {
         try {
-            List<Produit> all = ProduitService.getAll();
-            allProducts.setAll(all); // <-- met à jour la source, ne remplace pas l'objet FilteredList
-            if (filteredProducts == null) filteredProducts = new FilteredList<>(allProducts, p -> true);
-            if (cbProduit != null) cbProduit.setItems(filteredProducts);
+            List<Produit> all = ProduitCatalog.getAll();
+            allProducts.setAll(all);
         } catch (Exception ex) {
             allProducts.clear();
-            if (filteredProducts == null) filteredProducts = new FilteredList<>(allProducts, p -> true);
-            if (cbProduit != null) cbProduit.setItems(filteredProducts);
         }
+        searchProduits(tfProduitEditor != null ? tfProduitEditor.getText() : "", false);
     }
 
 
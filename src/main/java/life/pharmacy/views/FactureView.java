@@ -2,22 +2,45 @@ package life.pharmacy.views;
 
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
+import javafx.concurrent.Task;
 import javafx.geometry.Insets;
+import javafx.geometry.Orientation;
+import javafx.geometry.Pos;
+import javafx.scene.Node;
 import javafx.scene.control.*;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.HBox;
+import javafx.util.StringConverter;
+import life.pharmacy.models.Client;
 import life.pharmacy.models.Facture;
 import life.pharmacy.models.Utilisateur;
+import life.pharmacy.services.ClientService;
 import life.pharmacy.services.FactureService;
 
-public class FactureView {
+import java.util.List;
+
+public final class FactureView {
+    // nombre de factures chargées à chaque page (chargement à la demande pendant le défilement)
+    private static final int PAGE_SIZE = 200;
+
     private BorderPane view;
     private TableView<Facture> table;
     private ObservableList<Facture> factures;
     private Utilisateur currentUser; // utilisateur connecté (pour vérifier les droits)
 
+    // pagination
+    private FactureService.Filter filter;
+    private FactureService.Cursor nextCursor;
+    private boolean hasMore = true;
+    private boolean loading = false;
+    private int generation = 0; // invalide les pages en cours de chargement quand les filtres changent
+
+    private ComboBox<Client> cbClient;
+    private DatePicker dpFrom, dpTo;
+    private Label lblCount;
+
     public FactureView() {
-        factures = FXCollections.observableArrayList(FactureService.getAll());
+        factures = FXCollections.observableArrayList();
 
         // TableView
         table = new TableView<>();
@@ -44,7 +67,7 @@ public class FactureView {
 
             {
                 btnPreview.setOnAction(event -> {
-                    Facture facture = getTableView().getItems().get(getIndex());
+                    Facture facture = FactureService.loadDetails(getTableView().getItems().get(getIndex()));
                     ImpressionFactureView preview = new ImpressionFactureView(facture);
                     preview.showAndWait();
                 });
@@ -91,7 +114,7 @@ public class FactureView {
         });
 
 
-        table.getColumns().addAll(colDate, colClient, colMontantTTC, colActions);
+        table.getColumns().addAll(List.of(colDate, colClient, colMontantTTC, colActions));
 
         // Boutons
         Button btnNouvelle = new Button("Nouvelle Facture");
@@ -106,16 +129,102 @@ public class FactureView {
         btnDetails.setOnAction(e -> {
             Facture selected = table.getSelectionModel().getSelectedItem();
             if (selected != null) {
-                showDetails(selected);
+                showDetails(FactureService.loadDetails(selected));
             }
         });
 
-        HBox actions = new HBox(10, btnNouvelle, btnDetails);
+        Button btnPlus = new Button("Charger plus");
+        btnPlus.setOnAction(e -> loadNextPage());
+
+        // export PDF de toutes les factures du filtre affiché (pas seulement des pages chargées)
+        Button btnExportPdf = new Button("Exporter PDF");
+        btnExportPdf.setOnAction(e -> ExportPdfDialog.show(view.getScene().getWindow(), filter));
+
+        lblCount = new Label();
+
+        HBox actions = new HBox(10, btnNouvelle, btnDetails, btnPlus, btnExportPdf, lblCount);
+        actions.setAlignment(Pos.CENTER_LEFT);
         actions.setPadding(new Insets(10));
 
         view = new BorderPane();
+        view.setTop(buildFilterBar());
         view.setCenter(table);
         view.setBottom(actions);
+
+        installScrollPaging();
+        refresh();
+    }
+
+    private HBox buildFilterBar() {
+        cbClient = new ComboBox<>();
+        cbClient.setPromptText("Tous les clients");
+        cbClient.getItems().add(null);
+        cbClient.getItems().addAll(ClientService.getAll());
+        cbClient.setConverter(new StringConverter<>() {
+            @Override public String toString(Client c) { return c == null ? "Tous les clients" : c.getNom(); }
+            @Override public Client fromString(String s) { return null; }
+        });
+
+        dpFrom = new DatePicker();
+        dpFrom.setPromptText("Du");
+        dpTo = new DatePicker();
+        dpTo.setPromptText("Au");
+
+        Button btnFiltrer = new Button("Filtrer");
+        btnFiltrer.setOnAction(e -> refresh());
+
+        HBox bar = new HBox(8, new Label("Client :"), cbClient, new Label("Période :"), dpFrom, new Label("→"), dpTo, btnFiltrer);
+        bar.setAlignment(Pos.CENTER_LEFT);
+        bar.setPadding(new Insets(10));
+        return bar;
+    }
+
+    // Charge la page suivante quand la barre de défilement approche du bas de la table
+    private void installScrollPaging() {
+        table.skinProperty().addListener((obs, oldSkin, newSkin) -> {
+            for (Node n : table.lookupAll(".scroll-bar")) {
+                if (n instanceof ScrollBar sb && sb.getOrientation() == Orientation.VERTICAL) {
+                    sb.valueProperty().addListener((o, oldV, newV) -> {
+                        if (newV.doubleValue() >= sb.getMax() * 0.9) loadNextPage();
+                    });
+                }
+            }
+        });
+    }
+
+    private void loadNextPage() {
+        if (loading || !hasMore) return;
+        loading = true;
+
+        final int gen = generation;
+        final FactureService.Filter f = filter;
+        final FactureService.Cursor after = nextCursor;
+
+        Task<FactureService.Page> task = new Task<>() {
+            @Override
+            protected FactureService.Page call() {
+                return FactureService.getPage(f, after, PAGE_SIZE);
+            }
+        };
+        task.setOnSucceeded(ev -> {
+            if (gen != generation) return; // filtres modifiés entre-temps
+            FactureService.Page page = task.getValue();
+            factures.addAll(page.getItems());
+            nextCursor = page.getNext();
+            hasMore = page.hasNext();
+            loading = false;
+            lblCount.setText(factures.size() + " facture(s)" + (hasMore ? "…" : ""));
+        });
+        task.setOnFailed(ev -> {
+            if (gen != generation) return;
+            loading = false;
+            Throwable ex = task.getException();
+            new Alert(Alert.AlertType.ERROR, "Erreur de chargement : " + (ex != null ? ex.getMessage() : "inconnue")).showAndWait();
+        });
+
+        Thread t = new Thread(task, "factures-page");
+        t.setDaemon(true);
+        t.start();
     }
 
     public BorderPane getView() {
@@ -123,7 +232,17 @@ public class FactureView {
     }
 
     public void refresh() {
-        factures.setAll(FactureService.getAll());
+        Client c = cbClient != null ? cbClient.getValue() : null;
+        filter = new FactureService.Filter(
+                c != null ? c.getId() : null,
+                dpFrom != null ? dpFrom.getValue() : null,
+                dpTo != null ? dpTo.getValue() : null);
+        generation++;
+        nextCursor = null;
+        hasMore = true;
+        loading = false;
+        factures.clear();
+        loadNextPage();
     }
 
     private void showDetails(Facture facture) {
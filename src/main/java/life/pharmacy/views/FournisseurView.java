@@ -10,7 +10,9 @@ import javafx.scene.layout.VBox;
 import life.pharmacy.models.Fournisseur;
 import life.pharmacy.services.FournisseurService;
 
-public class FournisseurView {
+import java.util.List;
+
+public final class FournisseurView {
     private BorderPane view;
     private TableView<Fournisseur> table;
     private ObservableList<Fournisseur> fournisseurs;
@@ -31,7 +33,7 @@ public class FournisseurView {
         TableColumn<Fournisseur, String> colAdresse = new TableColumn<>("Adresse");
         colAdresse.setCellValueFactory(c -> new javafx.beans.property.SimpleStringProperty(c.getValue().getAdresse()));
 
-        table.getColumns().addAll(colNom, colContact, colAdresse);
+        table.getColumns().addAll(List.of(colNom, colContact, colAdresse));
 
         // Boutons CRUD
         Button btnAjouter = new Button("Ajouter");
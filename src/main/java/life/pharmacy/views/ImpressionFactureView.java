@@ -1,16 +1,13 @@
 package life.pharmacy.views;
 
-import javafx.embed.swing.SwingFXUtils;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.print.PrinterJob;
 import javafx.scene.Node;
 import javafx.scene.Scene;
-import javafx.scene.SnapshotParameters;
 import javafx.scene.control.*;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
-import javafx.scene.image.WritableImage;
 import javafx.scene.layout.*;
 import javafx.scene.paint.Color;
 import javafx.scene.text.TextAlignment;
@@ -19,29 +16,23 @@ import javafx.stage.Modality;
 import javafx.stage.Stage;
 import life.pharmacy.models.DetailFacture;
 import life.pharmacy.models.Facture;
-import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.pdmodel.PDPage;
-import org.apache.pdfbox.pdmodel.PDPageContentStream;
-import org.apache.pdfbox.pdmodel.common.PDRectangle;
-import org.apache.pdfbox.pdmodel.graphics.image.LosslessFactory;
+import life.pharmacy.utils.FacturePdfRenderer;
 
-import java.awt.image.BufferedImage;
 import java.io.File;
-import java.io.IOException;
 import java.time.format.DateTimeFormatter;
 
 /**
  * Vue d'aperçu / impression de facture avec choix de format : Ticket (thermique étroit) ou A4.
  */
-public class ImpressionFactureView extends Stage {
+public final class ImpressionFactureView extends Stage {
 
     private final Facture facture;
     private final BorderPane root;
     private Node currentContentNode;
     private final ChoiceBox<String> formatChoice;
 
-    private static final String FORMAT_TICKET = "Ticket (80mm)";
-    private static final String FORMAT_A4 = "A4";
+    private static final String FORMAT_TICKET = FacturePdfRenderer.Format.TICKET.getLabel();
+    private static final String FORMAT_A4 = FacturePdfRenderer.Format.A4.getLabel();
 
     public ImpressionFactureView(Facture facture) {
         this.facture = facture;
@@ -312,10 +303,8 @@ public class ImpressionFactureView extends Stage {
         if (ok) job.endJob();
     }
 
-    // Export displayed node to PDF adapted to chosen format
+    // Export PDF au format choisi, dessiné directement depuis la facture (pas de capture de l'aperçu)
     private void exportPdfDialog() {
-        if (currentContentNode == null) return;
-
         FileChooser chooser = new FileChooser();
         chooser.setTitle("Exporter en PDF");
         chooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("PDF files", "*.pdf"));
@@ -323,65 +312,11 @@ public class ImpressionFactureView extends Stage {
         if (out == null) return;
 
         try {
-            exportNodeToPdfAdapted(currentContentNode, out, formatChoice.getValue());
+            FacturePdfRenderer.render(facture, FacturePdfRenderer.Format.fromLabel(formatChoice.getValue()), out);
             new Alert(Alert.AlertType.INFORMATION, "PDF exporté : " + out.getAbsolutePath()).showAndWait();
         } catch (Exception ex) {
             ex.printStackTrace();
             new Alert(Alert.AlertType.ERROR, "Erreur export PDF : " + ex.getMessage()).showAndWait();
         }
     }
-
-    /**
-     * Exporte un Node JavaFX en PDF en prenant un snapshot et dessinant l'image dans une page PDF
-     * adaptée au format choisi.
-     */
-    private void exportNodeToPdfAdapted(Node node, File outputPdf, String format) throws IOException {
-        SnapshotParameters params = new SnapshotParameters();
-        params.setFill(Color.WHITE);
-        WritableImage wi = node.snapshot(params, null);
-        BufferedImage buffered = SwingFXUtils.fromFXImage(wi, null);
-
-        try (PDDocument doc = new PDDocument()) {
-            PDPage page;
-            if (FORMAT_TICKET.equals(format)) {
-                // Ticket width ~80mm -> convert to points (~72 dpi): 80mm = 3.1496 in -> *72 = ~226.8 points
-                float pageWidth = 227f;
-                // Height: set A4-like tall page or dynamic based on image height
-                float pageHeight = Math.max(400f, buffered.getHeight() + 80f);
-                PDRectangle rect = new PDRectangle(pageWidth, pageHeight);
-                page = new PDPage(rect);
-                doc.addPage(page);
-            } else {
-                page = new PDPage(PDRectangle.A4);
-                doc.addPage(page);
-            }
-
-            var pdImage = LosslessFactory.createFromImage(doc, buffered);
-            PDPageContentStream contentStream = new PDPageContentStream(doc, page);
-
-            PDRectangle mediaBox = page.getMediaBox();
-            float pageWidth = mediaBox.getWidth();
-            float pageHeight = mediaBox.getHeight();
-            float margin = 20f;
-
-            float availableW = pageWidth - margin * 2;
-            float availableH = pageHeight - margin * 2;
-
-            float imgW = pdImage.getWidth();
-            float imgH = pdImage.getHeight();
-
-            float scale = Math.min(availableW / imgW, availableH / imgH);
-
-            float drawW = imgW * scale;
-            float drawH = imgH * scale;
-
-            float x = (pageWidth - drawW) / 2;
-            float y = pageHeight - margin - drawH;
-
-            contentStream.drawImage(pdImage, x, y, drawW, drawH);
-            contentStream.close();
-
-            doc.save(outputPdf);
-        }
-    }
 }
@@ -11,7 +11,7 @@ import javafx.stage.Stage;
 import life.pharmacy.models.Utilisateur;
 import life.pharmacy.services.UtilisateurService;
 
-public class LoginView extends Stage {
+public final class LoginView extends Stage {
     private TextField txtEmail;
     private PasswordField txtPassword;
     private Label lblMessage;
@@ -10,7 +10,7 @@ import javafx.scene.image.ImageView;
 import javafx.scene.layout.*;
 import javafx.stage.Stage;
 
-public class MainFacturationView extends Stage {
+public final class MainFacturationView extends Stage {
 
     public MainFacturationView() {
         setTitle("Life Pharmacy - Facturation");
@@ -19,8 +19,9 @@ import life.pharmacy.services.ProduitService;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.List;
 
-public class NouvelleFactureView extends Stage {
+public final class NouvelleFactureView extends Stage {
     private ComboBox<Client> cbClient;
     private CheckBox cbTVA;
     private TableView<DetailFacture> table;
@@ -62,7 +63,7 @@ public class NouvelleFactureView extends Stage {
         colTotal.setCellValueFactory(c -> new javafx.beans.property.SimpleDoubleProperty(
                 c.getValue().getTotal()));
 
-        table.getColumns().addAll(colProduit, colQte, colPrix, colTotal);
+        table.getColumns().addAll(List.of(colProduit, colQte, colPrix, colTotal));
 
         // Bouton ajouter produit
         Button btnAjouterProduit = new Button("Ajouter produit");
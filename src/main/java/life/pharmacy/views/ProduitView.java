@@ -9,8 +9,11 @@ import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
 import life.pharmacy.models.Produit;
 import life.pharmacy.services.ProduitService;
+import life.pharmacy.services.StockLedger;
 
-public class ProduitView {
+import java.util.List;
+
+public final class ProduitView {
     private BorderPane view;
     private TableView<Produit> table;
     private ObservableList<Produit> produits;
@@ -37,7 +40,7 @@ public class ProduitView {
         TableColumn<Produit, String> colTva = new TableColumn<>("TVA");
         colTva.setCellValueFactory(c -> new javafx.beans.property.SimpleStringProperty(c.getValue().isTva() ? "Oui" : "Non"));
 
-        table.getColumns().addAll(colNom, colCode, colPrix, colQuantite, colTva);
+        table.getColumns().addAll(List.of(colNom, colCode, colPrix, colQuantite, colTva));
 
         // Boutons CRUD
         Button btnAjouter = new Button("Ajouter");
@@ -90,7 +93,10 @@ public class ProduitView {
         TextField txtPrix = new TextField(produit != null ? String.valueOf(produit.getPrixUnitaire()) : "");
         txtPrix.setPromptText("Prix unitaire");
 
-        TextField txtQuantite = new TextField(produit != null ? String.valueOf(produit.getQuantite()) : "");
+        // stock disponible (ventes en cours déduites) : la saisie est appliquée comme une correction
+        int stockAffiche = produit == null ? 0
+                : StockLedger.available(produit.getId()) >= 0 ? StockLedger.available(produit.getId()) : produit.getQuantite();
+        TextField txtQuantite = new TextField(produit != null ? String.valueOf(stockAffiche) : "");
         txtQuantite.setPromptText("Quantité");
 
         CheckBox chkTva = new CheckBox("TVA incluse");
@@ -116,9 +122,9 @@ public class ProduitView {
                     produit.setNom(nom);
                     produit.setCodeBarre(code);
                     produit.setPrixUnitaire(prix);
-                    produit.setQuantite(quantite);
                     produit.setTva(tva);
                     ProduitService.update(produit);
+                    if (quantite != stockAffiche) ProduitService.adjustStock(produit.getId(), quantite - stockAffiche);
                 }
                 refresh();
             }
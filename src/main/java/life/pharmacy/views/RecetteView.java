@@ -1,7 +1,9 @@
 package life.pharmacy.views;
 
+import javafx.animation.PauseTransition;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
+import javafx.concurrent.Task;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.chart.*;
@@ -9,20 +11,37 @@ import javafx.scene.control.*;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
+import javafx.util.Duration;
+import life.pharmacy.analytics.Dimension;
+import life.pharmacy.analytics.PivotResult;
+import life.pharmacy.analytics.SalesQuery;
 import life.pharmacy.services.RecetteService;
+import life.pharmacy.utils.Downsampling;
 
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 
-public class RecetteView {
+public final class RecetteView {
 
     private BorderPane view;
     private LineChart<String, Number> lineChart;
     private BarChart<String, Number> barChart;
+    // séries conservées d'un rafraîchissement à l'autre, mises à jour par différence
+    private final XYChart.Series<String, Number> seriesLine = new XYChart.Series<>();
+    private final XYChart.Series<String, Number> seriesBar = new XYChart.Series<>();
+
+    // au-delà, la courbe est tracée sans symboles (un nœud par point)
+    private static final int MAX_SYMBOLS = 200;
+    // saisie des dates / granularité : un seul calcul une fois la saisie posée
+    private final PauseTransition debounce = new PauseTransition(Duration.millis(300));
+    private Task<Points> refreshTask;
+    private int refreshGeneration = 0;
     private TableView<RecetteService.PeriodTotal> table;
     private ObservableList<RecetteService.PeriodTotal> tableData;
 
@@ -33,7 +52,18 @@ public class RecetteView {
 
     // champs additionnels
     private ChoiceBox<String> sourceChoice; // "Recettes table" | "Factures (calculé)"
-
+    private ComboBox<String> paymentMethodChoice; // filtre des factures par mode de paiement
+
+    // onglet Analyse (lignes de vente en mémoire)
+    private TabPane tabs;
+    private Tab tabAnalyse;
+    private ChoiceBox<Dimension> cbAxe;
+    private ChoiceBox<String> cbTop;
+    private TableView<PivotResult.Row> pivotTable;
+    private BarChart<String, Number> pivotChart;
+    private Label lblFiltres, lblAnalyse;
+    private final Map<Dimension, PivotResult.Row> filtres = new EnumMap<>(Dimension.class); // descente par double-clic
+    private int analyseGeneration = 0;
 
     public RecetteView() {
         view = new BorderPane();
@@ -44,7 +74,7 @@ public class RecetteView {
         sourceChoice = new ChoiceBox<>(FXCollections.observableArrayList("Recettes table", "Factures (calculé)"));
         sourceChoice.setValue("Factures (calculé)"); // par défaut, on veut le calcul depuis factures
 
-        ComboBox<String> paymentMethodChoice = new ComboBox<>();
+        paymentMethodChoice = new ComboBox<>();
         paymentMethodChoice.getItems().addAll("Tous", "Espèces", "Mobile Money", "Carte Bancaire");
         paymentMethodChoice.setValue("Tous");
 
@@ -56,7 +86,10 @@ public class RecetteView {
         cbGranularity.setValue("DAY");
 
         Button btnRefresh = new Button("Rafraîchir");
-        btnRefresh.setOnAction(e -> refresh());
+        btnRefresh.setOnAction(e -> {
+            if (tabs.getSelectionModel().getSelectedItem() == tabAnalyse) analyse();
+            else refresh();
+        });
 
         Button btnExport = new Button("Exporter CSV");
         btnExport.setOnAction(e -> exportCsv());
@@ -66,7 +99,8 @@ public class RecetteView {
                 new Label("Période :"), dpStart,
                 new Label("→"), dpEnd,
                 new Label("Granularité :"), cbGranularity,
-                new Label("Source :"), sourceChoice, btnRefresh, btnExport);
+                new Label("Source :"), sourceChoice,
+                new Label("Paiement :"), paymentMethodChoice, btnRefresh, btnExport);
 
         top.setAlignment(Pos.CENTER_LEFT);
         top.setPadding(new Insets(8));
@@ -79,12 +113,17 @@ public class RecetteView {
         yAxis.setLabel("Montant (CDF)");
         lineChart = new LineChart<>(xAxis, yAxis);
         lineChart.setTitle("Recettes");
+        // pas d'animation : les points sont ajoutés / retirés un par un lors de la mise à jour
+        lineChart.setAnimated(false);
+        lineChart.getData().add(seriesLine);
 
         CategoryAxis bx = new CategoryAxis();
         NumberAxis by = new NumberAxis();
         barChart = new BarChart<>(bx, by);
         barChart.setTitle("Recettes (barres)");
         barChart.setLegendVisible(false);
+        barChart.setAnimated(false);
+        barChart.getData().add(seriesBar);
 
         // Table
         table = new TableView<>();
@@ -92,7 +131,7 @@ public class RecetteView {
         colPeriod.setCellValueFactory(data -> new javafx.beans.property.SimpleStringProperty(data.getValue().getPeriod()));
         TableColumn<RecetteService.PeriodTotal, Number> colTotal = new TableColumn<>("Total (CDF)");
         colTotal.setCellValueFactory(data -> new javafx.beans.property.SimpleDoubleProperty(data.getValue().getTotal()));
-        table.getColumns().addAll(colPeriod, colTotal);
+        table.getColumns().addAll(List.of(colPeriod, colTotal));
         tableData = FXCollections.observableArrayList();
         table.setItems(tableData);
 
@@ -100,7 +139,23 @@ public class RecetteView {
         // Center layout: charts above, table below
         VBox center = new VBox(10, lineChart, barChart, table);
         center.setPadding(new Insets(8));
-        view.setCenter(center);
+
+        Tab tabRecettes = new Tab("Recettes", center);
+        tabAnalyse = new Tab("Analyse", buildAnalyse());
+        tabs = new TabPane(tabRecettes, tabAnalyse);
+        tabs.setTabClosingPolicy(TabPane.TabClosingPolicy.UNAVAILABLE);
+        // premier chargement des lignes de vente à la première ouverture de l'onglet
+        tabAnalyse.setOnSelectionChanged(e -> {
+            if (tabAnalyse.isSelected() && pivotTable.getItems().isEmpty()) analyse();
+        });
+        view.setCenter(tabs);
+
+        debounce.setOnFinished(e -> refresh());
+        dpStart.valueProperty().addListener((o, a, b) -> debounce.playFromStart());
+        dpEnd.valueProperty().addListener((o, a, b) -> debounce.playFromStart());
+        cbGranularity.valueProperty().addListener((o, a, b) -> debounce.playFromStart());
+        sourceChoice.valueProperty().addListener((o, a, b) -> debounce.playFromStart());
+        paymentMethodChoice.valueProperty().addListener((o, a, b) -> debounce.playFromStart());
 
         refresh(); // premier affichage
     }
@@ -109,6 +164,114 @@ public class RecetteView {
         return view;
     }
 
+    private VBox buildAnalyse() {
+        cbAxe = new ChoiceBox<>(FXCollections.observableArrayList(Dimension.values()));
+        cbAxe.setValue(Dimension.PRODUIT);
+        cbAxe.setOnAction(e -> analyse());
+        cbTop = new ChoiceBox<>(FXCollections.observableArrayList("20", "50", "100", "Tous"));
+        cbTop.setValue("50");
+        cbTop.setOnAction(e -> analyse());
+
+        lblFiltres = new Label();
+        Button btnTout = new Button("Retirer les filtres");
+        btnTout.setOnAction(e -> {
+            filtres.clear();
+            analyse();
+        });
+        lblAnalyse = new Label();
+
+        HBox bar = new HBox(8, new Label("Axe :"), cbAxe, new Label("Afficher :"), cbTop,
+                lblFiltres, btnTout, lblAnalyse);
+        bar.setAlignment(Pos.CENTER_LEFT);
+
+        CategoryAxis x = new CategoryAxis();
+        NumberAxis y = new NumberAxis();
+        y.setLabel("Montant HT (CDF)");
+        pivotChart = new BarChart<>(x, y);
+        pivotChart.setLegendVisible(false);
+        pivotChart.setAnimated(false);
+
+        pivotTable = new TableView<>();
+        TableColumn<PivotResult.Row, String> colLabel = new TableColumn<>("Valeur");
+        colLabel.setCellValueFactory(d -> new javafx.beans.property.SimpleStringProperty(d.getValue().getLabel()));
+        colLabel.setPrefWidth(260);
+        TableColumn<PivotResult.Row, Number> colMontant = new TableColumn<>("Montant HT");
+        colMontant.setCellValueFactory(d -> new javafx.beans.property.SimpleDoubleProperty(d.getValue().getMontant()));
+        TableColumn<PivotResult.Row, Number> colQte = new TableColumn<>("Quantité");
+        colQte.setCellValueFactory(d -> new javafx.beans.property.SimpleLongProperty(d.getValue().getQuantite()));
+        TableColumn<PivotResult.Row, Number> colLignes = new TableColumn<>("Lignes");
+        colLignes.setCellValueFactory(d -> new javafx.beans.property.SimpleLongProperty(d.getValue().getLignes()));
+        pivotTable.getColumns().addAll(List.of(colLabel, colMontant, colQte, colLignes));
+
+        // double-clic : filtre sur la valeur et passage à l'axe horaire (ex. un produit -> ses heures de vente)
+        pivotTable.setRowFactory(tv -> {
+            TableRow<PivotResult.Row> row = new TableRow<>();
+            row.setOnMouseClicked(e -> {
+                if (e.getClickCount() == 2 && !row.isEmpty() && cbAxe.getValue().isCoded()) {
+                    filtres.put(cbAxe.getValue(), row.getItem());
+                    cbAxe.setValue(Dimension.HEURE); // relance l'analyse
+                }
+            });
+            return row;
+        });
+
+        VBox box = new VBox(10, bar, pivotChart, pivotTable);
+        box.setPadding(new Insets(8));
+        return box;
+    }
+
+    /**
+     * Analyse des lignes de vente selon l'axe choisi, sur la période et le mode de paiement
+     * de la barre du haut ; calculée hors du thread JavaFX.
+     */
+    public void analyse() {
+        Dimension axe = cbAxe.getValue();
+        SalesQuery q = new SalesQuery(axe)
+                .between(dpStart.getValue(), dpEnd.getValue())
+                .modePaiement(paymentMethodChoice.getValue())
+                .limit("Tous".equals(cbTop.getValue()) ? 0 : Integer.parseInt(cbTop.getValue()));
+        StringBuilder desc = new StringBuilder();
+        for (Map.Entry<Dimension, PivotResult.Row> f : filtres.entrySet()) {
+            q.where(f.getKey(), f.getValue().getCode());
+            desc.append(desc.length() == 0 ? "Filtre : " : ", ")
+                    .append(f.getKey().getLabel()).append(" = ").append(f.getValue().getLabel());
+        }
+        lblFiltres.setText(desc.toString());
+        lblAnalyse.setText("Calcul…");
+
+        final int gen = ++analyseGeneration;
+        Task<PivotResult> task = new Task<>() {
+            @Override
+            protected PivotResult call() {
+                return RecetteService.analyse(q);
+            }
+        };
+        task.setOnSucceeded(ev -> {
+            if (gen != analyseGeneration) return; // axe ou filtres modifiés entre-temps
+            PivotResult r = task.getValue();
+            pivotTable.getItems().setAll(r.getRows());
+            XYChart.Series<String, Number> series = new XYChart.Series<>();
+            // graphique limité aux 30 premières valeurs (ou 366 jours) pour rester lisible
+            int max = axe.isTemporal() ? 366 : 30;
+            for (PivotResult.Row row : r.getRows().subList(0, Math.min(max, r.getRows().size()))) {
+                series.getData().add(new XYChart.Data<>(row.getLabel(), row.getMontant()));
+            }
+            pivotChart.getData().setAll(List.of(series));
+            lblAnalyse.setText(String.format("Total HT %.2f – %d lignes sur %d, %.1f ms",
+                    r.getTotalMontant(), r.getTotalLignes(), r.getScanned(), r.getElapsedNanos() / 1e6));
+        });
+        task.setOnFailed(ev -> {
+            if (gen != analyseGeneration) return;
+            Throwable ex = task.getException();
+            lblAnalyse.setText("");
+            new Alert(Alert.AlertType.ERROR, "Erreur d'analyse : " + (ex != null ? ex.getMessage() : "inconnue")).showAndWait();
+        });
+
+        Thread t = new Thread(task, "ventes-analyse");
+        t.setDaemon(true);
+        t.start();
+    }
+
 
     private void exportCsv() {
         try {
@@ -132,34 +295,85 @@ public class RecetteView {
     }
 
 
+    /**
+     * Recalcule les totaux hors du thread JavaFX ; un calcul encore en cours est annulé.
+     * Table : toutes les périodes. Graphiques : réduits à la largeur affichée (LTTB).
+     */
     public void refresh() {
+        debounce.stop();
         LocalDate start = dpStart.getValue() != null ? dpStart.getValue() : LocalDate.now().minusDays(30);
         LocalDate end = dpEnd.getValue() != null ? dpEnd.getValue() : LocalDate.now();
         String gran = cbGranularity.getValue() != null ? cbGranularity.getValue() : "DAY";
         String source = sourceChoice.getValue();
+        String mode = paymentMethodChoice.getValue();
+        // un point par pixel pour la courbe, une barre pour 4 pixels
+        int width = (int) (lineChart.getWidth() > 0 ? lineChart.getWidth() : 800);
+
+        if (refreshTask != null) refreshTask.cancel();
+        final int gen = ++refreshGeneration;
+        Task<Points> task = new Task<>() {
+            @Override
+            protected Points call() {
+                List<RecetteService.PeriodTotal> data;
+                if ("Factures (calculé)".equals(source)) {
+                    // Agrégation directe depuis factures
+                    data = RecetteService.getAggregatedFromFactures(start, end, gran, mode);
+                } else {
+                    // Utilise la table recettes existante
+                    data = RecetteService.getAggregated(start, end, gran);
+                }
+                if (isCancelled()) return null;
+                return new Points(data,
+                        Downsampling.lttb(data, RecetteService.PeriodTotal::getTotal, width),
+                        Downsampling.lttb(data, RecetteService.PeriodTotal::getTotal, Math.max(3, width / 4)));
+            }
+        };
+        task.setOnSucceeded(ev -> {
+            if (gen != refreshGeneration) return; // période modifiée entre-temps
+            Points p = task.getValue();
+            tableData.setAll(p.all);
+            lineChart.setCreateSymbols(p.line.size() <= MAX_SYMBOLS);
+            merge(seriesLine, p.line);
+            merge(seriesBar, p.bars);
+        });
+        task.setOnFailed(ev -> {
+            if (gen != refreshGeneration) return;
+            Throwable ex = task.getException();
+            if (ex != null) ex.printStackTrace();
+        });
+        refreshTask = task;
+
+        Thread t = new Thread(task, "recettes-refresh");
+        t.setDaemon(true);
+        t.start();
+    }
 
-        List<RecetteService.PeriodTotal> data;
-        if ("Factures (calculé)".equals(source)) {
-            // Agrégation directe depuis factures
-            data = RecetteService.getAggregatedFromFactures(start, end, gran);
-        } else {
-            // Utilise la table recettes existante
-            data = RecetteService.getAggregated(start, end, gran);
-        }
+    // totaux complets (table) et réduits (courbe, barres)
+    private record Points(List<RecetteService.PeriodTotal> all,
+                          List<RecetteService.PeriodTotal> line,
+                          List<RecetteService.PeriodTotal> bars) {
+    }
 
-        // Mettre à jour la table et les charts
-        tableData.setAll(data);
-        XYChart.Series<String, Number> seriesLine = new XYChart.Series<>();
-        XYChart.Series<String, Number> seriesBar = new XYChart.Series<>();
-        for (RecetteService.PeriodTotal p : data) {
-            seriesLine.getData().add(new XYChart.Data<>(p.getPeriod(), p.getTotal()));
-            seriesBar.getData().add(new XYChart.Data<>(p.getPeriod(), p.getTotal()));
+    /**
+     * Met la série en accord avec les nouveaux totaux (périodes croissantes des deux côtés) :
+     * les points communs sont conservés et seule leur valeur change, les autres sont retirés
+     * ou insérés à leur place.
+     */
+    private static void merge(XYChart.Series<String, Number> series, List<RecetteService.PeriodTotal> points) {
+        ObservableList<XYChart.Data<String, Number>> data = series.getData();
+        int i = 0;
+        for (RecetteService.PeriodTotal p : points) {
+            int j = i;
+            while (j < data.size() && data.get(j).getXValue().compareTo(p.getPeriod()) < 0) j++;
+            if (j > i) data.remove(i, j); // périodes disparues
+            if (i < data.size() && data.get(i).getXValue().equals(p.getPeriod())) {
+                if (data.get(i).getYValue().doubleValue() != p.getTotal()) data.get(i).setYValue(p.getTotal());
+            } else {
+                data.add(i, new XYChart.Data<>(p.getPeriod(), p.getTotal()));
+            }
+            i++;
         }
-
-        lineChart.getData().clear();
-        barChart.getData().clear();
-        lineChart.getData().add(seriesLine);
-        barChart.getData().add(seriesBar);
+        if (i < data.size()) data.remove(i, data.size());
     }
 
 }
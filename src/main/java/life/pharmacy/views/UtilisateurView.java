@@ -10,7 +10,9 @@ import javafx.scene.layout.HBox;
 import life.pharmacy.models.Utilisateur;
 import life.pharmacy.services.UtilisateurService;
 
-public class UtilisateurView {
+import java.util.List;
+
+public final class UtilisateurView {
     private BorderPane view;
     private TableView<Utilisateur> table;
     private ObservableList<Utilisateur> utilisateurs;
@@ -28,7 +30,7 @@ public class UtilisateurView {
         TableColumn<Utilisateur, String> colRole = new TableColumn<>("Rôle");
         colRole.setCellValueFactory(cell -> cell.getValue().roleProperty());
 
-        table.getColumns().addAll(colNom, colRole);
+        table.getColumns().addAll(List.of(colNom, colRole));
 
         // Boutons
         btnAjouter = new Button("Ajouter");
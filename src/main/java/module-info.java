@@ -2,6 +2,7 @@ module life.pharmacy {
     requires javafx.controls;
     requires javafx.fxml;
     requires java.sql;
+    requires java.xml;
     requires org.apache.poi.poi;
     requires org.apache.poi.ooxml;
     requires javafx.swing;
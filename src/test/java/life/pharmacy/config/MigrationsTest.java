@@ -0,0 +1,130 @@
+package life.pharmacy.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Migrations appliquées à une base vide, puis plan d'exécution des requêtes fréquentes des services :
+ * chacune doit passer par l'index prévu pour elle, jamais par un parcours complet de la table.
+ */
+class MigrationsTest {
+
+    @TempDir
+    Path dir;
+
+    private Connection conn;
+
+    @BeforeEach
+    void migrate() throws SQLException {
+        conn = DriverManager.getConnection("jdbc:sqlite:" + dir.resolve("migrations.db"));
+        Migrations.migrate(conn);
+    }
+
+    @AfterEach
+    void close() throws SQLException {
+        conn.close();
+    }
+
+    @Test
+    void toutesLesMigrationsSontEnregistrees() throws SQLException {
+        int last = Migrations.ALL.get(Migrations.ALL.size() - 1).getVersion();
+        assertEquals(last, Migrations.currentVersion(conn));
+        // deuxième démarrage : rien à appliquer
+        Migrations.migrate(conn);
+        assertEquals(last, Migrations.currentVersion(conn));
+    }
+
+    @Test
+    void lignesDUneFacture() throws SQLException {
+        // FactureService.getDetailsByFactureId
+        assertUsesIndex("idx_details_facture_facture", """
+                SELECT df.id, df.facture_id, df.produit_id, COALESCE(df.produit_nom, p.nom) AS produit_nom, df.quantite, df.prix_unitaire
+                FROM details_facture df
+                LEFT JOIN produits p ON df.produit_id = p.id
+                WHERE df.facture_id = ?
+                ORDER BY df.id
+                """);
+    }
+
+    @Test
+    void produitReferenceParUneFacture() throws SQLException {
+        // ProduitService.isReferencedInDetails
+        assertUsesIndex("idx_details_facture_produit",
+                "SELECT COUNT(*) as total FROM details_facture WHERE produit_id = ?");
+    }
+
+    @Test
+    void historiqueParPeriode() throws SQLException {
+        // FactureService.getPage avec filtre de dates
+        assertUsesIndex("idx_factures_epoch", """
+                SELECT f.id, f.date_epoch_ms FROM factures f
+                WHERE 1=1 AND f.date_epoch_ms >= ? AND f.date_epoch_ms < ?
+                ORDER BY f.date_epoch_ms DESC, f.id DESC LIMIT ?
+                """);
+    }
+
+    @Test
+    void historiqueDUnClient() throws SQLException {
+        // FactureService.getPage filtré par client, page suivante
+        assertUsesIndex("idx_factures_client_epoch", """
+                SELECT f.id, f.date_epoch_ms FROM factures f
+                WHERE 1=1 AND f.client_id = ? AND (f.date_epoch_ms < ? OR (f.date_epoch_ms = ? AND f.id < ?))
+                ORDER BY f.date_epoch_ms DESC, f.id DESC LIMIT ?
+                """);
+    }
+
+    @Test
+    void recettesParJour() throws SQLException {
+        // RecetteService.getAggregated : la somme se lit dans l'index seul
+        assertUsesCoveringIndex("idx_recettes_epoch", """
+                SELECT date_epoch_day, SUM(montant) AS total
+                FROM recettes WHERE date_epoch_day BETWEEN ? AND ?
+                GROUP BY date_epoch_day ORDER BY date_epoch_day ASC
+                """);
+    }
+
+    @Test
+    void produitScanne() throws SQLException {
+        assertUsesIndex("idx_produits_code_barre", "SELECT * FROM produits WHERE code_barre = ?");
+    }
+
+    @Test
+    void clientParEmail() throws SQLException {
+        // ClientService.importCSV : mise à jour des clients existants
+        assertUsesIndex("idx_clients_email",
+                "UPDATE clients SET nom=?, telephone=? WHERE email = ? COLLATE NOCASE");
+    }
+
+    // « USING INDEX x » ou « USING COVERING INDEX x » dans le plan
+    private void assertUsesIndex(String index, String sql) throws SQLException {
+        String plan = plan(sql);
+        assertTrue(plan.contains("USING INDEX " + index) || plan.contains("USING COVERING INDEX " + index),
+                "index " + index + " non utilisé :\n" + plan);
+    }
+
+    private void assertUsesCoveringIndex(String index, String sql) throws SQLException {
+        String plan = plan(sql);
+        assertTrue(plan.contains("USING COVERING INDEX " + index), "index couvrant " + index + " non utilisé :\n" + plan);
+    }
+
+    private String plan(String sql) throws SQLException {
+        StringBuilder sb = new StringBuilder();
+        try (PreparedStatement ps = conn.prepareStatement("EXPLAIN QUERY PLAN " + sql);
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) sb.append(rs.getString("detail")).append('\n');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,228 @@
+package life.pharmacy.services;
+
+import life.pharmacy.config.Database;
+import life.pharmacy.models.DetailFacture;
+import life.pharmacy.models.Facture;
+import life.pharmacy.models.Produit;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Ventes concurrentes des dernières unités : jamais de survente, jamais de disponible négatif,
+ * et le registre retombe sur la quantité en base une fois toutes les ventes validées.
+ */
+class StockLedgerTest {
+
+    private static final int THREADS = 16;
+
+    @TempDir
+    static Path dir;
+
+    @BeforeAll
+    static void base() {
+        // base jetable pour la vente de bout en bout ; lue à l'ouverture du pool
+        System.setProperty("pharmacy.db", dir.resolve("stock.db").toString());
+    }
+
+    @AfterAll
+    static void fermer() {
+        Database.shutdown();
+    }
+
+    @Test
+    void ventesConcurrentesSansSurvente() throws Exception {
+        int id = 1_000_001;
+        int stock = 200;
+        StockLedger.track(new Produit(id, "Test survente", 1.0, stock));
+
+        AtomicInteger validees = new AtomicInteger();
+        AtomicBoolean negatif = new AtomicBoolean();
+        AtomicBoolean fini = new AtomicBoolean();
+        Thread surveillance = new Thread(() -> {
+            while (!fini.get()) {
+                if (StockLedger.available(id) < 0 || StockLedger.free(id) < 0) negatif.set(true);
+            }
+        });
+        surveillance.start();
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch depart = new CountDownLatch(1);
+        for (int t = 0; t < THREADS; t++) {
+            pool.submit(() -> {
+                depart.await();
+                ThreadLocalRandom rnd = ThreadLocalRandom.current();
+                while (true) {
+                    int q = 1 + rnd.nextInt(3);
+                    // la moitié des ventes passe par une réservation de panier
+                    int held = 0;
+                    if (rnd.nextBoolean() && StockLedger.reserve(id, q)) held = q;
+                    if (!StockLedger.take(id, q, held)) {
+                        if (held > 0) StockLedger.reserve(id, -held);
+                        if (StockLedger.free(id) <= 0) return null;
+                        continue; // reste moins que q : on retente plus petit
+                    }
+                    // une vente sur cinq échoue à l'écriture et rend son stock
+                    if (rnd.nextInt(5) == 0) {
+                        StockLedger.cancelled(id, q);
+                    } else {
+                        StockLedger.committed(id, q);
+                        validees.addAndGet(q);
+                    }
+                }
+            });
+        }
+        depart.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(30, TimeUnit.SECONDS));
+        fini.set(true);
+        surveillance.join();
+
+        assertFalse(negatif.get(), "disponible négatif observé");
+        assertEquals(stock, validees.get(), "unités vendues");
+        assertEquals(0, StockLedger.available(id));
+        assertEquals(0, StockLedger.pending(id));
+    }
+
+    @Test
+    void lectureAnterieureAUneValidationSansStockFantome() {
+        int id = 1_000_002;
+        StockLedger.track(new Produit(id, "Test lecture", 1.0, 10));
+        assertTrue(StockLedger.take(id, 1, 0));
+        // ligne lue en base avant le commit de la vente, prise en compte après sa validation
+        Produit lu = new Produit(id, "Test lecture", 1.0, 10);
+        StockLedger.committed(id, 1);
+        StockLedger.track(lu);
+        assertEquals(9, StockLedger.available(id));
+        assertEquals(9, lu.getQuantite());
+    }
+
+    @Test
+    void facturesConcurrentesSurLesDernieresUnites() throws Exception {
+        int stock = 40;
+        Produit p = new Produit(0, "Dernières boîtes", null, 2.0, stock, false);
+        ProduitService.insert(p);
+        assertTrue(p.getId() > 0);
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        List<CompletableFuture<Facture>> ventes = new ArrayList<>();
+        CountDownLatch depart = new CountDownLatch(1);
+        List<java.util.concurrent.Future<CompletableFuture<Facture>>> soumises = new ArrayList<>();
+        for (int i = 0; i < stock * 2; i++) {
+            soumises.add(pool.submit(() -> {
+                depart.await();
+                Facture f = new Facture(0, LocalDateTime.now(), null, 2.0, 0, 2.0);
+                f.setModePaiement("Espèces");
+                f.setDetails(List.of(new DetailFacture(0, p, 1, 2.0)));
+                return FactureService.submit(f, 0);
+            }));
+        }
+        depart.countDown();
+        for (var s : soumises) ventes.add(s.get(30, TimeUnit.SECONDS));
+        pool.shutdown();
+
+        int reussies = 0;
+        for (CompletableFuture<Facture> v : ventes) {
+            try {
+                v.get(30, TimeUnit.SECONDS);
+                reussies++;
+            } catch (java.util.concurrent.ExecutionException e) {
+                // stock insuffisant : refus attendu pour les ventes en trop
+            }
+        }
+
+        assertEquals(stock, reussies, "ventes validées");
+        assertEquals(0, quantiteEnBase(p.getId()));
+        assertEquals(stock, lignesVendues(p.getId()));
+        assertEquals(0, StockLedger.available(p.getId()));
+        assertEquals(0, StockLedger.pending(p.getId()));
+        // relecture de la base : même disponible
+        StockLedger.resync();
+        assertEquals(0, StockLedger.available(p.getId()));
+    }
+
+    @Test
+    void stockModifieParUnAutrePoste() throws Exception {
+        Produit p = new Produit(0, "Autre poste", null, 2.0, 5, false);
+        ProduitService.insert(p);
+        int id = p.getId();
+        assertEquals(5, StockLedger.free(id));
+
+        // un autre poste vend tout le stock, sur sa propre connexion au même fichier
+        autrePoste("UPDATE produits SET quantite = 0 WHERE id = ?", id);
+        Facture f = new Facture(0, LocalDateTime.now(), null, 2.0, 0, 2.0);
+        f.setModePaiement("Espèces");
+        f.setDetails(List.of(new DetailFacture(0, p, 1, 2.0)));
+        // le registre croit encore au stock : c'est la base qui refuse la sortie
+        ExecutionException refus = assertThrows(ExecutionException.class,
+                () -> FactureService.submit(f, 0).get(30, TimeUnit.SECONDS));
+        assertTrue(refus.getCause().getMessage().contains("Stock insuffisant"), refus.getCause().getMessage());
+        attendre(() -> StockLedger.available(id) == 0, "vente de l'autre poste non vue");
+        assertEquals(0, StockLedger.pending(id));
+
+        // réassort par l'autre poste : vu au rechargement du catalogue
+        autrePoste("UPDATE produits SET quantite = 7 WHERE id = ?", id);
+        ProduitCatalog.invalidate();
+        attendre(() -> StockLedger.available(id) == 7, "réassort de l'autre poste non vu");
+    }
+
+    private static void autrePoste(String sql, int id) throws SQLException {
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + Database.getFile());
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, id);
+            assertEquals(1, ps.executeUpdate());
+        }
+    }
+
+    private static void attendre(BooleanSupplier condition, String message) throws InterruptedException {
+        long fin = System.currentTimeMillis() + 5_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < fin, message);
+            Thread.sleep(10);
+        }
+    }
+
+    private static int quantiteEnBase(int id) throws SQLException {
+        return count("SELECT quantite FROM produits WHERE id = ?", id);
+    }
+
+    private static int lignesVendues(int id) throws SQLException {
+        return count("SELECT COALESCE(SUM(quantite), 0) FROM details_facture WHERE produit_id = ?", id);
+    }
+
+    private static int count(String sql, int id) throws SQLException {
+        try (Connection conn = Database.getReadConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, id);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : -1;
+            }
+        }
+    }
+}